@@ -36,6 +36,15 @@ public class InventoryServiceProperties {
   private String apiKey;
   private String kafkaHostIngressTopic = "platform.inventory.host-ingress";
   private int apiHostUpdateBatchSize = 50;
+
+  /** Approximate size in bytes at which a batch of host updates is sent. */
+  private long apiHostUpdateMaxBatchBytes = 1024L * 1024L;
+
+  /** How long a scheduled host update may wait for its batch to fill before it is sent. */
+  private Duration apiHostUpdateLinger = Duration.ofSeconds(1);
+
+  /** Maximum number of host update batches being sent to inventory at once. */
+  private int apiHostUpdateMaxInFlightBatches = 2;
   private int staleHostOffsetInDays = 0;
 
   @DurationUnit(ChronoUnit.HOURS)
@@ -71,6 +71,19 @@ public class ApplicationProperties {
    */
   private int accountBatchSize = 500;
 
+  /**
+   * The number of accounts from a single batch that are tallied concurrently by a worker. Each
+   * concurrent tally holds a connection from both the inventory and subscriptions datasources, so
+   * this should not exceed either connection pool size. Default: 1
+   */
+  private int accountTallyConcurrency = 1;
+
+  /**
+   * The number of concurrent cursors the HBI hosts of an account are read with, each over a range
+   * of inventory IDs. Each cursor holds its own inventory datasource connection. Default: 1
+   */
+  private int inventoryScanPartitions = 1;
+
   /** Amount of time to cache the account list, before allowing a re-read from the filesystem. */
   private Duration accountListCacheTtl = Duration.ofMinutes(5);
 
@@ -85,6 +98,16 @@ public class ApplicationProperties {
    */
   private Duration reportingAccountWhitelistCacheTtl = Duration.ofMinutes(5);
 
+  /**
+   * The number of tally report data responses cached by the API, across all accounts. Unpaged
+   * responses are cached until new snapshots are tallied for their account and product, or until
+   * they expire. Setting this to 0 disables the cache. Default: 0
+   */
+  private int tallyReportCacheSize = 0;
+
+  /** Amount of time a cached tally report data response is served for. */
+  private Duration tallyReportCacheTtl = Duration.ofMinutes(5);
+
   /**
    * The number of days after the inventory's stale_timestamp that the record will be culled.
    * Currently HBI is calculating this value and setting it on messages. Right now the default is:
@@ -120,6 +143,23 @@ public class ApplicationProperties {
    */
   private Duration hourlyTallyOffset = Duration.ofMinutes(60L);
 
+  /**
+   * If enabled, the hourly tally reads all events for the tally range with a single query and
+   * buckets them into hours while streaming, rather than querying the event store once per hour.
+   */
+  private boolean singleScanHourlyTallyEnabled = true;
+
+  /**
+   * If enabled, a re-tally of hourly metrics only replays the requested range plus the hours whose
+   * events changed since they were last tallied, instead of everything from the start of the
+   * month. Changed hours are only tracked while this is enabled, in every process that saves
+   * events, so this is off by default.
+   */
+  private boolean incrementalHourlyTallyEnabled = false;
+
+  /** Number of events written per JDBC batch when events are saved in bulk. */
+  private int eventUpsertBatchSize = 500;
+
   /** Additional properties related to the Subscription Service */
   private SubscriptionServiceProperties subscription = new SubscriptionServiceProperties();
 
@@ -20,18 +20,30 @@
  */
 package org.candlepin.subscriptions.event;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.persistence.EntityNotFoundException;
 import javax.transaction.Transactional;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.db.EventDirtyHourRepository;
 import org.candlepin.subscriptions.db.EventRecordRepository;
+import org.candlepin.subscriptions.db.model.EventDirtyHour;
+import org.candlepin.subscriptions.db.model.EventDirtyHourId;
 import org.candlepin.subscriptions.db.model.EventKey;
 import org.candlepin.subscriptions.db.model.EventRecord;
 import org.candlepin.subscriptions.json.Event;
@@ -41,9 +53,26 @@ import org.springframework.stereotype.Service;
 @Service
 public class EventController {
   private final EventRecordRepository repo;
+  private final EventDirtyHourRepository dirtyHourRepo;
+  private final ObjectReader eventReader;
+  private final int upsertBatchSize;
+  private final boolean dirtyHoursEnabled;
+  private final Counter upsertedEventsCounter;
+  private final Timer upsertTimer;
 
-  public EventController(EventRecordRepository repo) {
+  public EventController(
+      EventRecordRepository repo,
+      EventDirtyHourRepository dirtyHourRepo,
+      ObjectMapper objectMapper,
+      ApplicationProperties props,
+      MeterRegistry meterRegistry) {
     this.repo = repo;
+    this.dirtyHourRepo = dirtyHourRepo;
+    this.eventReader = objectMapper.readerFor(Event.class);
+    this.upsertBatchSize = props.getEventUpsertBatchSize();
+    this.dirtyHoursEnabled = props.isIncrementalHourlyTallyEnabled();
+    this.upsertedEventsCounter = meterRegistry.counter("rhsm-subscriptions.events.upserted");
+    this.upsertTimer = meterRegistry.timer("rhsm-subscriptions.events.upsert");
   }
 
   /**
@@ -68,16 +97,33 @@ public class EventController {
         .map(EventRecord::getEvent);
   }
 
-  @SuppressWarnings({"linelength", "indentation"})
+  /**
+   * Fetch the events needed to tally usage for an account and service type. The events are read
+   * without being loaded as entities, and fields not used by the tally (e.g. event ID, source,
+   * type and expiration) are left unset.
+   *
+   * <p>Note: calling method needs to use @Transactional
+   *
+   * @param accountNumber account identifier
+   * @param serviceType service type
+   * @param begin beginning of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @return stream of partially populated Event, ordered by timestamp
+   */
+  public Stream<Event> fetchTallyEventsInTimeRangeByServiceType(
+      String accountNumber, String serviceType, OffsetDateTime begin, OffsetDateTime end) {
+    return repo.findTallyDataInTimeRange(accountNumber, serviceType, begin, end)
+        .map(this::readEvent);
+  }
+
   public Map<EventKey, Event> mapEventsInTimeRange(
       String accountNumber,
       String eventSource,
       String eventType,
       OffsetDateTime begin,
       OffsetDateTime end) {
-    return repo.findByAccountNumberAndEventSourceAndEventTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
-            accountNumber, eventSource, eventType, begin, end)
-        .map(EventRecord::getEvent)
+    return repo.findDataInTimeRange(accountNumber, eventSource, eventType, begin, end)
+        .map(this::readEvent)
         .collect(Collectors.toMap(EventKey::fromEvent, Function.identity()));
   }
 
@@ -90,19 +136,26 @@ public class EventController {
   @Transactional
   public Event saveEvent(Event event) {
     EventRecord eventRecord = new EventRecord(event);
+    markDirtyHours(List.of(event));
     return repo.save(eventRecord).getEvent();
   }
 
   /**
    * Validates and saves a list of event JSON objects in the DB.
    *
+   * <p>Events are written in batches, replacing any stored event with the same {@link EventKey}.
+   * A replaced event keeps its ID, which is the one set on the returned event.
+   *
    * @param events the event JSON objects to save.
+   * @return the saved events
    */
   @Transactional
   public List<Event> saveAll(Collection<Event> events) {
-    return repo.saveAll(events.stream().map(EventRecord::new).collect(Collectors.toList())).stream()
-        .map(EventRecord::getEvent)
-        .collect(Collectors.toList());
+    markDirtyHours(events);
+    List<EventRecord> records = events.stream().map(EventRecord::new).collect(Collectors.toList());
+    List<EventRecord> stored = upsertTimer.record(() -> repo.upsertAll(records, upsertBatchSize));
+    upsertedEventsCounter.increment(records.size());
+    return stored.stream().map(EventRecord::getEvent).collect(Collectors.toList());
   }
 
   /**
@@ -122,11 +175,15 @@ public class EventController {
 
   @Transactional
   public void deleteEvents(Collection<Event> toDelete) {
+    markDirtyHours(toDelete);
     repo.deleteInBatch(toDelete.stream().map(EventRecord::new).collect(Collectors.toList()));
   }
 
   @Transactional
   public void deleteEvent(UUID eventId) {
+    if (dirtyHoursEnabled) {
+      repo.findById(eventId).ifPresent(existing -> markDirtyHours(List.of(existing.getEvent())));
+    }
     repo.deleteById(eventId);
   }
 
@@ -136,4 +193,75 @@ public class EventController {
     return repo.existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
         accountNumber, serviceType, startDate, endDate);
   }
+
+  /**
+   * Fetch the hours for an account and service type whose events have changed since they were last
+   * tallied.
+   *
+   * @param accountNumber account identifier
+   * @param serviceType service type
+   * @param end hours starting at or after this time are excluded
+   * @return the changed hours, in ascending order
+   */
+  @Transactional
+  public List<EventDirtyHour> fetchDirtyHours(
+      String accountNumber, String serviceType, OffsetDateTime end) {
+    return dirtyHourRepo.findByIdAccountNumberAndIdServiceTypeAndIdHourBeforeOrderByIdHour(
+        accountNumber, serviceType, end);
+  }
+
+  /**
+   * Mark hours as tallied, so that they are no longer reported by {@link #fetchDirtyHours}. Hours
+   * whose events changed again since they were fetched are kept, to be replayed by the next tally.
+   *
+   * @param hours the hours that were tallied, as returned by {@link #fetchDirtyHours}
+   */
+  @Transactional
+  public void clearDirtyHours(Collection<EventDirtyHour> hours) {
+    dirtyHourRepo.deleteAllUnchanged(hours, upsertBatchSize);
+  }
+
+  /**
+   * Note: calling method needs to use @Transactional
+   *
+   * @param accountNumber account identifier
+   * @param serviceType service type
+   * @param begin beginning of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @return stream of Object[] with entries of instance ID, uom, month ID and summed value
+   * @see EventRecordRepository#sumMeasurementsByInstanceAndMonth
+   */
+  public Stream<Object[]> sumMeasurementsByInstanceAndMonth(
+      String accountNumber, String serviceType, OffsetDateTime begin, OffsetDateTime end) {
+    return repo.sumMeasurementsByInstanceAndMonth(accountNumber, serviceType, begin, end);
+  }
+
+  private Event readEvent(String data) {
+    try {
+      return eventReader.readValue(data);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Error parsing event", e);
+    }
+  }
+
+  /**
+   * Record the hours of the given events as changed. Changed hours are only used by the incremental
+   * hourly tally, so nothing is recorded unless it is enabled.
+   */
+  private void markDirtyHours(Collection<Event> events) {
+    if (!dirtyHoursEnabled) {
+      return;
+    }
+    Set<EventDirtyHourId> dirtyHours =
+        events.stream()
+            .filter(event -> event.getServiceType() != null && event.getTimestamp() != null)
+            .map(
+                event ->
+                    new EventDirtyHourId(
+                        event.getAccountNumber(),
+                        event.getServiceType(),
+                        event.getTimestamp().truncatedTo(ChronoUnit.HOURS)))
+            .collect(Collectors.toSet());
+    dirtyHourRepo.markAll(dirtyHours, upsertBatchSize);
+  }
 }
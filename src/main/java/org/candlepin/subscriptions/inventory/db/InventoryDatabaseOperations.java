@@ -20,21 +20,39 @@
  */
 package org.candlepin.subscriptions.inventory.db;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /** Isolates readonly transaction for inventory database operations. */
 @Component
 public class InventoryDatabaseOperations {
 
   private final InventoryRepository repo;
+  private final TransactionTemplate readOnlyTransaction;
+  private final ExecutorService scanExecutor;
 
-  public InventoryDatabaseOperations(InventoryRepository inventoryRepository) {
+  public InventoryDatabaseOperations(
+      InventoryRepository inventoryRepository,
+      @Qualifier("inventoryTransactionManager") PlatformTransactionManager transactionManager,
+      @Qualifier("inventoryScanExecutor") ExecutorService scanExecutor) {
     this.repo = inventoryRepository;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.scanExecutor = scanExecutor;
   }
 
   @Transactional(value = "inventoryTransactionManager", readOnly = true)
@@ -45,10 +63,93 @@ public class InventoryDatabaseOperations {
     }
   }
 
+  /**
+   * Process the host facts of the given accounts, reading them over several concurrent cursors.
+   *
+   * <p>The inventory ID space is split into equal ranges, each read by its own cursor in its own
+   * read-only transaction on the inventory scan executor. Since inventory IDs are random UUIDs, the
+   * hosts spread evenly across the partitions. Each partition gets its own consumer from the given
+   * supplier, which is only ever called by the thread reading that partition, so consumers do not
+   * need to be thread-safe. When a single partition is requested, the hosts are read on the
+   * calling thread with a single cursor.
+   *
+   * @param accounts the accounts to process the hosts of.
+   * @param culledOffsetDays number of days after the stale timestamp hosts are considered culled.
+   * @param partitions the number of concurrent cursors to read the hosts with.
+   * @param partitionConsumer supplies the consumer receiving the facts of each partition's hosts.
+   * @param <T> the type of the partition consumers.
+   * @return the consumers of every partition, once all hosts have been processed.
+   */
+  public <T extends Consumer<InventoryHostFacts>> List<T> processHostFacts(
+      Collection<String> accounts,
+      int culledOffsetDays,
+      int partitions,
+      Supplier<T> partitionConsumer) {
+    if (partitions <= 1) {
+      T consumer = partitionConsumer.get();
+      readOnlyTransaction.executeWithoutResult(
+          status -> {
+            try (Stream<InventoryHostFacts> hostFactStream =
+                repo.getFacts(accounts, culledOffsetDays)) {
+              hostFactStream.forEach(consumer);
+            }
+          });
+      return List.of(consumer);
+    }
+
+    List<T> consumers = new ArrayList<>(partitions);
+    List<CompletableFuture<Void>> scans = new ArrayList<>(partitions);
+    for (UUID[] range : partitionInventoryIds(partitions)) {
+      T consumer = partitionConsumer.get();
+      consumers.add(consumer);
+      scans.add(
+          CompletableFuture.runAsync(
+              () ->
+                  readOnlyTransaction.executeWithoutResult(
+                      status -> {
+                        try (Stream<InventoryHostFacts> hostFactStream =
+                            repo.getFactsInIdRange(
+                                accounts,
+                                culledOffsetDays,
+                                range[0].toString(),
+                                range[1].toString())) {
+                          hostFactStream.forEach(consumer);
+                        }
+                      }),
+              scanExecutor));
+    }
+
+    try {
+      CompletableFuture.allOf(scans.toArray(CompletableFuture[]::new)).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+    return consumers;
+  }
+
   @Transactional(value = "inventoryTransactionManager", readOnly = true)
   public void reportedHypervisors(Collection<String> accounts, Consumer<Object[]> consumer) {
     try (Stream<Object[]> stream = repo.getReportedHypervisors(accounts)) {
       stream.forEach(consumer::accept);
     }
   }
+
+  /**
+   * Split the UUID space into contiguous, inclusive [min, max] ranges of equal size. UUIDs are
+   * ordered by their unsigned most significant bits first, which is also how the database orders
+   * them.
+   */
+  static List<UUID[]> partitionInventoryIds(int partitions) {
+    long step = Long.divideUnsigned(-1L, partitions);
+    List<UUID[]> ranges = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      UUID min = new UUID(step * i, 0L);
+      UUID max = i == partitions - 1 ? new UUID(-1L, -1L) : new UUID(step * (i + 1) - 1, -1L);
+      ranges.add(new UUID[] {min, max});
+    }
+    return ranges;
+  }
 }
@@ -38,6 +38,23 @@ public interface InventoryRepository extends Repository<InventoryHost, UUID> {
       @Param("accounts") Collection<String> accounts,
       @Param("culledOffsetDays") Integer culledOffsetDays);
 
+  /**
+   * Same as {@link #getFacts(Collection, Integer)}, limited to the hosts whose inventory ID is
+   * within the given inclusive range. Used to read the hosts of an account over several cursors.
+   *
+   * @param accounts the accounts to filter hosts by.
+   * @param culledOffsetDays number of days after the stale timestamp hosts are considered culled.
+   * @param minId the lowest inventory ID to return, as a UUID string.
+   * @param maxId the highest inventory ID to return, as a UUID string.
+   * @return a stream of the host facts within the range.
+   */
+  @Query(nativeQuery = true)
+  Stream<InventoryHostFacts> getFactsInIdRange(
+      @Param("accounts") Collection<String> accounts,
+      @Param("culledOffsetDays") Integer culledOffsetDays,
+      @Param("minId") String minId,
+      @Param("maxId") String maxId);
+
   /**
    * Get a mapping of hypervisor ID to associated hypervisor host's subscription-manager ID. If the
    * hypervisor hasn't been reported, then the hyp_subman_id value will be null.
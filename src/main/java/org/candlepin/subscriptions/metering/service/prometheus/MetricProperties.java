@@ -52,6 +52,17 @@ public class MetricProperties {
    */
   private int step = 3600; // 1 hour
 
+  /**
+   * Number of events to accumulate while a query response is being read before they are persisted.
+   */
+  private int eventBatchSize = 1000;
+
+  /**
+   * Number of accounts whose metrics are collected by a single prometheus query. A value of 1
+   * queries each account individually.
+   */
+  private int accountBatchSize = 1;
+
   /** Number of times the metrics gathering should be retried if something fails. */
   private int maxAttempts = 5;
 
@@ -0,0 +1,37 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.metering.service.prometheus;
+
+import java.util.Map;
+
+/** Receives the samples of a prometheus range query as they are parsed. */
+@FunctionalInterface
+public interface MetricSampleConsumer {
+
+  /**
+   * Accept a single sample.
+   *
+   * @param labels the labels of the series the sample belongs to; shared by all of its samples
+   * @param timestamp the sample time, in seconds since the epoch
+   * @param value the sample value
+   */
+  void accept(Map<String, String> labels, long timestamp, double value);
+}
@@ -21,13 +21,14 @@
 package org.candlepin.subscriptions.metering.service.prometheus;
 
 import io.micrometer.core.annotation.Timed;
-import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.candlepin.subscriptions.db.model.EventKey;
 import org.candlepin.subscriptions.db.model.config.OptInType;
 import org.candlepin.subscriptions.event.EventController;
@@ -38,7 +39,6 @@ import org.candlepin.subscriptions.metering.MeteringException;
 import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryBuilder;
 import org.candlepin.subscriptions.metering.service.prometheus.promql.QueryDescriptor;
 import org.candlepin.subscriptions.prometheus.model.QueryResult;
-import org.candlepin.subscriptions.prometheus.model.QueryResultDataResult;
 import org.candlepin.subscriptions.prometheus.model.StatusType;
 import org.candlepin.subscriptions.registry.TagMetaData;
 import org.candlepin.subscriptions.registry.TagMetric;
@@ -59,6 +59,8 @@ public class PrometheusMeteringController {
 
   private static final Logger log = LoggerFactory.getLogger(PrometheusMeteringController.class);
 
+  private static final String ACCOUNT_LABEL = "ebs_account";
+
   private final PrometheusService prometheusService;
   private final EventController eventController;
   private final ApplicationClock clock;
@@ -91,11 +93,26 @@ public class PrometheusMeteringController {
   // Suppressing this sonar issue because we need to log plus throw an exception on retry
   // otherwise we never know that we have failed during the retry cycle until all attempts
   // are exhausted.
-  @SuppressWarnings("java:S2139")
   @Timed("rhsm-subscriptions.metering.openshift")
   @Transactional
   public void collectMetrics(
       String tag, Uom metric, String account, OffsetDateTime start, OffsetDateTime end) {
+    collectMetrics(tag, metric, List.of(account), start, end);
+  }
+
+  /**
+   * Collects the metrics of several accounts with a single prometheus query. The series of the
+   * result are attributed to an account by their ebs_account label.
+   */
+  @SuppressWarnings("java:S2139")
+  @Timed("rhsm-subscriptions.metering.openshift")
+  @Transactional
+  public void collectMetrics(
+      String tag,
+      Uom metric,
+      Collection<String> accounts,
+      OffsetDateTime start,
+      OffsetDateTime end) {
     Optional<TagMetric> tagMetric = tagProfile.getTagMetric(tag, metric);
     if (tagMetric.isEmpty()) {
       throw new UnsupportedOperationException(
@@ -116,92 +133,107 @@ public class PrometheusMeteringController {
     - it should already be)
      */
     OffsetDateTime startDate = clock.startOfHour(start).plusHours(1);
-    log.debug("Ensuring marketplace account {} has been set up for syncing/reporting.", account);
-    ensureOptIn(account);
+    Set<String> requestedAccounts = Set.copyOf(accounts);
+    accounts.forEach(
+        account -> {
+          log.debug(
+              "Ensuring marketplace account {} has been set up for syncing/reporting.", account);
+          ensureOptIn(account);
+        });
     openshiftRetry.execute(
         context -> {
           try {
 
-            log.info("Collecting metrics for account {}: {} {}", account, tag, metric);
-            QueryResult metricData =
-                prometheusService.runRangeQuery(
-                    buildPromQLForMetering(account, tagMetric.get()),
-                    startDate,
-                    end,
-                    metricProperties.getStep(),
-                    metricProperties.getQueryTimeout());
-
-            if (StatusType.ERROR.equals(metricData.getStatus())) {
-              throw new MeteringException(
-                  String.format(
-                      "Unable to fetch %s %s metrics: %s", tag, metric, metricData.getError()));
+            log.info("Collecting metrics for accounts {}: {} {}", accounts, tag, metric);
+            Map<EventKey, Event> existing = new HashMap<>();
+            for (String account : accounts) {
+              existing.putAll(
+                  eventController.mapEventsInTimeRange(
+                      account,
+                      MeteringEventFactory.EVENT_SOURCE,
+                      MeteringEventFactory.getEventType(tagMetric.get().getMetricId()),
+                      // We need to shift the start and end dates by the step, to account for the
+                      // shift in the event start date when it is created. See note about
+                      // eventDate below.
+                      startDate.minusSeconds(metricProperties.getStep()),
+                      end));
             }
 
-            Map<EventKey, Event> existing =
-                eventController.mapEventsInTimeRange(
-                    account,
-                    MeteringEventFactory.EVENT_SOURCE,
-                    MeteringEventFactory.getEventType(tagMetric.get().getMetricId()),
-                    // We need to shift the start and end dates by the step, to account for the
-                    // shift in the event start date when it is created. See note about eventDate
-                    // below.
-                    startDate.minusSeconds(metricProperties.getStep()),
-                    end);
-
             log.debug(
                 "Looking for events in range [{}, {})",
                 startDate.minusSeconds(metricProperties.getStep()),
                 end);
             log.debug("Found {} existing events.", existing.size());
 
+            // Events are persisted in batches while the response is still being read. Keys of
+            // persisted events are kept so that, as before, the first sample reported for a key
+            // wins.
             Map<EventKey, Event> events = new HashMap<>();
-            for (QueryResultDataResult r : metricData.getData().getResult()) {
-              Map<String, String> labels = r.getMetric();
-              String clusterId = labels.get("_id");
-              String sla = labels.get("support");
-              String usage = labels.get("usage");
-              // NOTE: Role comes from the product label despite its name. The values set here
-              //       are NOT engineering or swatch product IDs. They map to the roles in the
-              //       tag profile. For openshift, the values will be 'ocp' or 'osd'.
-              String role = labels.get("product");
-              String billingProvider = labels.get("billing_marketplace");
-              String billingAccountId = labels.get("billing_marketplace_account");
+            Set<EventKey> persistedKeys = new HashSet<>();
+            QueryResult metricData =
+                prometheusService.runRangeQuery(
+                    buildPromQLForMetering(accounts, tagMetric.get()),
+                    startDate,
+                    end,
+                    metricProperties.getStep(),
+                    metricProperties.getQueryTimeout(),
+                    (labels, time, value) -> {
+                      String account = resolveAccount(requestedAccounts, labels);
+                      if (account == null) {
+                        log.warn("Ignoring sample for unrequested account: {}", labels);
+                        return;
+                      }
+                      String clusterId = labels.get("_id");
+                      String sla = labels.get("support");
+                      String usage = labels.get("usage");
+                      // NOTE: Role comes from the product label despite its name. The values set
+                      //       here are NOT engineering or swatch product IDs. They map to the
+                      //       roles in the tag profile. For openshift, the values will be 'ocp' or
+                      //       'osd'.
+                      String role = labels.get("product");
+                      String billingProvider = labels.get("billing_marketplace");
+                      String billingAccountId = labels.get("billing_marketplace_account");
 
-              // For the openshift metrics, we expect our results to be a 'matrix'
-              // vector [(instant_time,value), ...] so we only look at the result's getValues()
-              // data.
-              for (List<BigDecimal> measurement : r.getValues()) {
-                BigDecimal time = measurement.get(0);
-                BigDecimal value = measurement.get(1);
+                      OffsetDateTime eventTermDate = clock.dateFromUnix(time);
+                      // Need to subtract the step because we are averaging and the metric value
+                      // actually represents the end of the measured period. The start of the
+                      // event should be at the beginning.
+                      OffsetDateTime eventDate =
+                          eventTermDate.minusSeconds(metricProperties.getStep());
 
-                OffsetDateTime eventTermDate = clock.dateFromUnix(time);
-                // Need to subtract the step because we are averaging and the metric value
-                // actually represents the end of the measured period. The start of the event
-                // should be at the beginning.
-                OffsetDateTime eventDate = eventTermDate.minusSeconds(metricProperties.getStep());
+                      Event event =
+                          createOrUpdateEvent(
+                              existing,
+                              account,
+                              tagMetric.get().getMetricId(),
+                              clusterId,
+                              sla,
+                              usage,
+                              role,
+                              eventDate,
+                              eventTermDate,
+                              tagMetaData.get().getServiceType(),
+                              billingProvider,
+                              billingAccountId,
+                              tagMetric.get().getUom(),
+                              value);
+                      EventKey key = EventKey.fromEvent(event);
+                      if (!persistedKeys.contains(key)) {
+                        events.putIfAbsent(key, event);
+                      }
+                      if (events.size() >= metricProperties.getEventBatchSize()) {
+                        persistEvents(events, persistedKeys);
+                      }
+                    });
 
-                Event event =
-                    createOrUpdateEvent(
-                        existing,
-                        account,
-                        tagMetric.get().getMetricId(),
-                        clusterId,
-                        sla,
-                        usage,
-                        role,
-                        eventDate,
-                        eventTermDate,
-                        tagMetaData.get().getServiceType(),
-                        billingProvider,
-                        billingAccountId,
-                        tagMetric.get().getUom(),
-                        value);
-                events.putIfAbsent(EventKey.fromEvent(event), event);
-              }
+            if (StatusType.ERROR.equals(metricData.getStatus())) {
+              throw new MeteringException(
+                  String.format(
+                      "Unable to fetch %s %s metrics: %s", tag, metric, metricData.getError()));
             }
 
-            eventController.saveAll(events.values());
-            log.info("Persisted {} events for {} {} metrics.", events.size(), tag, metric);
+            persistEvents(events, persistedKeys);
+            log.info("Persisted {} events for {} {} metrics.", persistedKeys.size(), tag, metric);
 
             // Delete any stale events found during the period.
             deleteStaleEvents(existing.values());
@@ -245,7 +277,7 @@ public class PrometheusMeteringController {
       String billingProvider,
       String billingAccountId,
       Uom metric,
-      BigDecimal value) {
+      double value) {
     EventKey lookupKey =
         new EventKey(
             account,
@@ -271,10 +303,17 @@ public class PrometheusMeteringController {
         billingProvider,
         billingAccountId,
         metric,
-        value.doubleValue());
+        value);
     return event;
   }
 
+  private void persistEvents(Map<EventKey, Event> events, Set<EventKey> persistedKeys) {
+    // Copied, since the map is reused for the next batch.
+    eventController.saveAll(List.copyOf(events.values()));
+    persistedKeys.addAll(events.keySet());
+    events.clear();
+  }
+
   private void deleteStaleEvents(Collection<Event> toDelete) {
     if (!toDelete.isEmpty()) {
       log.info("Deleting {} stale metric events.", toDelete.size());
@@ -282,17 +321,26 @@ public class PrometheusMeteringController {
     }
   }
 
-  private String buildPromQLForMetering(String account, TagMetric tagMetric) {
-    Map<String, String> args = new HashMap<>();
-    args.put("account", account);
+  /**
+   * Determine the account a sample belongs to. When a single account is queried, every sample is
+   * attributed to it.
+   */
+  private String resolveAccount(Set<String> accounts, Map<String, String> labels) {
+    if (accounts.size() == 1) {
+      return accounts.iterator().next();
+    }
+    String account = labels.get(ACCOUNT_LABEL);
+    return accounts.contains(account) ? account : null;
+  }
 
+  private String buildPromQLForMetering(Collection<String> accounts, TagMetric tagMetric) {
     // Default the query template if the tag profile didn't specify one.
     if (!StringUtils.hasText(tagMetric.getQueryKey())) {
       tagMetric.setQueryKey(QueryBuilder.DEFAULT_METRIC_QUERY_KEY);
     }
 
     QueryDescriptor descriptor = new QueryDescriptor(tagMetric);
-    descriptor.addRuntimeVar("account", account);
+    descriptor.addRuntimeVar("account", QueryBuilder.accountMatcher(accounts));
     return prometheusQueryBuilder.build(descriptor);
   }
 }
@@ -21,6 +21,8 @@
 package org.candlepin.subscriptions.metering.service.prometheus;
 
 import com.google.common.net.UrlEscapers;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.OffsetDateTime;
 import org.candlepin.subscriptions.exception.ErrorCode;
 import org.candlepin.subscriptions.exception.ExternalServiceException;
@@ -38,6 +40,7 @@ public class PrometheusService {
   private static final Logger log = LoggerFactory.getLogger(PrometheusService.class);
 
   private ApiProvider apiProvider;
+  private final RangeQueryResultParser rangeQueryResultParser = new RangeQueryResultParser();
 
   public PrometheusService(ApiProvider prometheusApiProvider) {
     this.apiProvider = prometheusApiProvider;
@@ -65,6 +68,54 @@ public class PrometheusService {
     }
   }
 
+  /**
+   * Run a range query, handing each sample to the consumer as the response is read rather than
+   * holding the whole result in memory.
+   *
+   * @param promQL the query to run
+   * @param start start of the range
+   * @param end end of the range
+   * @param step query resolution step, in seconds
+   * @param timeout query timeout
+   * @param consumer receives every sample of the result
+   * @return the status and error of the response, without any data
+   * @throws ExternalServiceException if the query fails or the response cannot be read
+   */
+  public QueryResult runRangeQuery(
+      String promQL,
+      OffsetDateTime start,
+      OffsetDateTime end,
+      Integer step,
+      Integer timeout,
+      MetricSampleConsumer consumer)
+      throws ExternalServiceException {
+    log.info("Streaming metrics from prometheus: {} -> {} [Step: {}]", start, end, step);
+    String query = sanitizeQuery(promQL);
+    log.debug(
+        "Running prometheus range query: Start: {} End: {} Step: {}, Query: {}",
+        start.toEpochSecond(),
+        end.toEpochSecond(),
+        step,
+        query);
+    try (InputStream body =
+        apiProvider
+            .queryRangeStreamApi()
+            .queryRange(
+                query,
+                start.toEpochSecond(),
+                end.toEpochSecond(),
+                Integer.toString(step),
+                timeout)) {
+      return rangeQueryResultParser.parse(body, consumer);
+    } catch (ApiException apie) {
+      throw new ExternalServiceException(
+          ErrorCode.REQUEST_PROCESSING_ERROR, formatErrorMessage(apie), apie);
+    } catch (IOException e) {
+      throw new ExternalServiceException(
+          ErrorCode.REQUEST_PROCESSING_ERROR, "Unable to read prometheus response", e);
+    }
+  }
+
   public QueryResult runQuery(String promQL, OffsetDateTime time, Integer timeout)
       throws ExternalServiceException {
     log.debug("Fetching metrics from prometheus: {}", time);
@@ -0,0 +1,202 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.metering.service.prometheus;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.candlepin.subscriptions.prometheus.model.QueryResult;
+import org.candlepin.subscriptions.prometheus.model.StatusType;
+
+/**
+ * Parses a prometheus range query response incrementally, handing each sample to a {@link
+ * MetricSampleConsumer} instead of building the whole result in memory.
+ *
+ * <p>Only the samples of matrix results are emitted. The labels of a series are expected before
+ * its values, which is how prometheus writes them; if they come after, the samples of that series
+ * are buffered until its labels are known.
+ */
+public class RangeQueryResultParser {
+
+  private final JsonFactory jsonFactory;
+
+  public RangeQueryResultParser() {
+    this(new JsonFactory());
+  }
+
+  public RangeQueryResultParser(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Parse a range query response.
+   *
+   * @param body the response body
+   * @param consumer receives every sample of the result
+   * @return the status and error of the response, without any data
+   * @throws IOException if the body cannot be read or is not valid JSON
+   */
+  public QueryResult parse(InputStream body, MetricSampleConsumer consumer) throws IOException {
+    QueryResult result = new QueryResult();
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        switch (field) {
+          case "status":
+            result.setStatus(StatusType.fromValue(parser.getText()));
+            break;
+          case "error":
+            result.setError(value == JsonToken.VALUE_NULL ? null : parser.getText());
+            break;
+          case "errorType":
+            result.setErrorType(value == JsonToken.VALUE_NULL ? null : parser.getText());
+            break;
+          case "data":
+            parseData(parser, consumer);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+    }
+    return result;
+  }
+
+  private void parseData(JsonParser parser, MetricSampleConsumer consumer) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          parseSeries(parser, consumer);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  private void parseSeries(JsonParser parser, MetricSampleConsumer consumer) throws IOException {
+    Map<String, String> labels = null;
+    SampleBuffer buffer = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if ("metric".equals(field) && value == JsonToken.START_OBJECT) {
+        labels = parseLabels(parser);
+        if (buffer != null) {
+          buffer.drainTo(labels, consumer);
+          buffer = null;
+        }
+      } else if ("values".equals(field) && value == JsonToken.START_ARRAY) {
+        if (labels == null) {
+          buffer = new SampleBuffer();
+        }
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+          parser.nextToken();
+          long timestamp = (long) parser.getDoubleValue();
+          parser.nextToken();
+          double sampleValue = parseSampleValue(parser);
+          expect(parser, parser.nextToken(), JsonToken.END_ARRAY);
+          if (labels != null) {
+            consumer.accept(labels, timestamp, sampleValue);
+          } else {
+            buffer.add(timestamp, sampleValue);
+          }
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (buffer != null) {
+      buffer.drainTo(Map.of(), consumer);
+    }
+  }
+
+  private Map<String, String> parseLabels(JsonParser parser) throws IOException {
+    Map<String, String> labels = new HashMap<>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      labels.put(name, parser.getText());
+    }
+    return labels;
+  }
+
+  /** Prometheus writes sample values as strings, so that NaN and infinities can be represented. */
+  private double parseSampleValue(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.VALUE_STRING) {
+      return parser.getDoubleValue();
+    }
+    String text = parser.getText();
+    switch (text) {
+      case "+Inf":
+        return Double.POSITIVE_INFINITY;
+      case "-Inf":
+        return Double.NEGATIVE_INFINITY;
+      default:
+        return Double.parseDouble(text);
+    }
+  }
+
+  private void expect(JsonParser parser, JsonToken actual, JsonToken expected)
+      throws JsonParseException {
+    if (actual != expected) {
+      throw new JsonParseException(
+          parser, String.format("Expected %s but found %s", expected, actual));
+    }
+  }
+
+  /** Holds the samples of a series whose labels have not been read yet. */
+  private static class SampleBuffer {
+    private long[] timestamps = new long[16];
+    private double[] values = new double[16];
+    private int size;
+
+    void add(long timestamp, double value) {
+      if (size == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+    }
+
+    void drainTo(Map<String, String> labels, MetricSampleConsumer consumer) {
+      for (int i = 0; i < size; i++) {
+        consumer.accept(labels, timestamps[i], values[i]);
+      }
+    }
+  }
+}
@@ -20,6 +20,10 @@
  */
 package org.candlepin.subscriptions.metering.service.prometheus.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.db.EventDirtyHourRepository;
 import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.http.HttpClientProperties;
@@ -60,8 +64,13 @@ public class PrometheusServiceConfiguration {
   }
 
   @Bean
-  EventController prometheusEventController(EventRecordRepository repo) {
-    return new EventController(repo);
+  EventController prometheusEventController(
+      EventRecordRepository repo,
+      EventDirtyHourRepository dirtyHourRepo,
+      ObjectMapper objectMapper,
+      ApplicationProperties props,
+      MeterRegistry meterRegistry) {
+    return new EventController(repo, dirtyHourRepo, objectMapper, props, meterRegistry);
   }
 
   @Bean
@@ -20,7 +20,10 @@
  */
 package org.candlepin.subscriptions.metering.service.prometheus.promql;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,12 +47,32 @@ public class QueryBuilder {
    */
   public static final String DEFAULT_METRIC_QUERY_KEY = "default";
 
+  /**
+   * Characters that must be escaped for an account to be matched literally. The escaping backslash
+   * is itself escaped, since the regex is embedded in a PromQL string.
+   */
+  private static final Pattern REGEX_METACHARACTERS = Pattern.compile("[\\\\.^$|?*+()\\[\\]{}]");
+
   private final MetricProperties metricProperties;
 
   public QueryBuilder(MetricProperties metricProperties) {
     this.metricProperties = metricProperties;
   }
 
+  /**
+   * Builds the value of a regex label matcher that matches any of the given accounts, allowing a
+   * single query to cover several accounts (e.g. ebs_account=~"#{runtime[account]}").
+   *
+   * @param accounts the accounts to match
+   * @return an alternation of the accounts, with regex metacharacters escaped.
+   */
+  public static String accountMatcher(Collection<String> accounts) {
+    return accounts.stream()
+        .map(account -> REGEX_METACHARACTERS.matcher(account).replaceAll("\\\\\\\\$0"))
+        .sorted()
+        .collect(Collectors.joining("|"));
+  }
+
   public String build(QueryDescriptor queryDescriptor) {
     String templateKey = queryDescriptor.getMetric().getQueryKey();
     Optional<String> template = metricProperties.getQueryTemplate(templateKey);
@@ -21,6 +21,7 @@
 package org.candlepin.subscriptions.metering.service.prometheus.task;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
 import org.candlepin.subscriptions.metering.task.MetricsTask;
@@ -41,6 +42,17 @@ public class PrometheusMeteringTaskFactory implements TaskFactory {
 
   @Override
   public Task build(TaskDescriptor taskDescriptor) {
+    if (TaskType.METRICS_COLLECTION.equals(taskDescriptor.getTaskType())
+        && taskDescriptor.hasArg("accounts")) {
+      // Batched task, collecting the metrics of several accounts at once.
+      return new MetricsTask(
+          controller,
+          validateList(taskDescriptor, "accounts"),
+          validateString(taskDescriptor, "productTag"),
+          Uom.fromValue(validateString(taskDescriptor, "metric")),
+          validateDate(taskDescriptor, "start"),
+          validateDate(taskDescriptor, "end"));
+    }
     if (TaskType.METRICS_COLLECTION.equals(taskDescriptor.getTaskType())) {
       return new MetricsTask(
           controller,
@@ -67,6 +79,15 @@ public class PrometheusMeteringTaskFactory implements TaskFactory {
     return desc.getArg(arg).get(0);
   }
 
+  private List<String> validateList(TaskDescriptor desc, String arg) {
+    List<String> values = desc.getArg(arg);
+    if (!values.stream().allMatch(StringUtils::hasText)) {
+      throw new IllegalArgumentException(
+          String.format("Could not build task. Task argument %s was empty.", arg));
+    }
+    return values;
+  }
+
   private OffsetDateTime validateDate(TaskDescriptor desc, String arg) {
     String dateStr = validateString(desc, arg);
 
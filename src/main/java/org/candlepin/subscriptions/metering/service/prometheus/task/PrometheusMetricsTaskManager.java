@@ -21,10 +21,13 @@
 package org.candlepin.subscriptions.metering.service.prometheus.task;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 import javax.transaction.Transactional;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusAccountSource;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.task.TaskDescriptor;
@@ -57,13 +60,16 @@ public class PrometheusMetricsTaskManager {
 
   private ApplicationProperties appProps;
 
+  private MetricProperties metricProperties;
+
   public PrometheusMetricsTaskManager(
       TaskQueue queue,
       @Qualifier("meteringTaskQueueProperties") TaskQueueProperties queueProps,
       PrometheusAccountSource accountSource,
       TagProfile tagProfile,
       ApplicationClock clock,
-      ApplicationProperties appProps) {
+      ApplicationProperties appProps,
+      MetricProperties metricProperties) {
     log.info("Initializing metering manager. Topic: {}", queueProps.getTopic());
     this.queue = queue;
     this.topic = queueProps.getTopic();
@@ -71,6 +77,7 @@ public class PrometheusMetricsTaskManager {
     this.tagProfile = tagProfile;
     this.clock = clock;
     this.appProps = appProps;
+    this.metricProperties = metricProperties;
   }
 
   public void updateMetricsForAccount(
@@ -139,12 +146,52 @@ public class PrometheusMetricsTaskManager {
     try (Stream<String> accountStream =
         accountSource.getMarketplaceAccounts(productTag, metric, start, end).stream()) {
       log.info("Queuing {} {} metric updates for all configured accounts.", productTag, metric);
-      accountStream.forEach(
-          account -> queueMetricUpdateForAccount(account, productTag, metric, start, end));
+      int batchSize = metricProperties.getAccountBatchSize();
+      if (batchSize <= 1) {
+        accountStream.forEach(
+            account -> queueMetricUpdateForAccount(account, productTag, metric, start, end));
+      } else {
+        List<String> batch = new ArrayList<>(batchSize);
+        accountStream.forEach(
+            account -> {
+              batch.add(account);
+              if (batch.size() == batchSize) {
+                queueMetricUpdateForAccounts(batch, productTag, metric, start, end);
+                batch.clear();
+              }
+            });
+        if (!batch.isEmpty()) {
+          queueMetricUpdateForAccounts(batch, productTag, metric, start, end);
+        }
+      }
       log.info("Done queuing updates of {} {} metric", productTag, metric);
     }
   }
 
+  private void queueMetricUpdateForAccounts(
+      List<String> accounts,
+      String productTag,
+      Uom metric,
+      OffsetDateTime start,
+      OffsetDateTime end) {
+    log.info(
+        "Queuing {} {} metric update for {} accounts for range [{}, {})",
+        productTag,
+        metric,
+        accounts.size(),
+        start,
+        end);
+    TaskDescriptor task =
+        TaskDescriptor.builder(TaskType.METRICS_COLLECTION, topic)
+            .setArg("accounts", List.copyOf(accounts))
+            .setSingleValuedArg("productTag", productTag)
+            .setSingleValuedArg("metric", metric.value())
+            .setSingleValuedArg("start", start.toString())
+            .setSingleValuedArg("end", end.toString())
+            .build();
+    this.queue.enqueue(task);
+  }
+
   private TaskDescriptor createMetricsTask(
       String account, String productTag, Uom metric, OffsetDateTime start, OffsetDateTime end) {
     log.info(
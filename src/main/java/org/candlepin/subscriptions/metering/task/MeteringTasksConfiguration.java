@@ -76,9 +76,10 @@ public class MeteringTasksConfiguration {
       PrometheusAccountSource accountSource,
       TagProfile tagProfile,
       ApplicationClock clock,
-      ApplicationProperties appProps) {
+      ApplicationProperties appProps,
+      MetricProperties metricProperties) {
     return new PrometheusMetricsTaskManager(
-        queue, queueProps, accountSource, tagProfile, clock, appProps);
+        queue, queueProps, accountSource, tagProfile, clock, appProps, metricProperties);
   }
 
   // The following beans are defined for the worker profile only allowing
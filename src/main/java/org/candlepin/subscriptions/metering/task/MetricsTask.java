@@ -21,6 +21,7 @@
 package org.candlepin.subscriptions.metering.task;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
 import org.candlepin.subscriptions.task.Task;
@@ -34,7 +35,7 @@ public class MetricsTask implements Task {
 
   private static final Logger log = LoggerFactory.getLogger(MetricsTask.class);
 
-  private final String account;
+  private final List<String> accounts;
   private final String productTag;
   private final Uom metric;
   private final OffsetDateTime start;
@@ -49,8 +50,18 @@ public class MetricsTask implements Task {
       Uom metric,
       OffsetDateTime start,
       OffsetDateTime end) {
+    this(controller, List.of(account), productTag, metric, start, end);
+  }
+
+  public MetricsTask(
+      PrometheusMeteringController controller,
+      List<String> accounts,
+      String productTag,
+      Uom metric,
+      OffsetDateTime start,
+      OffsetDateTime end) {
     this.controller = controller;
-    this.account = account;
+    this.accounts = accounts;
     this.productTag = productTag;
     this.metric = metric;
     this.start = start;
@@ -59,9 +70,13 @@ public class MetricsTask implements Task {
 
   @Override
   public void execute() {
-    log.info("Running {} {} metrics update task for account: {}", productTag, metric, account);
+    log.info("Running {} {} metrics update task for accounts: {}", productTag, metric, accounts);
     try {
-      controller.collectMetrics(productTag, metric, this.account, start, end);
+      if (accounts.size() == 1) {
+        controller.collectMetrics(productTag, metric, accounts.get(0), start, end);
+      } else {
+        controller.collectMetrics(productTag, metric, accounts, start, end);
+      }
       log.info("{} {} metrics task complete.", productTag, metric);
     } catch (Exception e) {
       log.error("Problem running task: {}", this.getClass().getSimpleName(), e);
@@ -41,4 +41,11 @@ public interface ApiProvider {
    * @return the prometheus range query API.
    */
   QueryRangeApi queryRangeApi();
+
+  /**
+   * Provides the implementation for the prometheus range query API that streams the response.
+   *
+   * @return the streaming prometheus range query API.
+   */
+  QueryRangeStreamApi queryRangeStreamApi();
 }
@@ -32,10 +32,12 @@ public class ApiProviderImpl implements ApiProvider {
 
   private QueryApi queryApi;
   private QueryRangeApi rangeApi;
+  private QueryRangeStreamApi rangeStreamApi;
 
   public ApiProviderImpl(ApiClient apiClient) {
     queryApi = new QueryApi(apiClient);
     rangeApi = new QueryRangeApi(apiClient);
+    rangeStreamApi = new QueryRangeStreamApi(apiClient);
   }
 
   @Override
@@ -47,4 +49,9 @@ public class ApiProviderImpl implements ApiProvider {
   public QueryRangeApi queryRangeApi() {
     return this.rangeApi;
   }
+
+  @Override
+  public QueryRangeStreamApi queryRangeStreamApi() {
+    return this.rangeStreamApi;
+  }
 }
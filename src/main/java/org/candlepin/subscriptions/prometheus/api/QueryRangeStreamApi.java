@@ -0,0 +1,83 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.prometheus.api;
+
+import java.io.InputStream;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.candlepin.subscriptions.prometheus.ApiClient;
+import org.candlepin.subscriptions.prometheus.ApiException;
+
+/**
+ * Runs prometheus range queries, handing back the raw response body rather than a deserialized
+ * QueryResult, so that large responses can be parsed while they are being read.
+ */
+public class QueryRangeStreamApi {
+
+  private final ApiClient apiClient;
+
+  public QueryRangeStreamApi(ApiClient apiClient) {
+    this.apiClient = apiClient;
+  }
+
+  /**
+   * Evaluates an expression query over a range of time.
+   *
+   * @param query prometheus expression query string, already URL escaped
+   * @param start start date (unix timestamp)
+   * @param end end date (unix timestamp)
+   * @param step query resolution step width
+   * @param timeout evaluation timeout
+   * @return the JSON response body; the caller is responsible for closing it
+   * @throws ApiException if the request fails or prometheus responds with an error status
+   */
+  public InputStream queryRange(String query, Long start, Long end, String step, Integer timeout)
+      throws ApiException {
+    WebTarget target =
+        apiClient
+            .getHttpClient()
+            .target(apiClient.getBasePath())
+            .path("query_range")
+            .queryParam("query", query)
+            .queryParam("start", start)
+            .queryParam("end", end)
+            .queryParam("step", step);
+    if (timeout != null) {
+      target = target.queryParam("timeout", timeout);
+    }
+
+    Response response;
+    try {
+      response = target.request(MediaType.APPLICATION_JSON).get();
+    } catch (Exception e) {
+      throw new ApiException(e);
+    }
+    if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+      try {
+        throw new ApiException(response.getStatus(), response.readEntity(String.class));
+      } finally {
+        response.close();
+      }
+    }
+    return response.readEntity(InputStream.class);
+  }
+}
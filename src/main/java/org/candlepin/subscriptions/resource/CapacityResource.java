@@ -23,8 +23,11 @@ package org.candlepin.subscriptions.resource;
 import java.time.OffsetDateTime;
 import java.time.temporal.TemporalAmount;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.BadRequestException;
@@ -100,7 +103,9 @@ public class CapacityResource implements CapacityApi {
 
     Granularity granularityValue = Granularity.fromString(granularityType.toString());
     String ownerId = ResourceUtils.getOwnerId();
-    List<CapacitySnapshot> capacities =
+    boolean isPaged = offset != null || limit != null;
+    Pageable pageable = isPaged ? ResourceUtils.getPageable(offset, limit) : Pageable.unpaged();
+    Page<CapacitySnapshot> capacities =
         getCapacities(
             ownerId,
             productId,
@@ -108,17 +113,14 @@ public class CapacityResource implements CapacityApi {
             sanitizedUsage,
             granularityValue,
             beginning,
-            ending);
+            ending,
+            pageable);
 
-    List<CapacitySnapshot> data;
+    List<CapacitySnapshot> data = capacities.getContent();
     PageLinks links;
-    if (offset != null || limit != null) {
-      Pageable pageable = ResourceUtils.getPageable(offset, limit);
-      data = paginate(capacities, pageable);
-      Page<CapacitySnapshot> snapshotPage = new PageImpl<>(data, pageable, capacities.size());
-      links = pageLinkCreator.getPaginationLinks(uriInfo, snapshotPage);
+    if (isPaged) {
+      links = pageLinkCreator.getPaginationLinks(uriInfo, capacities);
     } else {
-      data = capacities;
       links = null;
     }
 
@@ -150,6 +152,27 @@ public class CapacityResource implements CapacityApi {
       Granularity granularity,
       @NotNull OffsetDateTime reportBegin,
       @NotNull OffsetDateTime reportEnd) {
+    return getCapacities(
+            ownerId, productId, sla, usage, granularity, reportBegin, reportEnd, Pageable.unpaged())
+        .getContent();
+  }
+
+  /**
+   * Builds the capacity snapshots for the requested page of report periods.
+   *
+   * <p>Only the capacities overlapping the page's periods are loaded, and the snapshots are
+   * produced by sweeping the periods in order while applying capacity begin/end boundaries to a
+   * running total, rather than re-summing every capacity for every period.
+   */
+  protected Page<CapacitySnapshot> getCapacities(
+      String ownerId,
+      ProductId productId,
+      ServiceLevel sla,
+      Usage usage,
+      Granularity granularity,
+      @NotNull OffsetDateTime reportBegin,
+      @NotNull OffsetDateTime reportEnd,
+      @NotNull Pageable pageable) {
 
     /* Throw an error if we are asked to generate capacity reports at a finer granularity than what is
      * supported by the product.  The reports created would be technically accurate, but would convey the
@@ -161,83 +184,131 @@ public class CapacityResource implements CapacityApi {
       throw new BadRequestException(e.getMessage());
     }
 
+    List<OffsetDateTime> periods = getPeriodDates(granularity, reportBegin, reportEnd);
+    List<OffsetDateTime> pagePeriods = paginate(periods, pageable);
+    if (pagePeriods.isEmpty()) {
+      return new PageImpl<>(Collections.emptyList(), pageable, periods.size());
+    }
+
+    // A capacity contributes to a period only if it is active at the period's date, so only the
+    // capacities overlapping the page's dates (and the report range) need to be loaded.
+    OffsetDateTime queryBegin = reportBegin;
+    OffsetDateTime queryEnd = reportEnd;
+    if (pageable.isPaged()) {
+      queryBegin = latest(reportBegin, pagePeriods.get(0));
+      queryEnd = earliest(reportEnd, pagePeriods.get(pagePeriods.size() - 1));
+    }
+
     List<SubscriptionCapacity> matches =
         repository.findByOwnerAndProductId(
-            ownerId, productId.toString(), sla, usage, reportBegin, reportEnd);
+            ownerId, productId.toString(), sla, usage, queryBegin, queryEnd);
+
+    return new PageImpl<>(createCapacitySnapshots(pagePeriods, matches), pageable, periods.size());
+  }
 
+  private List<OffsetDateTime> getPeriodDates(
+      Granularity granularity, OffsetDateTime reportBegin, OffsetDateTime reportEnd) {
     SnapshotTimeAdjuster timeAdjuster = SnapshotTimeAdjuster.getTimeAdjuster(clock, granularity);
 
     OffsetDateTime start = timeAdjuster.adjustToPeriodStart(reportBegin);
     OffsetDateTime end = timeAdjuster.adjustToPeriodEnd(reportEnd);
     TemporalAmount offset = timeAdjuster.getSnapshotOffset();
 
-    List<CapacitySnapshot> result = new ArrayList<>();
+    List<OffsetDateTime> result = new ArrayList<>();
     OffsetDateTime next = OffsetDateTime.from(start);
 
     while (next.isBefore(end) || next.isEqual(end)) {
-      result.add(createCapacitySnapshot(next, matches));
+      result.add(next);
       next = timeAdjuster.adjustToPeriodStart(next.plus(offset));
     }
 
     return result;
   }
 
-  private List<CapacitySnapshot> paginate(List<CapacitySnapshot> capacities, Pageable pageable) {
-    if (pageable == null) {
-      return capacities;
+  private <T> List<T> paginate(List<T> items, Pageable pageable) {
+    if (pageable == null || pageable.isUnpaged()) {
+      return items;
     }
-    int offset = pageable.getPageNumber() * pageable.getPageSize();
-    int lastIndex = Math.min(capacities.size(), offset + pageable.getPageSize());
-    return capacities.subList(offset, lastIndex);
+    int offset = (int) Math.min(items.size(), pageable.getOffset());
+    int lastIndex = Math.min(items.size(), offset + pageable.getPageSize());
+    return items.subList(offset, lastIndex);
   }
 
-  protected CapacitySnapshot createCapacitySnapshot(
-      OffsetDateTime date, List<SubscriptionCapacity> matches) {
-    // NOTE there is room for future optimization here, as the we're *generally* calculating the
-    // same sum
-    // across a time range, also we might opt to do some of this in the DB query in the future.
-    int sockets = 0;
-    int physicalSockets = 0;
-    int hypervisorSockets = 0;
-    int cores = 0;
-    int physicalCores = 0;
-    int hypervisorCores = 0;
-    boolean hasInfiniteQuantity = false;
-
-    for (SubscriptionCapacity capacity : matches) {
-      if (capacity.getBeginDate().isBefore(date) && capacity.getEndDate().isAfter(date)) {
-        int capacityVirtSockets = sanitize(capacity.getVirtualSockets());
-        sockets += capacityVirtSockets;
-        hypervisorSockets += capacityVirtSockets;
-
-        int capacityPhysicalSockets = sanitize(capacity.getPhysicalSockets());
-        sockets += capacityPhysicalSockets;
-        physicalSockets += capacityPhysicalSockets;
-
-        int capacityPhysCores = sanitize(capacity.getPhysicalCores());
-        cores += capacityPhysCores;
-        physicalCores += capacityPhysCores;
-
-        int capacityVirtCores = sanitize(capacity.getVirtualCores());
-        cores += capacityVirtCores;
-        hypervisorCores += capacityVirtCores;
-
-        hasInfiniteQuantity |= Optional.ofNullable(capacity.getHasUnlimitedUsage()).orElse(false);
+  /**
+   * Creates a snapshot for each of the given dates, which must be in ascending order.
+   *
+   * <p>A capacity is counted at a date when it begins before and ends after that date. Capacities
+   * are sorted by begin and end date once; as the dates advance, capacities that have begun are
+   * added to the running totals and capacities that have ended are removed from them.
+   */
+  protected List<CapacitySnapshot> createCapacitySnapshots(
+      List<OffsetDateTime> dates, List<SubscriptionCapacity> matches) {
+    List<SubscriptionCapacity> byBeginDate =
+        matches.stream()
+            .filter(capacity -> capacity.getBeginDate().isBefore(capacity.getEndDate()))
+            .sorted(Comparator.comparing(SubscriptionCapacity::getBeginDate))
+            .collect(Collectors.toList());
+    List<SubscriptionCapacity> byEndDate = new ArrayList<>(byBeginDate);
+    byEndDate.sort(Comparator.comparing(SubscriptionCapacity::getEndDate));
+
+    CapacityTotals totals = new CapacityTotals();
+    int beginIndex = 0;
+    int endIndex = 0;
+    List<CapacitySnapshot> result = new ArrayList<>(dates.size());
+    for (OffsetDateTime date : dates) {
+      while (beginIndex < byBeginDate.size()
+          && byBeginDate.get(beginIndex).getBeginDate().isBefore(date)) {
+        totals.add(byBeginDate.get(beginIndex++), 1);
+      }
+      // every capacity ending at or before the date began before it, so it was already added
+      while (endIndex < byEndDate.size() && !byEndDate.get(endIndex).getEndDate().isAfter(date)) {
+        totals.add(byEndDate.get(endIndex++), -1);
       }
+      result.add(totals.toSnapshot(date));
     }
+    return result;
+  }
 
-    return new CapacitySnapshot()
-        .date(date)
-        .sockets(sockets)
-        .physicalSockets(physicalSockets)
-        .hypervisorSockets(hypervisorSockets)
-        .cores(cores)
-        .physicalCores(physicalCores)
-        .hypervisorCores(hypervisorCores)
-        .hasInfiniteQuantity(hasInfiniteQuantity);
+  private static OffsetDateTime latest(OffsetDateTime a, OffsetDateTime b) {
+    return a.isAfter(b) ? a : b;
   }
 
-  private int sanitize(Integer value) {
-    return value != null ? value : 0;
+  private static OffsetDateTime earliest(OffsetDateTime a, OffsetDateTime b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  /** Running capacity totals for the capacities active at the current point of the sweep. */
+  private static class CapacityTotals {
+    private int physicalSockets;
+    private int hypervisorSockets;
+    private int physicalCores;
+    private int hypervisorCores;
+    private int unlimitedCount;
+
+    void add(SubscriptionCapacity capacity, int sign) {
+      physicalSockets += sign * sanitize(capacity.getPhysicalSockets());
+      hypervisorSockets += sign * sanitize(capacity.getVirtualSockets());
+      physicalCores += sign * sanitize(capacity.getPhysicalCores());
+      hypervisorCores += sign * sanitize(capacity.getVirtualCores());
+      if (Optional.ofNullable(capacity.getHasUnlimitedUsage()).orElse(false)) {
+        unlimitedCount += sign;
+      }
+    }
+
+    CapacitySnapshot toSnapshot(OffsetDateTime date) {
+      return new CapacitySnapshot()
+          .date(date)
+          .sockets(physicalSockets + hypervisorSockets)
+          .physicalSockets(physicalSockets)
+          .hypervisorSockets(hypervisorSockets)
+          .cores(physicalCores + hypervisorCores)
+          .physicalCores(physicalCores)
+          .hypervisorCores(hypervisorCores)
+          .hasInfiniteQuantity(unlimitedCount > 0);
+    }
+
+    private static int sanitize(Integer value) {
+      return value != null ? value : 0;
+    }
   }
 }
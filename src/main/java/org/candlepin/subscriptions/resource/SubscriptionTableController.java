@@ -34,6 +34,7 @@ import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Offering;
 import org.candlepin.subscriptions.db.model.ReportCriteria;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.SkuCapacitySummary;
 import org.candlepin.subscriptions.db.model.Subscription;
 import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
 import org.candlepin.subscriptions.db.model.Usage;
@@ -41,6 +42,7 @@ import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.util.ApplicationClock;
 import org.candlepin.subscriptions.utilization.api.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -95,6 +97,7 @@ public class SubscriptionTableController {
     Usage sanitizedUsage = sanitizeUsage(usage);
     BillingProvider sanitizedBillingProvider = sanitizeBillingProvider(billingProviderType);
     String sanitiziedBillingAccountId = sanitizeBillingAccountId(billingAccountId);
+    Pageable pageable = ResourceUtils.getPageable(offset, limit);
 
     log.info(
         "Finding all subscription capacities for "
@@ -111,53 +114,53 @@ public class SubscriptionTableController {
         reportStart,
         reportEnd,
         uom);
-    List<SubscriptionCapacityView> capacities =
-        subscriptionCapacityViewRepository.findAllBy(
+    // Capacities are summed up, sorted and paged per SKU by the database; only the subscriptions
+    // of the SKUs on the requested page are loaded.
+    Page<SkuCapacitySummary> summaries =
+        subscriptionCapacityViewRepository.findSkuCapacitySummaries(
             getOwnerId(),
             productId.toString(),
             sanitizedServiceLevel,
             sanitizedUsage,
             reportStart,
             reportEnd,
+            uom,
+            sort,
+            dir == SortDirection.DESC ? Sort.Direction.DESC : Sort.Direction.ASC,
+            pageable);
+
+    List<SkuCapacity> reportItems =
+        getSkuCapacities(
+            summaries.getContent(),
+            productId,
+            sanitizedServiceLevel,
+            sanitizedUsage,
+            reportStart,
+            reportEnd,
             uom);
-
-    Map<String, SkuCapacity> inventories = new HashMap<>();
-    for (SubscriptionCapacityView subscriptionCapacityView : capacities) {
-      String sku = subscriptionCapacityView.getSku();
-      final SkuCapacity inventory =
-          inventories.computeIfAbsent(
-              sku, key -> initializeDefaultSkuCapacity(subscriptionCapacityView, uom));
-      calculateNextEvent(subscriptionCapacityView, inventory, reportEnd);
-      addSubscriptionInformation(subscriptionCapacityView, inventory);
-      addTotalCapacity(subscriptionCapacityView, inventory);
-    }
-
-    List<SkuCapacity> reportItems = new ArrayList<>(inventories.values());
+    int reportItemCount = (int) summaries.getTotalElements();
 
     boolean isOnDemand = tagProfile.tagIsPrometheusEnabled(productId.toString());
     SubscriptionType subscriptionType =
         isOnDemand ? SubscriptionType.ON_DEMAND : SubscriptionType.ANNUAL;
 
-    if (isOnDemand && reportItems.isEmpty()) {
-      reportItems.addAll(
-          getOnDemandSkuCapacities(
-              productId,
-              sanitizedServiceLevel,
-              sanitizedUsage,
-              sanitizedBillingProvider,
-              sanitiziedBillingAccountId,
-              reportStart,
-              reportEnd));
+    if (isOnDemand && reportItemCount == 0) {
+      // On-demand subscriptions have no capacity, and are few enough to sort and page in memory.
+      reportItems =
+          new ArrayList<>(
+              getOnDemandSkuCapacities(
+                  productId,
+                  sanitizedServiceLevel,
+                  sanitizedUsage,
+                  sanitizedBillingProvider,
+                  sanitiziedBillingAccountId,
+                  reportStart,
+                  reportEnd));
+      reportItemCount = reportItems.size();
+      sortCapacities(reportItems, sort, dir);
+      reportItems = paginate(reportItems, pageable);
     }
 
-    int reportItemCount = reportItems.size();
-    // The pagination and sorting of capacities is done in memory and can cause performance
-    // issues
-    // As an improvement this should be pushed lower into the Repository layer
-    Pageable pageable = ResourceUtils.getPageable(offset, limit);
-    reportItems = paginate(reportItems, pageable);
-    sortCapacities(reportItems, sort, dir);
-
     return new SkuCapacityReport()
         .data(reportItems)
         .meta(
@@ -170,6 +173,48 @@ public class SubscriptionTableController {
                 .product(productId));
   }
 
+  @SuppressWarnings("java:S107")
+  private List<SkuCapacity> getSkuCapacities(
+      List<SkuCapacitySummary> summaries,
+      ProductId productId,
+      ServiceLevel serviceLevel,
+      Usage usage,
+      OffsetDateTime reportStart,
+      OffsetDateTime reportEnd,
+      Uom uom) {
+    if (summaries.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Map<String, List<SubscriptionCapacityView>> capacitiesBySku =
+        subscriptionCapacityViewRepository
+            .findAllBy(
+                getOwnerId(),
+                productId.toString(),
+                serviceLevel,
+                usage,
+                reportStart,
+                reportEnd,
+                uom,
+                summaries.stream().map(SkuCapacitySummary::getSku).collect(Collectors.toList()))
+            .stream()
+            .collect(Collectors.groupingBy(SubscriptionCapacityView::getSku));
+
+    List<SkuCapacity> reportItems = new ArrayList<>();
+    for (SkuCapacitySummary summary : summaries) {
+      List<SubscriptionCapacityView> capacities = capacitiesBySku.get(summary.getSku());
+      if (capacities == null) {
+        // the SKU's subscriptions expired in between both queries
+        continue;
+      }
+      SkuCapacity inventory = initializeDefaultSkuCapacity(capacities.get(0), uom);
+      capacities.forEach(capacity -> addSubscriptionInformation(capacity, inventory));
+      calculateNextEvent(summary, inventory, reportEnd);
+      addTotalCapacity(summary, inventory);
+      reportItems.add(inventory);
+    }
+    return reportItems;
+  }
+
   private List<SkuCapacity> paginate(List<SkuCapacity> capacities, Pageable pageable) {
     if (pageable == null) {
       return capacities;
@@ -264,17 +309,10 @@ public class SubscriptionTableController {
   }
 
   public void calculateNextEvent(
-      SubscriptionCapacityView subscriptionCapacityView,
-      SkuCapacity skuCapacity,
-      OffsetDateTime now) {
-
-    OffsetDateTime nearestEventDate = skuCapacity.getNextEventDate();
-    OffsetDateTime subEnd = subscriptionCapacityView.getEndDate();
-    if (subEnd != null
-        && now.isBefore(subEnd)
-        && (nearestEventDate == null || subEnd.isBefore(nearestEventDate))) {
-      nearestEventDate = subEnd;
-      skuCapacity.setNextEventDate(nearestEventDate);
+      SkuCapacitySummary summary, SkuCapacity skuCapacity, OffsetDateTime now) {
+    OffsetDateTime subEnd = summary.getNextEventDate();
+    if (subEnd != null && now.isBefore(subEnd)) {
+      skuCapacity.setNextEventDate(subEnd);
       skuCapacity.setNextEventType(SubscriptionEventType.END);
     }
   }
@@ -306,43 +344,33 @@ public class SubscriptionTableController {
         skuCapacity.getQuantity() + (int) subscriptionCapacityView.getQuantity());
   }
 
-  public void addTotalCapacity(
-      SubscriptionCapacityView subscriptionCapacityView, SkuCapacity skuCapacity) {
+  public void addTotalCapacity(SkuCapacitySummary summary, SkuCapacity skuCapacity) {
     log.debug(
-        "Calculating total capacity using sku capacity {} and subscription capacity view {}",
+        "Calculating total capacity using sku capacity {} and sku capacity summary {}",
         skuCapacity,
-        subscriptionCapacityView);
+        summary);
+
+    var physicalSockets = (int) summary.getPhysicalSockets();
+    var physicalCores = (int) summary.getPhysicalCores();
+    var virtualSockets = (int) summary.getVirtualSockets();
+    var virtualCores = (int) summary.getVirtualCores();
+    if (skuCapacity.getUom() == null && physicalSockets != 0) {
+      skuCapacity.setUom(Uom.SOCKETS);
+    } else if (skuCapacity.getUom() == null && physicalCores != 0) {
+      skuCapacity.setUom(Uom.CORES);
+    }
 
-    var physicalSockets = subscriptionCapacityView.getPhysicalSockets();
-    var physicalCores = subscriptionCapacityView.getPhysicalCores();
-    var virtualSockets = subscriptionCapacityView.getVirtualSockets();
-    var virtualCores = subscriptionCapacityView.getVirtualCores();
     if (skuCapacity.getUom() == Uom.SOCKETS) {
       skuCapacity.setPhysicalCapacity(skuCapacity.getPhysicalCapacity() + physicalSockets);
       skuCapacity.setVirtualCapacity(skuCapacity.getVirtualCapacity() + virtualSockets);
     } else if (skuCapacity.getUom() == Uom.CORES) {
       skuCapacity.setPhysicalCapacity(skuCapacity.getPhysicalCapacity() + physicalCores);
       skuCapacity.setVirtualCapacity(skuCapacity.getVirtualCapacity() + virtualCores);
-    } else if (physicalSockets != 0) {
-      skuCapacity.setPhysicalCapacity(skuCapacity.getPhysicalCapacity() + physicalSockets);
-      skuCapacity.setVirtualCapacity(skuCapacity.getVirtualCapacity() + virtualSockets);
-      if (skuCapacity.getUom() == null) {
-        skuCapacity.setUom(Uom.SOCKETS);
-      }
-    } else if (physicalCores != 0) {
-      skuCapacity.setPhysicalCapacity(skuCapacity.getPhysicalCapacity() + physicalCores);
-      skuCapacity.setVirtualCapacity(skuCapacity.getVirtualCapacity() + virtualCores);
-      if (skuCapacity.getUom() == null) {
-        skuCapacity.setUom(Uom.CORES);
-      }
     }
 
-    boolean hasInfiniteQuantity =
-        Optional.ofNullable(subscriptionCapacityView.getHasUnlimitedUsage()).orElse(false);
-
     skuCapacity.setTotalCapacity(
         skuCapacity.getPhysicalCapacity() + skuCapacity.getVirtualCapacity());
-    skuCapacity.setHasInfiniteQuantity(hasInfiniteQuantity);
+    skuCapacity.setHasInfiniteQuantity(summary.isHasUnlimitedUsage());
   }
 
   private static void sortCapacities(
@@ -0,0 +1,161 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.tally.TallySnapshotsUpdatedEvent;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.utilization.api.model.BillingProviderType;
+import org.candlepin.subscriptions.utilization.api.model.GranularityType;
+import org.candlepin.subscriptions.utilization.api.model.MetricId;
+import org.candlepin.subscriptions.utilization.api.model.ProductId;
+import org.candlepin.subscriptions.utilization.api.model.ReportCategory;
+import org.candlepin.subscriptions.utilization.api.model.ServiceLevelType;
+import org.candlepin.subscriptions.utilization.api.model.TallyReportData;
+import org.candlepin.subscriptions.utilization.api.model.UsageType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Bounded cache of tally report data responses, scoped by account.
+ *
+ * <p>Entries expire after the configured TTL, and are evicted least-recently-used first once the
+ * configured size is reached. Entries for an account and product are dropped as soon as new
+ * snapshots are committed for them by this process only; snapshots committed by a separate worker
+ * deployment are picked up once the TTL expires. For that reason the cache is opt-in: a size of 0
+ * (the default) disables it.
+ *
+ * <p>Reports are kept in their serialized form, so that callers always get their own copy and can
+ * not alter what later requests are served.
+ */
+@Component
+@Slf4j
+public class TallyReportCache {
+
+  private final ApplicationClock clock;
+  private final ObjectMapper objectMapper;
+  private final int maxSize;
+  private final Duration ttl;
+  private final Map<Key, Entry> entries;
+
+  public TallyReportCache(
+      ApplicationProperties properties, ApplicationClock clock, ObjectMapper objectMapper) {
+    this.clock = clock;
+    this.objectMapper = objectMapper;
+    this.maxSize = properties.getTallyReportCacheSize();
+    this.ttl = properties.getTallyReportCacheTtl();
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > maxSize;
+          }
+        };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  public synchronized TallyReportData get(Key key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.getExpiration().isBefore(clock.now())) {
+      entries.remove(key);
+      return null;
+    }
+    try {
+      return objectMapper.readValue(entry.getReport(), TallyReportData.class);
+    } catch (IOException e) {
+      log.warn("Unable to read cached tally report, dropping it.", e);
+      entries.remove(key);
+      return null;
+    }
+  }
+
+  public synchronized void put(Key key, TallyReportData report) {
+    if (!isEnabled()) {
+      return;
+    }
+    try {
+      entries.put(key, new Entry(objectMapper.writeValueAsBytes(report), clock.now().plus(ttl)));
+    } catch (IOException e) {
+      log.warn("Unable to cache tally report.", e);
+    }
+  }
+
+  /** Drop the cached reports of the given account, for any of the given products. */
+  public synchronized void invalidate(String accountNumber, Iterable<String> productIds) {
+    for (String productId : productIds) {
+      entries
+          .keySet()
+          .removeIf(
+              key ->
+                  Objects.equals(key.getAccountNumber(), accountNumber)
+                      && Objects.equals(key.getProductId().toString(), productId));
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSnapshotsUpdated(TallySnapshotsUpdatedEvent event) {
+    if (!isEnabled()) {
+      return;
+    }
+    log.debug(
+        "Invalidating cached tally reports of account {} for products {}",
+        event.getAccountNumber(),
+        event.getProductIds());
+    invalidate(event.getAccountNumber(), event.getProductIds());
+  }
+
+  /** The account and request parameters a tally report data response was produced for. */
+  @Value
+  public static class Key {
+    String accountNumber;
+    ProductId productId;
+    MetricId metricId;
+    GranularityType granularity;
+    OffsetDateTime beginning;
+    OffsetDateTime ending;
+    ReportCategory category;
+    ServiceLevelType serviceLevel;
+    UsageType usage;
+    BillingProviderType billingProvider;
+    String billingAccountId;
+  }
+
+  @Value
+  private static class Entry {
+    byte[] report;
+    OffsetDateTime expiration;
+  }
+}
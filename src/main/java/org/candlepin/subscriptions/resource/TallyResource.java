@@ -29,6 +29,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
@@ -70,6 +72,7 @@ public class TallyResource implements TallyApi {
   private final PageLinkCreator pageLinkCreator;
   private final ApplicationClock clock;
   private final TagProfile tagProfile;
+  private final TallyReportCache reportCache;
 
   @Context private UriInfo uriInfo;
 
@@ -78,11 +81,13 @@ public class TallyResource implements TallyApi {
       TallySnapshotRepository repository,
       PageLinkCreator pageLinkCreator,
       ApplicationClock clock,
-      TagProfile tagProfile) {
+      TagProfile tagProfile,
+      TallyReportCache reportCache) {
     this.repository = repository;
     this.pageLinkCreator = pageLinkCreator;
     this.clock = clock;
     this.tagProfile = tagProfile;
+    this.reportCache = reportCache;
   }
 
   @Override
@@ -115,8 +120,32 @@ public class TallyResource implements TallyApi {
             offset,
             limit);
 
-    Page<org.candlepin.subscriptions.db.model.TallySnapshot> snapshotPage =
-        repository.findSnapshot(
+    // Only unpaged reports are cached, paged ones carry links specific to the request URI.
+    TallyReportCache.Key cacheKey = null;
+    if (reportCache.isEnabled() && reportCriteria.getPageable() == null) {
+      cacheKey =
+          new TallyReportCache.Key(
+              reportCriteria.getAccountNumber(),
+              productId,
+              metricId,
+              granularityType,
+              beginning,
+              ending,
+              category,
+              sla,
+              usageType,
+              billingProviderType,
+              billingAcctId);
+      TallyReportData cached = reportCache.get(cacheKey);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    Uom uom = Uom.fromValue(metricId.toString());
+
+    Page<TallyReportDataPointView> dataPointPage =
+        repository.findReportDataPoints(
             reportCriteria.getAccountNumber(),
             reportCriteria.getProductId(),
             reportCriteria.getGranularity(),
@@ -126,16 +155,17 @@ public class TallyResource implements TallyApi {
             reportCriteria.getBillingAccountId(),
             reportCriteria.getBeginning(),
             reportCriteria.getEnding(),
+            uom,
+            getContributingTypes(category),
             reportCriteria.getPageable());
 
-    Uom uom = Uom.fromValue(metricId.toString());
-
-    List<org.candlepin.subscriptions.db.model.TallySnapshot> snapshots =
-        snapshotPage.stream().collect(Collectors.toList());
+    List<TallyReportDataPointView> dataPoints = dataPointPage.getContent();
+    Map<UUID, org.candlepin.subscriptions.db.model.TallySnapshot> legacySnapshots =
+        findLegacySnapshots(dataPoints);
 
     List<TallyReportDataPoint> snaps =
-        snapshots.stream()
-            .map(snapshot -> dataPointFromSnapshot(uom, category, snapshot))
+        dataPoints.stream()
+            .map(dataPoint -> dataPointFromView(uom, category, dataPoint, legacySnapshots))
             .collect(Collectors.toList());
 
     TallyReportData report = new TallyReportData();
@@ -185,7 +215,7 @@ public class TallyResource implements TallyApi {
 
     // Only set page links if we are paging (not filling).
     if (reportCriteria.getPageable() != null) {
-      report.setLinks(pageLinkCreator.getPaginationLinks(uriInfo, snapshotPage));
+      report.setLinks(pageLinkCreator.getPaginationLinks(uriInfo, dataPointPage));
     }
 
     // Fill the report gaps if no paging was requested.
@@ -200,15 +230,63 @@ public class TallyResource implements TallyApi {
     report
         .getMeta()
         .setHasCloudigradeData(
-            snapshots.stream().anyMatch(snapshot -> hasCloudigradeData(snapshot, uom)));
+            dataPoints.stream()
+                .anyMatch(dataPoint -> hasCloudigradeData(dataPoint, legacySnapshots, uom)));
     report
         .getMeta()
         .setHasCloudigradeMismatch(
-            snapshots.stream().anyMatch(snapshot -> hasCloudigradeMismatch(snapshot, uom)));
+            dataPoints.stream()
+                .anyMatch(dataPoint -> hasCloudigradeMismatch(dataPoint, legacySnapshots, uom)));
 
+    if (cacheKey != null) {
+      reportCache.put(cacheKey, report);
+    }
     return report;
   }
 
+  /**
+   * Load the snapshots of the data points that predate tally measurements, as their values can
+   * only be extracted from their hardware measurements.
+   */
+  private Map<UUID, org.candlepin.subscriptions.db.model.TallySnapshot> findLegacySnapshots(
+      List<TallyReportDataPointView> dataPoints) {
+    List<UUID> legacyIds =
+        dataPoints.stream()
+            .filter(dataPoint -> dataPoint.getMeasurementCount() == 0)
+            .map(TallyReportDataPointView::getId)
+            .collect(Collectors.toList());
+    if (legacyIds.isEmpty()) {
+      return Map.of();
+    }
+    return repository.findAllById(legacyIds).stream()
+        .collect(
+            Collectors.toMap(
+                org.candlepin.subscriptions.db.model.TallySnapshot::getId, Function.identity()));
+  }
+
+  private boolean hasCloudigradeData(
+      TallyReportDataPointView dataPoint,
+      Map<UUID, org.candlepin.subscriptions.db.model.TallySnapshot> legacySnapshots,
+      Uom uom) {
+    if (dataPoint.getMeasurementCount() == 0) {
+      return hasLegacyCloudigradeData(legacySnapshots.get(dataPoint.getId()), uom);
+    }
+    Double measurement = dataPoint.getCloudigradeValue();
+    return measurement != null && measurement > 0.0;
+  }
+
+  private boolean hasCloudigradeMismatch(
+      TallyReportDataPointView dataPoint,
+      Map<UUID, org.candlepin.subscriptions.db.model.TallySnapshot> legacySnapshots,
+      Uom uom) {
+    if (dataPoint.getMeasurementCount() == 0) {
+      return hasLegacyCloudigradeMismatch(legacySnapshots.get(dataPoint.getId()), uom);
+    }
+    Double cloudigradeMeasurement = dataPoint.getCloudigradeValue();
+    return cloudigradeMeasurement != null
+        && !Objects.equals(cloudigradeMeasurement, dataPoint.getAwsValue());
+  }
+
   private void combineDataPointsForTotal(
       TallyReportDataPoint result, TallyReportDataPoint newDataPoint) {
     if (!Boolean.TRUE.equals(newDataPoint.getHasData())) {
@@ -225,36 +303,25 @@ public class TallyResource implements TallyApi {
 
   // NOTE(khowell): deprecated method to be removed by https://issues.redhat.com/browse/ENT-3545
   @SuppressWarnings("java:S5738")
-  private boolean hasCloudigradeData(
+  private boolean hasLegacyCloudigradeData(
       org.candlepin.subscriptions.db.model.TallySnapshot tallySnapshot, Uom uom) {
-    if (tallySnapshot.getTallyMeasurements().isEmpty()) {
-      HardwareMeasurement hardwareMeasurement =
-          tallySnapshot.getHardwareMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE);
-      return hardwareMeasurement != null && extractLegacyValue(hardwareMeasurement, uom) > 0.0;
-    }
-    Double measurement = tallySnapshot.getMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE, uom);
-    return measurement != null && measurement > 0.0;
+    HardwareMeasurement hardwareMeasurement =
+        tallySnapshot.getHardwareMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE);
+    return hardwareMeasurement != null && extractLegacyValue(hardwareMeasurement, uom) > 0.0;
   }
 
   // NOTE(khowell): deprecated method to be removed by https://issues.redhat.com/browse/ENT-3545
   @SuppressWarnings("java:S5738")
-  private boolean hasCloudigradeMismatch(
+  private boolean hasLegacyCloudigradeMismatch(
       org.candlepin.subscriptions.db.model.TallySnapshot tallySnapshot, Uom uom) {
-    if (tallySnapshot.getTallyMeasurements().isEmpty()) {
-      HardwareMeasurement cloudigradeMeasurement =
-          tallySnapshot.getHardwareMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE);
-      HardwareMeasurement hbiMeasurement =
-          tallySnapshot.getHardwareMeasurement(HardwareMeasurementType.AWS);
-      return cloudigradeMeasurement != null
-          && (hbiMeasurement == null
-              || extractLegacyValue(cloudigradeMeasurement, uom)
-                  != extractLegacyValue(hbiMeasurement, uom));
-    }
-    Double cloudigradeMeasurement =
-        tallySnapshot.getMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE, uom);
-    Double hbiMeasurement = tallySnapshot.getMeasurement(HardwareMeasurementType.AWS, uom);
+    HardwareMeasurement cloudigradeMeasurement =
+        tallySnapshot.getHardwareMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE);
+    HardwareMeasurement hbiMeasurement =
+        tallySnapshot.getHardwareMeasurement(HardwareMeasurementType.AWS);
     return cloudigradeMeasurement != null
-        && !Objects.equals(cloudigradeMeasurement, hbiMeasurement);
+        && (hbiMeasurement == null
+            || extractLegacyValue(cloudigradeMeasurement, uom)
+                != extractLegacyValue(hbiMeasurement, uom));
   }
 
   /** Validate and extract report criteria */
@@ -313,17 +380,18 @@ public class TallyResource implements TallyApi {
         .build();
   }
 
-  private TallyReportDataPoint dataPointFromSnapshot(
+  private TallyReportDataPoint dataPointFromView(
       Uom uom,
       ReportCategory category,
-      org.candlepin.subscriptions.db.model.TallySnapshot snapshot) {
+      TallyReportDataPointView dataPoint,
+      Map<UUID, org.candlepin.subscriptions.db.model.TallySnapshot> legacySnapshots) {
     double value;
-    if (snapshot.getTallyMeasurements().isEmpty()) {
-      value = extractLegacyValue(uom, category, snapshot);
+    if (dataPoint.getMeasurementCount() == 0) {
+      value = extractLegacyValue(uom, category, legacySnapshots.get(dataPoint.getId()));
     } else {
-      value = extractValue(uom, category, snapshot);
+      value = Optional.ofNullable(dataPoint.getValue()).orElse(0.0);
     }
-    return new TallyReportDataPoint().date(snapshot.getSnapshotDate()).value(value).hasData(true);
+    return new TallyReportDataPoint().date(dataPoint.getSnapshotDate()).value(value).hasData(true);
   }
 
   // NOTE(khowell): deprecated method to be removed by https://issues.redhat.com/browse/ENT-3545
@@ -351,16 +419,6 @@ public class TallyResource implements TallyApi {
     }
   }
 
-  private double extractValue(
-      Uom uom,
-      ReportCategory category,
-      org.candlepin.subscriptions.db.model.TallySnapshot snapshot) {
-    Set<HardwareMeasurementType> contributingTypes = getContributingTypes(category);
-    return contributingTypes.stream()
-        .mapToDouble(type -> Optional.ofNullable(snapshot.getMeasurement(type, uom)).orElse(0.0))
-        .sum();
-  }
-
   private Set<HardwareMeasurementType> getContributingTypes(ReportCategory category) {
     Set<HardwareMeasurementType> contributingTypes;
     if (category == null) {
@@ -32,4 +32,10 @@ import org.springframework.stereotype.Component;
 @ConfigurationProperties(prefix = "rhsm-subscriptions.event-retention-policy")
 public class EventRecordsRetentionProperties {
   private Duration eventRetentionDuration = Duration.ofDays(90L);
+
+  /**
+   * Number of monthly event partitions to create ahead of the current month. Events beyond the
+   * created partitions are stored in a default partition until their month's partition is created.
+   */
+  private int futureEventPartitions = 3;
 }
@@ -41,6 +41,7 @@ public class PurgeEventRecordsJob implements Runnable {
   public void run() {
     log.info("Starting PurgeEventRecordsJob job.");
 
+    retentionController.createEventPartitions();
     retentionController.purgeOldEventRecords();
 
     log.info("PurgeEventRecordsJob complete.");
@@ -20,8 +20,6 @@
  */
 package org.candlepin.subscriptions.retention;
 
-import org.candlepin.subscriptions.exception.JobFailureException;
-import org.candlepin.subscriptions.tally.AccountListSourceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,11 +42,9 @@ public class PurgeSnapshotsJob implements Runnable {
   @Scheduled(cron = "${rhsm-subscriptions.jobs.purge-snapshot-schedule}")
   public void run() {
     log.info("Starting snapshot purge.");
-    try {
-      retentionController.purgeSnapshots();
-      log.info("Snapshot purge complete.");
-    } catch (AccountListSourceException e) {
-      throw new JobFailureException("Could not purge snapshots.", e);
-    }
+    retentionController.purgeSnapshots();
+    log.info("Snapshot purge complete.");
+    // This is the retention job run in deployments, so it also keeps future event partitions ready.
+    retentionController.createEventPartitions();
   }
 }
@@ -20,21 +20,18 @@
  */
 package org.candlepin.subscriptions.retention;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.stream.Stream;
-import org.candlepin.subscriptions.db.AccountListSource;
 import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
 import org.candlepin.subscriptions.db.model.Granularity;
-import org.candlepin.subscriptions.tally.AccountListSourceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-/** Cleans up stale tally snapshots for an account. */
+/** Cleans up stale tally snapshots and event records. */
 @Component
 public class TallyRetentionController {
   private static final Logger log = LoggerFactory.getLogger(TallyRetentionController.class);
@@ -43,7 +40,8 @@ public class TallyRetentionController {
   private final EventRecordRepository eventRecordRepository;
   private final TallyRetentionPolicy policy;
   private final EventRecordsRetentionProperties eventRecordsRetentionProperties;
-  private final AccountListSource accountListSource;
+  private final int purgeBatchSize;
+  private final Duration purgeBatchDelay;
 
   @Autowired
   public TallyRetentionController(
@@ -51,29 +49,57 @@ public class TallyRetentionController {
       EventRecordRepository eventRecordRepository,
       TallyRetentionPolicy policy,
       EventRecordsRetentionProperties eventRecordsRetentionProperties,
-      AccountListSource accountListSource) {
+      TallyRetentionPolicyProperties policyProperties) {
     this.tallySnapshotRepository = tallySnapshotRepository;
     this.eventRecordRepository = eventRecordRepository;
     this.policy = policy;
     this.eventRecordsRetentionProperties = eventRecordsRetentionProperties;
-    this.accountListSource = accountListSource;
+    this.purgeBatchSize = policyProperties.getPurgeBatchSize();
+    this.purgeBatchDelay = policyProperties.getPurgeBatchDelay();
   }
 
-  @Transactional
-  public void purgeSnapshots() throws AccountListSourceException {
-    try (Stream<String> accountList = accountListSource.purgeReportAccounts()) {
-      accountList.forEach(this::cleanStaleSnapshotsForAccount);
-    }
-  }
-
-  public void cleanStaleSnapshotsForAccount(String accountNumber) {
+  /**
+   * Delete the snapshots of all accounts that are older than the retention policy allows.
+   *
+   * <p>Snapshots are deleted in batches, each in its own transaction, pausing between batches as
+   * configured to limit the load put on the database.
+   */
+  public void purgeSnapshots() {
     for (Granularity granularity : Granularity.values()) {
       OffsetDateTime cutoffDate = policy.getCutoffDate(granularity);
       if (cutoffDate == null) {
         continue;
       }
-      tallySnapshotRepository.deleteAllByAccountNumberAndGranularityAndSnapshotDateBefore(
-          accountNumber, granularity, cutoffDate);
+      if (!purgeSnapshots(granularity, cutoffDate)) {
+        log.warn("Snapshot purge interrupted.");
+        return;
+      }
+    }
+  }
+
+  private boolean purgeSnapshots(Granularity granularity, OffsetDateTime cutoffDate) {
+    long purged = 0;
+    int deleted;
+    do {
+      deleted =
+          tallySnapshotRepository.deleteSnapshotBatchBefore(
+              granularity, cutoffDate, purgeBatchSize);
+      purged += deleted;
+    } while (deleted == purgeBatchSize && pauseBetweenBatches());
+    log.info("Purged {} {} snapshots older than {}.", purged, granularity, cutoffDate);
+    return !Thread.currentThread().isInterrupted();
+  }
+
+  private boolean pauseBetweenBatches() {
+    if (purgeBatchDelay.isZero()) {
+      return true;
+    }
+    try {
+      Thread.sleep(purgeBatchDelay.toMillis());
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
     }
   }
 
@@ -85,6 +111,15 @@ public class TallyRetentionController {
 
     log.info("Purging event records older than Duration {}", cutoffDate);
 
-    eventRecordRepository.deleteEventRecordsByTimestampBefore(cutoffDate);
+    int droppedPartitions = eventRecordRepository.deleteEventRecordsBefore(cutoffDate);
+    log.info("Dropped {} expired event partitions.", droppedPartitions);
+  }
+
+  /** Create the partitions of the events table for the upcoming months, if missing. */
+  public void createEventPartitions() {
+    int createdPartitions =
+        eventRecordRepository.createEventPartitions(
+            eventRecordsRetentionProperties.getFutureEventPartitions());
+    log.info("Created {} event partitions.", createdPartitions);
   }
 }
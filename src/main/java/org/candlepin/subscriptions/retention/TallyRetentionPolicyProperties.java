@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.retention;
 
+import java.time.Duration;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -62,4 +63,10 @@ public class TallyRetentionPolicyProperties {
    * year (the current incomplete year).
    */
   private Integer yearly;
+
+  /** Number of expired snapshots deleted per transaction when purging snapshots. */
+  private int purgeBatchSize = 1000;
+
+  /** Pause between batches of a snapshot purge, to limit the load put on the database. */
+  private Duration purgeBatchDelay = Duration.ZERO;
 }
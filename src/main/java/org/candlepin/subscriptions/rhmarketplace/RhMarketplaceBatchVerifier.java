@@ -0,0 +1,139 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.rhmarketplace;
+
+import static org.candlepin.subscriptions.rhmarketplace.RhMarketplaceProducer.ACCEPTED_STATUS;
+import static org.candlepin.subscriptions.rhmarketplace.RhMarketplaceProducer.IN_PROGRESS_STATUS;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.rhmarketplace.api.model.StatusResponse;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks submitted Marketplace batches and periodically checks whether they were accepted.
+ *
+ * <p>Verification happens on the Marketplace scheduler rather than on the thread that submitted
+ * the usage, so submissions are not held up waiting for Marketplace to process a batch.
+ */
+@Slf4j
+@Component
+public class RhMarketplaceBatchVerifier {
+
+  private final RhMarketplaceService rhMarketplaceService;
+  private final RhMarketplaceProperties properties;
+  private final ApplicationClock clock;
+  private final ScheduledExecutorService scheduler;
+  private final Counter acceptedCounter;
+  private final Counter unverifiedCounter;
+  private final Counter rejectedCounter;
+  private final Map<String, OffsetDateTime> pendingBatches = new ConcurrentHashMap<>();
+
+  RhMarketplaceBatchVerifier(
+      RhMarketplaceService rhMarketplaceService,
+      RhMarketplaceProperties properties,
+      ApplicationClock clock,
+      MeterRegistry meterRegistry,
+      @Qualifier("rhMarketplaceScheduler") ScheduledExecutorService scheduler) {
+    this.rhMarketplaceService = rhMarketplaceService;
+    this.properties = properties;
+    this.clock = clock;
+    this.scheduler = scheduler;
+    this.acceptedCounter =
+        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted");
+    this.unverifiedCounter =
+        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.unverified");
+    this.rejectedCounter =
+        meterRegistry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
+  }
+
+  @PostConstruct
+  void scheduleVerification() {
+    long interval = properties.getBatchVerificationInterval().toMillis();
+    scheduler.scheduleWithFixedDelay(
+        this::verifyPendingBatches, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Queue batches for verification.
+   *
+   * @param batchIds IDs of the batches returned by Marketplace for a usage request
+   */
+  public void track(Collection<String> batchIds) {
+    OffsetDateTime submitted = clock.now();
+    batchIds.forEach(batchId -> pendingBatches.putIfAbsent(batchId, submitted));
+  }
+
+  /** Check the status of every pending batch, forgetting those that are no longer in progress. */
+  public void verifyPendingBatches() {
+    OffsetDateTime expiration = clock.now().minus(properties.getBatchVerificationTimeout());
+    pendingBatches.forEach(
+        (batchId, submitted) -> {
+          if (verifyBatchId(batchId, submitted.isBefore(expiration))) {
+            pendingBatches.remove(batchId);
+          }
+        });
+  }
+
+  public int getPendingBatchCount() {
+    return pendingBatches.size();
+  }
+
+  private boolean verifyBatchId(String batchId, boolean expired) {
+    try {
+      StatusResponse response = rhMarketplaceService.getUsageBatchStatus(batchId);
+      String status = Objects.requireNonNull(response.getStatus());
+      if (ACCEPTED_STATUS.equals(status)) {
+        acceptedCounter.increment();
+        return true;
+      } else if (!IN_PROGRESS_STATUS.equals(status)) {
+        log.error(
+            "RH Marketplace rejected batch {} with status {} and message {}",
+            batchId,
+            status,
+            response.getMessage());
+        log.debug("RH Marketplace response: {}", response);
+        rejectedCounter.increment();
+        return true;
+      }
+    } catch (Exception e) {
+      log.warn("Error checking status of batchId {}", batchId, e);
+    }
+
+    if (expired) {
+      log.error("Unable to verify batchId {} before the verification timeout", batchId);
+      unverifiedCounter.increment();
+      return true;
+    }
+    return false;
+  }
+}
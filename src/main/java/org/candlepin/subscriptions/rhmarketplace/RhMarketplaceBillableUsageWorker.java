@@ -21,7 +21,9 @@
 package org.candlepin.subscriptions.rhmarketplace;
 
 import io.micrometer.core.annotation.Timed;
-import java.util.Optional;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.candlepin.subscriptions.json.BillableUsage;
 import org.candlepin.subscriptions.task.TaskQueueProperties;
@@ -41,17 +43,17 @@ import org.springframework.stereotype.Service;
 public class RhMarketplaceBillableUsageWorker extends SeekableKafkaConsumer {
 
   private RhMarketplacePayloadMapper rhMarketplacePayloadMapper;
-  private RhMarketplaceProducer producer;
+  private RhMarketplaceUsageAccumulator usageAccumulator;
 
   @Autowired
   RhMarketplaceBillableUsageWorker(
       @Qualifier("rhmBillableUsageTopicProperties") TaskQueueProperties taskQueueProperties,
-      RhMarketplaceProducer producer,
+      RhMarketplaceUsageAccumulator usageAccumulator,
       RhMarketplacePayloadMapper rhMarketplacePayloadMapper,
       KafkaConsumerRegistry kafkaConsumerRegistry) {
     super(taskQueueProperties, kafkaConsumerRegistry);
     this.rhMarketplacePayloadMapper = rhMarketplacePayloadMapper;
-    this.producer = producer;
+    this.usageAccumulator = usageAccumulator;
   }
 
   @Timed("rhsm-subscriptions.marketplace.billable-usage")
@@ -59,10 +61,14 @@ public class RhMarketplaceBillableUsageWorker extends SeekableKafkaConsumer {
       id = "#{__listener.groupId}",
       topics = "#{__listener.topic}",
       containerFactory = "kafkaBillableUsageListenerContainerFactory")
-  public void receive(BillableUsage usage) {
-    log.debug("Billable Usage received by RHM for account {}!", usage.getAccountNumber());
-    Optional.ofNullable(rhMarketplacePayloadMapper.createUsageRequest(usage))
-        .filter(s -> !s.getData().isEmpty())
-        .ifPresent(producer::submitUsageRequest);
+  public void receive(List<BillableUsage> usages) {
+    log.debug("{} Billable Usages received by RHM", usages.size());
+    // The usage is sent before returning, so the batch's offsets are only committed afterwards.
+    usageAccumulator.submit(
+        usages.stream()
+            .map(rhMarketplacePayloadMapper::createUsageRequest)
+            .filter(Objects::nonNull)
+            .filter(s -> !s.getData().isEmpty())
+            .collect(Collectors.toList()));
   }
 }
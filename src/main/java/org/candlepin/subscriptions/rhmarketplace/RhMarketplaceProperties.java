@@ -56,6 +56,15 @@ public class RhMarketplaceProperties extends HttpClientProperties {
   /** Verify that batches were accepted by Marketplace. */
   private boolean verifyBatches = true;
 
+  /** How often submitted batches are checked for acceptance by Marketplace. */
+  private Duration batchVerificationInterval = Duration.ofSeconds(10);
+
+  /** How long a batch may remain in progress before it is counted as unverified. */
+  private Duration batchVerificationTimeout = Duration.ofMinutes(5);
+
+  /** Maximum number of usage events sent to Marketplace in a single usage request. */
+  private int usageBatchSize = 50;
+
   /** Allows manually submitting marketplace tally summary. */
   private boolean isManualMarketplaceSubmissionEnabled;
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.rhmarketplace;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.candlepin.subscriptions.rhmarketplace.api.model.UsageEvent;
+import org.candlepin.subscriptions.rhmarketplace.api.model.UsageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coalesces usage events into multi-event usage requests before they are sent to Marketplace.
+ *
+ * <p>The events of all the given usage requests are sent in requests of at most {@link
+ * RhMarketplaceProperties#getUsageBatchSize()} events. Nothing is held between calls, so that the
+ * kafka listeners only commit their offsets once the usage has been sent.
+ */
+@Slf4j
+@Component
+public class RhMarketplaceUsageAccumulator {
+
+  private final RhMarketplaceProducer producer;
+  private final RhMarketplaceProperties properties;
+
+  RhMarketplaceUsageAccumulator(
+      RhMarketplaceProducer producer, RhMarketplaceProperties properties) {
+    this.producer = producer;
+    this.properties = properties;
+  }
+
+  /**
+   * Send the events of the given usage requests, batching events from different requests together.
+   *
+   * @param usageRequests requests holding the events to send
+   */
+  public void submit(List<UsageRequest> usageRequests) {
+    List<UsageEvent> batch = new ArrayList<>();
+    for (UsageRequest usageRequest : usageRequests) {
+      for (UsageEvent event : usageRequest.getData()) {
+        batch.add(event);
+        if (batch.size() >= properties.getUsageBatchSize()) {
+          submitBatch(batch);
+          batch = new ArrayList<>();
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      submitBatch(batch);
+    }
+  }
+
+  private void submitBatch(List<UsageEvent> events) {
+    log.debug("Submitting {} usage events to RH Marketplace", events.size());
+    producer.submitUsageRequest(new UsageRequest().data(events));
+  }
+}
@@ -21,6 +21,8 @@
 package org.candlepin.subscriptions.rhmarketplace;
 
 import io.micrometer.core.annotation.Timed;
+import java.util.List;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.candlepin.subscriptions.json.TallySummary;
@@ -37,18 +39,18 @@ import org.springframework.stereotype.Service;
 @Service
 public class RhMarketplaceWorker extends SeekableKafkaConsumer {
 
-  private final RhMarketplaceProducer producer;
+  private final RhMarketplaceUsageAccumulator usageAccumulator;
   private final RhMarketplacePayloadMapper rhMarketplacePayloadMapper;
   @Getter private final boolean enabled;
 
   @Autowired
   public RhMarketplaceWorker(
       @Qualifier("rhMarketplaceTasks") TaskQueueProperties taskQueueProperties,
-      RhMarketplaceProducer producer,
+      RhMarketplaceUsageAccumulator usageAccumulator,
       RhMarketplacePayloadMapper rhMarketplacePayloadMapper,
       KafkaConsumerRegistry kafkaConsumerRegistry) {
     super(taskQueueProperties, kafkaConsumerRegistry);
-    this.producer = producer;
+    this.usageAccumulator = usageAccumulator;
     this.rhMarketplacePayloadMapper = rhMarketplacePayloadMapper;
     this.enabled = taskQueueProperties.isEnabled();
   }
@@ -59,10 +61,12 @@ public class RhMarketplaceWorker extends SeekableKafkaConsumer {
       autoStartup = "#{__listener.enabled}",
       topics = "#{__listener.topic}",
       containerFactory = "kafkaTallySummaryListenerContainerFactory")
-  public void receive(TallySummary tallySummary) {
-    log.debug("Tally Summary received by RHM for account {}!", tallySummary.getAccountNumber());
-    rhMarketplacePayloadMapper
-        .createUsageRequests(tallySummary)
-        .forEach(producer::submitUsageRequest);
+  public void receive(List<TallySummary> tallySummaries) {
+    log.debug("{} Tally Summaries received by RHM", tallySummaries.size());
+    // The usage is sent before returning, so the batch's offsets are only committed afterwards.
+    usageAccumulator.submit(
+        tallySummaries.stream()
+            .flatMap(rhMarketplacePayloadMapper::createUsageRequests)
+            .collect(Collectors.toList()));
   }
 }
@@ -20,6 +20,10 @@
  */
 package org.candlepin.subscriptions.rhmarketplace;
 
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.candlepin.subscriptions.json.BillableUsage;
 import org.candlepin.subscriptions.json.TallySummary;
@@ -40,6 +44,7 @@ import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.retry.support.RetryTemplateBuilder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /** Configuration for the Marketplace integration worker. */
 @Profile("rh-marketplace")
@@ -58,12 +63,18 @@ public class RhMarketplaceWorkerConfiguration {
         .build();
   }
 
+  @Bean(name = "rhMarketplaceScheduler", destroyMethod = "shutdown")
+  ScheduledExecutorService rhMarketplaceScheduler() {
+    // verifies submitted batches
+    return Executors.newScheduledThreadPool(1, new CustomizableThreadFactory("rh-marketplace-"));
+  }
+
   @Bean
   @Qualifier("rhMarketplaceTallySummaryConsumerFactory")
   ConsumerFactory<String, TallySummary> tallySummaryConsumerFactory(
-      KafkaProperties kafkaProperties) {
+      KafkaProperties kafkaProperties, RhMarketplaceProperties rhMarketplaceProperties) {
     return new DefaultKafkaConsumerFactory<>(
-        kafkaProperties.buildConsumerProperties(),
+        batchConsumerProperties(kafkaProperties, rhMarketplaceProperties),
         new StringDeserializer(),
         new JsonDeserializer<>(TallySummary.class));
   }
@@ -84,6 +95,8 @@ public class RhMarketplaceWorkerConfiguration {
 
     var factory = new ConcurrentKafkaListenerContainerFactory<String, TallySummary>();
     factory.setConsumerFactory(consumerFactory);
+    // usage is sent to Marketplace before the listener returns and the batch is committed
+    factory.setBatchListener(true);
     // Concurrency should be set to the number of partitions for the target topic.
     factory.setConcurrency(kafkaProperties.getListener().getConcurrency());
     if (kafkaProperties.getListener().getIdleEventInterval() != null) {
@@ -106,9 +119,9 @@ public class RhMarketplaceWorkerConfiguration {
   @Bean
   @Qualifier("rhMarketplaceBillableUsageConsumerFactory")
   ConsumerFactory<String, BillableUsage> billableUsageConsumerFactory(
-      KafkaProperties kafkaProperties) {
+      KafkaProperties kafkaProperties, RhMarketplaceProperties rhMarketplaceProperties) {
     return new DefaultKafkaConsumerFactory<>(
-        kafkaProperties.buildConsumerProperties(),
+        batchConsumerProperties(kafkaProperties, rhMarketplaceProperties),
         new StringDeserializer(),
         new JsonDeserializer<>(BillableUsage.class));
   }
@@ -123,6 +136,8 @@ public class RhMarketplaceWorkerConfiguration {
 
     var factory = new ConcurrentKafkaListenerContainerFactory<String, BillableUsage>();
     factory.setConsumerFactory(consumerFactory);
+    // usage is sent to Marketplace before the listener returns and the batch is committed
+    factory.setBatchListener(true);
     // Concurrency should be set to the number of partitions for the target topic.
     factory.setConcurrency(kafkaProperties.getListener().getConcurrency());
     if (kafkaProperties.getListener().getIdleEventInterval() != null) {
@@ -135,6 +150,18 @@ public class RhMarketplaceWorkerConfiguration {
     return factory;
   }
 
+  /**
+   * Consumer properties for the usage listeners. A poll returns up to one usage batch worth of
+   * messages, so that usage from separate messages can be sent to Marketplace together.
+   */
+  private static Map<String, Object> batchConsumerProperties(
+      KafkaProperties kafkaProperties, RhMarketplaceProperties rhMarketplaceProperties) {
+    Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties();
+    consumerProperties.put(
+        ConsumerConfig.MAX_POLL_RECORDS_CONFIG, rhMarketplaceProperties.getUsageBatchSize());
+    return consumerProperties;
+  }
+
   /**
    * Build the BeanFactory implementation ourselves since the docs say "Implementations are not
    * supposed to rely on annotation-driven injection or other reflective facilities."
@@ -0,0 +1,116 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.task.AccountsFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tallies a batch of accounts concurrently.
+ *
+ * <p>Each account is handed to {@link TallySnapshotController} on a thread from the bounded
+ * account tally executor. Since the collectors and snapshot strategies are transactional beans,
+ * each account is tallied in its own transactions, and a failure for one account is logged and
+ * counted without affecting the remaining accounts in the batch. Once the whole batch has run, the
+ * accounts that failed are reported with an {@link AccountsFailedException}.
+ */
+@Component
+public class AccountBatchTallyController {
+
+  private static final Logger log = LoggerFactory.getLogger(AccountBatchTallyController.class);
+
+  private final TallySnapshotController snapshotController;
+  private final ExecutorService executor;
+  private final Counter succeededCounter;
+  private final Counter failedCounter;
+
+  public AccountBatchTallyController(
+      TallySnapshotController snapshotController,
+      @Qualifier("accountTallyExecutor") ExecutorService executor,
+      MeterRegistry meterRegistry) {
+    this.snapshotController = snapshotController;
+    this.executor = executor;
+    this.succeededCounter =
+        meterRegistry.counter("rhsm-subscriptions.snapshots.accounts.succeeded");
+    this.failedCounter = meterRegistry.counter("rhsm-subscriptions.snapshots.accounts.failed");
+  }
+
+  /**
+   * Produce snapshots for every account in the batch, blocking until all of them have completed.
+   *
+   * @param accountNumbers the accounts to tally
+   * @throws AccountsFailedException if any account could not be tallied
+   */
+  public void produceSnapshotsForAccounts(List<String> accountNumbers) {
+    Map<String, Exception> failures = new ConcurrentHashMap<>();
+    if (accountNumbers.size() == 1) {
+      // No need to hop threads for a single account.
+      tallyAccount(accountNumbers.get(0), failures);
+    } else {
+      log.info("Updating snapshots for {} accounts.", accountNumbers.size());
+      CompletableFuture<?>[] tallies =
+          accountNumbers.stream()
+              .map(
+                  account ->
+                      CompletableFuture.runAsync(() -> tallyAccount(account, failures), executor))
+              .toArray(CompletableFuture[]::new);
+      CompletableFuture.allOf(tallies).join();
+      log.info("Finished updating snapshots for {} accounts.", accountNumbers.size());
+    }
+
+    if (!failures.isEmpty()) {
+      List<String> failedAccounts =
+          accountNumbers.stream()
+              .distinct()
+              .filter(failures::containsKey)
+              .collect(Collectors.toList());
+      Exception cause = failures.get(failedAccounts.get(0));
+      failedAccounts.stream()
+          .map(failures::get)
+          .filter(failure -> failure != cause)
+          .forEach(cause::addSuppressed);
+      throw new AccountsFailedException(failedAccounts, cause);
+    }
+  }
+
+  private void tallyAccount(String account, Map<String, Exception> failures) {
+    try {
+      log.info("Updating snapshots for account {}.", account);
+      snapshotController.produceSnapshotsForAccount(account);
+      succeededCounter.increment();
+    } catch (Exception e) {
+      log.error("Unable to update snapshots for account {}", account, e);
+      failedCounter.increment();
+      failures.put(account, e);
+    }
+  }
+}
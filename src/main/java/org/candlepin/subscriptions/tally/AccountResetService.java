@@ -23,6 +23,7 @@ package org.candlepin.subscriptions.tally;
 import javax.transaction.Transactional;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
 import org.candlepin.subscriptions.db.BillableUsageRemittanceRepository;
+import org.candlepin.subscriptions.db.EventDirtyHourRepository;
 import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.db.HostRepository;
 import org.candlepin.subscriptions.db.SubscriptionCapacityRepository;
@@ -41,6 +42,7 @@ public class AccountResetService {
   private final SubscriptionCapacityRepository subscriptionCapacityRepository;
   private final SubscriptionRepository subscriptionRepository;
   private final BillableUsageRemittanceRepository remittanceRepository;
+  private final EventDirtyHourRepository eventDirtyHourRepository;
 
   @Autowired
   public AccountResetService(
@@ -50,7 +52,8 @@ public class AccountResetService {
       AccountServiceInventoryRepository accountServiceInventoryRepository,
       SubscriptionCapacityRepository subscriptionCapacityRepository,
       SubscriptionRepository subscriptionRepository,
-      BillableUsageRemittanceRepository remittanceRepository) {
+      BillableUsageRemittanceRepository remittanceRepository,
+      EventDirtyHourRepository eventDirtyHourRepository) {
     this.eventRecordRepo = eventRecordRepo;
     this.hostRepo = hostRepo;
     this.tallySnapshotRepository = tallySnapshotRepository;
@@ -58,6 +61,7 @@ public class AccountResetService {
     this.subscriptionCapacityRepository = subscriptionCapacityRepository;
     this.subscriptionRepository = subscriptionRepository;
     this.remittanceRepository = remittanceRepository;
+    this.eventDirtyHourRepository = eventDirtyHourRepository;
   }
 
   @Transactional
@@ -66,6 +70,7 @@ public class AccountResetService {
     accountServiceInventoryRepository.deleteByIdAccountNumber(accountNumber);
     hostRepo.deleteByAccountNumber(accountNumber);
     eventRecordRepo.deleteByAccountNumber(accountNumber);
+    eventDirtyHourRepository.deleteByIdAccountNumber(accountNumber);
     tallySnapshotRepository.deleteByAccountNumber(accountNumber);
     subscriptionRepository.deleteByAccountNumber(accountNumber);
     subscriptionCapacityRepository.deleteByAccountNumber(accountNumber);
@@ -63,16 +63,8 @@ public class AccountUsageCalculation {
   }
 
   public void addCalculation(UsageCalculation calc) {
-    String productId = calc.getProductId();
-    this.calculations.put(
-        new UsageCalculation.Key(
-            productId,
-            calc.getSla(),
-            calc.getUsage(),
-            calc.getBillingProvider(),
-            calc.getBillingAccountId()),
-        calc);
-    this.products.add(productId);
+    this.calculations.put(calc.getKey(), calc);
+    this.products.add(calc.getProductId());
   }
 
   public void addUsage(
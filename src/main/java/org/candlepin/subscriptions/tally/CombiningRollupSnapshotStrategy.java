@@ -45,6 +45,7 @@ import org.candlepin.subscriptions.util.DateRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -64,16 +65,19 @@ public class CombiningRollupSnapshotStrategy {
   private final TallySnapshotRepository tallyRepo;
   private final SnapshotSummaryProducer summaryProducer;
   private final ApplicationClock clock;
+  private final ApplicationEventPublisher eventPublisher;
 
   @Autowired
   public CombiningRollupSnapshotStrategy(
       TallySnapshotRepository tallyRepo,
       SnapshotSummaryProducer summaryProducer,
-      ApplicationClock clock) {
+      ApplicationClock clock,
+      ApplicationEventPublisher eventPublisher) {
 
     this.tallyRepo = tallyRepo;
     this.summaryProducer = summaryProducer;
     this.clock = clock;
+    this.eventPublisher = eventPublisher;
   }
 
   /**
@@ -152,6 +156,8 @@ public class CombiningRollupSnapshotStrategy {
             .collect(Collectors.groupingBy(TallySnapshot::getAccountNumber));
 
     summaryProducer.produceTallySummaryMessages(totalSnapshots);
+    eventPublisher.publishEvent(
+        new TallySnapshotsUpdatedEvent(accountNumber, affectedProductTags));
 
     log.info("Finished producing finestGranularitySnapshots for account {}.", accountNumber);
   }
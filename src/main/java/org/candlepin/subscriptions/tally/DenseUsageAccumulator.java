@@ -0,0 +1,214 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+
+/**
+ * Accumulates the usage calculations of a single account while tallying a large number of hosts.
+ *
+ * <p>Looking up a calculation in {@link AccountUsageCalculation} needs a new {@link
+ * UsageCalculation.Key} and a hash of its five fields for every host, product, SLA and usage. This
+ * accumulator instead dictionary-encodes the product and billing account IDs to small ints once,
+ * and combines them with the enum ordinals into a primitive code that indexes the calculations. A
+ * key is only created the first time a combination is seen. Once every host has been processed,
+ * {@link #addCalculationsTo(AccountUsageCalculation)} hands the calculations to the account's
+ * {@link AccountUsageCalculation} for the rollers.
+ *
+ * <p>Not thread-safe; callers accumulating from several threads should give each thread its own
+ * accumulator and combine them with {@link #addAll(DenseUsageAccumulator)}.
+ */
+public class DenseUsageAccumulator {
+
+  private static final ServiceLevel[] SLAS = ServiceLevel.values();
+  private static final Usage[] USAGES = Usage.values();
+  private static final BillingProvider[] BILLING_PROVIDERS = BillingProvider.values();
+  private static final int NO_CALCULATION = -1;
+
+  private final Map<String, Integer> productIndexes = new HashMap<>();
+  private final List<String> productIds = new ArrayList<>();
+  private final Map<String, Integer> billingAccountIndexes = new HashMap<>();
+  private final List<String> billingAccountIds = new ArrayList<>();
+  private final List<UsageCalculation> calculations = new ArrayList<>();
+
+  // Open-addressing table from encoded key to the index of its calculation.
+  private long[] codes = new long[64];
+  private int[] calculationIndexes = newCalculationIndexes(64);
+
+  /**
+   * Get the dictionary index of a product ID, registering the product if needed. Callers should
+   * resolve their products once, rather than once per host.
+   *
+   * @param productId the product ID
+   * @return the index to use in {@link #getOrCreateCalculation(int, ServiceLevel, Usage,
+   *     BillingProvider, int)}
+   */
+  public int productIndex(String productId) {
+    return encode(productIndexes, productIds, productId);
+  }
+
+  /**
+   * Get the dictionary index of a billing account ID, registering the billing account if needed.
+   *
+   * @param billingAccountId the billing account ID
+   * @return the index to use in {@link #getOrCreateCalculation(int, ServiceLevel, Usage,
+   *     BillingProvider, int)}
+   */
+  public int billingAccountIndex(String billingAccountId) {
+    return encode(billingAccountIndexes, billingAccountIds, billingAccountId);
+  }
+
+  /**
+   * Get the calculation for the given dimensions, creating it if it does not exist yet.
+   *
+   * @param productIndex the index returned by {@link #productIndex(String)}
+   * @param sla the service level
+   * @param usage the usage
+   * @param billingProvider the billing provider
+   * @param billingAccountIndex the index returned by {@link #billingAccountIndex(String)}
+   * @return the calculation accumulating usage for those dimensions
+   */
+  public UsageCalculation getOrCreateCalculation(
+      int productIndex,
+      ServiceLevel sla,
+      Usage usage,
+      BillingProvider billingProvider,
+      int billingAccountIndex) {
+    long code = encode(productIndex, sla, usage, billingProvider, billingAccountIndex);
+    int slot = findSlot(code);
+    if (calculationIndexes[slot] == NO_CALCULATION) {
+      UsageCalculation calc =
+          new UsageCalculation(
+              new UsageCalculation.Key(
+                  productIds.get(productIndex),
+                  sla,
+                  usage,
+                  billingProvider,
+                  billingAccountIds.get(billingAccountIndex)));
+      codes[slot] = code;
+      calculationIndexes[slot] = calculations.size();
+      calculations.add(calc);
+      if (calculations.size() * 2 > codes.length) {
+        resize();
+      }
+      return calc;
+    }
+    return calculations.get(calculationIndexes[slot]);
+  }
+
+  /**
+   * Get the calculation for the given key, creating it if it does not exist yet.
+   *
+   * @param key the calculation key
+   * @return the calculation accumulating usage for the key
+   */
+  public UsageCalculation getOrCreateCalculation(UsageCalculation.Key key) {
+    return getOrCreateCalculation(
+        productIndex(key.getProductId()),
+        key.getSla(),
+        key.getUsage(),
+        key.getBillingProvider(),
+        billingAccountIndex(key.getBillingAccountId()));
+  }
+
+  /** @return the number of distinct calculations accumulated so far */
+  public int size() {
+    return calculations.size();
+  }
+
+  /**
+   * Add the calculations accumulated by another accumulator to the ones of this accumulator.
+   *
+   * @param other the accumulator to add
+   */
+  public void addAll(DenseUsageAccumulator other) {
+    other.calculations.forEach(calc -> getOrCreateCalculation(calc.getKey()).merge(calc));
+  }
+
+  /**
+   * Add every accumulated calculation to the given account calculation, replacing any calculation
+   * it already has for the same key.
+   *
+   * @param accountCalc the account calculation used by the rollers
+   */
+  public void addCalculationsTo(AccountUsageCalculation accountCalc) {
+    calculations.forEach(accountCalc::addCalculation);
+  }
+
+  private static int encode(Map<String, Integer> indexes, List<String> values, String value) {
+    Integer index = indexes.get(value);
+    if (index == null) {
+      index = values.size();
+      values.add(value);
+      indexes.put(value, index);
+    }
+    return index;
+  }
+
+  private static long encode(
+      int productIndex,
+      ServiceLevel sla,
+      Usage usage,
+      BillingProvider billingProvider,
+      int billingAccountIndex) {
+    long code = productIndex;
+    code = code * SLAS.length + sla.ordinal();
+    code = code * USAGES.length + usage.ordinal();
+    code = code * BILLING_PROVIDERS.length + billingProvider.ordinal();
+    return (code << 32) | billingAccountIndex;
+  }
+
+  private int findSlot(long code) {
+    int mask = codes.length - 1;
+    int slot = Long.hashCode(code * 0x9E3779B97F4A7C15L) & mask;
+    while (calculationIndexes[slot] != NO_CALCULATION && codes[slot] != code) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    long[] oldCodes = codes;
+    int[] oldIndexes = calculationIndexes;
+    codes = new long[oldCodes.length * 2];
+    calculationIndexes = newCalculationIndexes(codes.length);
+    for (int i = 0; i < oldCodes.length; i++) {
+      if (oldIndexes[i] != NO_CALCULATION) {
+        int slot = findSlot(oldCodes[i]);
+        codes[slot] = oldCodes[i];
+        calculationIndexes[slot] = oldIndexes[i];
+      }
+    }
+  }
+
+  private static int[] newCalculationIndexes(int size) {
+    int[] indexes = new int[size];
+    Arrays.fill(indexes, NO_CALCULATION);
+    return indexes;
+  }
+}
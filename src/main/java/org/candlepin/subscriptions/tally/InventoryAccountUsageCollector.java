@@ -22,6 +22,7 @@ package org.candlepin.subscriptions.tally;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,6 +31,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.candlepin.subscriptions.ApplicationProperties;
@@ -59,6 +62,7 @@ public class InventoryAccountUsageCollector {
   private final InventoryDatabaseOperations inventory;
   private final AccountServiceInventoryRepository accountServiceInventoryRepository;
   private final int culledOffsetDays;
+  private final int scanPartitions;
   private final Counter totalHosts;
 
   public InventoryAccountUsageCollector(
@@ -71,6 +75,7 @@ public class InventoryAccountUsageCollector {
     this.inventory = inventory;
     this.accountServiceInventoryRepository = accountServiceInventoryRepository;
     this.culledOffsetDays = props.getCullingOffsetDays();
+    this.scanPartitions = props.getInventoryScanPartitions();
     this.totalHosts = meterRegistry.counter("rhsm-subscriptions.tally.hbi_hosts");
   }
 
@@ -91,7 +96,8 @@ public class InventoryAccountUsageCollector {
                 Collectors.toMap(
                     Host::getInventoryId,
                     Function.identity(),
-                    (h1, h2) -> handleDuplicateHost(duplicateInstanceIds, h1, h2)));
+                    (h1, h2) -> handleDuplicateHost(duplicateInstanceIds, h1, h2),
+                    ConcurrentHashMap::new));
     duplicateInstanceIds.forEach(accountServiceInventory.getServiceInstances()::remove);
 
     Map<String, String> hypMapping = new HashMap<>();
@@ -104,94 +110,43 @@ public class InventoryAccountUsageCollector {
         List.of(account), reported -> hypMapping.put((String) reported[0], (String) reported[1]));
     log.info("Found {} reported hypervisors.", hypMapping.size());
 
-    Map<String, AccountUsageCalculation> calcsByAccount = new HashMap<>();
-    inventory.processHostFacts(
-        List.of(account),
-        culledOffsetDays,
-        hostFacts -> {
-          calcsByAccount.putIfAbsent(account, new AccountUsageCalculation(account));
-
-          AccountUsageCalculation accountCalc = calcsByAccount.get(account);
-          NormalizedFacts facts = factNormalizer.normalize(hostFacts, hypMapping);
-
-          // Validate and set the owner.
-          // Don't set null owner as it may overwrite an existing value.
-          // Likely won't happen, but there could be stale data in inventory
-          // with no owner set.
-          String owner = facts.getOwner();
-          if (owner != null) {
-            String currentOwner = accountCalc.getOwner();
-            if (currentOwner != null && !currentOwner.equalsIgnoreCase(owner)) {
-              throw new IllegalStateException(
-                  String.format(
-                      "Attempt to set a different owner for an account: %s:%s",
-                      currentOwner, owner));
-            }
-            accountCalc.setOwner(owner);
-          }
+    // Hosts may be read over several concurrent cursors. Each partition accumulates into its own
+    // calculations, host records and hypervisor mappings, which are merged once all hosts are read.
+    List<String> productIds = new ArrayList<>(products);
+    List<PartitionUsage> partitions =
+        inventory.processHostFacts(
+            List.of(account),
+            culledOffsetDays,
+            scanPartitions,
+            () -> new PartitionUsage(productIds, hypMapping, inventoryHostMap));
 
-          Host existingHost = inventoryHostMap.remove(hostFacts.getInventoryId().toString());
-          Host host = existingHost == null ? hostFromHbiFacts(hostFacts, facts) : existingHost;
-          if (existingHost != null) {
-            host.getBuckets().clear(); // ensure we recalculate to remove any stale buckets
-            populateHostFieldsFromHbi(host, hostFacts, facts);
-          }
-
-          if (facts.isHypervisor()) {
-            Map<String, NormalizedFacts> idToHypervisorMap =
-                accountHypervisorFacts.computeIfAbsent(account, a -> new HashMap<>());
-            idToHypervisorMap.put(hostFacts.getSubscriptionManagerId(), facts);
-            hypervisorHosts.put(hostFacts.getSubscriptionManagerId(), host);
-          } else if (facts.isVirtual() && !StringUtils.isEmpty(facts.getHypervisorUuid())) {
-            Integer guests = hypervisorGuestCounts.getOrDefault(host.getHypervisorUuid(), 0);
-            hypervisorGuestCounts.put(host.getHypervisorUuid(), ++guests);
-          }
-
-          ServiceLevel[] slas = new ServiceLevel[] {facts.getSla(), ServiceLevel._ANY};
-          Usage[] usages = new Usage[] {facts.getUsage(), Usage._ANY};
-
-          // Calculate for each UsageKey
-          // review current implementation of default values, and determine if factnormalizer needs
-          // to handle billingAcctId & BillingProvider
-          products.forEach(
-              product -> {
-                for (ServiceLevel sla : slas) {
-                  for (Usage usage : usages) {
-                    UsageCalculation.Key key =
-                        new UsageCalculation.Key(product, sla, usage, BillingProvider._ANY, "_ANY");
-                    UsageCalculation calc = accountCalc.getOrCreateCalculation(key);
-                    if (facts.getProducts().contains(product)) {
-                      try {
-                        String hypervisorUuid = facts.getHypervisorUuid();
-                        if (hypervisorUuid != null) {
-                          Set<UsageCalculation.Key> keys =
-                              hypervisorUsageKeys.computeIfAbsent(
-                                  hypervisorUuid, uuid -> new HashSet<>());
-                          keys.add(key);
-                        }
-                        Optional<HostTallyBucket> appliedBucket =
-                            ProductUsageCollectorFactory.get(product).collect(calc, facts);
-                        appliedBucket.ifPresent(host::addBucket);
-                      } catch (Exception e) {
-                        log.error(
-                            "Unable to collect usage data for host: {} product: {}",
-                            hostFacts.getSubscriptionManagerId(),
-                            product,
-                            e);
-                      }
-                    }
-                  }
-                }
-              });
-
-          // Save the host now that the buckets have been determined. Hypervisor hosts will
-          // be persisted once all potential guests have been processed.
-          if (!facts.isHypervisor()) {
-            accountServiceInventory.getServiceInstances().put(host.getInstanceId(), host);
-          }
+    Map<String, AccountUsageCalculation> calcsByAccount = new HashMap<>();
+    DenseUsageAccumulator accumulator = new DenseUsageAccumulator();
+    for (PartitionUsage partition : partitions) {
+      if (!partition.hasHosts) {
+        continue;
+      }
+      AccountUsageCalculation accountCalc =
+          calcsByAccount.computeIfAbsent(account, AccountUsageCalculation::new);
+      accountCalc.setOwner(mergeOwner(accountCalc.getOwner(), partition.owner));
+      accumulator.addAll(partition.accumulator);
+      partition.hosts.forEach(
+          host -> accountServiceInventory.getServiceInstances().put(host.getInstanceId(), host));
+      partition.hypervisorUsageKeys.forEach(
+          (hypervisorUuid, keys) ->
+              hypervisorUsageKeys
+                  .computeIfAbsent(hypervisorUuid, uuid -> new HashSet<>())
+                  .addAll(keys));
+      accountHypervisorFacts
+          .computeIfAbsent(account, a -> new HashMap<>())
+          .putAll(partition.hypervisorFacts);
+      hypervisorHosts.putAll(partition.hypervisorHosts);
+      partition.hypervisorGuestCounts.forEach(
+          (hypervisorUuid, guests) ->
+              hypervisorGuestCounts.merge(hypervisorUuid, guests, Integer::sum));
+    }
 
-          totalHosts.increment();
-        });
+    Optional.ofNullable(calcsByAccount.get(account)).ifPresent(accumulator::addCalculationsTo);
 
     // apply data from guests to hypervisor records
     collectHypervisorGuestData(
@@ -225,6 +180,23 @@ public class InventoryAccountUsageCollector {
     return calcsByAccount;
   }
 
+  /**
+   * Validate the owner of a host against the owner already known for the account. A null owner
+   * does not overwrite an existing value; likely won't happen, but there could be stale data in
+   * inventory with no owner set.
+   */
+  private static String mergeOwner(String currentOwner, String owner) {
+    if (owner == null) {
+      return currentOwner;
+    }
+    if (currentOwner != null && !currentOwner.equalsIgnoreCase(owner)) {
+      throw new IllegalStateException(
+          String.format(
+              "Attempt to set a different owner for an account: %s:%s", currentOwner, owner));
+    }
+    return owner;
+  }
+
   private Host handleDuplicateHost(Set<String> duplicateInstanceIds, Host host1, Host host2) {
     log.warn("Removing duplicate host record w/ inventory ID: {}", host2.getInventoryId());
     duplicateInstanceIds.add(host2.getInstanceId());
@@ -309,4 +281,104 @@ public class InventoryAccountUsageCollector {
     populateHostFieldsFromHbi(host, inventoryHostFacts, normalizedFacts);
     return host;
   }
+
+  /**
+   * Usage accumulated from the hosts of a single inventory scan partition. Only the thread reading
+   * the partition accesses it, so it needs no synchronization. Since each inventory ID falls into
+   * exactly one partition, partitions only share the existing host records through a concurrent
+   * map.
+   */
+  private class PartitionUsage implements Consumer<InventoryHostFacts> {
+    private final List<String> productIds;
+    private final Map<String, String> hypMapping;
+    private final Map<String, Host> inventoryHostMap;
+    // Resolve the calculation dimensions once, so that looking up a host's calculations does not
+    // create a key for every product, SLA and usage.
+    private final DenseUsageAccumulator accumulator = new DenseUsageAccumulator();
+    private final int[] productIndexes;
+    private final int anyBillingAccountIndex;
+    private final List<Host> hosts = new ArrayList<>();
+    private final Map<String, Set<UsageCalculation.Key>> hypervisorUsageKeys = new HashMap<>();
+    private final Map<String, NormalizedFacts> hypervisorFacts = new HashMap<>();
+    private final Map<String, Host> hypervisorHosts = new HashMap<>();
+    private final Map<String, Integer> hypervisorGuestCounts = new HashMap<>();
+    private String owner;
+    private boolean hasHosts;
+
+    private PartitionUsage(
+        List<String> productIds,
+        Map<String, String> hypMapping,
+        Map<String, Host> inventoryHostMap) {
+      this.productIds = productIds;
+      this.hypMapping = hypMapping;
+      this.inventoryHostMap = inventoryHostMap;
+      this.productIndexes = productIds.stream().mapToInt(accumulator::productIndex).toArray();
+      this.anyBillingAccountIndex = accumulator.billingAccountIndex("_ANY");
+    }
+
+    @Override
+    public void accept(InventoryHostFacts hostFacts) {
+      NormalizedFacts facts = factNormalizer.normalize(hostFacts, hypMapping);
+      hasHosts = true;
+      owner = mergeOwner(owner, facts.getOwner());
+
+      Host existingHost = inventoryHostMap.remove(hostFacts.getInventoryId().toString());
+      Host host = existingHost == null ? hostFromHbiFacts(hostFacts, facts) : existingHost;
+      if (existingHost != null) {
+        host.getBuckets().clear(); // ensure we recalculate to remove any stale buckets
+        populateHostFieldsFromHbi(host, hostFacts, facts);
+      }
+
+      if (facts.isHypervisor()) {
+        hypervisorFacts.put(hostFacts.getSubscriptionManagerId(), facts);
+        hypervisorHosts.put(hostFacts.getSubscriptionManagerId(), host);
+      } else if (facts.isVirtual() && !StringUtils.isEmpty(facts.getHypervisorUuid())) {
+        hypervisorGuestCounts.merge(host.getHypervisorUuid(), 1, Integer::sum);
+      }
+
+      ServiceLevel[] slas = new ServiceLevel[] {facts.getSla(), ServiceLevel._ANY};
+      Usage[] usages = new Usage[] {facts.getUsage(), Usage._ANY};
+
+      // Calculate for each UsageKey
+      // review current implementation of default values, and determine if factnormalizer
+      // needs to handle billingAcctId & BillingProvider
+      for (int i = 0; i < productIndexes.length; i++) {
+        String product = productIds.get(i);
+        for (ServiceLevel sla : slas) {
+          for (Usage usage : usages) {
+            UsageCalculation calc =
+                accumulator.getOrCreateCalculation(
+                    productIndexes[i], sla, usage, BillingProvider._ANY, anyBillingAccountIndex);
+            if (facts.getProducts().contains(product)) {
+              try {
+                String hypervisorUuid = facts.getHypervisorUuid();
+                if (hypervisorUuid != null) {
+                  Set<UsageCalculation.Key> keys =
+                      hypervisorUsageKeys.computeIfAbsent(hypervisorUuid, uuid -> new HashSet<>());
+                  keys.add(calc.getKey());
+                }
+                Optional<HostTallyBucket> appliedBucket =
+                    ProductUsageCollectorFactory.get(product).collect(calc, facts);
+                appliedBucket.ifPresent(host::addBucket);
+              } catch (Exception e) {
+                log.error(
+                    "Unable to collect usage data for host: {} product: {}",
+                    hostFacts.getSubscriptionManagerId(),
+                    product,
+                    e);
+              }
+            }
+          }
+        }
+      }
+
+      // Save the host once the partitions are merged. Hypervisor hosts will be persisted once all
+      // potential guests have been processed.
+      if (!facts.isHypervisor()) {
+        hosts.add(host);
+      }
+
+      totalHosts.increment();
+    }
+  }
 }
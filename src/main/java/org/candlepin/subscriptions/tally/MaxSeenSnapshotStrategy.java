@@ -20,25 +20,21 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
 import org.candlepin.subscriptions.registry.TagProfile;
-import org.candlepin.subscriptions.tally.roller.BaseSnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.DailySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.HourlySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.MonthlySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.QuarterlySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.WeeklySnapshotRoller;
-import org.candlepin.subscriptions.tally.roller.YearlySnapshotRoller;
+import org.candlepin.subscriptions.tally.roller.MultiGranularitySnapshotRoller;
 import org.candlepin.subscriptions.util.ApplicationClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -48,41 +44,33 @@ public class MaxSeenSnapshotStrategy {
 
   private static final Logger log = LoggerFactory.getLogger(MaxSeenSnapshotStrategy.class);
 
-  private final HourlySnapshotRoller hourlyRoller;
-  private final DailySnapshotRoller dailyRoller;
-  private final WeeklySnapshotRoller weeklyRoller;
-  private final MonthlySnapshotRoller monthlyRoller;
-  private final YearlySnapshotRoller yearlyRoller;
-  private final QuarterlySnapshotRoller quarterlyRoller;
+  private final MultiGranularitySnapshotRoller roller;
   private final SnapshotSummaryProducer summaryProducer;
+  private final ApplicationEventPublisher eventPublisher;
 
   @Autowired
   public MaxSeenSnapshotStrategy(
       TallySnapshotRepository tallyRepo,
       ApplicationClock clock,
       TagProfile tagProfile,
-      SnapshotSummaryProducer summaryProducer) {
+      SnapshotSummaryProducer summaryProducer,
+      ApplicationEventPublisher eventPublisher) {
     this.summaryProducer = summaryProducer;
-    hourlyRoller = new HourlySnapshotRoller(tallyRepo, clock, tagProfile);
-    dailyRoller = new DailySnapshotRoller(tallyRepo, clock, tagProfile);
-    weeklyRoller = new WeeklySnapshotRoller(tallyRepo, clock, tagProfile);
-    monthlyRoller = new MonthlySnapshotRoller(tallyRepo, clock, tagProfile);
-    yearlyRoller = new YearlySnapshotRoller(tallyRepo, clock, tagProfile);
-    quarterlyRoller = new QuarterlySnapshotRoller(tallyRepo, clock, tagProfile);
+    this.eventPublisher = eventPublisher;
+    roller = new MultiGranularitySnapshotRoller(tallyRepo, clock, tagProfile);
   }
 
   @Transactional
   public List<TallySnapshot> produceSnapshotsFromCalculations(
       String account, Collection<AccountUsageCalculation> accountCalcs) {
-    Stream<BaseSnapshotRoller> rollers =
-        Stream.of(
-            hourlyRoller, dailyRoller, weeklyRoller, monthlyRoller, quarterlyRoller, yearlyRoller);
-    var newAndUpdatedSnapshots =
-        rollers
-            .map(roller -> roller.rollSnapshots(account, accountCalcs))
-            .flatMap(Collection::stream)
-            .collect(Collectors.toList());
+    List<TallySnapshot> newAndUpdatedSnapshots =
+        new ArrayList<>(roller.rollSnapshots(account, accountCalcs));
     summaryProducer.produceTallySummaryMessages(Map.of(account, newAndUpdatedSnapshots));
+    Set<String> productIds =
+        newAndUpdatedSnapshots.stream()
+            .map(TallySnapshot::getProductId)
+            .collect(Collectors.toSet());
+    eventPublisher.publishEvent(new TallySnapshotsUpdatedEvent(account, productIds));
     log.info("Finished producing snapshots for account {}", account);
     return newAndUpdatedSnapshots;
   }
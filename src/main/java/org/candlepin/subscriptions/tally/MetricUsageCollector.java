@@ -20,10 +20,13 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -32,12 +35,14 @@ import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
 import org.candlepin.subscriptions.db.model.*;
 import org.candlepin.subscriptions.event.EventController;
 import org.candlepin.subscriptions.json.Event;
+import org.candlepin.subscriptions.json.Measurement;
 import org.candlepin.subscriptions.registry.TagMetaData;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.util.ApplicationClock;
@@ -54,16 +59,29 @@ public class MetricUsageCollector {
   private final EventController eventController;
   private final ApplicationClock clock;
   private final TagProfile tagProfile;
+  private final boolean singleScanEnabled;
+  private final boolean incrementalEnabled;
 
+  /**
+   * @param singleScanEnabled when true, all events for the tally range are read with a single
+   *     query and bucketed into hours as they are streamed; otherwise the event store is queried
+   *     once per hour in the range.
+   * @param incrementalEnabled when true, only the requested range and the hours whose events
+   *     changed since they were last tallied are replayed, rather than the whole month.
+   */
   public MetricUsageCollector(
       TagProfile tagProfile,
       AccountServiceInventoryRepository accountServiceInventoryRepository,
       EventController eventController,
-      ApplicationClock clock) {
+      ApplicationClock clock,
+      boolean singleScanEnabled,
+      boolean incrementalEnabled) {
     this.accountServiceInventoryRepository = accountServiceInventoryRepository;
     this.eventController = eventController;
     this.clock = clock;
     this.tagProfile = tagProfile;
+    this.singleScanEnabled = singleScanEnabled;
+    this.incrementalEnabled = incrementalEnabled;
   }
 
   @Transactional
@@ -75,8 +93,13 @@ public class MetricUsageCollector {
               range.getStartString(), range.getEndString()));
     }
 
-    if (!eventController.hasEventsInTimeRange(
-        accountNumber, serviceType, range.getStartDate(), range.getEndDate())) {
+    List<EventDirtyHour> dirtyHours =
+        incrementalEnabled
+            ? eventController.fetchDirtyHours(accountNumber, serviceType, clock.endOfCurrentHour())
+            : List.of();
+    if (dirtyHours.isEmpty()
+        && !eventController.hasEventsInTimeRange(
+            accountNumber, serviceType, range.getStartDate(), range.getEndDate())) {
       log.info("No event metrics to process for service type {} in range: {}", serviceType, range);
       return null;
     }
@@ -100,6 +123,13 @@ public class MetricUsageCollector {
               ? newestInstanceTimestamp
               : host.getLastSeen();
     }
+    if (incrementalEnabled) {
+      return collectIncrementally(
+          accountServiceInventory,
+          range,
+          dirtyHours,
+          newestInstanceTimestamp.isAfter(range.getStartDate()));
+    }
     OffsetDateTime effectiveStartDateTime;
     OffsetDateTime effectiveEndDateTime;
     boolean isRecalculating;
@@ -138,20 +168,186 @@ public class MetricUsageCollector {
                   instance.clearMonthlyTotals(effectiveStartDateTime, effectiveEndDateTime));
     }
 
-    Map<OffsetDateTime, AccountUsageCalculation> accountCalcs = new HashMap<>();
-    for (OffsetDateTime offset = effectiveStartDateTime;
-        offset.isBefore(effectiveEndDateTime);
-        offset = offset.plusHours(1)) {
-      AccountUsageCalculation accountUsageCalculation =
-          collectHour(accountServiceInventory, offset);
-      if (accountUsageCalculation != null && !accountUsageCalculation.getKeys().isEmpty()) {
-        accountCalcs.put(offset, accountUsageCalculation);
+    Map<OffsetDateTime, AccountUsageCalculation> accountCalcs;
+    if (singleScanEnabled) {
+      accountCalcs =
+          collectRange(
+              accountServiceInventory, effectiveStartDateTime, effectiveEndDateTime, true);
+    } else {
+      accountCalcs = new HashMap<>();
+      for (OffsetDateTime offset = effectiveStartDateTime;
+          offset.isBefore(effectiveEndDateTime);
+          offset = offset.plusHours(1)) {
+        putHourCalculation(accountCalcs, offset, collectHour(accountServiceInventory, offset));
       }
     }
     accountServiceInventoryRepository.save(accountServiceInventory);
 
+    DateRange effectiveRange = new DateRange(effectiveStartDateTime, effectiveEndDateTime);
+    return new CollectionResult(
+        effectiveRange, accountCalcs, isRecalculating, List.of(effectiveRange), List.of());
+  }
+
+  /**
+   * Replays the requested range along with every hour whose events changed since it was last
+   * tallied.
+   *
+   * <p>Changed hours are merged with the requested range into contiguous ranges, and each range is
+   * collected separately. When nothing outside the requested range is replayed and we are not
+   * re-tallying, monthly totals are accumulated from the events as usual. Otherwise the monthly
+   * totals of the affected months are recalculated by the database, which is far cheaper than
+   * replaying every hour of the month.
+   *
+   * @param accountServiceInventory the inventory whose instances are updated from the events
+   * @param range the requested range
+   * @param dirtyHours every changed hour for the account and service type
+   * @param isRecalculating whether the requested range has been tallied before
+   * @return the calculations for the replayed hours
+   */
+  private CollectionResult collectIncrementally(
+      AccountServiceInventory accountServiceInventory,
+      DateRange range,
+      List<EventDirtyHour> dirtyHours,
+      boolean isRecalculating) {
+    List<DateRange> replayRanges = mergeReplayRanges(range, dirtyHours);
+    boolean replaysOutsideRange =
+        dirtyHours.stream()
+            .map(EventDirtyHour::getHour)
+            .anyMatch(
+                hour -> hour.isBefore(range.getStartDate()) || !hour.isBefore(range.getEndDate()));
+    boolean recalculateMonthlyTotals = isRecalculating || replaysOutsideRange;
+    log.info(
+        "Replaying {} changed hours and requested range [{} : {}] in {} ranges",
+        dirtyHours.size(),
+        range.getStartString(),
+        range.getEndString(),
+        replayRanges.size());
+
+    // Replaying an hour older than a host's latest event rolls the host back to that hour, so
+    // remember every host's latest state and restore it for hosts the replay moved back in time.
+    Map<String, OffsetDateTime> latestLastSeen = new HashMap<>();
+    Map<String, Map<Measurement.Uom, Double>> latestMeasurements = new HashMap<>();
+    accountServiceInventory
+        .getServiceInstances()
+        .forEach(
+            (instanceId, host) -> {
+              if (host.getLastSeen() != null) {
+                latestLastSeen.put(instanceId, host.getLastSeen());
+                latestMeasurements.put(instanceId, new HashMap<>(host.getMeasurements()));
+              }
+            });
+
+    Map<OffsetDateTime, AccountUsageCalculation> accountCalcs = new HashMap<>();
+    List<DateRange> affectedRanges = new ArrayList<>();
+    for (DateRange replayRange : replayRanges) {
+      accountCalcs.putAll(
+          collectRange(
+              accountServiceInventory,
+              replayRange.getStartDate(),
+              replayRange.getEndDate(),
+              !recalculateMonthlyTotals));
+      affectedRanges.add(
+          new DateRange(
+              replayRange.getStartDate(),
+              clock.endOfHour(replayRange.getEndDate().minusHours(1))));
+    }
+
+    latestLastSeen.forEach(
+        (instanceId, lastSeen) -> {
+          Host host = accountServiceInventory.getServiceInstances().get(instanceId);
+          if (host != null
+              && (host.getLastSeen() == null || host.getLastSeen().isBefore(lastSeen))) {
+            host.setLastSeen(lastSeen);
+            host.getMeasurements().clear();
+            host.getMeasurements().putAll(latestMeasurements.get(instanceId));
+          }
+        });
+
+    if (recalculateMonthlyTotals) {
+      replayRanges.stream()
+          .flatMap(
+              replayRange ->
+                  Stream.iterate(
+                      clock.startOfMonth(replayRange.getStartDate()),
+                      month -> month.isBefore(replayRange.getEndDate()),
+                      month -> month.plusMonths(1)))
+          .distinct()
+          .forEach(month -> recalculateMonthlyTotals(accountServiceInventory, month));
+    }
+    accountServiceInventoryRepository.save(accountServiceInventory);
+
     return new CollectionResult(
-        new DateRange(effectiveStartDateTime, effectiveEndDateTime), accountCalcs, isRecalculating);
+        new DateRange(
+            affectedRanges.get(0).getStartDate(),
+            affectedRanges.get(affectedRanges.size() - 1).getEndDate()),
+        accountCalcs,
+        isRecalculating,
+        affectedRanges,
+        dirtyHours);
+  }
+
+  /**
+   * Merge the requested range and the changed hours into sorted, non-overlapping ranges of whole
+   * hours. Range ends are exclusive.
+   */
+  private List<DateRange> mergeReplayRanges(DateRange range, List<EventDirtyHour> dirtyHours) {
+    List<DateRange> candidates = new ArrayList<>();
+    candidates.add(range);
+    dirtyHours.stream()
+        .map(EventDirtyHour::getHour)
+        .forEach(hour -> candidates.add(new DateRange(hour, hour.plusHours(1))));
+    candidates.sort((a, b) -> a.getStartDate().compareTo(b.getStartDate()));
+
+    List<DateRange> merged = new ArrayList<>();
+    OffsetDateTime start = null;
+    OffsetDateTime end = null;
+    for (DateRange candidate : candidates) {
+      if (end != null && !candidate.getStartDate().isAfter(end)) {
+        end = candidate.getEndDate().isAfter(end) ? candidate.getEndDate() : end;
+        continue;
+      }
+      if (end != null) {
+        merged.add(new DateRange(start, end));
+      }
+      start = candidate.getStartDate();
+      end = candidate.getEndDate();
+    }
+    merged.add(new DateRange(start, end));
+    return merged;
+  }
+
+  private void recalculateMonthlyTotals(
+      AccountServiceInventory accountServiceInventory, OffsetDateTime month) {
+    Map<String, Host> instances = accountServiceInventory.getServiceInstances();
+    instances.values().forEach(instance -> instance.clearMonthlyTotal(month));
+    try (Stream<Object[]> totals =
+        eventController.sumMeasurementsByInstanceAndMonth(
+            accountServiceInventory.getAccountNumber(),
+            accountServiceInventory.getServiceType(),
+            month,
+            month.plusMonths(1))) {
+      totals.forEach(
+          row -> {
+            Host instance = instances.get((String) row[0]);
+            if (instance != null) {
+              instance.addToMonthlyTotal(
+                  (String) row[2],
+                  Measurement.Uom.fromValue((String) row[1]),
+                  ((Number) row[3]).doubleValue());
+            }
+          });
+    }
+  }
+
+  /**
+   * Mark the changed hours replayed by a collection as tallied. Should only be called once the
+   * snapshots for the collection have been produced, so that the hours are replayed again if that
+   * fails.
+   *
+   * @param result the collection result
+   */
+  public void markHoursTallied(CollectionResult result) {
+    eventController.clearDirtyHours(result.getTalliedDirtyHours());
   }
 
   @Transactional
@@ -163,7 +359,7 @@ public class MetricUsageCollector {
 
     Map<String, List<Event>> eventToHostMapping =
         eventController
-            .fetchEventsInTimeRangeByServiceType(
+            .fetchTallyEventsInTimeRangeByServiceType(
                 accountServiceInventory.getAccountNumber(),
                 accountServiceInventory.getServiceType(),
                 startDateTime,
@@ -175,22 +371,96 @@ public class MetricUsageCollector {
     Map<String, Host> thisHoursInstances = new HashMap<>();
     eventToHostMapping.forEach(
         (instanceId, events) -> {
-          Host existing = accountServiceInventory.getServiceInstances().get(instanceId);
-          Host host = existing == null ? new Host() : existing;
-          // Clear all measurements before processing the events so that we do
-          // not add old measurements to the new account calculations. Once collect()
-          // is completed, the instance will contain the measurements of the last hour
-          // collected.
-          host.getMeasurements().clear();
+          Host host = startInstanceHour(accountServiceInventory, instanceId);
           thisHoursInstances.put(instanceId, host);
-          accountServiceInventory.getServiceInstances().put(instanceId, host);
-
-          events.forEach(event -> updateInstanceFromEvent(event, host, serviceTypeMeta));
+          events.forEach(event -> updateInstanceFromEvent(event, host, serviceTypeMeta, true));
         });
 
     return tallyCurrentAccountState(accountServiceInventory.getAccountNumber(), thisHoursInstances);
   }
 
+  /**
+   * Collects every hour in the given range from a single scan of the event store.
+   *
+   * <p>Events are streamed in timestamp order and bucketed into hours as they arrive. Each hour is
+   * tallied as soon as the first event of a later hour is seen, which yields the same calculations
+   * as invoking {@link #collectHour} for each hour of the range.
+   *
+   * @param accountServiceInventory the inventory whose instances are updated from the events
+   * @param startDateTime start of the range (inclusive), at the top of the hour
+   * @param endDateTime end of the range (exclusive), at the top of the hour
+   * @param accumulateMonthlyTotals whether event measurements are added to the monthly totals
+   * @return the calculations for each hour that had events, keyed by the start of the hour
+   */
+  private Map<OffsetDateTime, AccountUsageCalculation> collectRange(
+      AccountServiceInventory accountServiceInventory,
+      OffsetDateTime startDateTime,
+      OffsetDateTime endDateTime,
+      boolean accumulateMonthlyTotals) {
+    Optional<TagMetaData> serviceTypeMeta =
+        tagProfile.getTagMetaDataByServiceType(accountServiceInventory.getServiceType());
+    String accountNumber = accountServiceInventory.getAccountNumber();
+
+    Map<OffsetDateTime, AccountUsageCalculation> accountCalcs = new HashMap<>();
+    try (Stream<Event> events =
+        eventController.fetchTallyEventsInTimeRangeByServiceType(
+            accountNumber, accountServiceInventory.getServiceType(), startDateTime, endDateTime)) {
+      OffsetDateTime currentHour = null;
+      Map<String, Host> thisHoursInstances = new HashMap<>();
+      Iterator<Event> iterator = events.iterator();
+      while (iterator.hasNext()) {
+        Event event = iterator.next();
+        // Derive the hour from the range start rather than the event timestamp, so that the keys
+        // match those produced by hour-by-hour collection regardless of the event's offset.
+        OffsetDateTime eventHour =
+            startDateTime.plusHours(
+                Duration.between(startDateTime, event.getTimestamp()).toHours());
+        if (!eventHour.equals(currentHour)) {
+          if (currentHour != null) {
+            putHourCalculation(
+                accountCalcs,
+                currentHour,
+                tallyCurrentAccountState(accountNumber, thisHoursInstances));
+          }
+          currentHour = eventHour;
+          thisHoursInstances = new HashMap<>();
+        }
+        Host host =
+            thisHoursInstances.computeIfAbsent(
+                event.getInstanceId(),
+                instanceId -> startInstanceHour(accountServiceInventory, instanceId));
+        updateInstanceFromEvent(event, host, serviceTypeMeta, accumulateMonthlyTotals);
+      }
+      if (currentHour != null) {
+        putHourCalculation(
+            accountCalcs, currentHour, tallyCurrentAccountState(accountNumber, thisHoursInstances));
+      }
+    }
+    return accountCalcs;
+  }
+
+  private Host startInstanceHour(
+      AccountServiceInventory accountServiceInventory, String instanceId) {
+    Host existing = accountServiceInventory.getServiceInstances().get(instanceId);
+    Host host = existing == null ? new Host() : existing;
+    // Clear all measurements before processing the events so that we do
+    // not add old measurements to the new account calculations. Once collect()
+    // is completed, the instance will contain the measurements of the last hour
+    // collected.
+    host.getMeasurements().clear();
+    accountServiceInventory.getServiceInstances().put(instanceId, host);
+    return host;
+  }
+
+  private void putHourCalculation(
+      Map<OffsetDateTime, AccountUsageCalculation> accountCalcs,
+      OffsetDateTime hour,
+      AccountUsageCalculation accountUsageCalculation) {
+    if (accountUsageCalculation != null && !accountUsageCalculation.getKeys().isEmpty()) {
+      accountCalcs.put(hour, accountUsageCalculation);
+    }
+  }
+
   private AccountUsageCalculation tallyCurrentAccountState(
       String accountNumber, Map<String, Host> thisHoursInstances) {
     if (thisHoursInstances.isEmpty()) {
@@ -226,7 +496,10 @@ public class MetricUsageCollector {
   }
 
   private void updateInstanceFromEvent(
-      Event event, Host instance, Optional<TagMetaData> serviceTypeMeta) {
+      Event event,
+      Host instance,
+      Optional<TagMetaData> serviceTypeMeta,
+      boolean accumulateMonthlyTotals) {
     // fields that we expect to always be present
     instance.setAccountNumber(event.getAccountNumber());
     instance.setInstanceType(event.getServiceType());
@@ -254,8 +527,10 @@ public class MetricUsageCollector {
         .forEach(
             measurement -> {
               instance.setMeasurement(measurement.getUom(), measurement.getValue());
-              instance.addToMonthlyTotal(
-                  event.getTimestamp(), measurement.getUom(), measurement.getValue());
+              if (accumulateMonthlyTotals) {
+                instance.addToMonthlyTotal(
+                    event.getTimestamp(), measurement.getUom(), measurement.getValue());
+              }
             });
     addBucketsFromEvent(instance, event, serviceTypeMeta);
   }
@@ -446,5 +721,9 @@ public class MetricUsageCollector {
     private DateRange range;
     private Map<OffsetDateTime, AccountUsageCalculation> calculations;
     private boolean wasRecalculated;
+    /** Ranges whose hourly snapshots should be replaced by the calculations. */
+    private List<DateRange> affectedRanges;
+    /** Changed hours that were replayed, to be cleared once snapshots are produced. */
+    private List<EventDirtyHour> talliedDirtyHours;
   }
 }
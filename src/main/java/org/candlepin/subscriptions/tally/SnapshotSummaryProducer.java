@@ -20,10 +20,12 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
@@ -35,10 +37,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
 
-/** Component that produces tally snapshot summary messages given a list of tally snapshots. */
+/**
+ * Component that produces tally snapshot summary messages given a list of tally snapshots.
+ *
+ * <p>Each account's snapshots are grouped into TallySummary messages of at most {@link
+ * TallySummaryProperties#getMaxSnapshotsPerMessage()} snapshots, keyed by account. All messages are
+ * handed to the producer before waiting on any of them, so that the producer can batch and
+ * compress them; only the messages that fail are resent through the retry template.
+ */
 @Service
 public class SnapshotSummaryProducer {
   private static final Logger log = LoggerFactory.getLogger(SnapshotSummaryProducer.class);
@@ -46,41 +57,101 @@ public class SnapshotSummaryProducer {
   private final String tallySummaryTopic;
   private final KafkaTemplate<String, TallySummary> tallySummaryKafkaTemplate;
   private final RetryTemplate kafkaRetryTemplate;
+  private final int maxSnapshotsPerMessage;
+  private final long sendTimeoutMillis;
 
   @Autowired
   protected SnapshotSummaryProducer(
       @Qualifier("tallySummaryKafkaTemplate")
           KafkaTemplate<String, TallySummary> tallySummaryKafkaTemplate,
       @Qualifier("tallySummaryKafkaRetryTemplate") RetryTemplate kafkaRetryTemplate,
-      @Qualifier("rhMarketplaceTasks") TaskQueueProperties props) {
+      @Qualifier("rhMarketplaceTasks") TaskQueueProperties props,
+      TallySummaryProperties tallySummaryProperties) {
     this.tallySummaryTopic = props.getTopic();
     this.kafkaRetryTemplate = kafkaRetryTemplate;
     this.tallySummaryKafkaTemplate = tallySummaryKafkaTemplate;
+    this.maxSnapshotsPerMessage = Math.max(1, tallySummaryProperties.getMaxSnapshotsPerMessage());
+    this.sendTimeoutMillis = tallySummaryProperties.getSendTimeout().toMillis();
   }
 
   public void produceTallySummaryMessages(Map<String, List<TallySnapshot>> newAndUpdatedSnapshots) {
-    AtomicInteger totalTallies = new AtomicInteger();
+    List<TallySummary> summaries = new ArrayList<>();
     newAndUpdatedSnapshots.forEach(
-        (account, snapshots) ->
-            snapshots.stream()
-                .map(snapshot -> createTallySummary(account, List.of(snapshot)))
-                .forEach(
-                    summary -> {
-                      if (validateTallySummary(summary)) {
-                        kafkaRetryTemplate.execute(
-                            ctx -> tallySummaryKafkaTemplate.send(tallySummaryTopic, summary));
-                        totalTallies.getAndIncrement();
-                      }
-                    }));
-
-    log.info("Produced {} TallySummary messages", totalTallies);
+        (account, snapshots) -> summaries.addAll(createTallySummaries(account, snapshots)));
+
+    List<ListenableFuture<SendResult<String, TallySummary>>> sends = new ArrayList<>();
+    summaries.forEach(summary -> sends.add(send(summary)));
+
+    int failed = 0;
+    for (int i = 0; i < summaries.size(); i++) {
+      if (!awaitSent(sends.get(i)) && !resend(summaries.get(i))) {
+        failed++;
+      }
+    }
+
+    int totalSnapshots =
+        summaries.stream().mapToInt(summary -> summary.getTallySnapshots().size()).sum();
+    log.info(
+        "Produced {} TallySummary messages with {} snapshots",
+        summaries.size() - failed,
+        totalSnapshots);
+    if (failed > 0) {
+      log.error("Unable to produce {} TallySummary messages", failed);
+    }
   }
 
-  private TallySummary createTallySummary(
+  private List<TallySummary> createTallySummaries(
       String accountNumber, List<TallySnapshot> tallySnapshots) {
-    var mappedSnapshots =
-        tallySnapshots.stream().map(this::mapTallySnapshot).collect(Collectors.toList());
-    return new TallySummary().withAccountNumber(accountNumber).withTallySnapshots(mappedSnapshots);
+    List<org.candlepin.subscriptions.json.TallySnapshot> validSnapshots =
+        tallySnapshots.stream()
+            .map(this::mapTallySnapshot)
+            .filter(snapshot -> validateTallySnapshot(accountNumber, snapshot))
+            .collect(Collectors.toList());
+
+    List<TallySummary> summaries = new ArrayList<>();
+    for (int i = 0; i < validSnapshots.size(); i += maxSnapshotsPerMessage) {
+      List<org.candlepin.subscriptions.json.TallySnapshot> chunk =
+          validSnapshots.subList(i, Math.min(i + maxSnapshotsPerMessage, validSnapshots.size()));
+      summaries.add(createTallySummary(accountNumber, new ArrayList<>(chunk)));
+    }
+    return summaries;
+  }
+
+  private ListenableFuture<SendResult<String, TallySummary>> send(TallySummary summary) {
+    return tallySummaryKafkaTemplate.send(tallySummaryTopic, summary.getAccountNumber(), summary);
+  }
+
+  private boolean awaitSent(ListenableFuture<SendResult<String, TallySummary>> sent) {
+    try {
+      sent.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while producing TallySummary messages", e);
+    } catch (ExecutionException | TimeoutException e) {
+      log.warn("Unable to produce TallySummary message, retrying.", e);
+      return false;
+    }
+  }
+
+  private boolean resend(TallySummary summary) {
+    try {
+      kafkaRetryTemplate.execute(
+          ctx -> send(summary).get(sendTimeoutMillis, TimeUnit.MILLISECONDS));
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while producing TallySummary messages", e);
+    } catch (Exception e) {
+      log.error(
+          "Unable to produce TallySummary message for account {}", summary.getAccountNumber(), e);
+      return false;
+    }
+  }
+
+  private TallySummary createTallySummary(
+      String accountNumber, List<org.candlepin.subscriptions.json.TallySnapshot> tallySnapshots) {
+    return new TallySummary().withAccountNumber(accountNumber).withTallySnapshots(tallySnapshots);
   }
 
   private org.candlepin.subscriptions.json.TallySnapshot mapTallySnapshot(
@@ -127,23 +198,22 @@ public class SnapshotSummaryProducer {
   }
 
   /**
-   * Validates a TallySummary to make sure that it has all the information required by the RH
-   * marketplace API. Any issues will be logged.
+   * Validates a snapshot to make sure that it has all the information required by the RH
+   * marketplace API. Any issues will be logged, and the snapshot is left out of the summary.
    *
-   * @param summary the summary to validate.
-   * @return true if the TallySummary is valid, false otherwise.
+   * @param accountNumber the account of the snapshot.
+   * @param snapshot the snapshot to validate.
+   * @return true if the snapshot is valid, false otherwise.
    */
-  private boolean validateTallySummary(TallySummary summary) {
+  private boolean validateTallySnapshot(
+      String accountNumber, org.candlepin.subscriptions.json.TallySnapshot snapshot) {
     // RH Marketplace requires at least one measurement be included in the Event
-    Optional<org.candlepin.subscriptions.json.TallySnapshot> invalidDueToMeasurements =
-        summary.getTallySnapshots().stream()
-            .filter(snap -> snap.getTallyMeasurements().isEmpty())
-            .findFirst();
-    if (invalidDueToMeasurements.isPresent()) {
+    if (snapshot.getTallyMeasurements().isEmpty()) {
       log.warn(
-          "One or more tally summary snapshots did not have measurements. "
-              + "No usage will be sent to RH marketplace for this summary.\n{}",
-          summary);
+          "Tally snapshot for account {} did not have measurements. "
+              + "No usage will be sent to RH marketplace for this snapshot.\n{}",
+          accountNumber,
+          snapshot);
       return false;
     }
 
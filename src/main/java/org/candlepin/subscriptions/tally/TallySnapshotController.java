@@ -22,7 +22,9 @@ package org.candlepin.subscriptions.tally;
 
 import io.micrometer.core.annotation.Timed;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -86,16 +88,11 @@ public class TallySnapshotController {
   public void produceSnapshotsForAccount(String account) {
     log.info("Producing snapshots for account {}.", account);
     Map<String, AccountUsageCalculation> accountCalcs = new HashMap<>();
-    try {
-      accountCalcs.putAll(
-          retryTemplate.execute(
-              context -> usageCollector.collect(this.applicableProducts, account)));
-      if (props.isCloudigradeEnabled()) {
-        attemptCloudigradeEnrichment(account, accountCalcs);
-      }
-    } catch (Exception e) {
-      log.error("Could not collect existing usage snapshots for account {}", account, e);
-      return;
+    // Failures are left to the caller, so that an account that could not be tallied is reported.
+    accountCalcs.putAll(
+        retryTemplate.execute(context -> usageCollector.collect(this.applicableProducts, account)));
+    if (props.isCloudigradeEnabled()) {
+      attemptCloudigradeEnrichment(account, accountCalcs);
     }
 
     maxSeenSnapshotStrategy.produceSnapshotsFromCalculations(account, accountCalcs.values());
@@ -103,6 +100,7 @@ public class TallySnapshotController {
 
   @Timed("rhsm-subscriptions.snapshots.single.hourly")
   public void produceHourlySnapshotsForAccount(String accountNumber, DateRange snapshotRange) {
+    List<Exception> failures = new ArrayList<>();
     tagProfile
         .getServiceTypes()
         .forEach(
@@ -129,21 +127,46 @@ public class TallySnapshotController {
                         .filter(TallySnapshotController::isCombiningRollupStrategySupported)
                         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
-                combiningRollupSnapshotStrategy.produceSnapshotsFromCalculations(
-                    accountNumber,
-                    result.getRange(),
-                    tagProfile.getTagsForServiceType(serviceType),
-                    applicableUsageCalculations,
-                    Granularity.HOURLY,
-                    Double::sum);
+                // An incremental tally may replay several disjoint ranges; snapshots are only
+                // replaced within each of them so that hours in between are left untouched.
+                for (DateRange affectedRange : result.getAffectedRanges()) {
+                  combiningRollupSnapshotStrategy.produceSnapshotsFromCalculations(
+                      accountNumber,
+                      affectedRange,
+                      tagProfile.getTagsForServiceType(serviceType),
+                      calculationsWithin(applicableUsageCalculations, affectedRange),
+                      Granularity.HOURLY,
+                      Double::sum);
+                }
+                metricUsageCollector.markHoursTallied(result);
                 log.info("Finished producing hourly snapshots for account: {}", accountNumber);
               } catch (Exception e) {
                 log.error(
                     "Could not collect metrics and/or produce snapshots for account {}",
                     accountNumber,
                     e);
+                failures.add(e);
               }
             });
+
+    // Every service type is attempted, but the range is only reported as tallied if all succeeded.
+    if (!failures.isEmpty()) {
+      IllegalStateException failure =
+          new IllegalStateException(
+              String.format(
+                  "Could not produce hourly snapshots for account %s between %s and %s",
+                  accountNumber, snapshotRange.getStartString(), snapshotRange.getEndString()),
+              failures.get(0));
+      failures.stream().skip(1).forEach(failure::addSuppressed);
+      throw failure;
+    }
+  }
+
+  private static Map<OffsetDateTime, AccountUsageCalculation> calculationsWithin(
+      Map<OffsetDateTime, AccountUsageCalculation> calculations, DateRange range) {
+    return calculations.entrySet().stream()
+        .filter(entry -> range.contains(entry.getKey()))
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
   }
 
   private void attemptCloudigradeEnrichment(
@@ -37,4 +37,19 @@ public class TallySummaryProperties {
 
   /** Retry exponential backoff multiplier. */
   private Double backOffMultiplier;
+
+  /** Maximum number of snapshots sent in a single TallySummary message. */
+  private int maxSnapshotsPerMessage = 100;
+
+  /** How long to wait for the broker to acknowledge a TallySummary message before retrying it. */
+  private Duration sendTimeout = Duration.ofSeconds(30);
+
+  /** How long the producer waits for more messages before sending a batch (linger.ms). */
+  private Duration linger = Duration.ofMillis(100);
+
+  /** Maximum size in bytes of a producer batch (batch.size). */
+  private int batchSize = 131072;
+
+  /** Compression applied to producer batches (compression.type). */
+  private String compressionType = "lz4";
 }
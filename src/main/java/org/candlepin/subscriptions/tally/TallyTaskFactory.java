@@ -48,12 +48,17 @@ import org.springframework.util.CollectionUtils;
 public class TallyTaskFactory implements TaskFactory {
   private static final Logger log = LoggerFactory.getLogger(TallyTaskFactory.class);
   private final TallySnapshotController snapshotController;
+  private final AccountBatchTallyController batchTallyController;
   private final ExecutableValidator validator;
 
   @Autowired
-  public TallyTaskFactory(Validator validator, TallySnapshotController snapshotController) {
+  public TallyTaskFactory(
+      Validator validator,
+      TallySnapshotController snapshotController,
+      AccountBatchTallyController batchTallyController) {
     this.validator = validator.forExecutables();
     this.snapshotController = snapshotController;
+    this.batchTallyController = batchTallyController;
   }
 
   /**
@@ -66,7 +71,8 @@ public class TallyTaskFactory implements TaskFactory {
   @Override
   public Task build(TaskDescriptor taskDescriptor) {
     if (taskDescriptor.getTaskType() == TaskType.UPDATE_SNAPSHOTS) {
-      return new UpdateAccountSnapshotsTask(snapshotController, taskDescriptor.getArg("accounts"));
+      return new UpdateAccountSnapshotsTask(
+          batchTallyController, taskDescriptor.getArg("accounts"));
     }
 
     if (taskDescriptor.getTaskType() == TaskType.UPDATE_HOURLY_SNAPSHOTS) {
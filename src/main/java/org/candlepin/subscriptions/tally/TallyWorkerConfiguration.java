@@ -23,9 +23,16 @@ package org.candlepin.subscriptions.tally;
 import static org.candlepin.subscriptions.task.queue.kafka.KafkaTaskProducerConfiguration.getConfigProps;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.cloudigrade.CloudigradeClientConfiguration;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
@@ -37,6 +44,8 @@ import org.candlepin.subscriptions.product.ProductConfiguration;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.tally.billing.BillingProducerConfiguration;
 import org.candlepin.subscriptions.tally.facts.FactNormalizer;
+import org.candlepin.subscriptions.task.CoalescingTaskFactory;
+import org.candlepin.subscriptions.task.TaskFactory;
 import org.candlepin.subscriptions.task.TaskQueueProperties;
 import org.candlepin.subscriptions.task.queue.TaskConsumer;
 import org.candlepin.subscriptions.task.queue.TaskConsumerConfiguration;
@@ -59,6 +68,7 @@ import org.springframework.retry.backoff.FixedBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.retry.support.RetryTemplateBuilder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
  * Configuration for the "worker" profile.
@@ -137,6 +147,28 @@ public class TallyWorkerConfiguration {
     return retryTemplate;
   }
 
+  @Bean(name = "accountTallyExecutor", destroyMethod = "shutdown")
+  public ExecutorService accountTallyExecutor(
+      ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            applicationProperties.getAccountTallyConcurrency(),
+            new CustomizableThreadFactory("account-tally-"));
+    return ExecutorServiceMetrics.monitor(meterRegistry, executor, "accountTallyExecutor");
+  }
+
+  @Bean(name = "inventoryScanExecutor", destroyMethod = "shutdown")
+  public ExecutorService inventoryScanExecutor(
+      ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+    // Every account tallied concurrently may scan its hosts with all partitions at once.
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            applicationProperties.getAccountTallyConcurrency()
+                * applicationProperties.getInventoryScanPartitions(),
+            new CustomizableThreadFactory("inventory-scan-"));
+    return ExecutorServiceMetrics.monitor(meterRegistry, executor, "inventoryScanExecutor");
+  }
+
   @Bean(name = "applicableProducts")
   public Set<String> applicableProducts(TagProfile tagProfile) {
     Set<String> products = new HashSet<>();
@@ -154,26 +186,48 @@ public class TallyWorkerConfiguration {
   public TaskConsumer tallyTaskProcessor(
       @Qualifier("tallyTaskQueueProperties") TaskQueueProperties taskQueueProperties,
       TaskConsumerFactory<? extends TaskConsumer> taskConsumerFactory,
-      TallyTaskFactory taskFactory) {
-
-    return taskConsumerFactory.createTaskConsumer(taskFactory, taskQueueProperties);
+      TallyTaskFactory taskFactory,
+      ApplicationClock clock,
+      MeterRegistry meterRegistry) {
+
+    Duration coalesceWindow = taskQueueProperties.getCoalesceWindow();
+    TaskFactory factory =
+        coalesceWindow.isZero()
+            ? taskFactory
+            : new CoalescingTaskFactory(taskFactory, coalesceWindow, clock, meterRegistry);
+    return taskConsumerFactory.createTaskConsumer(factory, taskQueueProperties);
   }
 
   @Bean
   public MetricUsageCollector metricUsageCollector(
+      ApplicationProperties applicationProperties,
       TagProfile tagProfile,
       AccountServiceInventoryRepository accountServiceInventoryRepository,
       EventController eventController,
       ApplicationClock clock) {
     return new MetricUsageCollector(
-        tagProfile, accountServiceInventoryRepository, eventController, clock);
+        tagProfile,
+        accountServiceInventoryRepository,
+        eventController,
+        clock,
+        applicationProperties.isSingleScanHourlyTallyEnabled(),
+        applicationProperties.isIncrementalHourlyTallyEnabled());
   }
 
   @Bean
   public ProducerFactory<String, TallySummary> tallySummaryProducerFactory(
-      KafkaProperties kafkaProperties, ObjectMapper objectMapper) {
+      KafkaProperties kafkaProperties,
+      ObjectMapper objectMapper,
+      TallySummaryProperties tallySummaryProperties) {
+    // Summaries are sent in bursts at the end of each tally, so let the producer batch and
+    // compress them.
+    Map<String, Object> configProps = new HashMap<>(getConfigProps(kafkaProperties));
+    configProps.put(ProducerConfig.LINGER_MS_CONFIG, tallySummaryProperties.getLinger().toMillis());
+    configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, tallySummaryProperties.getBatchSize());
+    configProps.put(
+        ProducerConfig.COMPRESSION_TYPE_CONFIG, tallySummaryProperties.getCompressionType());
     DefaultKafkaProducerFactory<String, TallySummary> factory =
-        new DefaultKafkaProducerFactory<>(getConfigProps(kafkaProperties));
+        new DefaultKafkaProducerFactory<>(configProps);
     /*
     Use our customized ObjectMapper. Notably, the spring-kafka default ObjectMapper writes dates as
     timestamps, which produces messages not compatible with JSON-B deserialization.
@@ -32,7 +32,9 @@ import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountListSource;
 import org.candlepin.subscriptions.tally.AccountListSourceException;
 import org.candlepin.subscriptions.tally.TallyTaskQueueConfiguration;
+import org.candlepin.subscriptions.task.CoalescingTaskFactory;
 import org.candlepin.subscriptions.task.TaskDescriptor;
+import org.candlepin.subscriptions.task.TaskDescriptor.TaskDescriptorBuilder;
 import org.candlepin.subscriptions.task.TaskManagerException;
 import org.candlepin.subscriptions.task.TaskQueueProperties;
 import org.candlepin.subscriptions.task.TaskType;
@@ -63,6 +65,7 @@ public class CaptureSnapshotsTaskManager {
   private final TaskQueue queue;
   private final AccountListSource accountListSource;
   private final ApplicationClock applicationClock;
+  private final boolean stampQueuedAt;
 
   @Autowired
   public CaptureSnapshotsTaskManager(
@@ -77,6 +80,7 @@ public class CaptureSnapshotsTaskManager {
     this.queue = queue;
     this.accountListSource = accountListSource;
     this.applicationClock = applicationClock;
+    this.stampQueuedAt = !tallyTaskQueueProperties.getCoalesceWindow().isZero();
   }
 
   /**
@@ -87,7 +91,7 @@ public class CaptureSnapshotsTaskManager {
   @SuppressWarnings("indentation")
   public void updateAccountSnapshots(String accountNumber) {
     queue.enqueue(
-        TaskDescriptor.builder(TaskType.UPDATE_SNAPSHOTS, taskQueueProperties.getTopic())
+        taskBuilder(TaskType.UPDATE_SNAPSHOTS)
             .setSingleValuedArg("accounts", accountNumber)
             .build());
   }
@@ -144,7 +148,7 @@ public class CaptureSnapshotsTaskManager {
         tallyRange.getEndString());
 
     queue.enqueue(
-        TaskDescriptor.builder(TaskType.UPDATE_HOURLY_SNAPSHOTS, taskQueueProperties.getTopic())
+        taskBuilder(TaskType.UPDATE_HOURLY_SNAPSHOTS)
             .setSingleValuedArg("accountNumber", accountNumber)
             .setSingleValuedArg("startDateTime", tallyRange.getStartString())
             .setSingleValuedArg("endDateTime", tallyRange.getEndString())
@@ -189,6 +193,22 @@ public class CaptureSnapshotsTaskManager {
     }
   }
 
+  /**
+   * Start describing a tally task. When tally tasks are coalesced, the task is stamped with the
+   * time it was queued, so that the consumer can skip it if an equivalent task starts later.
+   *
+   * @see CoalescingTaskFactory
+   */
+  private TaskDescriptorBuilder taskBuilder(TaskType taskType) {
+    TaskDescriptorBuilder builder =
+        TaskDescriptor.builder(taskType, taskQueueProperties.getTopic());
+    if (stampQueuedAt) {
+      builder.setSingleValuedArg(
+          CoalescingTaskFactory.QUEUED_AT_ARG, applicationClock.now().toString());
+    }
+    return builder;
+  }
+
   protected OffsetDateTime adjustTimeForLatency(
       OffsetDateTime dateTime, Duration adjustmentAmount) {
     // Convert to a ZonedDateTime before subtracting the duration.  A ZonedDateTime will hold the
@@ -223,7 +243,7 @@ public class CaptureSnapshotsTaskManager {
     public void flush() {
       try {
         taskQueue.enqueue(
-            TaskDescriptor.builder(TaskType.UPDATE_SNAPSHOTS, taskQueueProperties.getTopic())
+            taskBuilder(TaskType.UPDATE_SNAPSHOTS)
                 // clone the list so that we can be sure that we don't clear references
                 // out from under the task queue should delivery be delayed for any reason.
                 .setArg("accounts", new ArrayList<>(queuedAccounts))
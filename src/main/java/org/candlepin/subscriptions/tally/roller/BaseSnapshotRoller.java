@@ -22,13 +22,8 @@ package org.candlepin.subscriptions.tally.roller;
 
 import java.time.OffsetDateTime;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
@@ -128,65 +123,36 @@ public abstract class BaseSnapshotRoller {
     }
   }
 
-  @SuppressWarnings("indentation")
-  protected List<TallySnapshot> getCurrentSnapshotsByAccount(
-      String account,
-      Collection<String> products,
-      Granularity granularity,
-      OffsetDateTime begin,
-      OffsetDateTime end) {
-    try (Stream<TallySnapshot> snapStream =
-        tallyRepo.findByAccountNumberAndProductIdInAndGranularityAndSnapshotDateBetween(
-            account, products, granularity, begin, end)) {
-      return snapStream.collect(Collectors.toList());
+  /**
+   * Apply a usage calculation to the snapshot of the given granularity, creating the snapshot if it
+   * does not exist yet.
+   *
+   * @param accountCalc the current calculations for the account.
+   * @param usageKey the key of the calculation to apply.
+   * @param targetGranularity the granularity of the snapshot.
+   * @param existing the existing snapshot for the key, or null if there is none.
+   * @return the new or changed snapshot that needs to be persisted, or null if nothing changed.
+   */
+  protected TallySnapshot updateSnapshot(
+      AccountUsageCalculation accountCalc,
+      UsageCalculation.Key usageKey,
+      Granularity targetGranularity,
+      TallySnapshot existing) {
+    if (!tagProfile.tagSupportsGranularity(usageKey.getProductId(), targetGranularity)) {
+      return null;
     }
-  }
 
-  protected Collection<TallySnapshot> updateSnapshots(
-      Collection<AccountUsageCalculation> accountCalcs,
-      Map<String, List<TallySnapshot>> existingSnaps,
-      Granularity targetGranularity) {
-    List<TallySnapshot> snaps = new LinkedList<>();
-    for (AccountUsageCalculation accountCalc : accountCalcs) {
-      String account = accountCalc.getAccount();
-
-      Map<UsageCalculation.Key, TallySnapshot> accountSnapsByUsageKey = new HashMap<>();
-      if (existingSnaps.containsKey(account)) {
-        accountSnapsByUsageKey =
-            existingSnaps.get(account).stream()
-                .collect(
-                    Collectors.toMap(
-                        UsageCalculation.Key::fromTallySnapshot,
-                        Function.identity(),
-                        this::handleDuplicateSnapshot));
-      }
-
-      for (UsageCalculation.Key usageKey : accountCalc.getKeys()) {
-        boolean isGranularitySupported =
-            tagProfile.tagSupportsGranularity(usageKey.getProductId(), targetGranularity);
-
-        if (isGranularitySupported) {
-          TallySnapshot snap = accountSnapsByUsageKey.get(usageKey);
-          UsageCalculation productCalc = accountCalc.getCalculation(usageKey);
-          if (snap == null && productCalc.hasMeasurements()) {
-            snap =
-                createSnapshotFromProductUsageCalculation(
-                    accountCalc.getAccount(),
-                    accountCalc.getOwner(),
-                    productCalc,
-                    targetGranularity);
-            snaps.add(snap);
-          } else if (snap != null && updateMaxValues(snap, productCalc)) {
-            snaps.add(snap);
-          }
-        }
-      }
+    UsageCalculation productCalc = accountCalc.getCalculation(usageKey);
+    if (existing == null && productCalc.hasMeasurements()) {
+      return createSnapshotFromProductUsageCalculation(
+          accountCalc.getAccount(), accountCalc.getOwner(), productCalc, targetGranularity);
+    } else if (existing != null && updateMaxValues(existing, productCalc)) {
+      return existing;
     }
-    log.debug("Persisting {} {} snapshots.", snaps.size(), targetGranularity);
-    return tallyRepo.saveAll(snaps);
+    return null;
   }
 
-  private TallySnapshot handleDuplicateSnapshot(TallySnapshot snap1, TallySnapshot snap2) {
+  protected TallySnapshot handleDuplicateSnapshot(TallySnapshot snap1, TallySnapshot snap2) {
     log.warn(
         "Removing duplicate TallySnapshot granularity: {}, key: {}",
         snap2.getGranularity(),
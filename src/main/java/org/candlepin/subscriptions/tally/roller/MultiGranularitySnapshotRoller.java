@@ -0,0 +1,130 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.roller;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.UsageCalculation;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.util.DateRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Produces the hourly through yearly snapshots for the current periods in one go. If a snapshot
+ * does not exist for the account for a current period and an incoming calculation exists for the
+ * account, a new snapshot will be created. The account's current snapshots of every granularity are
+ * fetched with one query, the calculations are applied to all granularities in one pass, and all
+ * new and changed snapshots are saved together so that they are written in the same JDBC batches.
+ */
+public class MultiGranularitySnapshotRoller extends BaseSnapshotRoller {
+
+  private static final Logger log = LoggerFactory.getLogger(MultiGranularitySnapshotRoller.class);
+
+  private static final List<Granularity> GRANULARITIES =
+      List.of(
+          Granularity.HOURLY,
+          Granularity.DAILY,
+          Granularity.WEEKLY,
+          Granularity.MONTHLY,
+          Granularity.QUARTERLY,
+          Granularity.YEARLY);
+
+  public MultiGranularitySnapshotRoller(
+      TallySnapshotRepository tallyRepo, ApplicationClock clock, TagProfile tagProfile) {
+    super(tallyRepo, clock, tagProfile);
+  }
+
+  @Override
+  @Transactional
+  public Collection<TallySnapshot> rollSnapshots(
+      String account, Collection<AccountUsageCalculation> accountCalcs) {
+    log.debug("Producing snapshots of all granularities for account {}.", account);
+
+    Set<String> products = new HashSet<>();
+    Map<Granularity, DateRange> currentPeriods = new EnumMap<>(Granularity.class);
+    for (Granularity granularity : GRANULARITIES) {
+      products.addAll(getApplicableProducts(accountCalcs, granularity));
+      currentPeriods.put(
+          granularity, new DateRange(getSnapshotDate(granularity), getPeriodEnd(granularity)));
+    }
+
+    Map<Granularity, Map<UsageCalculation.Key, TallySnapshot>> currentSnaps =
+        new EnumMap<>(Granularity.class);
+    GRANULARITIES.forEach(granularity -> currentSnaps.put(granularity, new HashMap<>()));
+    for (TallySnapshot snap :
+        tallyRepo.findByAccountNumberAndProductIdInAndPeriods(account, products, currentPeriods)) {
+      currentSnaps
+          .get(snap.getGranularity())
+          .merge(UsageCalculation.Key.fromTallySnapshot(snap), snap, this::handleDuplicateSnapshot);
+    }
+
+    List<TallySnapshot> snaps = new ArrayList<>();
+    for (AccountUsageCalculation accountCalc : accountCalcs) {
+      boolean isSameAccount = account.equals(accountCalc.getAccount());
+      for (UsageCalculation.Key usageKey : accountCalc.getKeys()) {
+        for (Granularity granularity : GRANULARITIES) {
+          TallySnapshot existing =
+              isSameAccount ? currentSnaps.get(granularity).get(usageKey) : null;
+          TallySnapshot snap = updateSnapshot(accountCalc, usageKey, granularity, existing);
+          if (snap != null) {
+            snaps.add(snap);
+          }
+        }
+      }
+    }
+    log.debug("Persisting {} snapshots of all granularities.", snaps.size());
+    return tallyRepo.saveAll(snaps);
+  }
+
+  private OffsetDateTime getPeriodEnd(Granularity granularity) {
+    switch (granularity) {
+      case HOURLY:
+        return clock.endOfCurrentHour();
+      case DAILY:
+        return clock.endOfToday();
+      case WEEKLY:
+        return clock.endOfCurrentWeek();
+      case MONTHLY:
+        return clock.endOfCurrentMonth();
+      case QUARTERLY:
+        return clock.endOfCurrentQuarter();
+      case YEARLY:
+        return clock.endOfCurrentYear();
+      default:
+        throw new IllegalArgumentException(
+            String.format("Unsupported granularity: %s", granularity));
+    }
+  }
+}
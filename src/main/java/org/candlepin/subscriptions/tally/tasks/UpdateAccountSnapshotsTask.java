@@ -22,31 +22,26 @@ package org.candlepin.subscriptions.tally.tasks;
 
 import java.util.List;
 import javax.validation.constraints.Size;
-import org.candlepin.subscriptions.tally.TallySnapshotController;
+import org.candlepin.subscriptions.tally.AccountBatchTallyController;
 import org.candlepin.subscriptions.task.Task;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.validation.annotation.Validated;
 
-/** Updates the usage snapshots for a given account. */
+/** Updates the usage snapshots for a batch of accounts. */
 @Validated
 public class UpdateAccountSnapshotsTask implements Task {
-  private static final Logger log = LoggerFactory.getLogger(UpdateAccountSnapshotsTask.class);
 
   private final List<String> accountNumbers;
-  private final TallySnapshotController snapshotController;
+  private final AccountBatchTallyController batchTallyController;
 
   public UpdateAccountSnapshotsTask(
-      TallySnapshotController snapshotController,
-      @Size(min = 1, max = 1) List<String> accountNumbers) {
-    this.snapshotController = snapshotController;
+      AccountBatchTallyController batchTallyController,
+      @Size(min = 1) List<String> accountNumbers) {
+    this.batchTallyController = batchTallyController;
     this.accountNumbers = accountNumbers;
   }
 
   @Override
   public void execute() {
-    String account = accountNumbers.get(0);
-    log.info("Updating snapshots for account {}.", account);
-    snapshotController.produceSnapshotsForAccount(account);
+    batchTallyController.produceSnapshotsForAccounts(accountNumbers);
   }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.db.model.EventDirtyHour;
+import org.candlepin.subscriptions.db.model.EventDirtyHourId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class EventDirtyHourRepositoryTest {
+  private static final OffsetDateTime HOUR = OffsetDateTime.parse("2021-02-03T05:00:00Z");
+
+  @Autowired private EventDirtyHourRepository repository;
+
+  @Test
+  void testMarkingAgainIncrementsVersion() {
+    EventDirtyHourId id = new EventDirtyHourId("account123", "OpenShift Cluster", HOUR);
+    repository.markAll(Set.of(id), 10);
+    repository.markAll(Set.of(id), 10);
+    repository.flush();
+
+    EventDirtyHour found = repository.findById(id).orElseThrow();
+    assertEquals(1, found.getVersion());
+  }
+
+  @Test
+  void testDeleteAllUnchangedKeepsHoursMarkedAgain() {
+    EventDirtyHourId unchanged = new EventDirtyHourId("account123", "OpenShift Cluster", HOUR);
+    EventDirtyHourId changed =
+        new EventDirtyHourId("account123", "OpenShift Cluster", HOUR.plusHours(1));
+    repository.markAll(Set.of(unchanged, changed), 10);
+    repository.flush();
+    List<EventDirtyHour> read =
+        repository
+            .findByIdAccountNumberAndIdServiceTypeAndIdHourBeforeOrderByIdHour(
+                "account123", "OpenShift Cluster", HOUR.plusHours(2))
+            .stream()
+            .map(hour -> new EventDirtyHour(hour.getId(), hour.getVersion()))
+            .collect(Collectors.toList());
+    assertEquals(2, read.size());
+
+    repository.markAll(Set.of(changed), 10);
+    repository.deleteAllUnchanged(read, 10);
+
+    assertFalse(repository.existsById(unchanged));
+    assertTrue(repository.existsById(changed));
+  }
+}
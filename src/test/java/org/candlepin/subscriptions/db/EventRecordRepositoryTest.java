@@ -156,6 +156,53 @@ class EventRecordRepositoryTest {
     assertEquals(e1, found.get(0));
   }
 
+  @SuppressWarnings({"linelength", "indentation"})
+  @Test
+  void findByServiceType() {
+    Event matching = event("account123", "SOURCE", "TYPE", "INSTANCE", OffsetDateTime.now(CLOCK));
+    Event otherServiceType =
+        event("account123", "SOURCE", "TYPE", "INSTANCE2", OffsetDateTime.now(CLOCK));
+    otherServiceType.setServiceType("OTHER_SERVICE_TYPE");
+
+    repository.saveAll(List.of(new EventRecord(matching), new EventRecord(otherServiceType)));
+    repository.flush();
+
+    OffsetDateTime begin = OffsetDateTime.now(CLOCK).minusYears(1);
+    OffsetDateTime end = OffsetDateTime.now(CLOCK).plusYears(1);
+    List<EventRecord> found =
+        repository
+            .findByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
+                "account123", "SERVICE_TYPE", begin, end)
+            .collect(Collectors.toList());
+
+    assertEquals(1, found.size());
+    assertEquals(matching.getEventId(), found.get(0).getId());
+    assertTrue(
+        repository.existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
+            "account123", "OTHER_SERVICE_TYPE", begin, end));
+    assertFalse(
+        repository.existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
+            "account123", "MISSING_SERVICE_TYPE", begin, end));
+  }
+
+  @Test
+  void upsertAllSavesAndUpdatesRecords() {
+    Event event = event("account123", "SOURCE", "TYPE", "INSTANCE", OffsetDateTime.now(CLOCK));
+    repository.upsertAll(List.of(new EventRecord(event)), 10);
+    repository.flush();
+
+    event.setDisplayName(Optional.of("updated"));
+    List<EventRecord> stored = repository.upsertAll(List.of(new EventRecord(event)), 10);
+    repository.flush();
+
+    List<EventRecord> found = repository.findAll();
+    assertEquals(1, found.size());
+    assertEquals(Optional.of("updated"), found.get(0).getEvent().getDisplayName());
+    assertEquals(1, stored.size());
+    assertEquals(found.get(0).getId(), stored.get(0).getId());
+    assertEquals(found.get(0).getId(), stored.get(0).getEvent().getEventId());
+  }
+
   @Test
   void testUniqueConstraints() {
     EventRecord e1 =
@@ -190,13 +237,18 @@ class EventRecordRepositoryTest {
 
     repository.saveAll(List.of(event, event2));
 
-    repository.deleteEventRecordsByTimestampBefore(now.minusDays(30L));
+    repository.deleteEventRecordsBefore(now.minusDays(30L));
 
     var results = repository.findAll();
 
     assertEquals(1, results.size());
   }
 
+  @Test
+  void testCreateEventPartitionsDoesNothingWithoutPartitionedTable() {
+    assertEquals(0, repository.createEventPartitions(3));
+  }
+
   private Event event(
       String account, String source, String type, String instanceId, OffsetDateTime time) {
     UUID eventId = UUID.randomUUID();
@@ -21,7 +21,9 @@
 package org.candlepin.subscriptions.db;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Instant;
 import java.time.OffsetDateTime;
@@ -29,11 +31,16 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.assertj.core.api.Assertions;
 import org.candlepin.subscriptions.db.model.*;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
@@ -679,6 +686,151 @@ class SubscriptionCapacityViewRepositoryTest {
     assertEquals(offering.getDescription(), found.get(0).getProductName());
   }
 
+  @Transactional
+  @Test
+  void shouldSumCapacitiesPerSku() {
+    givenSkuCapacities();
+
+    Page<SkuCapacitySummary> found =
+        repository.findSkuCapacitySummaries(
+            OWNER_ID,
+            PRODUCT_ID,
+            ServiceLevel._ANY,
+            Usage._ANY,
+            NOW,
+            NOW,
+            null,
+            SkuCapacityReportSort.SKU,
+            Sort.Direction.ASC,
+            null);
+
+    assertEquals(2, found.getTotalElements());
+    SkuCapacitySummary unlimited = found.getContent().get(0);
+    assertEquals("testsku1", unlimited.getSku());
+    assertTrue(unlimited.isHasUnlimitedUsage());
+    SkuCapacitySummary limited = found.getContent().get(1);
+    assertEquals("testsku2", limited.getSku());
+    assertEquals(8, limited.getQuantity());
+    assertEquals(8, limited.getPhysicalSockets());
+    assertEquals(40, limited.getVirtualSockets());
+    assertEquals(16, limited.getPhysicalCores());
+    assertEquals(80, limited.getVirtualCores());
+    assertTrue(FAR_FUTURE.isEqual(limited.getNextEventDate()));
+    assertFalse(limited.isHasUnlimitedUsage());
+  }
+
+  @Transactional
+  @Test
+  void shouldSortUnlimitedSkuCapacityLastAscending() {
+    givenSkuCapacities();
+
+    Page<SkuCapacitySummary> found =
+        repository.findSkuCapacitySummaries(
+            OWNER_ID,
+            PRODUCT_ID,
+            ServiceLevel._ANY,
+            Usage._ANY,
+            NOW,
+            NOW,
+            null,
+            SkuCapacityReportSort.TOTAL_CAPACITY,
+            Sort.Direction.ASC,
+            null);
+
+    Assertions.assertThat(found.getContent())
+        .extracting(SkuCapacitySummary::getSku)
+        .containsExactly("testsku2", "testsku1");
+  }
+
+  @Transactional
+  @Test
+  void shouldSortUnlimitedSkuCapacityFirstDescending() {
+    givenSkuCapacities();
+
+    Page<SkuCapacitySummary> found =
+        repository.findSkuCapacitySummaries(
+            OWNER_ID,
+            PRODUCT_ID,
+            ServiceLevel._ANY,
+            Usage._ANY,
+            NOW,
+            NOW,
+            null,
+            SkuCapacityReportSort.TOTAL_CAPACITY,
+            Sort.Direction.DESC,
+            null);
+
+    Assertions.assertThat(found.getContent())
+        .extracting(SkuCapacitySummary::getSku)
+        .containsExactly("testsku1", "testsku2");
+  }
+
+  @Transactional
+  @Test
+  void shouldPageSkuCapacities() {
+    givenSkuCapacities();
+
+    Page<SkuCapacitySummary> found =
+        repository.findSkuCapacitySummaries(
+            OWNER_ID,
+            PRODUCT_ID,
+            ServiceLevel._ANY,
+            Usage._ANY,
+            NOW,
+            NOW,
+            null,
+            SkuCapacityReportSort.SKU,
+            Sort.Direction.DESC,
+            PageRequest.of(0, 1));
+
+    assertEquals(2, found.getTotalElements());
+    Assertions.assertThat(found.getContent())
+        .extracting(SkuCapacitySummary::getSku)
+        .containsExactly("testsku2");
+  }
+
+  /** An unlimited usage SKU with one subscription, and a limited one with two. */
+  private void givenSkuCapacities() {
+    SubscriptionCapacity unlimited = createUnpersisted(NOWISH, FAR_FUTURE);
+    unlimited.setSubscriptionId("12345");
+    unlimited.setSku("testsku1");
+    unlimited.setHasUnlimitedUsage(true);
+    unlimited.setPhysicalSockets(null);
+    unlimited.setVirtualSockets(null);
+    unlimited.setPhysicalCores(null);
+    unlimited.setVirtualCores(null);
+    SubscriptionCapacity limited = createUnpersisted(NOWISH, FAR_FUTURE);
+    limited.setSubscriptionId("12346");
+    limited.setSku("testsku2");
+    SubscriptionCapacity anotherLimited = createUnpersisted(NOWISH, FAR_FUTURE.plusDays(1));
+    anotherLimited.setSubscriptionId("12347");
+    anotherLimited.setSku("testsku2");
+
+    List<SubscriptionCapacity> capacities = List.of(unlimited, limited, anotherLimited);
+    subscriptionRepository.saveAllAndFlush(
+        capacities.stream()
+            .map(
+                capacity ->
+                    createSubscription(
+                        OWNER_ID, ACCOUNT_NUMBER, capacity.getSku(), capacity.getSubscriptionId()))
+            .collect(Collectors.toList()));
+    subscriptionCapacityRepository.saveAllAndFlush(capacities);
+    offeringRepository.saveAllAndFlush(
+        List.of(
+            createOffering(
+                "testsku1",
+                Integer.parseInt(PRODUCT_ID),
+                ServiceLevel.PREMIUM,
+                Usage.PRODUCTION,
+                "role1"),
+            createOffering(
+                "testsku2",
+                Integer.parseInt(PRODUCT_ID),
+                ServiceLevel.PREMIUM,
+                Usage.PRODUCTION,
+                "role1")));
+  }
+
   private SubscriptionCapacity createUnpersisted(OffsetDateTime begin, OffsetDateTime end) {
     SubscriptionCapacity capacity = new SubscriptionCapacity();
     capacity.setAccountNumber(ACCOUNT_NUMBER);
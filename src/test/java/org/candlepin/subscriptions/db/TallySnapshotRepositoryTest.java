@@ -36,6 +36,7 @@ import org.candlepin.subscriptions.db.model.HardwareMeasurement;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallyReportDataPointView;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
 import org.candlepin.subscriptions.db.model.Usage;
 import org.candlepin.subscriptions.json.Measurement;
@@ -245,6 +246,77 @@ class TallySnapshotRepositoryTest {
         expected.getMeasurement(HardwareMeasurementType.TOTAL, Measurement.Uom.CORES));
   }
 
+  @Test
+  void testDeleteSnapshotBatchBeforeDeletesOldestExpiredSnapshotsAcrossAccounts() {
+    TallySnapshot oldest = createUnpersisted("A1", "P1", Granularity.DAILY, 1, 2, 3, LONG_AGO);
+    TallySnapshot expired =
+        createUnpersisted("A2", "P1", Granularity.DAILY, 1, 2, 3, LONG_AGO.plusDays(1));
+    TallySnapshot current = createUnpersisted("A1", "P1", Granularity.DAILY, 1, 2, 3, NOWISH);
+    TallySnapshot weekly = createUnpersisted("A1", "P1", Granularity.WEEKLY, 1, 2, 3, LONG_AGO);
+    repository.saveAll(List.of(oldest, expired, current, weekly));
+    repository.flush();
+
+    assertEquals(1, repository.deleteSnapshotBatchBefore(Granularity.DAILY, NOWISH, 1));
+    assertFalse(repository.existsById(oldest.getId()));
+    assertTrue(repository.existsById(expired.getId()));
+
+    assertEquals(1, repository.deleteSnapshotBatchBefore(Granularity.DAILY, NOWISH, 10));
+    assertEquals(0, repository.deleteSnapshotBatchBefore(Granularity.DAILY, NOWISH, 10));
+
+    List<TallySnapshot> remaining = repository.findAll();
+    assertEquals(2, remaining.size());
+    assertTrue(remaining.stream().anyMatch(snap -> snap.getId().equals(current.getId())));
+    assertTrue(remaining.stream().anyMatch(snap -> snap.getId().equals(weekly.getId())));
+  }
+
+  @Test
+  void testFindReportDataPointsSumsRequestedMeasurements() {
+    TallySnapshot first = createUnpersisted("A1", "P1", Granularity.DAILY, 4, 2, 1, NOWISH);
+    first.setMeasurement(HardwareMeasurementType.PHYSICAL, Uom.CORES, 3.0);
+    first.setMeasurement(HardwareMeasurementType.VIRTUAL, Uom.CORES, 1.0);
+    first.setMeasurement(HardwareMeasurementType.VIRTUAL, Uom.SOCKETS, 7.0);
+    first.setMeasurement(HardwareMeasurementType.AWS, Uom.CORES, 4.0);
+    first.setMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE, Uom.CORES, 8.0);
+    TallySnapshot second =
+        createUnpersisted("A1", "P1", Granularity.DAILY, 2, 1, 1, NOWISH.plusDays(1));
+    TallySnapshot legacy =
+        createUnpersisted("A1", "P1", Granularity.DAILY, 5, 5, 5, NOWISH.plusDays(2));
+    legacy.getTallyMeasurements().clear();
+    TallySnapshot otherAccount = createUnpersisted("A2", "P1", Granularity.DAILY, 9, 9, 9, NOWISH);
+    repository.saveAll(List.of(first, second, legacy, otherAccount));
+    repository.flush();
+
+    List<TallyReportDataPointView> found =
+        repository
+            .findReportDataPoints(
+                "A1",
+                "P1",
+                Granularity.DAILY,
+                ServiceLevel.PREMIUM,
+                Usage.PRODUCTION,
+                BillingProvider._ANY,
+                "sellerAcct",
+                LONG_AGO,
+                FAR_FUTURE,
+                Uom.CORES,
+                List.of(HardwareMeasurementType.PHYSICAL, HardwareMeasurementType.VIRTUAL),
+                null)
+            .getContent();
+
+    assertEquals(3, found.size());
+    assertEquals(first.getId(), found.get(0).getId());
+    assertEquals(NOWISH, found.get(0).getSnapshotDate());
+    assertEquals(4.0, found.get(0).getValue());
+    assertEquals(8.0, found.get(0).getCloudigradeValue());
+    assertEquals(4.0, found.get(0).getAwsValue());
+    assertEquals(6, found.get(0).getMeasurementCount());
+    assertEquals(0.0, found.get(1).getValue());
+    assertNull(found.get(1).getCloudigradeValue());
+    assertEquals(1, found.get(1).getMeasurementCount());
+    assertEquals(legacy.getId(), found.get(2).getId());
+    assertEquals(0, found.get(2).getMeasurementCount());
+  }
+
   private TallySnapshot createUnpersisted(
       String account,
       String product,
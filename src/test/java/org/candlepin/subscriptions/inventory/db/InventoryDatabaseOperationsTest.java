@@ -0,0 +1,138 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.inventory.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryDatabaseOperationsTest {
+
+  @Mock private InventoryRepository repo;
+
+  @Mock private PlatformTransactionManager transactionManager;
+
+  private ExecutorService executor;
+
+  private InventoryDatabaseOperations operations;
+
+  @BeforeEach
+  void setup() {
+    executor = Executors.newFixedThreadPool(4);
+    operations = new InventoryDatabaseOperations(repo, transactionManager, executor);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void partitionsCoverTheWholeIdSpaceWithoutGaps() {
+    List<UUID[]> ranges = InventoryDatabaseOperations.partitionInventoryIds(3);
+
+    assertEquals(3, ranges.size());
+    assertEquals(new UUID(0L, 0L), ranges.get(0)[0]);
+    assertEquals(new UUID(-1L, -1L), ranges.get(2)[1]);
+    for (int i = 1; i < ranges.size(); i++) {
+      UUID previousMax = ranges.get(i - 1)[1];
+      UUID min = ranges.get(i)[0];
+      assertEquals(previousMax.getMostSignificantBits() + 1, min.getMostSignificantBits());
+      assertEquals(-1L, previousMax.getLeastSignificantBits());
+      assertEquals(0L, min.getLeastSignificantBits());
+    }
+  }
+
+  @Test
+  void singlePartitionReadsAllFactsWithOneCursor() {
+    InventoryHostFacts facts = new InventoryHostFacts();
+    when(repo.getFacts(List.of("A1"), 14)).thenReturn(Stream.of(facts));
+    List<CollectingConsumer> partitions =
+        operations.processHostFacts(List.of("A1"), 14, 1, CollectingConsumer::new);
+
+    assertEquals(1, partitions.size());
+    assertEquals(List.of(facts), partitions.get(0).facts);
+    verify(repo, never()).getFactsInIdRange(any(), anyInt(), any(), any());
+  }
+
+  @Test
+  void multiplePartitionsReadEachIdRange() {
+    List<UUID[]> ranges = InventoryDatabaseOperations.partitionInventoryIds(4);
+    when(repo.getFactsInIdRange(eq(List.of("A1")), eq(14), anyString(), anyString()))
+        .thenAnswer(invocation -> Stream.of(new InventoryHostFacts()));
+    List<CollectingConsumer> partitions =
+        operations.processHostFacts(List.of("A1"), 14, 4, CollectingConsumer::new);
+
+    // Every partition gets its own consumer, which receives the facts of its range only.
+    assertEquals(4, partitions.size());
+    Set<InventoryHostFacts> processed = new HashSet<>();
+    for (CollectingConsumer partition : partitions) {
+      assertEquals(1, partition.facts.size());
+      processed.addAll(partition.facts);
+    }
+    assertEquals(4, processed.size());
+    for (UUID[] range : ranges) {
+      verify(repo).getFactsInIdRange(List.of("A1"), 14, range[0].toString(), range[1].toString());
+    }
+    verify(repo, never()).getFacts(any(), anyInt());
+  }
+
+  @Test
+  void partitionFailureIsRethrown() {
+    when(repo.getFactsInIdRange(any(), anyInt(), anyString(), anyString()))
+        .thenThrow(new IllegalStateException("FORCED!"));
+
+    List<String> accounts = List.of("A1");
+    IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class,
+            () -> operations.processHostFacts(accounts, 14, 2, CollectingConsumer::new));
+    assertEquals("FORCED!", e.getMessage());
+  }
+
+  private static class CollectingConsumer implements Consumer<InventoryHostFacts> {
+    private final List<InventoryHostFacts> facts = new ArrayList<>();
+
+    @Override
+    public void accept(InventoryHostFacts hostFacts) {
+      facts.add(hostFacts);
+    }
+  }
+}
@@ -52,6 +52,7 @@ import org.candlepin.subscriptions.util.ApplicationClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -138,14 +139,16 @@ class PrometheusMeteringControllerTest {
             expectedBillingAccountId,
             List.of(List.of(new BigDecimal(12312.345), new BigDecimal(24))));
 
-    when(service.runRangeQuery(anyString(), any(), any(), any(), any()))
-        .thenReturn(errorResponse, errorResponse, good);
+    when(service.runRangeQuery(anyString(), any(), any(), any(), any(), any()))
+        .thenAnswer(replay(errorResponse))
+        .thenAnswer(replay(errorResponse))
+        .thenAnswer(replay(good));
 
     OffsetDateTime start = OffsetDateTime.now();
     OffsetDateTime end = start.plusDays(1);
 
     controller.collectMetrics("OpenShift-metrics", Uom.CORES, "account", start, end);
-    verify(service, times(3)).runRangeQuery(anyString(), any(), any(), any(), any());
+    verify(service, times(3)).runRangeQuery(anyString(), any(), any(), any(), any(), any());
   }
 
   @Test
@@ -161,16 +164,18 @@ class PrometheusMeteringControllerTest {
             expectedBillingProvider,
             expectedBillingAccountId,
             List.of(List.of(new BigDecimal(12312.345), new BigDecimal(24))));
-    when(service.runRangeQuery(anyString(), any(), any(), any(), any())).thenReturn(data);
+    when(service.runRangeQuery(anyString(), any(), any(), any(), any(), any()))
+        .thenAnswer(replay(data));
 
     controller.collectMetrics("OpenShift-metrics", Uom.CORES, expectedAccount, start, end);
     verify(service)
         .runRangeQuery(
-            queries.expectedQuery("OpenShift-metrics", expectedAccount),
-            clock.startOfHour(start).plusHours(1),
-            end,
-            metricProperties.getStep(),
-            metricProperties.getQueryTimeout());
+            eq(queries.expectedQuery("OpenShift-metrics", expectedAccount)),
+            eq(clock.startOfHour(start).plusHours(1)),
+            eq(end),
+            eq(metricProperties.getStep()),
+            eq(metricProperties.getQueryTimeout()),
+            any());
   }
 
   @Test
@@ -186,16 +191,18 @@ class PrometheusMeteringControllerTest {
             expectedBillingProvider,
             expectedBillingAccountId,
             List.of(List.of(new BigDecimal(12312.345), new BigDecimal(24))));
-    when(service.runRangeQuery(anyString(), any(), any(), any(), any())).thenReturn(data);
+    when(service.runRangeQuery(anyString(), any(), any(), any(), any(), any()))
+        .thenAnswer(replay(data));
 
     controller.collectMetrics("OpenShift-metrics", Uom.CORES, expectedAccount, start, end);
     verify(service)
         .runRangeQuery(
-            queries.expectedQuery("OpenShift-metrics", expectedAccount),
-            start.plusHours(1),
-            end,
-            metricProperties.getStep(),
-            metricProperties.getQueryTimeout());
+            eq(queries.expectedQuery("OpenShift-metrics", expectedAccount)),
+            eq(start.plusHours(1)),
+            eq(end),
+            eq(metricProperties.getStep()),
+            eq(metricProperties.getQueryTimeout()),
+            any());
     verify(optInController)
         .optInByAccountNumber(expectedAccount, OptInType.PROMETHEUS, true, true, true);
   }
@@ -222,8 +229,9 @@ class PrometheusMeteringControllerTest {
             any(),
             any(),
             any(),
+            any(),
             any()))
-        .thenReturn(data);
+        .thenAnswer(replay(data));
 
     OffsetDateTime start = clock.startOfCurrentHour();
     OffsetDateTime end = start.plusDays(1);
@@ -266,11 +274,12 @@ class PrometheusMeteringControllerTest {
 
     verify(service)
         .runRangeQuery(
-            queries.expectedQuery("OpenShift-metrics", expectedAccount),
-            start.plusHours(1),
-            end,
-            metricProperties.getStep(),
-            metricProperties.getQueryTimeout());
+            eq(queries.expectedQuery("OpenShift-metrics", expectedAccount)),
+            eq(start.plusHours(1)),
+            eq(end),
+            eq(metricProperties.getStep()),
+            eq(metricProperties.getQueryTimeout()),
+            any());
     verify(eventController).saveAll(any());
 
     // Attempted to verify the eventController.saveAll(events) but
@@ -280,6 +289,97 @@ class PrometheusMeteringControllerTest {
     assertTrue(saveCaptor.getValue().containsAll(expectedEvents));
   }
 
+  @Test
+  void collectMetricsForMultipleAccountsSplitsSeriesByAccountLabel() {
+    BigDecimal time = BigDecimal.valueOf(123456.234);
+    BigDecimal val1 = BigDecimal.valueOf(100L);
+    BigDecimal val2 = BigDecimal.valueOf(120L);
+
+    QueryResult data = new QueryResult().status(StatusType.SUCCESS).data(new QueryResultData());
+    for (QueryResult accountResult :
+        List.of(
+            buildOpenShiftClusterQueryResult(
+                "a1",
+                "C1",
+                expectedSla,
+                expectedUsage,
+                expectedBillingProvider,
+                expectedBillingAccountId,
+                List.of(List.of(time, val1))),
+            buildOpenShiftClusterQueryResult(
+                "a2",
+                "C2",
+                expectedSla,
+                expectedUsage,
+                expectedBillingProvider,
+                expectedBillingAccountId,
+                List.of(List.of(time, val2))),
+            buildOpenShiftClusterQueryResult(
+                "unrequested",
+                "C3",
+                expectedSla,
+                expectedUsage,
+                expectedBillingProvider,
+                expectedBillingAccountId,
+                List.of(List.of(time, val2))))) {
+      data.getData().addResultItem(accountResult.getData().getResult().get(0));
+    }
+    when(service.runRangeQuery(anyString(), any(), any(), any(), any(), any()))
+        .thenAnswer(replay(data));
+
+    OffsetDateTime start = clock.startOfCurrentHour();
+    OffsetDateTime end = start.plusDays(1);
+
+    List<Event> expectedEvents =
+        List.of(
+            MeteringEventFactory.createMetricEvent(
+                "a1",
+                expectedMetricId,
+                "C1",
+                expectedSla,
+                expectedUsage,
+                expectedRole,
+                clock.dateFromUnix(time).minusSeconds(metricProperties.getStep()),
+                clock.dateFromUnix(time),
+                expectedServiceType,
+                expectedBillingProvider,
+                expectedBillingAccountId,
+                expectedUom,
+                val1.doubleValue()),
+            MeteringEventFactory.createMetricEvent(
+                "a2",
+                expectedMetricId,
+                "C2",
+                expectedSla,
+                expectedUsage,
+                expectedRole,
+                clock.dateFromUnix(time).minusSeconds(metricProperties.getStep()),
+                clock.dateFromUnix(time),
+                expectedServiceType,
+                expectedBillingProvider,
+                expectedBillingAccountId,
+                expectedUom,
+                val2.doubleValue()));
+
+    controller.collectMetrics("OpenShift-metrics", Uom.CORES, List.of("a1", "a2"), start, end);
+
+    verify(service)
+        .runRangeQuery(
+            eq(queries.expectedQuery("OpenShift-metrics", "a1|a2")),
+            eq(start.plusHours(1)),
+            eq(end),
+            eq(metricProperties.getStep()),
+            eq(metricProperties.getQueryTimeout()),
+            any());
+    verify(optInController).optInByAccountNumber("a1", OptInType.PROMETHEUS, true, true, true);
+    verify(optInController).optInByAccountNumber("a2", OptInType.PROMETHEUS, true, true, true);
+
+    ArgumentCaptor<Collection> saveCaptor = ArgumentCaptor.forClass(Collection.class);
+    verify(eventController).saveAll(saveCaptor.capture());
+    assertEquals(expectedEvents.size(), saveCaptor.getValue().size());
+    assertTrue(saveCaptor.getValue().containsAll(expectedEvents));
+  }
+
   @Test
   void verifyExistingEventsAreUpdatedWhenReportedByPrometheusAndDeletedIfStale() {
     BigDecimal time1 = BigDecimal.valueOf(123456.234);
@@ -301,8 +401,9 @@ class PrometheusMeteringControllerTest {
             any(),
             any(),
             any(),
+            any(),
             any()))
-        .thenReturn(data);
+        .thenAnswer(replay(data));
 
     OffsetDateTime start = clock.startOfCurrentHour();
     OffsetDateTime end = start.plusDays(1);
@@ -396,11 +497,12 @@ class PrometheusMeteringControllerTest {
 
     verify(service)
         .runRangeQuery(
-            queries.expectedQuery("OpenShift-metrics", expectedAccount),
-            start.plusHours(1),
-            end,
-            metricProperties.getStep(),
-            metricProperties.getQueryTimeout());
+            eq(queries.expectedQuery("OpenShift-metrics", expectedAccount)),
+            eq(start.plusHours(1)),
+            eq(end),
+            eq(metricProperties.getStep()),
+            eq(metricProperties.getQueryTimeout()),
+            any());
 
     // Attempted to verify the eventController calls below, but
     // couldn't find a way to get mockito to match on collection of HashMap.Value.
@@ -443,8 +545,9 @@ class PrometheusMeteringControllerTest {
             any(),
             any(),
             any(),
+            any(),
             any()))
-        .thenReturn(data);
+        .thenAnswer(replay(data));
 
     OffsetDateTime start = clock.startOfCurrentHour();
     OffsetDateTime end = clock.endOfHour(start.plusDays(1));
@@ -507,11 +610,12 @@ class PrometheusMeteringControllerTest {
 
     verify(service)
         .runRangeQuery(
-            queries.expectedQuery("OpenShift-metrics", expectedAccount),
-            start.plusHours(1),
-            end,
-            metricProperties.getStep(),
-            metricProperties.getQueryTimeout());
+            eq(queries.expectedQuery("OpenShift-metrics", expectedAccount)),
+            eq(start.plusHours(1)),
+            eq(end),
+            eq(metricProperties.getStep()),
+            eq(metricProperties.getQueryTimeout()),
+            any());
 
     // Attempted to verify the eventController calls below, but
     // couldn't find a way to get mockito to match on collection of HashMap.Value.
@@ -520,6 +624,22 @@ class PrometheusMeteringControllerTest {
     assertTrue(saveCaptor.getValue().containsAll(expectedEvents));
   }
 
+  /** Feeds the samples of the given result to the consumer passed to the streaming range query. */
+  private Answer<QueryResult> replay(QueryResult result) {
+    return invocation -> {
+      MetricSampleConsumer consumer = invocation.getArgument(5);
+      if (result.getData() != null) {
+        for (QueryResultDataResult series : result.getData().getResult()) {
+          for (List<BigDecimal> sample : series.getValues()) {
+            consumer.accept(
+                series.getMetric(), sample.get(0).longValue(), sample.get(1).doubleValue());
+          }
+        }
+      }
+      return new QueryResult().status(result.getStatus()).error(result.getError());
+    };
+  }
+
   private QueryResult buildOpenShiftClusterQueryResult(
       String account,
       String clusterId,
@@ -0,0 +1,137 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.metering.service.prometheus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.candlepin.subscriptions.prometheus.model.QueryResult;
+import org.candlepin.subscriptions.prometheus.model.StatusType;
+import org.junit.jupiter.api.Test;
+
+class RangeQueryResultParserTest {
+
+  private final RangeQueryResultParser parser = new RangeQueryResultParser();
+
+  @Test
+  void emitsEverySampleWithItsSeriesLabels() throws Exception {
+    String body =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":["
+            + "{\"metric\":{\"_id\":\"c1\",\"support\":\"Premium\"},"
+            + "\"values\":[[1616787308.123,\"4\"],[1616790908,\"8.5\"]]},"
+            + "{\"metric\":{\"_id\":\"c2\"},\"values\":[[1616787308,\"+Inf\"]]}]}}";
+    List<Sample> samples = new ArrayList<>();
+
+    QueryResult result = parser.parse(stream(body), collect(samples));
+
+    assertEquals(StatusType.SUCCESS, result.getStatus());
+    assertNull(result.getData());
+    assertEquals(
+        List.of(
+            new Sample(Map.of("_id", "c1", "support", "Premium"), 1616787308L, 4.0),
+            new Sample(Map.of("_id", "c1", "support", "Premium"), 1616790908L, 8.5),
+            new Sample(Map.of("_id", "c2"), 1616787308L, Double.POSITIVE_INFINITY)),
+        samples);
+  }
+
+  @Test
+  void buffersSamplesReadBeforeTheirLabels() throws Exception {
+    String body =
+        "{\"data\":{\"result\":[{\"values\":[[10,\"1\"],[20,\"2\"]],"
+            + "\"metric\":{\"_id\":\"c1\"}}]},\"status\":\"success\"}";
+    List<Sample> samples = new ArrayList<>();
+
+    parser.parse(stream(body), collect(samples));
+
+    assertEquals(
+        List.of(
+            new Sample(Map.of("_id", "c1"), 10L, 1.0), new Sample(Map.of("_id", "c1"), 20L, 2.0)),
+        samples);
+  }
+
+  @Test
+  void returnsErrorWithoutEmittingSamples() throws Exception {
+    String body = "{\"status\":\"error\",\"errorType\":\"timeout\",\"error\":\"FORCED!!\"}";
+    List<Sample> samples = new ArrayList<>();
+
+    QueryResult result = parser.parse(stream(body), collect(samples));
+
+    assertEquals(StatusType.ERROR, result.getStatus());
+    assertEquals("timeout", result.getErrorType());
+    assertEquals("FORCED!!", result.getError());
+    assertTrue(samples.isEmpty());
+  }
+
+  @Test
+  void failsOnMalformedBody() {
+    List<Sample> samples = new ArrayList<>();
+    InputStream body = stream("[\"not a query result\"]");
+
+    assertThrows(IOException.class, () -> parser.parse(body, collect(samples)));
+  }
+
+  private InputStream stream(String body) {
+    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private MetricSampleConsumer collect(List<Sample> samples) {
+    return (labels, timestamp, value) -> samples.add(new Sample(labels, timestamp, value));
+  }
+
+  private static class Sample {
+    private final Map<String, String> labels;
+    private final long timestamp;
+    private final double value;
+
+    Sample(Map<String, String> labels, long timestamp, double value) {
+      this.labels = labels;
+      this.timestamp = timestamp;
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Sample)) {
+        return false;
+      }
+      Sample other = (Sample) o;
+      return labels.equals(other.labels)
+          && timestamp == other.timestamp
+          && Double.compare(value, other.value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return labels.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return labels + "@" + timestamp + "=" + value;
+    }
+  }
+}
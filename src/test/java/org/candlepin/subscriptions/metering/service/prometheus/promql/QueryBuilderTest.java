@@ -24,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.candlepin.subscriptions.registry.TagMetric;
@@ -103,4 +104,14 @@ class QueryBuilderTest {
     String query = builder.build(queryDesc);
     assertEquals(String.format("Account: %s Metric ID: %s", account, metricId), query);
   }
+
+  @Test
+  void accountMatcherMatchesAnyOfTheAccounts() {
+    assertEquals("123|456", QueryBuilder.accountMatcher(List.of("456", "123")));
+  }
+
+  @Test
+  void accountMatcherEscapesRegexMetacharacters() {
+    assertEquals("a\\\\.b|c\\\\|d", QueryBuilder.accountMatcher(List.of("a.b", "c|d")));
+  }
 }
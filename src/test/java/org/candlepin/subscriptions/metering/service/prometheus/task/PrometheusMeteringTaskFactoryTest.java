@@ -27,6 +27,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.verify;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
@@ -82,6 +83,28 @@ class PrometheusMeteringTaskFactoryTest {
     verify(controller).collectMetrics("OpenShift", Uom.CORES, "12234", start, end);
   }
 
+  @Test
+  void testOpenshiftMultiAccountMetricsTaskCreation() {
+    ApplicationClock clock = new FixedClockConfiguration().fixedClock();
+    OffsetDateTime end = clock.now();
+    OffsetDateTime start = end.minusDays(1);
+
+    Task task =
+        factory.build(
+            TaskDescriptor.builder(TaskType.METRICS_COLLECTION, "a-group")
+                .setArg("accounts", List.of("12234", "56789"))
+                .setSingleValuedArg("productTag", "OpenShift")
+                .setSingleValuedArg("metric", "Cores")
+                .setSingleValuedArg("start", start.toString())
+                .setSingleValuedArg("end", end.toString())
+                .build());
+    assertTrue(task instanceof MetricsTask);
+
+    task.execute();
+    verify(controller)
+        .collectMetrics("OpenShift", Uom.CORES, List.of("12234", "56789"), start, end);
+  }
+
   @Test
   void testOpenshiftMetricsTaskMissingAccount() {
     TaskDescriptor descriptor =
@@ -27,10 +27,13 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.json.Measurement.Uom;
+import org.candlepin.subscriptions.metering.service.prometheus.MetricProperties;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusAccountSource;
 import org.candlepin.subscriptions.registry.TagProfile;
 import org.candlepin.subscriptions.task.TaskDescriptor;
@@ -58,6 +61,8 @@ class PrometheusMetricsTaskManagerTest {
 
   @Mock private TagProfile tagProfile;
 
+  private MetricProperties metricProperties;
+
   private PrometheusMetricsTaskManager manager;
 
   @BeforeEach
@@ -65,9 +70,16 @@ class PrometheusMetricsTaskManagerTest {
     when(queueProperties.getTopic()).thenReturn(TASK_TOPIC);
     when(tagProfile.getSupportedMetricsForProduct(any())).thenReturn(Set.of(Uom.CORES));
     ApplicationClock clock = new FixedClockConfiguration().fixedClock();
+    metricProperties = new MetricProperties();
     manager =
         new PrometheusMetricsTaskManager(
-            queue, queueProperties, accountSource, tagProfile, clock, new ApplicationProperties());
+            queue,
+            queueProperties,
+            accountSource,
+            tagProfile,
+            clock,
+            new ApplicationProperties(),
+            metricProperties);
   }
 
   @Test
@@ -117,4 +129,35 @@ class PrometheusMetricsTaskManagerTest {
     verify(queue).enqueue(account2Task);
     verifyNoMoreInteractions(queue);
   }
+
+  @Test
+  void updateForConfiguredAccountsInBatches() {
+    OffsetDateTime end = OffsetDateTime.now();
+    OffsetDateTime start = end.minusDays(1);
+    metricProperties.setAccountBatchSize(2);
+
+    when(accountSource.getMarketplaceAccounts(eq(TEST_PROFILE_ID), eq(Uom.CORES), any(), any()))
+        .thenReturn(new LinkedHashSet<>(List.of("a1", "a2", "a3")));
+    TaskDescriptor batch1Task =
+        TaskDescriptor.builder(TaskType.METRICS_COLLECTION, TASK_TOPIC)
+            .setArg("accounts", List.of("a1", "a2"))
+            .setSingleValuedArg("productTag", TEST_PROFILE_ID)
+            .setSingleValuedArg("metric", "Cores")
+            .setSingleValuedArg("start", start.toString())
+            .setSingleValuedArg("end", end.toString())
+            .build();
+    TaskDescriptor batch2Task =
+        TaskDescriptor.builder(TaskType.METRICS_COLLECTION, TASK_TOPIC)
+            .setArg("accounts", List.of("a3"))
+            .setSingleValuedArg("productTag", TEST_PROFILE_ID)
+            .setSingleValuedArg("metric", "Cores")
+            .setSingleValuedArg("start", start.toString())
+            .setSingleValuedArg("end", end.toString())
+            .build();
+
+    manager.updateMetricsForAllAccounts(TEST_PROFILE_ID, start, end);
+    verify(queue).enqueue(batch1Task);
+    verify(queue).enqueue(batch2Task);
+    verifyNoMoreInteractions(queue);
+  }
 }
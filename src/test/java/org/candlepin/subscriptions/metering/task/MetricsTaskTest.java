@@ -23,6 +23,7 @@ package org.candlepin.subscriptions.metering.task;
 import static org.mockito.Mockito.*;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import org.candlepin.subscriptions.FixedClockConfiguration;
 import org.candlepin.subscriptions.json.Measurement.Uom;
 import org.candlepin.subscriptions.metering.service.prometheus.PrometheusMeteringController;
@@ -52,4 +53,17 @@ class MetricsTaskTest {
     task.execute();
     verify(controller).collectMetrics("OpenShift", Uom.CORES, expAccount, expStart, expEnd);
   }
+
+  @Test
+  void testExecuteForMultipleAccounts() {
+    ApplicationClock clock = new FixedClockConfiguration().fixedClock();
+    OffsetDateTime expEnd = clock.now();
+    OffsetDateTime expStart = expEnd.minusDays(1);
+    List<String> expAccounts = List.of("account1", "account2");
+
+    MetricsTask task =
+        new MetricsTask(controller, expAccounts, "OpenShift", Uom.CORES, expStart, expEnd);
+    task.execute();
+    verify(controller).collectMetrics("OpenShift", Uom.CORES, expAccounts, expStart, expEnd);
+  }
 }
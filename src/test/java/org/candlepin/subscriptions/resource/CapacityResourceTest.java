@@ -30,6 +30,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.ws.rs.core.Response;
 import org.candlepin.subscriptions.db.AccountListSource;
@@ -290,6 +291,62 @@ class CapacityResourceTest {
     assertTrue(capacitySnapshot.getHasInfiniteQuantity());
   }
 
+  @Test
+  void testShouldOnlyCountCapacitiesActiveAtEachDate() {
+    OffsetDateTime day0 = OffsetDateTime.parse("2021-01-01T00:00:00Z");
+    OffsetDateTime day1 = day0.plusDays(1);
+    OffsetDateTime day2 = day0.plusDays(2);
+    OffsetDateTime day3 = day0.plusDays(3);
+
+    SubscriptionCapacity endsOnDay2 = new SubscriptionCapacity();
+    endsOnDay2.setPhysicalSockets(2);
+    endsOnDay2.setBeginDate(day0.minusSeconds(1));
+    endsOnDay2.setEndDate(day2);
+
+    SubscriptionCapacity beginsOnDay1 = new SubscriptionCapacity();
+    beginsOnDay1.setVirtualCores(8);
+    beginsOnDay1.setBeginDate(day1);
+    beginsOnDay1.setEndDate(day3.plusSeconds(1));
+
+    SubscriptionCapacity unlimited = new SubscriptionCapacity();
+    unlimited.setHasUnlimitedUsage(true);
+    unlimited.setBeginDate(day0);
+    unlimited.setEndDate(day2);
+
+    List<CapacitySnapshot> snapshots =
+        resource.createCapacitySnapshots(
+            Arrays.asList(day0, day1, day2, day3),
+            Arrays.asList(beginsOnDay1, unlimited, endsOnDay2));
+
+    assertEquals(
+        Arrays.asList(2, 2, 0, 0),
+        snapshots.stream().map(CapacitySnapshot::getSockets).collect(Collectors.toList()));
+    assertEquals(
+        Arrays.asList(0, 0, 8, 8),
+        snapshots.stream().map(CapacitySnapshot::getCores).collect(Collectors.toList()));
+    assertEquals(
+        Arrays.asList(false, true, false, false),
+        snapshots.stream()
+            .map(CapacitySnapshot::getHasInfiniteQuantity)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  void testShouldOnlyQueryCapacitiesForRequestedPage() {
+    CapacityReport report =
+        resource.getCapacityReport(RHEL, GranularityType.DAILY, min, max, 2, 2, null, null);
+
+    assertEquals(2, report.getData().size());
+    verify(repository)
+        .findByOwnerAndProductId(
+            "owner123456",
+            RHEL.toString(),
+            null,
+            null,
+            report.getData().get(0).getDate(),
+            report.getData().get(1).getDate());
+  }
+
   static Stream<Arguments> usageLists() {
     SubscriptionCapacity limited = new SubscriptionCapacity();
     limited.setHasUnlimitedUsage(false);
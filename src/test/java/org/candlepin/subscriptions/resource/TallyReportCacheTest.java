@@ -0,0 +1,152 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.resource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Set;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.tally.TallySnapshotsUpdatedEvent;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.utilization.api.model.GranularityType;
+import org.candlepin.subscriptions.utilization.api.model.MetricId;
+import org.candlepin.subscriptions.utilization.api.model.ProductId;
+import org.candlepin.subscriptions.utilization.api.model.TallyReportData;
+import org.candlepin.subscriptions.utilization.api.model.TallyReportDataMeta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TallyReportCacheTest {
+
+  private static final OffsetDateTime NOW = OffsetDateTime.parse("2021-11-15T00:00Z");
+
+  private ApplicationClock clock;
+  private ApplicationProperties properties;
+  private ObjectMapper objectMapper;
+
+  @BeforeEach
+  void setup() {
+    clock = mock(ApplicationClock.class);
+    when(clock.now()).thenReturn(NOW);
+    properties = new ApplicationProperties();
+    properties.setTallyReportCacheSize(2);
+    properties.setTallyReportCacheTtl(Duration.ofMinutes(5));
+    objectMapper = new ObjectMapper();
+    objectMapper.registerModule(new JavaTimeModule());
+    objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  }
+
+  @Test
+  void testCachedReportIsReturned() {
+    TallyReportCache cache = new TallyReportCache(properties, clock, objectMapper);
+    TallyReportData report = report();
+    cache.put(key("account1", ProductId.RHEL), report);
+
+    assertEquals(report, cache.get(key("account1", ProductId.RHEL)));
+    assertNull(cache.get(key("account2", ProductId.RHEL)));
+    assertNull(cache.get(key("account1", ProductId.OPENSHIFT_METRICS)));
+  }
+
+  @Test
+  void testCachedReportIsCopied() {
+    TallyReportCache cache = new TallyReportCache(properties, clock, objectMapper);
+    TallyReportData report = report();
+    cache.put(key("account1", ProductId.RHEL), report);
+    report.getMeta().setCount(5);
+
+    TallyReportData cached = cache.get(key("account1", ProductId.RHEL));
+    assertNotSame(report, cached);
+    assertEquals(1, cached.getMeta().getCount());
+
+    cached.getMeta().setCount(7);
+    assertEquals(1, cache.get(key("account1", ProductId.RHEL)).getMeta().getCount());
+  }
+
+  @Test
+  void testExpiredReportIsNotReturned() {
+    TallyReportCache cache = new TallyReportCache(properties, clock, objectMapper);
+    cache.put(key("account1", ProductId.RHEL), new TallyReportData());
+
+    when(clock.now()).thenReturn(NOW.plusMinutes(6));
+    assertNull(cache.get(key("account1", ProductId.RHEL)));
+  }
+
+  @Test
+  void testLeastRecentlyUsedReportIsEvicted() {
+    TallyReportCache cache = new TallyReportCache(properties, clock, objectMapper);
+    cache.put(key("account1", ProductId.RHEL), new TallyReportData());
+    cache.put(key("account2", ProductId.RHEL), new TallyReportData());
+    cache.get(key("account1", ProductId.RHEL));
+    cache.put(key("account3", ProductId.RHEL), new TallyReportData());
+
+    assertNotNull(cache.get(key("account1", ProductId.RHEL)));
+    assertNull(cache.get(key("account2", ProductId.RHEL)));
+    assertNotNull(cache.get(key("account3", ProductId.RHEL)));
+  }
+
+  @Test
+  void testSnapshotsUpdatedEventInvalidatesAccountProductReports() {
+    TallyReportCache cache = new TallyReportCache(properties, clock, objectMapper);
+    cache.put(key("account1", ProductId.RHEL), new TallyReportData());
+    cache.put(key("account2", ProductId.RHEL), new TallyReportData());
+
+    cache.onSnapshotsUpdated(new TallySnapshotsUpdatedEvent("account1", Set.of("RHEL")));
+
+    assertNull(cache.get(key("account1", ProductId.RHEL)));
+    assertNotNull(cache.get(key("account2", ProductId.RHEL)));
+  }
+
+  @Test
+  void testNothingIsCachedWhenDisabled() {
+    properties.setTallyReportCacheSize(0);
+    TallyReportCache cache = new TallyReportCache(properties, clock, objectMapper);
+    cache.put(key("account1", ProductId.RHEL), new TallyReportData());
+
+    assertFalse(cache.isEnabled());
+    assertNull(cache.get(key("account1", ProductId.RHEL)));
+  }
+
+  private TallyReportData report() {
+    return new TallyReportData()
+        .meta(new TallyReportDataMeta().count(1).product(ProductId.RHEL));
+  }
+
+  private TallyReportCache.Key key(String account, ProductId productId) {
+    return new TallyReportCache.Key(
+        account,
+        productId,
+        MetricId.CORES,
+        GranularityType.DAILY,
+        NOW.minusDays(14),
+        NOW.plusDays(15),
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
+}
@@ -29,8 +29,11 @@ import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.core.Response;
@@ -64,7 +67,7 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.test.context.ActiveProfiles;
 
 @SuppressWarnings("linelength")
-@SpringBootTest
+@SpringBootTest(properties = "rhsm-subscriptions.tally-report-cache-size=0")
 @ActiveProfiles({"api", "test"})
 @WithMockRedHatPrincipal("123456")
 @Import(FixedClockConfiguration.class)
@@ -663,9 +666,7 @@ class TallyResourceTest {
     HardwareMeasurement measurement = new HardwareMeasurement();
     measurement.setCores(4);
     snapshot.setHardwareMeasurement(HardwareMeasurementType.TOTAL, measurement);
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -690,9 +691,7 @@ class TallyResourceTest {
     snapshot.setAccountNumber("account123");
     snapshot.setSnapshotDate(OffsetDateTime.parse("2021-10-05T00:00Z"));
     snapshot.setMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES, 4.0);
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -722,9 +721,7 @@ class TallyResourceTest {
       measurement.setCores(4);
       snapshot.setHardwareMeasurement(hardwareMeasurementType, measurement);
     }
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -752,9 +749,7 @@ class TallyResourceTest {
     for (HardwareMeasurementType hardwareMeasurementType : HardwareMeasurementType.values()) {
       snapshot.setMeasurement(hardwareMeasurementType, Uom.CORES, 4.0);
     }
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -775,9 +770,7 @@ class TallyResourceTest {
 
   @Test
   void testTallyReportDataReportFiller() {
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of()));
+    stubReportDataPoints();
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -808,9 +801,7 @@ class TallyResourceTest {
       snapshot.setHardwareMeasurement(
           HardwareMeasurementType.AWS_CLOUDIGRADE, cloudigradeMeasurement);
     }
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -838,9 +829,7 @@ class TallyResourceTest {
     if (hasCloudigradeMeasurement) {
       snapshot.setMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE, Uom.CORES, 4.0);
     }
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -875,9 +864,7 @@ class TallyResourceTest {
     snapshot.setHardwareMeasurement(HardwareMeasurementType.AWS, awsMeasurement);
     snapshot.setHardwareMeasurement(
         HardwareMeasurementType.AWS_CLOUDIGRADE, cloudigradeMeasurement);
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -907,9 +894,7 @@ class TallyResourceTest {
     if (hasCloudigradeMismatch) {
       snapshot.setMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE, Uom.CORES, 8.0);
     }
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot)));
+    stubReportDataPoints(snapshot);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -929,9 +914,7 @@ class TallyResourceTest {
 
   @Test
   void testTallyReportTotalMonthlyNotPopulatedWhenQueryIsNotBeginningOfMonth() {
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of()));
+    stubReportDataPoints();
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -951,9 +934,7 @@ class TallyResourceTest {
 
   @Test
   void testTallyReportTotalMonthlyNotPopulatedWhenQueryIsNotEndOfMonth() {
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of()));
+    stubReportDataPoints();
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -973,9 +954,7 @@ class TallyResourceTest {
 
   @Test
   void testTallyReportTotalMonthlyNotPopulatedWhenQueryIsPaged() {
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of()));
+    stubReportDataPoints();
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -995,9 +974,7 @@ class TallyResourceTest {
 
   @Test
   void testTallyReportTotalMonthlyPopulatedWithNoUnderlyingData() {
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of()));
+    stubReportDataPoints();
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -1027,9 +1004,7 @@ class TallyResourceTest {
     snapshot2.setSnapshotDate(OffsetDateTime.parse("2021-11-03T00:00Z"));
     snapshot2.setGranularity(Granularity.DAILY);
     snapshot2.setMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES, 3.0);
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot1, snapshot2)));
+    stubReportDataPoints(snapshot1, snapshot2);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -1064,9 +1039,7 @@ class TallyResourceTest {
     snapshot2.setGranularity(Granularity.DAILY);
     snapshot2.setBillingProvider(BillingProvider.RED_HAT);
     snapshot2.setMeasurement(HardwareMeasurementType.TOTAL, Uom.CORES, 3.0);
-    when(repository.findSnapshot(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn(new PageImpl<>(List.of(snapshot1, snapshot2)));
+    stubReportDataPoints(snapshot1, snapshot2);
     TallyReportData response =
         resource.getTallyReportData(
             ProductId.RHEL,
@@ -1089,4 +1062,65 @@ class TallyResourceTest {
     assertEquals(expectedTotalMonthly, response.getMeta().getTotalMonthly());
     assertEquals(BillingProviderType.RED_HAT, response.getMeta().getBillingProvider());
   }
+
+  /**
+   * Stub the report data point query with views of the given snapshots, summed up the same way the
+   * query does.
+   */
+  private void stubReportDataPoints(TallySnapshot... snapshots) {
+    for (TallySnapshot snapshot : snapshots) {
+      snapshot.setId(UUID.randomUUID());
+    }
+    when(repository.findReportDataPoints(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Uom uom = invocation.getArgument(9);
+              Collection<HardwareMeasurementType> types = invocation.getArgument(10);
+              return new PageImpl<>(
+                  Arrays.stream(snapshots)
+                      .map(snapshot -> dataPointView(snapshot, uom, types))
+                      .collect(Collectors.toList()));
+            });
+    when(repository.findAllById(any())).thenReturn(List.of(snapshots));
+  }
+
+  private static TallyReportDataPointView dataPointView(
+      TallySnapshot snapshot, Uom uom, Collection<HardwareMeasurementType> types) {
+    return new TallyReportDataPointView() {
+      @Override
+      public UUID getId() {
+        return snapshot.getId();
+      }
+
+      @Override
+      public OffsetDateTime getSnapshotDate() {
+        return snapshot.getSnapshotDate();
+      }
+
+      @Override
+      public Double getValue() {
+        return types.stream()
+            .map(type -> snapshot.getMeasurement(type, uom))
+            .filter(Objects::nonNull)
+            .mapToDouble(Double::doubleValue)
+            .sum();
+      }
+
+      @Override
+      public Double getCloudigradeValue() {
+        return snapshot.getMeasurement(HardwareMeasurementType.AWS_CLOUDIGRADE, uom);
+      }
+
+      @Override
+      public Double getAwsValue() {
+        return snapshot.getMeasurement(HardwareMeasurementType.AWS, uom);
+      }
+
+      @Override
+      public long getMeasurementCount() {
+        return snapshot.getTallyMeasurements().size();
+      }
+    };
+  }
 }
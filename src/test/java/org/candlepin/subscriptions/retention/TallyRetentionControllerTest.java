@@ -25,9 +25,8 @@ import static org.mockito.Mockito.*;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
-import java.util.Arrays;
-import java.util.List;
 import org.candlepin.subscriptions.db.AccountListSource;
+import org.candlepin.subscriptions.db.EventRecordRepository;
 import org.candlepin.subscriptions.db.TallySnapshotRepository;
 import org.candlepin.subscriptions.db.model.Granularity;
 import org.junit.jupiter.api.Test;
@@ -49,40 +48,54 @@ class TallyRetentionControllerTest {
 
   @MockBean private TallyRetentionPolicy policy;
   @MockBean private TallySnapshotRepository repository;
+  @MockBean private EventRecordRepository eventRecordRepository;
   @MockBean private AccountListSource accountListSource;
 
+  @Autowired private TallyRetentionPolicyProperties policyProperties;
+  @Autowired private EventRecordsRetentionProperties eventRecordsRetentionProperties;
   @Autowired private TallyRetentionController controller;
 
   @Test
-  void retentionControllerShouldRemoveSnapshotsForGranularitiesConfigured() throws Exception {
+  void retentionControllerShouldRemoveSnapshotsForGranularitiesConfigured() {
     OffsetDateTime cutoff = OffsetDateTime.ofInstant(Instant.EPOCH, ZoneId.systemDefault());
     when(policy.getCutoffDate(Granularity.DAILY)).thenReturn(cutoff);
-    controller.cleanStaleSnapshotsForAccount("123456");
+    controller.purgeSnapshots();
     verify(repository)
-        .deleteAllByAccountNumberAndGranularityAndSnapshotDateBefore(
-            "123456", Granularity.DAILY, cutoff);
+        .deleteSnapshotBatchBefore(Granularity.DAILY, cutoff, policyProperties.getPurgeBatchSize());
     verifyNoMoreInteractions(repository);
   }
 
   @Test
-  void retentionControllerShouldIgnoreGranularityWithoutCutoff() throws Exception {
+  void retentionControllerShouldIgnoreGranularityWithoutCutoff() {
     when(policy.getCutoffDate(Granularity.DAILY)).thenReturn(null);
-    controller.cleanStaleSnapshotsForAccount("123456");
+    controller.purgeSnapshots();
     verifyNoInteractions(repository);
   }
 
   @Test
-  void testPurgeSnapshots() throws Exception {
+  void testPurgeSnapshotsDeletesBatchesUntilAPartialBatch() {
     OffsetDateTime cutoff = OffsetDateTime.ofInstant(Instant.EPOCH, ZoneId.systemDefault());
     when(policy.getCutoffDate(Granularity.DAILY)).thenReturn(cutoff);
-
-    List<String> testList = Arrays.asList("1", "2", "3", "4");
-    when(accountListSource.purgeReportAccounts()).thenReturn(testList.stream());
+    int batchSize = policyProperties.getPurgeBatchSize();
+    when(repository.deleteSnapshotBatchBefore(Granularity.DAILY, cutoff, batchSize))
+        .thenReturn(batchSize, batchSize, 1);
 
     controller.purgeSnapshots();
 
-    verify(repository, times(4))
-        .deleteAllByAccountNumberAndGranularityAndSnapshotDateBefore(
-            anyString(), eq(Granularity.DAILY), eq(cutoff));
+    verify(repository, times(3)).deleteSnapshotBatchBefore(Granularity.DAILY, cutoff, batchSize);
+    verifyNoMoreInteractions(repository);
+  }
+
+  @Test
+  void testPurgeOldEventRecordsDeletesEventsBeforeRetentionCutoff() {
+    controller.purgeOldEventRecords();
+    verify(eventRecordRepository).deleteEventRecordsBefore(any(OffsetDateTime.class));
+  }
+
+  @Test
+  void testCreateEventPartitionsCreatesConfiguredFuturePartitions() {
+    controller.createEventPartitions();
+    verify(eventRecordRepository)
+        .createEventPartitions(eventRecordsRetentionProperties.getFutureEventPartitions());
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.rhmarketplace;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.OffsetDateTime;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import org.candlepin.subscriptions.rhmarketplace.api.model.StatusResponse;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RhMarketplaceBatchVerifierTest {
+
+  private static final OffsetDateTime SUBMITTED = OffsetDateTime.parse("2022-06-01T12:00:00Z");
+
+  private RhMarketplaceService rhMarketplaceService;
+  private ApplicationClock clock;
+  private MeterRegistry registry;
+  private RhMarketplaceBatchVerifier verifier;
+
+  @BeforeEach
+  void setup() {
+    rhMarketplaceService = mock(RhMarketplaceService.class);
+    clock = mock(ApplicationClock.class);
+    registry = new SimpleMeterRegistry();
+    verifier =
+        new RhMarketplaceBatchVerifier(
+            rhMarketplaceService,
+            new RhMarketplaceProperties(),
+            clock,
+            registry,
+            mock(ScheduledExecutorService.class));
+    when(clock.now()).thenReturn(SUBMITTED);
+    verifier.track(Set.of("foo"));
+  }
+
+  @Test
+  void testRecordsAcceptedBatch() throws ApiException {
+    var acceptedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted");
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("accepted"));
+
+    verifier.verifyPendingBatches();
+
+    assertEquals(1.0, acceptedCounter.count());
+    assertEquals(0, verifier.getPendingBatchCount());
+  }
+
+  @Test
+  void testRecordsRejectedBatch() throws ApiException {
+    var rejectedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("failed"));
+
+    verifier.verifyPendingBatches();
+
+    assertEquals(1.0, rejectedCounter.count());
+    assertEquals(0, verifier.getPendingBatchCount());
+  }
+
+  @Test
+  void testKeepsInProgressBatchUntilTimeout() throws ApiException {
+    var unverifiedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.unverified");
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenReturn(new StatusResponse().status("inprogress"));
+
+    when(clock.now()).thenReturn(SUBMITTED.plusMinutes(1));
+    verifier.verifyPendingBatches();
+    assertEquals(1, verifier.getPendingBatchCount());
+    assertEquals(0.0, unverifiedCounter.count());
+
+    when(clock.now()).thenReturn(SUBMITTED.plusMinutes(6));
+    verifier.verifyPendingBatches();
+    assertEquals(0, verifier.getPendingBatchCount());
+    assertEquals(1.0, unverifiedCounter.count());
+    verify(rhMarketplaceService, times(2)).getUsageBatchStatus("foo");
+  }
+
+  @Test
+  void testRetriesBatchAfterError() throws ApiException {
+    var acceptedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted");
+    when(rhMarketplaceService.getUsageBatchStatus("foo"))
+        .thenThrow(ApiException.class)
+        .thenReturn(new StatusResponse().status("accepted"));
+
+    verifier.verifyPendingBatches();
+    assertEquals(1, verifier.getPendingBatchCount());
+
+    verifier.verifyPendingBatches();
+    assertEquals(0, verifier.getPendingBatchCount());
+    assertEquals(1.0, acceptedCounter.count());
+  }
+}
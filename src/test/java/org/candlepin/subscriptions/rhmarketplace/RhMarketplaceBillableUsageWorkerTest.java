@@ -43,53 +43,53 @@ class RhMarketplaceBillableUsageWorkerTest {
   @Test
   void testWorkerCallsProduceForNonEmptyPayload() {
     TaskQueueProperties properties = new TaskQueueProperties();
-    RhMarketplaceProducer producer = mock(RhMarketplaceProducer.class);
+    RhMarketplaceUsageAccumulator usageAccumulator = mock(RhMarketplaceUsageAccumulator.class);
     RhMarketplacePayloadMapper payloadMapper = mock(RhMarketplacePayloadMapper.class);
     KafkaConsumerRegistry kafkaConsumerRegistry = new KafkaConsumerRegistry();
     var worker =
         new RhMarketplaceBillableUsageWorker(
-            properties, producer, payloadMapper, kafkaConsumerRegistry);
+            properties, usageAccumulator, payloadMapper, kafkaConsumerRegistry);
 
     UsageRequest usageRequest = new UsageRequest().data(List.of(new UsageEvent()));
     when(payloadMapper.createUsageRequest(any(BillableUsage.class))).thenReturn(usageRequest);
 
-    worker.receive(new BillableUsage());
+    worker.receive(List.of(new BillableUsage()));
 
-    verify(producer, times(1)).submitUsageRequest(usageRequest);
+    verify(usageAccumulator, times(1)).submit(List.of(usageRequest));
   }
 
   @Test
   void testWorkerSkipsEmptyPayloads() {
     TaskQueueProperties properties = new TaskQueueProperties();
-    RhMarketplaceProducer producer = mock(RhMarketplaceProducer.class);
+    RhMarketplaceUsageAccumulator usageAccumulator = mock(RhMarketplaceUsageAccumulator.class);
     RhMarketplacePayloadMapper payloadMapper = mock(RhMarketplacePayloadMapper.class);
     KafkaConsumerRegistry kafkaConsumerRegistry = mock(KafkaConsumerRegistry.class);
     var worker =
         new RhMarketplaceBillableUsageWorker(
-            properties, producer, payloadMapper, kafkaConsumerRegistry);
+            properties, usageAccumulator, payloadMapper, kafkaConsumerRegistry);
 
     UsageRequest usageRequest = new UsageRequest().data(Collections.emptyList());
     when(payloadMapper.createUsageRequest(any(BillableUsage.class))).thenReturn(usageRequest);
 
-    worker.receive(new BillableUsage());
+    worker.receive(List.of(new BillableUsage()));
 
-    verify(producer, times(0)).submitUsageRequest(any());
+    verify(usageAccumulator, times(1)).submit(List.of());
   }
 
   @Test
   void testWorkerSkipsNullPayloads() {
     TaskQueueProperties properties = new TaskQueueProperties();
-    RhMarketplaceProducer producer = mock(RhMarketplaceProducer.class);
+    RhMarketplaceUsageAccumulator usageAccumulator = mock(RhMarketplaceUsageAccumulator.class);
     RhMarketplacePayloadMapper payloadMapper = mock(RhMarketplacePayloadMapper.class);
     KafkaConsumerRegistry kafkaConsumerRegistry = mock(KafkaConsumerRegistry.class);
     var worker =
         new RhMarketplaceBillableUsageWorker(
-            properties, producer, payloadMapper, kafkaConsumerRegistry);
+            properties, usageAccumulator, payloadMapper, kafkaConsumerRegistry);
 
     when(payloadMapper.createUsageRequest(any(BillableUsage.class))).thenReturn(null);
 
-    worker.receive(new BillableUsage());
+    worker.receive(List.of(new BillableUsage()));
 
-    verify(producer, times(0)).submitUsageRequest(any());
+    verify(usageAccumulator, times(1)).submit(List.of());
   }
 }
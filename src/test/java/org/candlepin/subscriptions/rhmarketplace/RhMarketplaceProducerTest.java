@@ -26,24 +26,38 @@ import static org.mockito.Mockito.*;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Set;
 import org.candlepin.subscriptions.exception.SubscriptionsException;
 import org.candlepin.subscriptions.rhmarketplace.api.model.BatchStatus;
 import org.candlepin.subscriptions.rhmarketplace.api.model.StatusResponse;
 import org.candlepin.subscriptions.rhmarketplace.api.model.UsageRequest;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.retry.support.RetryTemplateBuilder;
 
 class RhMarketplaceProducerTest {
 
-  @Test
-  void testMarketplaceProducerRetry() throws Exception {
+  private RhMarketplaceService rhMarketplaceService;
+  private RhMarketplaceBatchVerifier batchVerifier;
+  private MeterRegistry registry;
+  private RhMarketplaceProperties properties;
+  private RhMarketplaceProducer rhMarketplaceProducer;
+
+  @BeforeEach
+  void setup() {
     RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
-    RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
-    MeterRegistry registry = new SimpleMeterRegistry();
-    RhMarketplaceProducer rhMarketplaceProducer =
+    rhMarketplaceService = mock(RhMarketplaceService.class);
+    batchVerifier = mock(RhMarketplaceBatchVerifier.class);
+    registry = new SimpleMeterRegistry();
+    properties = new RhMarketplaceProperties();
+    rhMarketplaceProducer =
         new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
+            rhMarketplaceService, retryTemplate, registry, properties, batchVerifier);
+  }
+
+  @Test
+  void testMarketplaceProducerRetry() throws Exception {
     var rejectedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
 
     when(rhMarketplaceService.submitUsageEvents(any())).thenThrow(SubscriptionsException.class);
@@ -54,90 +68,42 @@ class RhMarketplaceProducerTest {
 
     verify(rhMarketplaceService, times(2)).submitUsageEvents(any());
     assertEquals(1.0, rejectedCounter.count());
+    verifyNoInteractions(batchVerifier);
   }
 
   @Test
-  void testMarketplaceProducerRecordsSuccessfulBatch() throws ApiException {
-    RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
-    RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
-    MeterRegistry registry = new SimpleMeterRegistry();
-    RhMarketplaceProducer rhMarketplaceProducer =
-        new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
-    var acceptedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.accepted");
-
+  void testMarketplaceProducerQueuesBatchForVerification() throws ApiException {
     when(rhMarketplaceService.submitUsageEvents(any()))
         .thenReturn(
             new StatusResponse()
                 .status("inprogress")
                 .addDataItem(new BatchStatus().batchId("foo")));
-    when(rhMarketplaceService.getUsageBatchStatus("foo"))
-        .thenReturn(new StatusResponse().status("accepted"));
 
     var usageRequest = new UsageRequest();
     rhMarketplaceProducer.submitUsageRequest(usageRequest);
 
-    assertEquals(1.0, acceptedCounter.count());
+    verify(batchVerifier).track(Set.of("foo"));
+    verify(rhMarketplaceService, never()).getUsageBatchStatus(any());
   }
 
   @Test
-  void testMarketplaceProducerRecordsUnverifiedBatch() throws ApiException {
-    RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
-    RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
-    MeterRegistry registry = new SimpleMeterRegistry();
-    RhMarketplaceProducer rhMarketplaceProducer =
-        new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
-    var unverifiedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.unverified");
-
+  void testMarketplaceProducerSkipsVerificationWhenDisabled() throws ApiException {
+    properties.setVerifyBatches(false);
     when(rhMarketplaceService.submitUsageEvents(any()))
         .thenReturn(
             new StatusResponse()
                 .status("inprogress")
                 .addDataItem(new BatchStatus().batchId("foo")));
-    when(rhMarketplaceService.getUsageBatchStatus("foo"))
-        .thenReturn(new StatusResponse().status("inprogress"));
 
     var usageRequest = new UsageRequest();
     rhMarketplaceProducer.submitUsageRequest(usageRequest);
 
-    verify(rhMarketplaceService, times(2)).getUsageBatchStatus("foo");
-    assertEquals(1.0, unverifiedCounter.count());
-  }
-
-  @Test
-  void testMarketplaceProducerRecordsRejectedBatch() throws ApiException {
-    RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
-    RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
-    MeterRegistry registry = new SimpleMeterRegistry();
-    RhMarketplaceProducer rhMarketplaceProducer =
-        new RhMarketplaceProducer(
-            rhMarketplaceService, retryTemplate, registry, new RhMarketplaceProperties());
-    var rejectedCounter = registry.counter("rhsm-subscriptions.rh-marketplace.batch.rejected");
-
-    when(rhMarketplaceService.submitUsageEvents(any()))
-        .thenReturn(
-            new StatusResponse()
-                .status("inprogress")
-                .addDataItem(new BatchStatus().batchId("foo")));
-    when(rhMarketplaceService.getUsageBatchStatus("foo"))
-        .thenReturn(new StatusResponse().status("failed"));
-
-    var usageRequest = new UsageRequest();
-    rhMarketplaceProducer.submitUsageRequest(usageRequest);
-
-    assertEquals(1.0, rejectedCounter.count());
+    verifyNoInteractions(batchVerifier);
   }
 
   @Test
   void testMarketplaceSkipsVerificationIfAmendmentRejected() throws ApiException {
-    RetryTemplate retryTemplate = new RetryTemplateBuilder().maxAttempts(2).noBackoff().build();
-    RhMarketplaceService rhMarketplaceService = mock(RhMarketplaceService.class);
-    MeterRegistry registry = new SimpleMeterRegistry();
-    var properties = new RhMarketplaceProperties();
     properties.setAmendmentNotSupportedMarker("(amendments) is not available");
-    RhMarketplaceProducer rhMarketplaceProducer =
-        new RhMarketplaceProducer(rhMarketplaceService, retryTemplate, registry, properties);
     when(rhMarketplaceService.submitUsageEvents(any()))
         .thenReturn(
             new StatusResponse()
@@ -153,5 +119,6 @@ class RhMarketplaceProducerTest {
 
     verify(rhMarketplaceService, times(1)).submitUsageEvents(any());
     verifyNoMoreInteractions(rhMarketplaceService);
+    verifyNoInteractions(batchVerifier);
   }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.rhmarketplace;
+
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import org.candlepin.subscriptions.rhmarketplace.api.model.UsageEvent;
+import org.candlepin.subscriptions.rhmarketplace.api.model.UsageRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RhMarketplaceUsageAccumulatorTest {
+
+  private RhMarketplaceProducer producer;
+  private RhMarketplaceUsageAccumulator accumulator;
+
+  @BeforeEach
+  void setup() {
+    producer = mock(RhMarketplaceProducer.class);
+    RhMarketplaceProperties properties = new RhMarketplaceProperties();
+    properties.setUsageBatchSize(2);
+    accumulator = new RhMarketplaceUsageAccumulator(producer, properties);
+  }
+
+  @Test
+  void testSubmitsEventsFromMultipleRequestsTogether() {
+    UsageEvent event1 = new UsageEvent().eventId("1");
+    UsageEvent event2 = new UsageEvent().eventId("2");
+
+    accumulator.submit(
+        List.of(
+            new UsageRequest().data(List.of(event1)), new UsageRequest().data(List.of(event2))));
+
+    verify(producer).submitUsageRequest(new UsageRequest().data(List.of(event1, event2)));
+  }
+
+  @Test
+  void testSplitsRequestsLargerThanBatchSize() {
+    UsageEvent event1 = new UsageEvent().eventId("1");
+    UsageEvent event2 = new UsageEvent().eventId("2");
+    UsageEvent event3 = new UsageEvent().eventId("3");
+
+    accumulator.submit(List.of(new UsageRequest().data(List.of(event1, event2, event3))));
+
+    verify(producer).submitUsageRequest(new UsageRequest().data(List.of(event1, event2)));
+    verify(producer).submitUsageRequest(new UsageRequest().data(List.of(event3)));
+  }
+
+  @Test
+  void testNothingIsHeldBetweenCalls() {
+    UsageEvent event = new UsageEvent().eventId("1");
+
+    accumulator.submit(List.of(new UsageRequest().data(List.of(event))));
+
+    verify(producer).submitUsageRequest(new UsageRequest().data(List.of(event)));
+  }
+
+  @Test
+  void testSubmitWithoutEventsSubmitsNothing() {
+    accumulator.submit(List.of());
+
+    verifyNoInteractions(producer);
+  }
+}
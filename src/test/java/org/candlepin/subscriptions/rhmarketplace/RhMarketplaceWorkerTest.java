@@ -39,18 +39,18 @@ class RhMarketplaceWorkerTest {
   @Test
   void testWorkerCallsProduceForNonEmptyPayload() {
     TaskQueueProperties properties = new TaskQueueProperties();
-    RhMarketplaceProducer producer = mock(RhMarketplaceProducer.class);
+    RhMarketplaceUsageAccumulator usageAccumulator = mock(RhMarketplaceUsageAccumulator.class);
     RhMarketplacePayloadMapper payloadMapper = mock(RhMarketplacePayloadMapper.class);
     KafkaConsumerRegistry kafkaConsumerRegistry = new KafkaConsumerRegistry();
     var worker =
-        new RhMarketplaceWorker(properties, producer, payloadMapper, kafkaConsumerRegistry);
+        new RhMarketplaceWorker(properties, usageAccumulator, payloadMapper, kafkaConsumerRegistry);
 
     UsageRequest usageRequest = new UsageRequest().data(List.of(new UsageEvent()));
     when(payloadMapper.createUsageRequests(any(TallySummary.class)))
         .thenReturn(Stream.of(usageRequest));
 
-    worker.receive(new TallySummary());
+    worker.receive(List.of(new TallySummary()));
 
-    verify(producer, times(1)).submitUsageRequest(usageRequest);
+    verify(usageAccumulator, times(1)).submit(List.of(usageRequest));
   }
 }
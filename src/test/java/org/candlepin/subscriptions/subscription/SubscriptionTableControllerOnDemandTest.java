@@ -57,6 +57,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
 import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
@@ -81,6 +82,9 @@ class SubscriptionTableControllerOnDemandTest {
     // The @ReportingAccessRequired annotation checks if the org of the user is allowlisted
     // to receive reports or not. This org will be used throughout most tests.
     when(accountListSource.containsReportingAccount("account123456")).thenReturn(true);
+    when(subscriptionCapacityViewRepository.findSkuCapacitySummaries(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(Page.empty());
     when(offeringRepository.findByProductName(any()))
         .thenReturn(
             Arrays.asList(MW01882.toOffering(), MW01882RN.toOffering(), MW01882S.toOffering()));
@@ -31,14 +31,18 @@ import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import javax.ws.rs.core.Response;
 import org.candlepin.subscriptions.db.AccountListSource;
 import org.candlepin.subscriptions.db.SubscriptionCapacityRepository;
 import org.candlepin.subscriptions.db.SubscriptionCapacityViewRepository;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.SkuCapacitySummary;
 import org.candlepin.subscriptions.db.model.SubscriptionCapacityKey;
 import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
 import org.candlepin.subscriptions.db.model.Usage;
@@ -50,9 +54,14 @@ import org.candlepin.subscriptions.util.ApplicationClock;
 import org.candlepin.subscriptions.utilization.api.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
@@ -75,6 +84,95 @@ class SubscriptionTableControllerTest {
     // The @ReportingAccessRequired annotation checks if the org of the user is allowlisted
     // to receive reports or not. This org will be used throughout most tests.
     when(accountListSource.containsReportingAccount("account123456")).thenReturn(true);
+
+    // SKU capacities are summed up and paged by the database; derive them from the capacities
+    // each test stubs the unfiltered query with, in SKU order.
+    when(subscriptionCapacityViewRepository.findSkuCapacitySummaries(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+        .thenAnswer(
+            invocation ->
+                summarize(
+                    capacitiesFor(invocation),
+                    invocation.getArgument(8),
+                    invocation.getArgument(9)));
+    when(subscriptionCapacityViewRepository.findAllBy(
+            any(), any(), any(), any(), any(), any(), any(), anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Collection<String> skus = invocation.getArgument(7);
+              return capacitiesFor(invocation).stream()
+                  .filter(capacity -> skus.contains(capacity.getSku()))
+                  .collect(Collectors.toList());
+            });
+  }
+
+  private List<SubscriptionCapacityView> capacitiesFor(InvocationOnMock invocation) {
+    return subscriptionCapacityViewRepository.findAllBy(
+        invocation.getArgument(0),
+        invocation.getArgument(1),
+        invocation.getArgument(2),
+        invocation.getArgument(3),
+        invocation.getArgument(4),
+        invocation.getArgument(5),
+        invocation.getArgument(6));
+  }
+
+  private static Page<SkuCapacitySummary> summarize(
+      List<SubscriptionCapacityView> capacities, Sort.Direction direction, Pageable pageable) {
+    List<SkuCapacitySummary> summaries =
+        capacities.stream()
+            .collect(
+                Collectors.groupingBy(
+                    SubscriptionCapacityView::getSku, TreeMap::new, Collectors.toList()))
+            .entrySet()
+            .stream()
+            .map(
+                entry ->
+                    SkuCapacitySummary.builder()
+                        .sku(entry.getKey())
+                        .quantity(
+                            entry.getValue().stream()
+                                .mapToLong(SubscriptionCapacityView::getQuantity)
+                                .sum())
+                        .physicalSockets(
+                            entry.getValue().stream()
+                                .mapToLong(SubscriptionCapacityView::getPhysicalSockets)
+                                .sum())
+                        .virtualSockets(
+                            entry.getValue().stream()
+                                .mapToLong(SubscriptionCapacityView::getVirtualSockets)
+                                .sum())
+                        .physicalCores(
+                            entry.getValue().stream()
+                                .mapToLong(SubscriptionCapacityView::getPhysicalCores)
+                                .sum())
+                        .virtualCores(
+                            entry.getValue().stream()
+                                .mapToLong(SubscriptionCapacityView::getVirtualCores)
+                                .sum())
+                        .nextEventDate(
+                            entry.getValue().stream()
+                                .map(SubscriptionCapacityView::getEndDate)
+                                .min(Comparator.naturalOrder())
+                                .orElse(null))
+                        .hasUnlimitedUsage(
+                            entry.getValue().stream()
+                                .anyMatch(
+                                    capacity ->
+                                        Boolean.TRUE.equals(capacity.getHasUnlimitedUsage())))
+                        .build())
+            .collect(Collectors.toList());
+    if (direction == Sort.Direction.DESC) {
+      Collections.reverse(summaries);
+    }
+    if (pageable == null) {
+      return new PageImpl<>(summaries);
+    }
+    int offset = (int) pageable.getOffset();
+    return new PageImpl<>(
+        summaries.subList(offset, Math.min(summaries.size(), offset + pageable.getPageSize())),
+        pageable,
+        summaries.size());
   }
 
   private static final SubCapSpec RH0180191 =
@@ -624,104 +722,6 @@ class SubscriptionTableControllerTest {
     assertTrue(actualItem.getHasInfiniteQuantity(), "HasInfiniteQuantity should be true");
   }
 
-  @Test
-  void testShouldSortUnlimitedLastAscending() {
-    // Given an org with two active subs with different quantities for different SKUs,
-    // and the subs have an eng product with a socket capacity of 2,
-    // and the subs have different ending dates,
-    ProductId productId = RHEL_SERVER;
-    Sub expectedNewerSub = Sub.sub("1234", "1235", 4, 5, 7);
-    Sub expectedOlderSub = Sub.sub("1236", "1237", 5, 6, 6);
-    List<SubscriptionCapacityView> givenCapacities =
-        givenCapacities(
-            Org.STANDARD,
-            productId,
-            RH0180191.withSub(expectedNewerSub),
-            RH0180195_UNLIMITED_USAGE.withSub(expectedOlderSub));
-    when(subscriptionCapacityViewRepository.findAllBy(
-            any(), anyString(), any(), any(), any(), any(), any()))
-        .thenReturn(givenCapacities);
-
-    // When requesting a SKU capacity report for the eng product, sorted by quantity
-    SkuCapacityReport actual =
-        subscriptionTableController.capacityReportBySku(
-            productId,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            SkuCapacityReportSort.TOTAL_CAPACITY,
-            null);
-
-    // Then the report contains two inventory items containing a sub with appropriate
-    // quantity and capacities, and RH00604F5 is listed first.
-    assertEquals(
-        2,
-        actual.getData().size(),
-        "Both subs are for different SKUs so should collect into two capacity items.");
-
-    SkuCapacity actualItem = actual.getData().get(0);
-    assertEquals(RH0180191.sku, actualItem.getSku(), "Wrong SKU. (Incorrect ordering of SKUs?)");
-
-    actualItem = actual.getData().get(1);
-    assertEquals(
-        RH0180195_UNLIMITED_USAGE.sku,
-        actualItem.getSku(),
-        "Wrong SKU. (Incorrect ordering of SKUs?)");
-  }
-
-  @Test
-  void testShouldSortUnlimitedFirstDescending() {
-    // Given an org with two active subs with different quantities for different SKUs,
-    // and the subs have an eng product with a socket capacity of 2,
-    // and the subs have different ending dates,
-    ProductId productId = RHEL_SERVER;
-    Sub expectedNewerSub = Sub.sub("1234", "1235", 4, 5, 7);
-    Sub expectedOlderSub = Sub.sub("1236", "1237", 5, 6, 6);
-    List<SubscriptionCapacityView> givenCapacities =
-        givenCapacities(
-            Org.STANDARD,
-            productId,
-            RH0180191.withSub(expectedNewerSub),
-            RH0180195_UNLIMITED_USAGE.withSub(expectedOlderSub));
-    when(subscriptionCapacityViewRepository.findAllBy(
-            any(), anyString(), any(), any(), any(), any(), any()))
-        .thenReturn(givenCapacities);
-
-    // When requesting a SKU capacity report for the eng product, sorted by quantity
-    SkuCapacityReport actual =
-        subscriptionTableController.capacityReportBySku(
-            productId,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            SkuCapacityReportSort.TOTAL_CAPACITY,
-            SortDirection.DESC);
-
-    // Then the report contains two inventory items containing a sub with appropriate
-    // quantity and capacities, and RH0180195 is listed first.
-    assertEquals(
-        2,
-        actual.getData().size(),
-        "Both subs are for different SKUs so should collect into two capacity items.");
-
-    SkuCapacity actualItem = actual.getData().get(0);
-    assertEquals(
-        RH0180195_UNLIMITED_USAGE.sku,
-        actualItem.getSku(),
-        "Wrong SKU. (Incorrect ordering of SKUs?)");
-
-    actualItem = actual.getData().get(1);
-    assertEquals(RH0180191.sku, actualItem.getSku(), "Wrong SKU. (Incorrect ordering of SKUs?)");
-  }
-
   private static void assertCapacities(
       int expectedPhysCap, int expectedVirtCap, Uom expectedUom, SkuCapacity actual) {
     assertEquals(expectedUom, actual.getUom(), "Wrong UOM");
@@ -0,0 +1,107 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.candlepin.subscriptions.task.AccountsFailedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AccountBatchTallyControllerTest {
+
+  @Mock private TallySnapshotController snapshotController;
+
+  private ExecutorService executor;
+  private SimpleMeterRegistry meterRegistry;
+  private AccountBatchTallyController controller;
+
+  @BeforeEach
+  void setup() {
+    executor = Executors.newFixedThreadPool(2);
+    meterRegistry = new SimpleMeterRegistry();
+    controller = new AccountBatchTallyController(snapshotController, executor, meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testEveryAccountInBatchIsTallied() {
+    controller.produceSnapshotsForAccounts(List.of("a1", "a2", "a3"));
+
+    verify(snapshotController).produceSnapshotsForAccount("a1");
+    verify(snapshotController).produceSnapshotsForAccount("a2");
+    verify(snapshotController).produceSnapshotsForAccount("a3");
+    assertEquals(
+        3.0, meterRegistry.counter("rhsm-subscriptions.snapshots.accounts.succeeded").count());
+  }
+
+  @Test
+  void testFailedAccountDoesNotStopRemainingAccounts() {
+    doThrow(new RuntimeException("boom"))
+        .when(snapshotController)
+        .produceSnapshotsForAccount("a1");
+
+    List<String> accounts = List.of("a1", "a2");
+    AccountsFailedException e =
+        assertThrows(
+            AccountsFailedException.class, () -> controller.produceSnapshotsForAccounts(accounts));
+
+    verify(snapshotController).produceSnapshotsForAccount("a2");
+    assertEquals(List.of("a1"), e.getFailedAccounts());
+    assertEquals("boom", e.getCause().getMessage());
+    assertEquals(
+        1.0, meterRegistry.counter("rhsm-subscriptions.snapshots.accounts.failed").count());
+    assertEquals(
+        1.0, meterRegistry.counter("rhsm-subscriptions.snapshots.accounts.succeeded").count());
+  }
+
+  @Test
+  void testFailedSingleAccountIsReported() {
+    doThrow(new RuntimeException("boom"))
+        .when(snapshotController)
+        .produceSnapshotsForAccount("a1");
+
+    List<String> accounts = List.of("a1");
+    AccountsFailedException e =
+        assertThrows(
+            AccountsFailedException.class, () -> controller.produceSnapshotsForAccounts(accounts));
+
+    assertEquals(List.of("a1"), e.getFailedAccounts());
+    assertEquals(
+        1.0, meterRegistry.counter("rhsm-subscriptions.snapshots.accounts.failed").count());
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement;
+import org.junit.jupiter.api.Test;
+
+class DenseUsageAccumulatorTest {
+
+  @Test
+  void testSameDimensionsReturnSameCalculation() {
+    DenseUsageAccumulator accumulator = new DenseUsageAccumulator();
+    int product = accumulator.productIndex("RHEL");
+    int billingAccount = accumulator.billingAccountIndex("_ANY");
+
+    UsageCalculation calc =
+        accumulator.getOrCreateCalculation(
+            product, ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider._ANY, billingAccount);
+    UsageCalculation sameCalc =
+        accumulator.getOrCreateCalculation(
+            product, ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider._ANY, billingAccount);
+
+    assertSame(calc, sameCalc);
+    assertSame(calc, accumulator.getOrCreateCalculation(createUsageKey("RHEL")));
+    assertEquals(createUsageKey("RHEL"), calc.getKey());
+    assertEquals(1, accumulator.size());
+  }
+
+  @Test
+  void testDifferentDimensionsReturnDifferentCalculations() {
+    DenseUsageAccumulator accumulator = new DenseUsageAccumulator();
+    int product = accumulator.productIndex("RHEL");
+    int billingAccount = accumulator.billingAccountIndex("_ANY");
+
+    UsageCalculation premium =
+        accumulator.getOrCreateCalculation(
+            product, ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider._ANY, billingAccount);
+    UsageCalculation any =
+        accumulator.getOrCreateCalculation(
+            product, ServiceLevel._ANY, Usage.PRODUCTION, BillingProvider._ANY, billingAccount);
+
+    assertNotSame(premium, any);
+    assertEquals(ServiceLevel._ANY, any.getSla());
+    assertEquals(2, accumulator.size());
+  }
+
+  @Test
+  void testManyCalculationsSurviveResize() {
+    DenseUsageAccumulator accumulator = new DenseUsageAccumulator();
+    int billingAccount = accumulator.billingAccountIndex("_ANY");
+    for (int i = 0; i < 500; i++) {
+      UsageCalculation calc =
+          accumulator.getOrCreateCalculation(
+              accumulator.productIndex("Product" + i),
+              ServiceLevel._ANY,
+              Usage._ANY,
+              BillingProvider._ANY,
+              billingAccount);
+      calc.addPhysical(i, i, 1);
+    }
+
+    assertEquals(500, accumulator.size());
+    for (int i = 0; i < 500; i++) {
+      UsageCalculation calc =
+          accumulator.getOrCreateCalculation(
+              new UsageCalculation.Key(
+                  "Product" + i, ServiceLevel._ANY, Usage._ANY, BillingProvider._ANY, "_ANY"));
+      assertEquals(i, calc.getTotals(HardwareMeasurementType.PHYSICAL).getCores());
+    }
+    assertEquals(500, accumulator.size());
+  }
+
+  @Test
+  void testAddCalculationsToAccountCalculation() {
+    DenseUsageAccumulator accumulator = new DenseUsageAccumulator();
+    accumulator
+        .getOrCreateCalculation(createUsageKey("RHEL"))
+        .add(HardwareMeasurementType.PHYSICAL, Measurement.Uom.CORES, 4.0);
+    accumulator.getOrCreateCalculation(createUsageKey("OpenShift"));
+
+    AccountUsageCalculation accountCalc = new AccountUsageCalculation("account");
+    accumulator.addCalculationsTo(accountCalc);
+
+    assertEquals(2, accountCalc.getKeys().size());
+    assertTrue(accountCalc.getProducts().containsAll(Set.of("RHEL", "OpenShift")));
+    UsageCalculation rhel = accountCalc.getCalculation(createUsageKey("RHEL"));
+    assertEquals(
+        4.0,
+        rhel.getTotals(HardwareMeasurementType.PHYSICAL).getMeasurement(Measurement.Uom.CORES));
+    assertEquals(
+        4.0, rhel.getTotals(HardwareMeasurementType.TOTAL).getMeasurement(Measurement.Uom.CORES));
+  }
+
+  @Test
+  void testAddAllMergesCalculationsWithTheSameKey() {
+    DenseUsageAccumulator accumulator = new DenseUsageAccumulator();
+    accumulator
+        .getOrCreateCalculation(createUsageKey("RHEL"))
+        .add(HardwareMeasurementType.PHYSICAL, Measurement.Uom.CORES, 4.0);
+    DenseUsageAccumulator other = new DenseUsageAccumulator();
+    other
+        .getOrCreateCalculation(createUsageKey("RHEL"))
+        .add(HardwareMeasurementType.PHYSICAL, Measurement.Uom.CORES, 2.0);
+    other.getOrCreateCalculation(createUsageKey("OpenShift"));
+
+    accumulator.addAll(other);
+
+    assertEquals(2, accumulator.size());
+    assertEquals(
+        6.0,
+        accumulator
+            .getOrCreateCalculation(createUsageKey("RHEL"))
+            .getTotals(HardwareMeasurementType.PHYSICAL)
+            .getMeasurement(Measurement.Uom.CORES));
+    assertFalse(accumulator.getOrCreateCalculation(createUsageKey("OpenShift")).hasMeasurements());
+  }
+
+  private UsageCalculation.Key createUsageKey(String productId) {
+    return new UsageCalculation.Key(
+        productId, ServiceLevel.PREMIUM, Usage.PRODUCTION, BillingProvider._ANY, "_ANY");
+  }
+}
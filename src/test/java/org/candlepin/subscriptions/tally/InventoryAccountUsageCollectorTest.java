@@ -47,11 +47,14 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.Stream.Builder;
+import org.candlepin.subscriptions.ApplicationProperties;
 import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
 import org.candlepin.subscriptions.db.HostRepository;
 import org.candlepin.subscriptions.db.model.*;
+import org.candlepin.subscriptions.inventory.db.InventoryDatabaseOperations;
 import org.candlepin.subscriptions.inventory.db.InventoryRepository;
 import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.candlepin.subscriptions.tally.facts.FactNormalizer;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -78,6 +81,8 @@ class InventoryAccountUsageCollectorTest {
   @MockBean private AccountServiceInventoryRepository accountServiceInventoryRepository;
   @Autowired private InventoryAccountUsageCollector collector;
   @Autowired private MeterRegistry meterRegistry;
+  @Autowired private FactNormalizer factNormalizer;
+  @Autowired private InventoryDatabaseOperations inventoryDatabaseOperations;
 
   @Test
   void hypervisorCountsIgnoredForNonRhelProduct() {
@@ -626,6 +631,67 @@ class InventoryAccountUsageCollectorTest {
     assertEquals(2, savedHypervisor.getNumOfGuests().intValue());
   }
 
+  @Test
+  void testGuestsAndHypervisorReadInDifferentPartitionsAreMerged() {
+    String account = "A1";
+    ApplicationProperties props = new ApplicationProperties();
+    props.setInventoryScanPartitions(2);
+    InventoryAccountUsageCollector partitionedCollector =
+        new InventoryAccountUsageCollector(
+            factNormalizer,
+            inventoryDatabaseOperations,
+            accountServiceInventoryRepository,
+            props,
+            meterRegistry);
+
+    InventoryHostFacts hypervisor = createHypervisor("A1", "O1", TEST_PRODUCT_ID);
+    hypervisor.setSystemProfileCoresPerSocket(4);
+    hypervisor.setSystemProfileSockets(3);
+    InventoryHostFacts guest1 =
+        createGuest(hypervisor.getSubscriptionManagerId(), "A1", "O1", TEST_PRODUCT_ID);
+    guest1.setSystemProfileCoresPerSocket(4);
+    guest1.setSystemProfileSockets(3);
+    InventoryHostFacts guest2 =
+        createGuest(hypervisor.getSubscriptionManagerId(), "A1", "O1", TEST_PRODUCT_ID);
+    guest2.setSystemProfileCoresPerSocket(4);
+    guest2.setSystemProfileSockets(2);
+    InventoryHostFacts host =
+        createRhsmHost("A1", "O1", List.of(TEST_PRODUCT_ID), "", OffsetDateTime.now());
+    host.setSystemProfileCoresPerSocket(4);
+    host.setSystemProfileSockets(3);
+
+    Map<String, String> expectedHypervisorMap = new HashMap<>();
+    expectedHypervisorMap.put(
+        hypervisor.getSubscriptionManagerId(), hypervisor.getSubscriptionManagerId());
+    mockReportedHypervisors(account, expectedHypervisorMap);
+
+    when(inventoryRepo.getFactsInIdRange(eq(List.of(account)), anyInt(), any(), any()))
+        .thenReturn(Stream.of(hypervisor), Stream.of(guest1, guest2, host));
+
+    Map<String, AccountUsageCalculation> calcs =
+        partitionedCollector.collect(RHEL_PRODUCTS, account);
+
+    AccountUsageCalculation calc = calcs.get(account);
+    assertEquals("O1", calc.getOwner());
+    // The guests are read by another partition than their hypervisor, and the physical totals
+    // combine the hypervisor and the physical host of both partitions.
+    checkTotalsCalculation(calc, "A1", "O1", TEST_PRODUCT, 36, 12, 3);
+    checkHypervisorTotalsCalculation(calc, "A1", "O1", TEST_PRODUCT, 12, 4, 1);
+    checkPhysicalTotalsCalculation(calc, "A1", "O1", TEST_PRODUCT, 24, 8, 2);
+
+    ArgumentCaptor<AccountServiceInventory> accountService =
+        ArgumentCaptor.forClass(AccountServiceInventory.class);
+    verify(accountServiceInventoryRepository).save(accountService.capture());
+    Map<String, Host> saved = accountService.getValue().getServiceInstances();
+    assertEquals(4, saved.size());
+    Host savedHypervisor =
+        saved.values().stream()
+            .filter(h -> hypervisor.getSubscriptionManagerId().equals(h.getSubscriptionManagerId()))
+            .findFirst()
+            .orElseThrow();
+    assertEquals(2, savedHypervisor.getNumOfGuests().intValue());
+  }
+
   @Test
   void testTotalHosts() {
     String account = "A1";
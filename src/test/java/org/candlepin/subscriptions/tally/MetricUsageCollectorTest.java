@@ -27,6 +27,9 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
@@ -65,6 +68,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 class MetricUsageCollectorTest {
   MetricUsageCollector metricUsageCollector;
 
+  TagProfile profile;
+
   @Mock AccountServiceInventoryRepository accountRepo;
 
   @Mock EventController eventController;
@@ -82,7 +87,7 @@ class MetricUsageCollectorTest {
   @BeforeEach
   void setup() {
 
-    TagProfile profile =
+    profile =
         TagProfile.builder()
             .tagMappings(
                 List.of(
@@ -129,7 +134,8 @@ class MetricUsageCollectorTest {
             .build();
     profile.initLookups();
 
-    metricUsageCollector = new MetricUsageCollector(profile, accountRepo, eventController, clock);
+    metricUsageCollector =
+        new MetricUsageCollector(profile, accountRepo, eventController, clock, false, false);
   }
 
   @Test
@@ -145,7 +151,7 @@ class MetricUsageCollectorTest {
             .withBillingProvider(Event.BillingProvider.RED_HAT)
             .withBillingAccountId(Optional.of("sellerAcct"));
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
 
     metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -167,7 +173,7 @@ class MetricUsageCollectorTest {
             .withBillingProvider(Event.BillingProvider.RED_HAT)
             .withBillingAccountId(Optional.of("sellerAcct"));
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
     AccountUsageCalculation accountUsageCalculation =
         metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -196,7 +202,7 @@ class MetricUsageCollectorTest {
             .withCloudProvider(Event.CloudProvider.__EMPTY__)
             .withInstanceId(UUID.randomUUID().toString());
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
     AccountUsageCalculation accountUsageCalculation =
         metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -223,7 +229,7 @@ class MetricUsageCollectorTest {
             .withCloudProvider(cloudProvider)
             .withInstanceId(UUID.randomUUID().toString());
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
     AccountUsageCalculation accountUsageCalculation =
         metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -246,7 +252,7 @@ class MetricUsageCollectorTest {
             .withBillingAccountId(Optional.of("sellerAcctId"));
     ;
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
     AccountUsageCalculation accountUsageCalculation =
         metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -294,7 +300,7 @@ class MetricUsageCollectorTest {
             .withBillingProvider(Event.BillingProvider.RED_HAT)
             .withBillingAccountId(Optional.of("sellerAcctId"));
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
     AccountUsageCalculation accountUsageCalculation =
         metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -326,7 +332,7 @@ class MetricUsageCollectorTest {
             .withBillingProvider(Event.BillingProvider.RED_HAT)
             .withBillingAccountId(Optional.of("sellerAcctId"));
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
     AccountUsageCalculation accountUsageCalculation =
         metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -359,7 +365,7 @@ class MetricUsageCollectorTest {
             .withRole(Role.OSD);
 
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
 
     AccountUsageCalculation accountUsageCalculation =
@@ -403,7 +409,7 @@ class MetricUsageCollectorTest {
             .withProductIds(List.of("1234"));
 
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
 
     AccountUsageCalculation accountUsageCalculation =
@@ -454,7 +460,7 @@ class MetricUsageCollectorTest {
             .withBillingProvider(Event.BillingProvider.RED_HAT)
             .withBillingAccountId(Optional.of("sellerAcctId"));
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event, event));
     AccountUsageCalculation accountUsageCalculation =
         metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -495,7 +501,7 @@ class MetricUsageCollectorTest {
             .withMeasurements(Collections.singletonList(instanceHoursMeasurement))
             .withUsage(Event.Usage.PRODUCTION);
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event, event, instanceHoursEvent, instanceHoursEvent));
 
     metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -530,7 +536,7 @@ class MetricUsageCollectorTest {
 
     String monthId = InstanceMonthlyTotalKey.formatMonthId(instanceDate);
     when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenAnswer(
             m -> {
               OffsetDateTime begin = m.getArgument(2, OffsetDateTime.class);
@@ -581,7 +587,7 @@ class MetricUsageCollectorTest {
     accountServiceInventory.getServiceInstances().put(staleInstance.getInstanceId(), staleInstance);
 
     when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenAnswer(
             m -> {
               OffsetDateTime begin = m.getArgument(2, OffsetDateTime.class);
@@ -639,7 +645,7 @@ class MetricUsageCollectorTest {
             .withMeasurements(Collections.singletonList(coresMeasurement))
             .withUsage(Event.Usage.PRODUCTION);
 
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(coresEvent));
 
     metricUsageCollector.collectHour(accountServiceInventory, eventDate);
@@ -678,7 +684,7 @@ class MetricUsageCollectorTest {
             .withInventoryId(Optional.empty())
             .withSubscriptionManagerId(Optional.empty());
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
 
     metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -698,7 +704,7 @@ class MetricUsageCollectorTest {
             .withMeasurements(Collections.singletonList(measurement))
             .withBillingAccountId(Optional.of("sellerAcct"));
     AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
-    when(eventController.fetchEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
         .thenReturn(Stream.of(event));
 
     metricUsageCollector.collectHour(accountServiceInventory, OffsetDateTime.MIN);
@@ -706,4 +712,226 @@ class MetricUsageCollectorTest {
     assertNotNull(instance);
     assertEquals(BillingProvider.RED_HAT, instance.getBillingProvider());
   }
+
+  @Test
+  void testSingleScanCollectsEachHourFromOneQuery() {
+    MetricUsageCollector singleScanCollector =
+        new MetricUsageCollector(profile, accountRepo, eventController, clock, true, false);
+    String instanceId = UUID.randomUUID().toString();
+    OffsetDateTime firstHour = OffsetDateTime.parse("2021-02-26T00:00:00Z");
+    OffsetDateTime secondHour = firstHour.plusHours(1);
+    Event firstEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withProductIds(List.of("1234"))
+            .withTimestamp(firstHour.plusMinutes(15))
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(
+                Collections.singletonList(new Measurement().withUom(Uom.CORES).withValue(1.0)));
+    Event secondEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withProductIds(List.of("1234"))
+            .withTimestamp(secondHour.plusMinutes(15))
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(
+                Collections.singletonList(new Measurement().withUom(Uom.CORES).withValue(2.0)));
+    DateRange range = new DateRange(firstHour, secondHour.plusHours(1));
+    when(eventController.hasEventsInTimeRange(any(), any(), any(), any())).thenReturn(true);
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(
+            "account123", SERVICE_TYPE, range.getStartDate(), range.getEndDate()))
+        .thenReturn(Stream.of(firstEvent, secondEvent));
+
+    MetricUsageCollector.CollectionResult result =
+        singleScanCollector.collect(SERVICE_TYPE, "account123", range);
+
+    UsageCalculation.Key key =
+        new UsageCalculation.Key(RHEL, ServiceLevel._ANY, Usage._ANY, BillingProvider._ANY, "_ANY");
+    assertEquals(Set.of(firstHour, secondHour), result.getCalculations().keySet());
+    assertEquals(
+        Double.valueOf(1.0),
+        result
+            .getCalculations()
+            .get(firstHour)
+            .getCalculation(key)
+            .getTotals(HardwareMeasurementType.PHYSICAL)
+            .getMeasurement(Uom.CORES));
+    assertEquals(
+        Double.valueOf(2.0),
+        result
+            .getCalculations()
+            .get(secondHour)
+            .getCalculation(key)
+            .getTotals(HardwareMeasurementType.PHYSICAL)
+            .getMeasurement(Uom.CORES));
+    verify(eventController)
+        .fetchTallyEventsInTimeRangeByServiceType(
+            eq("account123"), eq(SERVICE_TYPE), eq(range.getStartDate()), eq(range.getEndDate()));
+  }
+
+  @Test
+  void testSingleScanClearsMeasurementsPerHour() {
+    MetricUsageCollector singleScanCollector =
+        new MetricUsageCollector(profile, accountRepo, eventController, clock, true, false);
+    String instanceId = UUID.randomUUID().toString();
+    OffsetDateTime firstHour = OffsetDateTime.parse("2021-02-26T00:00:00Z");
+    Event coresEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withTimestamp(firstHour)
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(
+                Collections.singletonList(new Measurement().withUom(Uom.CORES).withValue(4.0)));
+    Event instanceHoursEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withTimestamp(firstHour.plusHours(1))
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(
+                Collections.singletonList(
+                    new Measurement().withUom(Uom.INSTANCE_HOURS).withValue(1.0)));
+    AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
+    when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
+    when(eventController.hasEventsInTimeRange(any(), any(), any(), any())).thenReturn(true);
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+        .thenReturn(Stream.of(coresEvent, instanceHoursEvent));
+
+    singleScanCollector.collect(
+        SERVICE_TYPE, "account123", new DateRange(firstHour, firstHour.plusHours(2)));
+
+    Host instance = accountServiceInventory.getServiceInstances().get(instanceId);
+    assertNull(instance.getMeasurement(Uom.CORES));
+    assertEquals(Double.valueOf(1.0), instance.getMeasurement(Uom.INSTANCE_HOURS));
+    assertEquals(Double.valueOf(4.0), instance.getMonthlyTotal("2021-02", Uom.CORES));
+  }
+
+  @Test
+  void testIncrementalRetallyReplaysOnlyDirtyHoursAndRequestedRange() {
+    MetricUsageCollector incrementalCollector =
+        new MetricUsageCollector(profile, accountRepo, eventController, clock, true, true);
+    String instanceId = UUID.randomUUID().toString();
+    OffsetDateTime dirtyHour = OffsetDateTime.parse("2021-02-03T05:00:00Z");
+    OffsetDateTime rangeStart = OffsetDateTime.parse("2021-02-26T00:00:00Z");
+    DateRange range = new DateRange(rangeStart, rangeStart.plusHours(2));
+    Event changedEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withProductIds(List.of("1234"))
+            .withTimestamp(dirtyHour)
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(
+                Collections.singletonList(new Measurement().withUom(Uom.CORES).withValue(3.0)));
+    AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
+    Host existing = new Host();
+    existing.setInstanceId(instanceId);
+    existing.setLastSeen(rangeStart.plusHours(5));
+    existing.setMeasurement(Uom.CORES, 8.0);
+    accountServiceInventory.getServiceInstances().put(instanceId, existing);
+    when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
+    EventDirtyHour dirty = new EventDirtyHour("account123", SERVICE_TYPE, dirtyHour);
+    when(eventController.fetchDirtyHours(any(), any(), any())).thenReturn(List.of(dirty));
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(
+            "account123", SERVICE_TYPE, dirtyHour, dirtyHour.plusHours(1)))
+        .thenReturn(Stream.of(changedEvent));
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(
+            "account123", SERVICE_TYPE, range.getStartDate(), range.getEndDate()))
+        .thenReturn(Stream.of());
+    OffsetDateTime month = clock.startOfMonth(rangeStart);
+    when(eventController.sumMeasurementsByInstanceAndMonth(
+            "account123", SERVICE_TYPE, month, month.plusMonths(1)))
+        .thenReturn(Stream.<Object[]>of(new Object[] {instanceId, "Cores", "2021-02", 11.0}));
+
+    MetricUsageCollector.CollectionResult result =
+        incrementalCollector.collect(SERVICE_TYPE, "account123", range);
+
+    assertEquals(2, result.getAffectedRanges().size());
+    assertEquals(dirtyHour, result.getAffectedRanges().get(0).getStartDate());
+    assertEquals(rangeStart, result.getAffectedRanges().get(1).getStartDate());
+    assertEquals(Set.of(dirtyHour), result.getCalculations().keySet());
+    assertEquals(List.of(dirty), result.getTalliedDirtyHours());
+    assertEquals(Double.valueOf(11.0), existing.getMonthlyTotal("2021-02", Uom.CORES));
+    assertEquals(rangeStart.plusHours(5), existing.getLastSeen());
+    assertEquals(Double.valueOf(8.0), existing.getMeasurement(Uom.CORES));
+    verify(eventController, never())
+        .fetchTallyEventsInTimeRangeByServiceType(any(), any(), eq(month), any());
+  }
+
+  @Test
+  void testIncrementalRetallyKeepsLatestStateOfHostSeenBeforeRequestedRange() {
+    MetricUsageCollector incrementalCollector =
+        new MetricUsageCollector(profile, accountRepo, eventController, clock, true, true);
+    String instanceId = UUID.randomUUID().toString();
+    OffsetDateTime dirtyHour = OffsetDateTime.parse("2021-02-03T05:00:00Z");
+    OffsetDateTime rangeStart = OffsetDateTime.parse("2021-02-26T00:00:00Z");
+    OffsetDateTime lastSeen = rangeStart.minusHours(1);
+    DateRange range = new DateRange(rangeStart, rangeStart.plusHours(2));
+    Event changedEvent =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withProductIds(List.of("1234"))
+            .withTimestamp(dirtyHour)
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(
+                Collections.singletonList(new Measurement().withUom(Uom.CORES).withValue(3.0)));
+    AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
+    Host existing = new Host();
+    existing.setInstanceId(instanceId);
+    existing.setLastSeen(lastSeen);
+    existing.setMeasurement(Uom.CORES, 8.0);
+    accountServiceInventory.getServiceInstances().put(instanceId, existing);
+    when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
+    when(eventController.fetchDirtyHours(any(), any(), any()))
+        .thenReturn(List.of(new EventDirtyHour("account123", SERVICE_TYPE, dirtyHour)));
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(
+            "account123", SERVICE_TYPE, dirtyHour, dirtyHour.plusHours(1)))
+        .thenReturn(Stream.of(changedEvent));
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(
+            "account123", SERVICE_TYPE, range.getStartDate(), range.getEndDate()))
+        .thenReturn(Stream.of());
+    when(eventController.sumMeasurementsByInstanceAndMonth(any(), any(), any(), any()))
+        .thenReturn(Stream.of());
+
+    incrementalCollector.collect(SERVICE_TYPE, "account123", range);
+
+    // The replayed hour is weeks older than the host's latest event, so it must not roll it back.
+    assertEquals(lastSeen, existing.getLastSeen());
+    assertEquals(Double.valueOf(8.0), existing.getMeasurement(Uom.CORES));
+  }
+
+  @Test
+  void testIncrementalNewTallyAccumulatesMonthlyTotals() {
+    MetricUsageCollector incrementalCollector =
+        new MetricUsageCollector(profile, accountRepo, eventController, clock, true, true);
+    String instanceId = UUID.randomUUID().toString();
+    OffsetDateTime rangeStart = OffsetDateTime.parse("2021-02-26T00:00:00Z");
+    DateRange range = new DateRange(rangeStart, rangeStart.plusHours(1));
+    Event event =
+        new Event()
+            .withEventId(UUID.randomUUID())
+            .withTimestamp(rangeStart)
+            .withServiceType(SERVICE_TYPE)
+            .withInstanceId(instanceId)
+            .withMeasurements(
+                Collections.singletonList(new Measurement().withUom(Uom.CORES).withValue(4.0)));
+    AccountServiceInventory accountServiceInventory = createTestAccountServiceInventory();
+    when(accountRepo.findById(any())).thenReturn(Optional.of(accountServiceInventory));
+    when(eventController.fetchDirtyHours(any(), any(), any()))
+        .thenReturn(List.of(new EventDirtyHour("account123", SERVICE_TYPE, rangeStart)));
+    when(eventController.fetchTallyEventsInTimeRangeByServiceType(any(), any(), any(), any()))
+        .thenReturn(Stream.of(event));
+
+    MetricUsageCollector.CollectionResult result =
+        incrementalCollector.collect(SERVICE_TYPE, "account123", range);
+
+    assertFalse(result.isWasRecalculated());
+    Host instance = accountServiceInventory.getServiceInstances().get(instanceId);
+    assertEquals(Double.valueOf(4.0), instance.getMonthlyTotal("2021-02", Uom.CORES));
+    verify(eventController, never()).sumMeasurementsByInstanceAndMonth(any(), any(), any(), any());
+  }
 }
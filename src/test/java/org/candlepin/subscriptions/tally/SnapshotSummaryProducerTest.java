@@ -28,6 +28,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.time.OffsetDateTime;
 import java.util.HashMap;
@@ -35,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Granularity;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
@@ -54,7 +56,9 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 @ExtendWith(MockitoExtension.class)
 class SnapshotSummaryProducerTest {
@@ -65,18 +69,30 @@ class SnapshotSummaryProducerTest {
 
   private TaskQueueProperties props;
 
+  private TallySummaryProperties tallySummaryProperties;
+
   private SnapshotSummaryProducer producer;
 
   @BeforeEach
   void setup() {
     props = new TaskQueueProperties();
     props.setTopic("summary-topic");
+    tallySummaryProperties = new TallySummaryProperties();
     RetryTemplate retryTemplate = new RetryTemplate();
-    this.producer = new SnapshotSummaryProducer(kafka, retryTemplate, props);
+    this.producer =
+        new SnapshotSummaryProducer(kafka, retryTemplate, props, tallySummaryProperties);
+  }
+
+  private void stubSuccessfulSend() {
+    SettableListenableFuture<SendResult<String, TallySummary>> result =
+        new SettableListenableFuture<>();
+    result.set(null);
+    when(kafka.send(anyString(), anyString(), any())).thenReturn(result);
   }
 
   @Test
   void testProduceSummary() {
+    stubSuccessfulSend();
     Map<String, List<TallySnapshot>> updateMap = new HashMap<>();
     updateMap.put(
         "a1",
@@ -103,7 +119,7 @@ class SnapshotSummaryProducerTest {
                 Uom.CORES,
                 22.2)));
     producer.produceTallySummaryMessages(updateMap);
-    verify(kafka, times(2)).send(eq(props.getTopic()), summaryCaptor.capture());
+    verify(kafka, times(2)).send(eq(props.getTopic()), anyString(), summaryCaptor.capture());
 
     List<TallySummary> summaries = summaryCaptor.getAllValues();
     assertEquals(2, summaries.size());
@@ -177,7 +193,69 @@ class SnapshotSummaryProducerTest {
                 20.4)));
     updateMap.get("a1").get(0).getTallyMeasurements().clear();
     producer.produceTallySummaryMessages(updateMap);
-    verify(kafka, never()).send(anyString(), any());
+    verify(kafka, never()).send(anyString(), anyString(), any());
+  }
+
+  @Test
+  void testSnapshotsForAnAccountAreGroupedIntoMessages() {
+    stubSuccessfulSend();
+    tallySummaryProperties.setMaxSnapshotsPerMessage(2);
+    this.producer =
+        new SnapshotSummaryProducer(kafka, new RetryTemplate(), props, tallySummaryProperties);
+
+    List<TallySnapshot> snapshots =
+        IntStream.range(0, 3)
+            .mapToObj(
+                i ->
+                    buildSnapshot(
+                        "a1",
+                        "OSD",
+                        Granularity.HOURLY,
+                        ServiceLevel.PREMIUM,
+                        Usage.PRODUCTION,
+                        BillingProvider.RED_HAT,
+                        Uom.CORES,
+                        i))
+            .collect(Collectors.toList());
+    producer.produceTallySummaryMessages(Map.of("a1", snapshots));
+
+    verify(kafka, times(2)).send(eq(props.getTopic()), eq("a1"), summaryCaptor.capture());
+    List<TallySummary> summaries = summaryCaptor.getAllValues();
+    assertEquals(2, summaries.get(0).getTallySnapshots().size());
+    assertEquals(1, summaries.get(1).getTallySnapshots().size());
+  }
+
+  @Test
+  void testOnlySnapshotsWithoutMeasurementsAreSkipped() {
+    stubSuccessfulSend();
+    TallySnapshot valid =
+        buildSnapshot(
+            "a1",
+            "OSD",
+            Granularity.HOURLY,
+            ServiceLevel.PREMIUM,
+            Usage.PRODUCTION,
+            BillingProvider.RED_HAT,
+            Uom.CORES,
+            20.4);
+    TallySnapshot invalid =
+        buildSnapshot(
+            "a1",
+            "OCP",
+            Granularity.HOURLY,
+            ServiceLevel.PREMIUM,
+            Usage.PRODUCTION,
+            BillingProvider.RED_HAT,
+            Uom.CORES,
+            10.0);
+    invalid.getTallyMeasurements().clear();
+    producer.produceTallySummaryMessages(Map.of("a1", List.of(valid, invalid)));
+
+    verify(kafka).send(eq(props.getTopic()), eq("a1"), summaryCaptor.capture());
+    List<org.candlepin.subscriptions.json.TallySnapshot> sent =
+        summaryCaptor.getValue().getTallySnapshots();
+    assertEquals(1, sent.size());
+    assertEquals("OSD", sent.get(0).getProductId());
   }
 
   void assertMeasurement(
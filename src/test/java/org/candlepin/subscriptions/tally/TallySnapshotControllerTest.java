@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.tally;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -80,6 +81,13 @@ class TallySnapshotControllerTest {
     verify(cloudigradeCollector, times(2)).enrichUsageWithCloudigradeData(any(), any());
   }
 
+  @Test
+  void testCollectionFailureIsPropagated() {
+    props.setCloudigradeEnabled(false);
+    when(inventoryCollector.collect(any(), any())).thenThrow(new RuntimeException("boom"));
+    assertThrows(RuntimeException.class, () -> controller.produceSnapshotsForAccount(ACCOUNT));
+  }
+
   @Test
   void testCloudigradeAccountUsageCollectorDisabled() {
     props.setCloudigradeEnabled(false);
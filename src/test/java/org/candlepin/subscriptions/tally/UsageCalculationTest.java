@@ -24,11 +24,13 @@ import static org.candlepin.subscriptions.tally.collector.Assertions.assertHardw
 import static org.candlepin.subscriptions.tally.collector.Assertions.assertNullExcept;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Map;
 import java.util.stream.IntStream;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement;
 import org.junit.jupiter.api.Test;
 
 class UsageCalculationTest {
@@ -77,6 +79,54 @@ class UsageCalculationTest {
     assertNullExcept(calculation, HardwareMeasurementType.TOTAL, HardwareMeasurementType.VIRTUAL);
   }
 
+  @Test
+  void testMeasurementsOnlyIncludeIncrementedUoms() {
+    UsageCalculation calculation = new UsageCalculation(createUsageKey("Product"));
+    calculation.add(HardwareMeasurementType.PHYSICAL, Measurement.Uom.CORES, 2.0);
+    calculation.add(HardwareMeasurementType.PHYSICAL, Measurement.Uom.CORES, 3.5);
+
+    UsageCalculation.Totals physical = calculation.getTotals(HardwareMeasurementType.PHYSICAL);
+    assertEquals(5.5, physical.getMeasurement(Measurement.Uom.CORES));
+    assertNull(physical.getMeasurement(Measurement.Uom.SOCKETS));
+    assertEquals(Map.of(Measurement.Uom.CORES, 5.5), physical.getMeasurements());
+    assertEquals(
+        5.5,
+        calculation.getTotals(HardwareMeasurementType.TOTAL).getMeasurement(Measurement.Uom.CORES));
+  }
+
+  @Test
+  void testMergeAddsTotalsOfEveryType() {
+    UsageCalculation calculation = new UsageCalculation(createUsageKey("Product"));
+    calculation.addPhysical(4, 2, 1);
+    calculation.add(HardwareMeasurementType.PHYSICAL, Measurement.Uom.CORES, 4.0);
+    UsageCalculation other = new UsageCalculation(createUsageKey("Product"));
+    other.addPhysical(8, 4, 1);
+    other.addHypervisor(2, 1, 1);
+    other.add(HardwareMeasurementType.PHYSICAL, Measurement.Uom.CORES, 8.0);
+
+    calculation.merge(other);
+
+    assertHardwareMeasurementTotals(calculation, HardwareMeasurementType.PHYSICAL, 6, 12, 2);
+    assertHardwareMeasurementTotals(calculation, HardwareMeasurementType.VIRTUAL, 1, 2, 1);
+    assertHardwareMeasurementTotals(calculation, HardwareMeasurementType.TOTAL, 7, 14, 3);
+    assertEquals(
+        Map.of(Measurement.Uom.CORES, 12.0),
+        calculation.getTotals(HardwareMeasurementType.PHYSICAL).getMeasurements());
+    assertNullExcept(
+        calculation,
+        HardwareMeasurementType.TOTAL,
+        HardwareMeasurementType.PHYSICAL,
+        HardwareMeasurementType.VIRTUAL);
+  }
+
+  @Test
+  void testMergeRejectsDifferentKey() {
+    UsageCalculation calculation = new UsageCalculation(createUsageKey("Product"));
+    UsageCalculation other = new UsageCalculation(createUsageKey("Other Product"));
+
+    assertThrows(IllegalArgumentException.class, () -> calculation.merge(other));
+  }
+
   @Test
   void testAWSTotal() {
     checkCloudProvider(HardwareMeasurementType.AWS);
@@ -0,0 +1,275 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.tally.roller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.FixedClockConfiguration;
+import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.BillingProvider;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.UsageCalculation;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+
+@SpringBootTest
+// The transactional annotation will rollback the transaction at the end of every test.
+@Transactional
+@ActiveProfiles({"api", "test"})
+@TestInstance(Lifecycle.PER_CLASS)
+class MultiGranularitySnapshotRollerTest {
+
+  @Autowired private TallySnapshotRepository repository;
+
+  @Autowired private TagProfile tagProfile;
+
+  @Autowired private ResourceLoader resourceLoader;
+
+  private ApplicationClock clock;
+
+  private MultiGranularitySnapshotRoller roller;
+
+  private SnapshotRollerTester<MultiGranularitySnapshotRoller> tester;
+
+  private SnapshotRollerTester<MultiGranularitySnapshotRoller> hourlyTester;
+
+  @BeforeAll
+  void setupAllTests() throws IOException {
+    this.clock = new FixedClockConfiguration().fixedClock();
+    this.roller = new MultiGranularitySnapshotRoller(repository, clock, tagProfile);
+    this.tester = new SnapshotRollerTester<>(repository, roller);
+
+    // Hourly snapshots are only produced for products with an hourly finest granularity.
+    Yaml parser = new Yaml(new Constructor(TagProfile.class));
+    TagProfile hourlyTagProfile =
+        parser.load(resourceLoader.getResource("classpath:test_tag_profile.yaml").getInputStream());
+    hourlyTagProfile.initLookups();
+    this.hourlyTester =
+        new SnapshotRollerTester<>(
+            repository, new MultiGranularitySnapshotRoller(repository, clock, hourlyTagProfile));
+    this.hourlyTester.setTestProduct("OpenShift Hourly");
+  }
+
+  @Test
+  void testProducesSnapshotForEverySupportedGranularity() {
+    UsageCalculation.Key key =
+        new UsageCalculation.Key(
+            "RHEL", ServiceLevel.EMPTY, Usage.EMPTY, BillingProvider.EMPTY, "sellerAcct");
+    UsageCalculation productCalc = new UsageCalculation(key);
+    productCalc.addPhysical(12, 24, 6);
+    AccountUsageCalculation calc = new AccountUsageCalculation("my_account");
+    calc.setOwner("O1");
+    calc.addCalculation(productCalc);
+
+    Collection<TallySnapshot> snaps = roller.rollSnapshots("my_account", List.of(calc));
+
+    Set<Granularity> expected =
+        Arrays.stream(Granularity.values())
+            .filter(granularity -> tagProfile.tagSupportsGranularity("RHEL", granularity))
+            .collect(Collectors.toSet());
+    assertEquals(expected.size(), snaps.size());
+    assertEquals(
+        expected, snaps.stream().map(TallySnapshot::getGranularity).collect(Collectors.toSet()));
+  }
+
+  @Test
+  void testHourlySnapshotProducer() {
+    hourlyTester.performBasicSnapshotRollerTest(
+        Granularity.HOURLY, clock.startOfCurrentHour(), clock.endOfCurrentHour());
+  }
+
+  @Test
+  void testHourlySnapIsUpdatedWhenItAlreadyExists() {
+    hourlyTester.performSnapshotUpdateTest(
+        Granularity.HOURLY, clock.startOfCurrentHour(), clock.endOfCurrentHour());
+  }
+
+  @Test
+  void ensureCurrentHourlyUpdatedRegardlessOfWhetherIncomingCalculationsAreLessThanTheExisting() {
+    hourlyTester.performUpdateWithLesserValueTest(
+        Granularity.HOURLY, clock.startOfCurrentHour(), clock.endOfCurrentHour(), false);
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testEmptyHourlySnapshotsNotPersisted() {
+    hourlyTester.performDoesNotPersistEmptySnapshots(
+        Granularity.HOURLY, clock.startOfCurrentHour(), clock.endOfCurrentHour());
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testHandlesHourlyDuplicates() {
+    hourlyTester.performRemovesDuplicates(
+        Granularity.HOURLY, clock.startOfCurrentHour(), clock.endOfCurrentHour());
+  }
+
+  @Test
+  void testDailySnapshotProducer() {
+    tester.performBasicSnapshotRollerTest(
+        Granularity.DAILY, clock.startOfToday(), clock.endOfToday());
+  }
+
+  @Test
+  void testDailySnapIsUpdatedWhenItAlreadyExists() {
+    tester.performSnapshotUpdateTest(Granularity.DAILY, clock.startOfToday(), clock.endOfToday());
+  }
+
+  @Test
+  void ensureCurrentDailyUpdatedRegardlessOfWhetherIncomingCalculationsAreLessThanTheExisting() {
+    tester.performUpdateWithLesserValueTest(
+        Granularity.DAILY, clock.startOfToday(), clock.endOfToday(), false);
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testEmptyDailySnapshotsNotPersisted() {
+    tester.performDoesNotPersistEmptySnapshots(
+        Granularity.DAILY, clock.startOfToday(), clock.endOfToday());
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testHandlesDailyDuplicates() {
+    tester.performRemovesDuplicates(Granularity.DAILY, clock.startOfToday(), clock.endOfToday());
+  }
+
+  @Test
+  void testWeeklySnapshotProduction() {
+    tester.performBasicSnapshotRollerTest(
+        Granularity.WEEKLY, clock.startOfCurrentWeek(), clock.endOfCurrentWeek());
+  }
+
+  @Test
+  void testWeeklySnapIsUpdatedWhenItAlreadyExists() {
+    tester.performSnapshotUpdateTest(
+        Granularity.WEEKLY, clock.startOfCurrentWeek(), clock.endOfCurrentWeek());
+  }
+
+  @Test
+  void ensureCurrentWeeklyIsNotUpdatedWhenIncomingCalculationsAreLessThanTheExisting() {
+    tester.performUpdateWithLesserValueTest(
+        Granularity.WEEKLY, clock.startOfCurrentWeek(), clock.endOfCurrentWeek(), true);
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testHandlesWeeklyDuplicates() {
+    tester.performRemovesDuplicates(
+        Granularity.WEEKLY, clock.startOfCurrentWeek(), clock.endOfCurrentWeek());
+  }
+
+  @Test
+  void testMonthlySnapshotProducer() {
+    tester.performBasicSnapshotRollerTest(
+        Granularity.MONTHLY, clock.startOfCurrentMonth(), clock.endOfCurrentMonth());
+  }
+
+  @Test
+  void testMonthlySnapIsUpdatedWhenItAlreadyExists() {
+    tester.performSnapshotUpdateTest(
+        Granularity.MONTHLY, clock.startOfCurrentMonth(), clock.endOfCurrentMonth());
+  }
+
+  @Test
+  void ensureCurrentMonthlyIsNotUpdatedWhenIncomingCalculationsAreLessThanTheExisting() {
+    tester.performUpdateWithLesserValueTest(
+        Granularity.MONTHLY, clock.startOfCurrentMonth(), clock.endOfCurrentMonth(), true);
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testHandlesMonthlyDuplicates() {
+    tester.performRemovesDuplicates(
+        Granularity.MONTHLY, clock.startOfCurrentMonth(), clock.endOfCurrentMonth());
+  }
+
+  @Test
+  void testQuarterlySnapshotProduction() {
+    tester.performBasicSnapshotRollerTest(
+        Granularity.QUARTERLY, clock.startOfCurrentQuarter(), clock.endOfCurrentQuarter());
+  }
+
+  @Test
+  void testQuarterlySnapIsUpdatedWhenItAlreadyExists() {
+    tester.performSnapshotUpdateTest(
+        Granularity.QUARTERLY, clock.startOfCurrentQuarter(), clock.endOfCurrentQuarter());
+  }
+
+  @Test
+  void ensureCurrentQuarterlyIsNotUpdatedWhenIncomingCalculationsAreLessThanTheExisting() {
+    tester.performUpdateWithLesserValueTest(
+        Granularity.QUARTERLY, clock.startOfCurrentQuarter(), clock.endOfCurrentQuarter(), true);
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testHandlesQuarterlyDuplicates() {
+    tester.performRemovesDuplicates(
+        Granularity.QUARTERLY, clock.startOfCurrentQuarter(), clock.endOfCurrentQuarter());
+  }
+
+  @Test
+  void testYearlySnapshotProduction() {
+    tester.performBasicSnapshotRollerTest(
+        Granularity.YEARLY, clock.startOfCurrentYear(), clock.endOfCurrentYear());
+  }
+
+  @Test
+  void testYearlySnapIsUpdatedWhenItAlreadyExists() {
+    tester.performSnapshotUpdateTest(
+        Granularity.YEARLY, clock.startOfCurrentYear(), clock.endOfCurrentYear());
+  }
+
+  @Test
+  void ensureCurrentYearlyIsNotUpdatedWhenIncomingCalculationsAreLessThanTheExisting() {
+    tester.performUpdateWithLesserValueTest(
+        Granularity.YEARLY, clock.startOfCurrentYear(), clock.endOfCurrentYear(), true);
+  }
+
+  @Test
+  @SuppressWarnings("java:S2699") /* Sonar thinks no assertions */
+  void testHandlesYearlyDuplicates() {
+    tester.performRemovesDuplicates(
+        Granularity.YEARLY, clock.startOfCurrentYear(), clock.endOfCurrentYear());
+  }
+}
@@ -22,7 +22,7 @@ package org.candlepin.subscriptions.tally.tasks;
 
 import java.util.Arrays;
 import java.util.List;
-import org.candlepin.subscriptions.tally.TallySnapshotController;
+import org.candlepin.subscriptions.tally.AccountBatchTallyController;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -32,13 +32,23 @@ import org.mockito.junit.jupiter.MockitoExtension;
 @ExtendWith(MockitoExtension.class)
 class UpdateAccountSnapshotsTaskTest {
 
-  @Mock private TallySnapshotController snapshotController;
+  @Mock private AccountBatchTallyController batchTallyController;
 
   @Test
   void testExecute() {
     List<String> accounts = Arrays.asList("a1");
-    UpdateAccountSnapshotsTask task = new UpdateAccountSnapshotsTask(snapshotController, accounts);
+    UpdateAccountSnapshotsTask task =
+        new UpdateAccountSnapshotsTask(batchTallyController, accounts);
     task.execute();
-    Mockito.verify(snapshotController).produceSnapshotsForAccount("a1");
+    Mockito.verify(batchTallyController).produceSnapshotsForAccounts(accounts);
+  }
+
+  @Test
+  void testExecuteWithMultipleAccounts() {
+    List<String> accounts = Arrays.asList("a1", "a2", "a3");
+    UpdateAccountSnapshotsTask task =
+        new UpdateAccountSnapshotsTask(batchTallyController, accounts);
+    task.execute();
+    Mockito.verify(batchTallyController).produceSnapshotsForAccounts(accounts);
   }
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CoalescingTaskFactoryTest {
+
+  private static final OffsetDateTime NOW = OffsetDateTime.parse("2019-05-24T12:35:00Z");
+  private static final OffsetDateTime BEFORE = NOW.minusMinutes(1);
+  private static final OffsetDateTime AFTER = NOW.plusMinutes(1);
+
+  private TaskFactory delegate;
+  private Task delegateTask;
+  private ApplicationClock clock;
+  private SimpleMeterRegistry meterRegistry;
+  private CoalescingTaskFactory factory;
+
+  @BeforeEach
+  void setup() {
+    delegate = mock(TaskFactory.class);
+    delegateTask = mock(Task.class);
+    when(delegate.build(any())).thenReturn(delegateTask);
+    clock = mock(ApplicationClock.class);
+    when(clock.now()).thenReturn(NOW);
+    meterRegistry = new SimpleMeterRegistry();
+    factory = new CoalescingTaskFactory(delegate, Duration.ofMinutes(10), clock, meterRegistry);
+  }
+
+  @Test
+  void testUpdateQueuedBeforeCompletedRunStartedIsSkipped() {
+    factory.build(update(BEFORE, List.of("a1"))).execute();
+    factory.build(update(BEFORE, List.of("a1"))).execute();
+
+    verify(delegate, times(1)).build(update(BEFORE, List.of("a1")));
+    verify(delegateTask, times(1)).execute();
+    assertEquals(1.0, coalesced(TaskType.UPDATE_SNAPSHOTS));
+  }
+
+  @Test
+  void testUpdateQueuedAfterCompletedRunStartedIsRun() {
+    factory.build(update(BEFORE, List.of("a1"))).execute();
+    when(clock.now()).thenReturn(AFTER.plusMinutes(1));
+    factory.build(update(AFTER, List.of("a1"))).execute();
+
+    verify(delegate).build(update(AFTER, List.of("a1")));
+    verify(delegateTask, times(2)).execute();
+    assertEquals(0.0, coalesced(TaskType.UPDATE_SNAPSHOTS));
+  }
+
+  @Test
+  void testUpdateIsNotCoalescedWithRunStillInProgress() {
+    Task inProgress = factory.build(update(BEFORE, List.of("a1")));
+    factory.build(update(BEFORE, List.of("a1"))).execute();
+    inProgress.execute();
+
+    verify(delegateTask, times(2)).execute();
+  }
+
+  @Test
+  void testUpdateIsNotCoalescedWithFailedRun() {
+    doThrow(new IllegalStateException("failed")).when(delegateTask).execute();
+    Task failing = factory.build(update(BEFORE, List.of("a1")));
+    assertThrows(IllegalStateException.class, failing::execute);
+    factory.build(update(BEFORE, List.of("a1")));
+
+    verify(delegate, times(2)).build(update(BEFORE, List.of("a1")));
+  }
+
+  @Test
+  void testUpdateOnlyRecordsAccountsThatDidNotFail() {
+    doThrow(new AccountsFailedException(List.of("a1"), new IllegalStateException("failed")))
+        .when(delegateTask)
+        .execute();
+    Task partiallyFailing = factory.build(update(BEFORE, List.of("a1", "a2")));
+    assertThrows(AccountsFailedException.class, partiallyFailing::execute);
+    factory.build(update(BEFORE, List.of("a1", "a2")));
+
+    verify(delegate).build(update(BEFORE, List.of("a1")));
+  }
+
+  @Test
+  void testBatchedUpdateKeepsOnlyAccountsNotAlreadyRun() {
+    factory.build(update(BEFORE, List.of("a1", "a2"))).execute();
+    factory.build(update(BEFORE, List.of("a2", "a3"))).execute();
+
+    verify(delegate).build(update(BEFORE, List.of("a1", "a2")));
+    verify(delegate).build(update(BEFORE, List.of("a3")));
+  }
+
+  @Test
+  void testUpdateQueuedBeforeWindowIsRun() {
+    factory.build(update(BEFORE, List.of("a1"))).execute();
+    factory.build(update(NOW.minusMinutes(10), List.of("a1"))).execute();
+
+    verify(delegateTask, times(2)).execute();
+  }
+
+  @Test
+  void testUpdateWithoutQueuedTimeIsRun() {
+    TaskDescriptor unstamped =
+        TaskDescriptor.builder(TaskType.UPDATE_SNAPSHOTS, "tasks")
+            .setArg("accounts", List.of("a1"))
+            .build();
+    factory.build(unstamped).execute();
+    factory.build(unstamped).execute();
+
+    verify(delegateTask, times(2)).execute();
+  }
+
+  @Test
+  void testHourlyRangeCoveredByCompletedRunsIsSkipped() {
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z")).execute();
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T10:00:00Z", "2019-05-24T12:00:00Z")).execute();
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T09:00:00Z", "2019-05-24T11:00:00Z")).execute();
+
+    verify(delegate, times(2)).build(any());
+    assertEquals(1.0, coalesced(TaskType.UPDATE_HOURLY_SNAPSHOTS));
+  }
+
+  @Test
+  void testOverlappingHourlyRangeOnlyRunsUncoveredHours() {
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z")).execute();
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T07:00:00Z", "2019-05-24T11:00:00Z")).execute();
+
+    verify(delegate).build(hourly(BEFORE, "a1", "2019-05-24T07:00:00Z", "2019-05-24T08:00:00Z"));
+    verify(delegate).build(hourly(BEFORE, "a1", "2019-05-24T10:00:00Z", "2019-05-24T11:00:00Z"));
+    verify(delegate, never())
+        .build(hourly(BEFORE, "a1", "2019-05-24T07:00:00Z", "2019-05-24T11:00:00Z"));
+    verify(delegateTask, times(3)).execute();
+  }
+
+  @Test
+  void testHourlyRangeIsNotCoalescedWithFailedRun() {
+    doThrow(new IllegalStateException("failed")).when(delegateTask).execute();
+    Task failing =
+        factory.build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z"));
+    assertThrows(IllegalStateException.class, failing::execute);
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z"));
+
+    verify(delegate, times(2))
+        .build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z"));
+    assertEquals(0.0, coalesced(TaskType.UPDATE_HOURLY_SNAPSHOTS));
+  }
+
+  @Test
+  void testHourlyOnlyRecordsRangesThatDidNotFail() {
+    Task failingTask = mock(Task.class);
+    doThrow(new IllegalStateException("failed")).when(failingTask).execute();
+    when(delegate.build(hourly(BEFORE, "a1", "2019-05-24T07:00:00Z", "2019-05-24T08:00:00Z")))
+        .thenReturn(failingTask);
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z")).execute();
+
+    Task partiallyFailing =
+        factory.build(hourly(BEFORE, "a1", "2019-05-24T07:00:00Z", "2019-05-24T11:00:00Z"));
+    assertThrows(IllegalStateException.class, partiallyFailing::execute);
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T07:00:00Z", "2019-05-24T11:00:00Z"));
+
+    // The range after the failed one was still run, and only the failed range is retried.
+    verify(delegateTask, times(2)).execute();
+    verify(delegate, times(2))
+        .build(hourly(BEFORE, "a1", "2019-05-24T07:00:00Z", "2019-05-24T08:00:00Z"));
+    verify(delegate, times(1))
+        .build(hourly(BEFORE, "a1", "2019-05-24T10:00:00Z", "2019-05-24T11:00:00Z"));
+  }
+
+  @Test
+  void testHourlyRangeQueuedAfterCompletedRunStartedIsRun() {
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z")).execute();
+    when(clock.now()).thenReturn(AFTER.plusMinutes(1));
+    factory.build(hourly(AFTER, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z")).execute();
+
+    verify(delegateTask, times(2)).execute();
+  }
+
+  @Test
+  void testHourlyRangesAreTrackedPerAccount() {
+    factory.build(hourly(BEFORE, "a1", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z")).execute();
+    factory.build(hourly(BEFORE, "a2", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z")).execute();
+
+    verify(delegate).build(hourly(BEFORE, "a2", "2019-05-24T08:00:00Z", "2019-05-24T10:00:00Z"));
+  }
+
+  @Test
+  void testOtherTaskTypesArePassedThrough() {
+    TaskDescriptor task =
+        TaskDescriptor.builder(TaskType.UPDATE_ORG_INVENTORY, "tasks")
+            .setSingleValuedArg("org_id", "o1")
+            .setSingleValuedArg(CoalescingTaskFactory.QUEUED_AT_ARG, BEFORE.toString())
+            .build();
+    factory.build(task).execute();
+    factory.build(task).execute();
+
+    verify(delegate, times(2)).build(task);
+  }
+
+  private double coalesced(TaskType type) {
+    return meterRegistry.counter("rhsm-subscriptions.tasks.coalesced", "type", type.name()).count();
+  }
+
+  private TaskDescriptor update(OffsetDateTime queuedAt, List<String> accounts) {
+    return TaskDescriptor.builder(TaskType.UPDATE_SNAPSHOTS, "tasks")
+        .setArg("accounts", accounts)
+        .setSingleValuedArg(CoalescingTaskFactory.QUEUED_AT_ARG, queuedAt.toString())
+        .build();
+  }
+
+  private TaskDescriptor hourly(OffsetDateTime queuedAt, String account, String start, String end) {
+    return TaskDescriptor.builder(TaskType.UPDATE_HOURLY_SNAPSHOTS, "tasks")
+        .setSingleValuedArg("accountNumber", account)
+        .setSingleValuedArg("startDateTime", start)
+        .setSingleValuedArg("endDateTime", end)
+        .setSingleValuedArg(CoalescingTaskFactory.QUEUED_AT_ARG, queuedAt.toString())
+        .build();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task.queue.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.candlepin.subscriptions.tally.TallyTaskFactory;
+import org.candlepin.subscriptions.tally.job.CaptureSnapshotsTaskManager;
+import org.candlepin.subscriptions.task.TaskDescriptor;
+import org.candlepin.subscriptions.task.TaskQueueProperties;
+import org.candlepin.subscriptions.task.TaskType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(properties = "rhsm-subscriptions.tasks.key-ordered-workers=4")
+@DirtiesContext
+@ActiveProfiles({"worker", "test", "kafka-test"})
+@EmbeddedKafka(
+    partitions = 1,
+    topics = {
+      "${rhsm-subscriptions.tasks.topic}",
+      "${rhsm-subscriptions.subscription.tasks.topic}"
+    })
+class KeyOrderedKafkaTaskProcessorTest {
+
+  @MockBean private TallyTaskFactory factory;
+
+  @Autowired private CaptureSnapshotsTaskManager manager;
+
+  @Autowired private TaskQueueProperties taskQueueProperties;
+
+  @Test
+  void testTasksFromOnePartitionRunConcurrently() throws InterruptedException {
+    CountDownLatch slowStarted = new CountDownLatch(1);
+    CountDownLatch releaseSlow = new CountDownLatch(1);
+    CountDownLatch fastDone = new CountDownLatch(1);
+    when(factory.build(descriptor("a1")))
+        .thenReturn(
+            () -> {
+              slowStarted.countDown();
+              awaitQuietly(releaseSlow);
+            });
+    when(factory.build(descriptor("a2"))).thenReturn(fastDone::countDown);
+
+    // a1 and a2 map to different lanes, and both tasks are on the only partition
+    manager.updateAccountSnapshots("a1");
+    assertTrue(slowStarted.await(30, TimeUnit.SECONDS));
+    manager.updateAccountSnapshots("a2");
+
+    // the second task completes while the first one is still running
+    assertTrue(fastDone.await(30, TimeUnit.SECONDS));
+    assertEquals(1, releaseSlow.getCount());
+    releaseSlow.countDown();
+  }
+
+  @Test
+  void testTasksWithTheSameKeyDoNotOverlap() throws InterruptedException {
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    CountDownLatch secondDone = new CountDownLatch(1);
+    when(factory.build(descriptor("a3")))
+        .thenReturn(
+            () -> {
+              firstStarted.countDown();
+              awaitQuietly(releaseFirst);
+            })
+        .thenReturn(secondDone::countDown);
+
+    manager.updateAccountSnapshots("a3");
+    assertTrue(firstStarted.await(30, TimeUnit.SECONDS));
+    manager.updateAccountSnapshots("a3");
+
+    assertFalse(secondDone.await(2, TimeUnit.SECONDS));
+    releaseFirst.countDown();
+    assertTrue(secondDone.await(30, TimeUnit.SECONDS));
+  }
+
+  private TaskDescriptor descriptor(String account) {
+    return TaskDescriptor.builder(TaskType.UPDATE_SNAPSHOTS, taskQueueProperties.getTopic())
+        .setSingleValuedArg("accounts", account)
+        .build();
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
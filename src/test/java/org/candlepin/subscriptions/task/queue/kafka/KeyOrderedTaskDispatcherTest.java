@@ -0,0 +1,144 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task.queue.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.candlepin.subscriptions.task.queue.kafka.message.TaskMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class KeyOrderedTaskDispatcherTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private KeyOrderedTaskDispatcher dispatcher;
+
+  @AfterEach
+  void tearDown() {
+    if (dispatcher != null) {
+      dispatcher.shutdown();
+    }
+  }
+
+  @Test
+  void testTasksWithTheSameKeyRunInOrder() throws Exception {
+    dispatcher = new KeyOrderedTaskDispatcher("tasks", 4, 100, meterRegistry);
+    List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(50);
+    for (int i = 0; i < 50; i++) {
+      int task = i;
+      dispatcher.dispatch(
+          "account1",
+          () -> {
+            completed.add(task);
+            done.countDown();
+          });
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < 50; i++) {
+      assertEquals(i, completed.get(i));
+    }
+  }
+
+  @Test
+  void testSlowKeyDoesNotBlockOtherLanes() throws Exception {
+    dispatcher = new KeyOrderedTaskDispatcher("tasks", 2, 100, meterRegistry);
+    String slowKey = keyForLane(0);
+    String fastKey = keyForLane(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch fastDone = new CountDownLatch(1);
+
+    dispatcher.dispatch(slowKey, () -> awaitQuietly(release));
+    dispatcher.dispatch(fastKey, fastDone::countDown);
+
+    assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+    assertEquals(1, dispatcher.getInFlight());
+    release.countDown();
+  }
+
+  @Test
+  void testInFlightTasksAreBounded() throws Exception {
+    dispatcher = new KeyOrderedTaskDispatcher("tasks", 2, 1, meterRegistry);
+    CountDownLatch release = new CountDownLatch(1);
+    dispatcher.dispatch(keyForLane(0), () -> awaitQuietly(release));
+
+    Thread blocked = new Thread(() -> dispatchQuietly(keyForLane(1)));
+    blocked.start();
+    blocked.join(200);
+    assertTrue(blocked.isAlive());
+
+    release.countDown();
+    blocked.join(5000);
+    assertFalse(blocked.isAlive());
+  }
+
+  @Test
+  void testOrderingKeyFallsBackToAccountArgument() {
+    TaskMessage message =
+        TaskMessage.newBuilder()
+            .setGroupId("tasks")
+            .setType("UPDATE_SNAPSHOTS")
+            .setArgs(Map.of("accounts", List.of("account1")))
+            .build();
+
+    ConsumerRecord<String, TaskMessage> keyed = new ConsumerRecord<>("t", 0, 7, "key", message);
+    ConsumerRecord<String, TaskMessage> unkeyed = new ConsumerRecord<>("t", 0, 7, null, message);
+
+    assertEquals("key", KeyOrderedKafkaTaskProcessor.orderingKey(keyed));
+    assertEquals("account1", KeyOrderedKafkaTaskProcessor.orderingKey(unkeyed));
+  }
+
+  private String keyForLane(int lane) {
+    for (int i = 0; ; i++) {
+      String key = "account" + i;
+      if (dispatcher.laneFor(key) == lane) {
+        return key;
+      }
+    }
+  }
+
+  private void dispatchQuietly(String key) {
+    try {
+      dispatcher.dispatch(key, () -> {});
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task.queue.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.junit.jupiter.api.Test;
+
+class PartitionOffsetsTest {
+
+  private final PartitionOffsets offsets = new PartitionOffsets(mock(Consumer.class));
+
+  @Test
+  void testNothingToCommitBeforeDispatch() {
+    assertEquals(-1, offsets.commitOffset());
+  }
+
+  @Test
+  void testCommitOffsetIsLowestIncompleteOffset() {
+    offsets.dispatched(5);
+    offsets.dispatched(6);
+    offsets.dispatched(7);
+
+    offsets.completed(6);
+    offsets.completed(7);
+    assertEquals(5, offsets.commitOffset());
+
+    offsets.completed(5);
+    assertEquals(8, offsets.commitOffset());
+  }
+
+  @Test
+  void testAwaitCompletionTimesOutWhileTasksArePending() throws InterruptedException {
+    offsets.dispatched(1);
+
+    assertFalse(offsets.awaitCompletion(Duration.ofMillis(50)));
+
+    offsets.completed(1);
+    assertTrue(offsets.awaitCompletion(Duration.ofMillis(50)));
+  }
+}
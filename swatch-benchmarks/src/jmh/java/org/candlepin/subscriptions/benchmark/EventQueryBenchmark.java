@@ -0,0 +1,181 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures reading a day of an account's events for one service type from PostgreSQL, filtering
+ * on the indexed service_type column as the hourly tally does, against extracting the service type
+ * from the JSON document of every row as it did before the column existed.
+ *
+ * <p>Unlike the other benchmarks this one needs a database migrated to the current schema. It is
+ * configured with the same DATABASE_* environment variables as the application, and seeds (and
+ * afterwards deletes) its own events, tagged with the {@value #EVENT_SOURCE} event source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventQueryBenchmark {
+
+  private static final String EVENT_SOURCE = "swatch-benchmarks";
+  private static final String OTHER_SERVICE_TYPE = "rhosak";
+  private static final int DAYS = 30;
+
+  private static final String SEED_SQL =
+      "insert into events "
+          + "(id, account_number, event_type, event_source, instance_id, service_type, timestamp, "
+          + "data) "
+          + "select md5(? || n)::uuid, account_number, 'benchmark', ?, 'instance-' || n, "
+          + "service_type, timestamp, jsonb_build_object("
+          + "'account_number', account_number, 'event_source', ?, 'event_type', 'benchmark', "
+          + "'instance_id', 'instance-' || n, 'service_type', service_type, "
+          + "'timestamp', to_char(timestamp at time zone 'UTC', 'YYYY-MM-DD\"T\"HH24:MI:SS\"Z\"'), "
+          + "'measurements', jsonb_build_array("
+          + "jsonb_build_object('uom', 'Cores', 'value', 1 + n % 64)))"
+          + " from (select n, ? || (n % ?) as account_number, "
+          + "case when n % 2 = 0 then ? else ? end as service_type, "
+          + "? - (n % (? * 24 * 3600)) * interval '1 second' as timestamp "
+          + "from generate_series(1, ?) n) seeded";
+
+  private static final String BY_COLUMN_SQL =
+      "select cast(data - cast('{event_id,event_source,event_type,expiration,insights_id,"
+          + "correlation_ids,uom}' as text[]) as text) from events "
+          + "where account_number=? and service_type=? "
+          + "and timestamp >= ? and timestamp < ? order by timestamp";
+
+  private static final String BY_JSON_SQL =
+      "select cast(data - cast('{event_id,event_source,event_type,expiration,insights_id,"
+          + "correlation_ids,uom}' as text[]) as text) from events "
+          + "where account_number=? and data->>'service_type'=? "
+          + "and timestamp >= ? and timestamp < ? order by timestamp";
+
+  @Param({"1000000"})
+  public int eventCount;
+
+  @Param({"100"})
+  public int accountCount;
+
+  private Connection connection;
+  private OffsetDateTime end;
+
+  @Setup
+  public void setup() throws SQLException {
+    connection =
+        DriverManager.getConnection(
+            String.format(
+                "jdbc:postgresql://%s:%s/%s",
+                env("DATABASE_HOST", "localhost"),
+                env("DATABASE_PORT", "5432"),
+                env("DATABASE_DATABASE", "rhsm-subscriptions")),
+            env("DATABASE_USERNAME", "rhsm-subscriptions"),
+            env("DATABASE_PASSWORD", "rhsm-subscriptions"));
+    end = Fixtures.clock().startOfCurrentHour();
+
+    deleteSeededEvents();
+    try (PreparedStatement statement = connection.prepareStatement(SEED_SQL)) {
+      statement.setString(1, EVENT_SOURCE);
+      statement.setString(2, EVENT_SOURCE);
+      statement.setString(3, EVENT_SOURCE);
+      statement.setString(4, Fixtures.ACCOUNT);
+      statement.setInt(5, accountCount);
+      statement.setString(6, Fixtures.OPENSHIFT_SERVICE_TYPE);
+      statement.setString(7, OTHER_SERVICE_TYPE);
+      statement.setObject(8, end);
+      statement.setInt(9, DAYS);
+      statement.setInt(10, eventCount);
+      statement.executeUpdate();
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("analyze events");
+    }
+    // The fetch size is only honored within a transaction, as when the tally streams events.
+    connection.setAutoCommit(false);
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    try {
+      connection.setAutoCommit(true);
+      deleteSeededEvents();
+    } finally {
+      connection.close();
+    }
+  }
+
+  @Benchmark
+  public void findByServiceTypeColumn(Blackhole blackhole) throws SQLException {
+    scan(BY_COLUMN_SQL, blackhole);
+  }
+
+  @Benchmark
+  public void findByServiceTypeJson(Blackhole blackhole) throws SQLException {
+    scan(BY_JSON_SQL, blackhole);
+  }
+
+  private void scan(String sql, Blackhole blackhole) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      // Account 0 of the seeded accounts, i.e. the fixture account with a "0" suffix.
+      statement.setString(1, Fixtures.ACCOUNT + "0");
+      statement.setString(2, Fixtures.OPENSHIFT_SERVICE_TYPE);
+      statement.setObject(3, end.minusDays(1));
+      statement.setObject(4, end);
+      statement.setFetchSize(1000);
+      try (ResultSet results = statement.executeQuery()) {
+        while (results.next()) {
+          blackhole.consume(results.getString(1));
+        }
+      }
+    } finally {
+      connection.rollback();
+    }
+  }
+
+  private void deleteSeededEvents() throws SQLException {
+    try (PreparedStatement statement =
+        connection.prepareStatement("delete from events where event_source = ?")) {
+      statement.setString(1, EVENT_SOURCE);
+      statement.executeUpdate();
+    }
+  }
+
+  private static String env(String name, String defaultValue) {
+    String value = System.getenv(name);
+    return value == null || value.isEmpty() ? defaultValue : value;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
+import org.candlepin.subscriptions.db.EventRecordRepository;
+import org.candlepin.subscriptions.db.model.AccountServiceInventory;
+import org.candlepin.subscriptions.event.EventController;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.MetricUsageCollector;
+import org.candlepin.subscriptions.tally.MetricUsageCollector.CollectionResult;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.util.DateRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures tallying OpenShift metering events: reading the stored event JSON, grouping the events
+ * by cluster and accumulating their measurements, either for a single hour or, as the hourly tally
+ * does, for a range of hours read with a single query.
+ *
+ * <p>The range is given the same number of events as the single hour, spread evenly over its hours,
+ * so that the two benchmarks can be compared per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventScanBenchmark {
+
+  @Param({"10000", "100000"})
+  public int eventCount;
+
+  @Param({"100"})
+  public int clusterCount;
+
+  @Param({"24"})
+  public int rangeHours;
+
+  private MetricUsageCollector collector;
+  private OffsetDateTime hour;
+  private DateRange range;
+
+  @Setup
+  public void setup() {
+    ApplicationClock clock = Fixtures.clock();
+    ObjectMapper objectMapper = Fixtures.objectMapper();
+    hour = clock.startOfCurrentHour().minusHours(1);
+    List<String> hourEvents =
+        Fixtures.openShiftEvents(objectMapper, hour, eventCount, clusterCount);
+
+    range = new DateRange(hour.minusHours(rangeHours - 1L), hour.plusHours(1));
+    List<String> rangeEvents = new ArrayList<>(eventCount);
+    for (int i = 0; i < rangeHours; i++) {
+      rangeEvents.addAll(
+          Fixtures.openShiftEvents(
+              objectMapper,
+              range.getStartDate().plusHours(i),
+              eventCount / rangeHours,
+              clusterCount));
+    }
+
+    EventRecordRepository eventRecordRepository =
+        Stubs.of(
+            EventRecordRepository.class,
+            Map.of(
+                "findTallyDataInTimeRange",
+                args ->
+                    isSingleHour((OffsetDateTime) args[2], (OffsetDateTime) args[3])
+                        ? hourEvents.stream()
+                        : rangeEvents.stream(),
+                "existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan",
+                args -> true));
+    // Always start from an empty inventory, so that the range is tallied as a new tally.
+    AccountServiceInventoryRepository inventoryRepository =
+        Stubs.of(
+            AccountServiceInventoryRepository.class,
+            Map.of("findById", args -> Optional.empty(), "save", args -> args[0]));
+    EventController eventController =
+        new EventController(
+            eventRecordRepository,
+            null,
+            objectMapper,
+            new ApplicationProperties(),
+            new SimpleMeterRegistry());
+    collector =
+        new MetricUsageCollector(
+            Fixtures.tagProfile(), inventoryRepository, eventController, clock, true, false);
+  }
+
+  @Benchmark
+  public AccountUsageCalculation collectHour() {
+    // A fresh inventory each time, so that every invocation starts its instances from scratch.
+    return collector.collectHour(
+        new AccountServiceInventory(Fixtures.ACCOUNT, Fixtures.OPENSHIFT_SERVICE_TYPE), hour);
+  }
+
+  @Benchmark
+  public CollectionResult collectRange() {
+    return collector.collect(Fixtures.OPENSHIFT_SERVICE_TYPE, Fixtures.ACCOUNT, range);
+  }
+
+  private static boolean isSingleHour(OffsetDateTime begin, OffsetDateTime end) {
+    return Duration.between(begin, end).toHours() <= 1;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.facts.FactNormalizer;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures normalizing the facts of every host of an account, the per-host cost of a tally. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FactNormalizerBenchmark {
+
+  @Param({"1000", "100000"})
+  public int hostCount;
+
+  @Param({"3"})
+  public int productsPerHost;
+
+  private FactNormalizer factNormalizer;
+  private List<InventoryHostFacts> hosts;
+  private Map<String, String> reportedHypervisors;
+
+  @Setup
+  public void setup() {
+    TagProfile tagProfile = Fixtures.tagProfile();
+    ApplicationClock clock = Fixtures.clock();
+    factNormalizer = new FactNormalizer(new ApplicationProperties(), tagProfile, clock);
+    hosts = Fixtures.hosts(tagProfile, clock, hostCount, productsPerHost);
+    reportedHypervisors = Fixtures.reportedHypervisors(hosts);
+  }
+
+  @Benchmark
+  public void normalize(Blackhole blackhole) {
+    for (InventoryHostFacts host : hosts) {
+      blackhole.consume(factNormalizer.normalize(host, reportedHypervisors));
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.candlepin.subscriptions.json.Event;
+import org.candlepin.subscriptions.json.Measurement;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+
+/**
+ * Generates deterministic synthetic data for the benchmarks.
+ *
+ * <p>Hosts are a mix of physical hosts, hypervisors and their guests, each carrying a few
+ * engineering product IDs taken from the tag profile, so that every host goes through product
+ * mapping and usage collection.
+ */
+public class Fixtures {
+
+  public static final String ACCOUNT = "benchmark-account";
+  public static final String ORG_ID = "benchmark-org";
+  public static final String OPENSHIFT_SERVICE_TYPE = "OpenShift Cluster";
+
+  /** Guests per hypervisor; one in ten hosts is a hypervisor. */
+  private static final int GUESTS_PER_HYPERVISOR = 4;
+
+  private static final long SEED = 20220615L;
+
+  private Fixtures() {
+    throw new IllegalStateException("Utility class; should never be instantiated!");
+  }
+
+  public static ApplicationClock clock() {
+    return new ApplicationClock(Clock.fixed(Instant.parse("2022-06-15T12:30:00Z"), ZoneOffset.UTC));
+  }
+
+  public static TagProfile tagProfile() {
+    try (InputStream profile = Fixtures.class.getResourceAsStream("/tag_profile.yaml")) {
+      TagProfile tagProfile = new Yaml(new Constructor(TagProfile.class)).load(profile);
+      tagProfile.initLookups();
+      return tagProfile;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** The swatch products a tally is run for, as done by the worker's applicableProducts bean. */
+  public static Set<String> applicableProducts(TagProfile tagProfile) {
+    return tagProfile.getEngProductIdToSwatchProductIdsMap().values().stream()
+        .flatMap(Set::stream)
+        .collect(Collectors.toSet());
+  }
+
+  public static ObjectMapper objectMapper() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    objectMapper.registerModule(new JavaTimeModule());
+    objectMapper.registerModule(new Jdk8Module());
+    return objectMapper;
+  }
+
+  /**
+   * Generate the inventory hosts of an account.
+   *
+   * @param tagProfile the tag profile to take engineering product IDs from
+   * @param clock the clock the hosts are considered recently synced against
+   * @param hostCount the number of hosts to generate
+   * @param productsPerHost the number of engineering product IDs installed on each host
+   * @return the hosts' facts
+   */
+  public static List<InventoryHostFacts> hosts(
+      TagProfile tagProfile, ApplicationClock clock, int hostCount, int productsPerHost) {
+    Random random = new Random(SEED);
+    List<Integer> engProductIds =
+        new ArrayList<>(tagProfile.getEngProductIdToSwatchProductIdsMap().keySet());
+    engProductIds.sort(null);
+    String syncTimestamp = clock.now().minusHours(1).toString();
+
+    List<InventoryHostFacts> hosts = new ArrayList<>(hostCount);
+    String hypervisorId = null;
+    for (int i = 0; i < hostCount; i++) {
+      InventoryHostFacts host = new InventoryHostFacts();
+      host.setInventoryId(new UUID(random.nextLong(), random.nextLong()));
+      host.setAccount(ACCOUNT);
+      host.setOrgId(ORG_ID);
+      host.setDisplayName("host-" + i);
+      host.setSyncTimestamp(syncTimestamp);
+      host.setModifiedOn(clock.now().minusHours(1));
+      host.setSubscriptionManagerId(new UUID(random.nextLong(), random.nextLong()).toString());
+      host.setSystemProfileCoresPerSocket(1 + random.nextInt(16));
+      host.setSystemProfileSockets(1 + random.nextInt(4));
+      host.setProducts(randomProducts(random, engProductIds, productsPerHost));
+
+      int position = i % (GUESTS_PER_HYPERVISOR + 6);
+      if (position == 0) {
+        // Hypervisor, whose guests follow.
+        hypervisorId = host.getSubscriptionManagerId();
+      } else if (position <= GUESTS_PER_HYPERVISOR) {
+        host.setVirtual(true);
+        host.setHypervisorUuid(hypervisorId);
+        host.setGuestId(new UUID(random.nextLong(), random.nextLong()).toString());
+      }
+      hosts.add(host);
+    }
+    return hosts;
+  }
+
+  /** The reported hypervisor mapping for the given hosts, as read from inventory. */
+  public static Map<String, String> reportedHypervisors(List<InventoryHostFacts> hosts) {
+    Map<String, String> hypervisors = new HashMap<>();
+    for (InventoryHostFacts host : hosts) {
+      if (host.getHypervisorUuid() != null) {
+        hypervisors.put(host.getHypervisorUuid(), host.getHypervisorUuid());
+      }
+    }
+    return hypervisors;
+  }
+
+  /**
+   * Generate the OpenShift metering events of an hour, spread over a number of clusters, as JSON
+   * as they are stored in the events table.
+   */
+  public static List<String> openShiftEvents(
+      ObjectMapper objectMapper, OffsetDateTime hour, int eventCount, int clusterCount) {
+    Random random = new Random(SEED);
+    List<String> clusters = new ArrayList<>(clusterCount);
+    for (int i = 0; i < clusterCount; i++) {
+      clusters.add(new UUID(random.nextLong(), random.nextLong()).toString());
+    }
+
+    List<String> events = new ArrayList<>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      Event event =
+          new Event()
+              .withEventId(new UUID(random.nextLong(), random.nextLong()))
+              .withAccountNumber(ACCOUNT)
+              .withEventSource("prometheus")
+              .withEventType("snapshot_redhat.com:openshift_container_platform:cpu_hour")
+              .withServiceType(OPENSHIFT_SERVICE_TYPE)
+              .withInstanceId(clusters.get(i % clusterCount))
+              .withTimestamp(hour.plusSeconds(i % 3600L))
+              .withExpiration(Optional.of(hour.plusHours(1)))
+              .withRole(i % 2 == 0 ? Event.Role.OCP : Event.Role.OSD)
+              .withSla(Event.Sla.PREMIUM)
+              .withUsage(Event.Usage.PRODUCTION)
+              .withBillingProvider(Event.BillingProvider.RED_HAT)
+              .withBillingAccountId(Optional.of("benchmark-billing-account"))
+              .withMeasurements(
+                  List.of(
+                      new Measurement()
+                          .withUom(Measurement.Uom.CORES)
+                          .withValue(1 + random.nextInt(64) / 4.0)));
+      try {
+        events.add(objectMapper.writeValueAsString(event));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return events;
+  }
+
+  private static String randomProducts(Random random, List<Integer> engProductIds, int count) {
+    StringBuilder products = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        products.append(',');
+      }
+      products.append(engProductIds.get(random.nextInt(engProductIds.size())));
+    }
+    return products.toString();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.db.AccountServiceInventoryRepository;
+import org.candlepin.subscriptions.inventory.db.InventoryDatabaseOperations;
+import org.candlepin.subscriptions.inventory.db.InventoryRepository;
+import org.candlepin.subscriptions.inventory.db.model.InventoryHostFacts;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.InventoryAccountUsageCollector;
+import org.candlepin.subscriptions.tally.facts.FactNormalizer;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+/**
+ * Measures the tally of an account's HBI hosts: reading, normalizing and accumulating usage for
+ * every host, with the inventory read from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InventoryTallyBenchmark {
+
+  @Param({"1000", "100000"})
+  public int hostCount;
+
+  @Param({"3"})
+  public int productsPerHost;
+
+  @Param({"1", "4"})
+  public int scanPartitions;
+
+  private InventoryAccountUsageCollector collector;
+  private Set<String> products;
+  private ExecutorService scanExecutor;
+
+  @Setup
+  public void setup() {
+    TagProfile tagProfile = Fixtures.tagProfile();
+    ApplicationClock clock = Fixtures.clock();
+    products = Fixtures.applicableProducts(tagProfile);
+    List<InventoryHostFacts> hosts = Fixtures.hosts(tagProfile, clock, hostCount, productsPerHost);
+    scanExecutor = Executors.newFixedThreadPool(scanPartitions);
+
+    ApplicationProperties props = new ApplicationProperties();
+    props.setInventoryScanPartitions(scanPartitions);
+    collector =
+        new InventoryAccountUsageCollector(
+            new FactNormalizer(new ApplicationProperties(), tagProfile, clock),
+            new InventoryDatabaseOperations(
+                inventoryRepository(hosts), transactionManager(), scanExecutor),
+            accountServiceInventoryRepository(),
+            props,
+            new SimpleMeterRegistry());
+  }
+
+  @TearDown
+  public void tearDown() {
+    scanExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  public Map<String, AccountUsageCalculation> collect() {
+    return collector.collect(products, Fixtures.ACCOUNT);
+  }
+
+  static InventoryRepository inventoryRepository(List<InventoryHostFacts> hosts) {
+    List<Object[]> reportedHypervisors =
+        Fixtures.reportedHypervisors(hosts).entrySet().stream()
+            .map(entry -> new Object[] {entry.getKey(), entry.getValue()})
+            .collect(Collectors.toList());
+    Map<String, Function<Object[], Object>> handlers =
+        Map.of(
+            "getFacts",
+            args -> hosts.stream(),
+            "getFactsInIdRange",
+            args -> {
+              // Same ordering as the database: UUIDs compare by their unsigned bytes.
+              String minId = (String) args[2];
+              String maxId = (String) args[3];
+              return hosts.stream()
+                  .filter(
+                      host -> {
+                        String id = host.getInventoryId().toString();
+                        return id.compareTo(minId) >= 0 && id.compareTo(maxId) <= 0;
+                      });
+            },
+            "getReportedHypervisors",
+            args -> reportedHypervisors.stream());
+    return Stubs.of(InventoryRepository.class, handlers);
+  }
+
+  static PlatformTransactionManager transactionManager() {
+    return Stubs.of(
+        PlatformTransactionManager.class,
+        Map.of(
+            "getTransaction", args -> new SimpleTransactionStatus(),
+            "commit", args -> null,
+            "rollback", args -> null));
+  }
+
+  static AccountServiceInventoryRepository accountServiceInventoryRepository() {
+    return Stubs.of(
+        AccountServiceInventoryRepository.class,
+        Map.of("findById", args -> Optional.empty(), "save", args -> args[0]));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.candlepin.subscriptions.ApplicationProperties;
+import org.candlepin.subscriptions.db.TallySnapshotRepository;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.inventory.db.InventoryDatabaseOperations;
+import org.candlepin.subscriptions.registry.TagProfile;
+import org.candlepin.subscriptions.tally.AccountUsageCalculation;
+import org.candlepin.subscriptions.tally.InventoryAccountUsageCollector;
+import org.candlepin.subscriptions.tally.facts.FactNormalizer;
+import org.candlepin.subscriptions.tally.roller.MultiGranularitySnapshotRoller;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures rolling an account's usage calculations into the hourly through yearly snapshots of the
+ * current periods, either creating them or updating the snapshots of an earlier tally.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotRollerBenchmark {
+
+  @Param({"10000"})
+  public int hostCount;
+
+  @Param({"false", "true"})
+  public boolean existingSnapshots;
+
+  private MultiGranularitySnapshotRoller roller;
+  private Collection<AccountUsageCalculation> accountCalcs;
+
+  @Setup
+  public void setup() {
+    TagProfile tagProfile = Fixtures.tagProfile();
+    ApplicationClock clock = Fixtures.clock();
+    accountCalcs = collectUsage(tagProfile, clock);
+
+    List<TallySnapshot> existing = new ArrayList<>();
+    if (existingSnapshots) {
+      // Snapshots of an earlier tally, which the benchmarked roll then updates.
+      MultiGranularitySnapshotRoller firstRoll =
+          new MultiGranularitySnapshotRoller(tallyRepository(List.of()), clock, tagProfile);
+      existing.addAll(firstRoll.rollSnapshots(Fixtures.ACCOUNT, accountCalcs));
+    }
+    roller = new MultiGranularitySnapshotRoller(tallyRepository(existing), clock, tagProfile);
+  }
+
+  @Benchmark
+  public Collection<TallySnapshot> rollAllGranularities() {
+    return roller.rollSnapshots(Fixtures.ACCOUNT, accountCalcs);
+  }
+
+  private Collection<AccountUsageCalculation> collectUsage(
+      TagProfile tagProfile, ApplicationClock clock) {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      InventoryAccountUsageCollector collector =
+          new InventoryAccountUsageCollector(
+              new FactNormalizer(new ApplicationProperties(), tagProfile, clock),
+              new InventoryDatabaseOperations(
+                  InventoryTallyBenchmark.inventoryRepository(
+                      Fixtures.hosts(tagProfile, clock, hostCount, 3)),
+                  InventoryTallyBenchmark.transactionManager(),
+                  executor),
+              InventoryTallyBenchmark.accountServiceInventoryRepository(),
+              new ApplicationProperties(),
+              new SimpleMeterRegistry());
+      Set<String> products = Fixtures.applicableProducts(tagProfile);
+      return collector.collect(products, Fixtures.ACCOUNT).values();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static TallySnapshotRepository tallyRepository(List<TallySnapshot> existing) {
+    return Stubs.of(
+        TallySnapshotRepository.class,
+        Map.of(
+            "findByAccountNumberAndProductIdInAndPeriods",
+            args -> existing,
+            "saveAll",
+            args -> args[0],
+            "delete",
+            args -> null));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Creates in-memory stand-ins for repository interfaces, so that benchmarks measure the tally code
+ * rather than a database.
+ */
+public class Stubs {
+
+  private Stubs() {
+    throw new IllegalStateException("Utility class; should never be instantiated!");
+  }
+
+  /**
+   * Stub an interface.
+   *
+   * @param type the interface to stub
+   * @param handlers implementations of the stubbed methods, by method name, receiving the call
+   *     arguments
+   * @return a stub throwing UnsupportedOperationException for any method without a handler
+   */
+  public static <T> T of(Class<T> type, Map<String, Function<Object[], Object>> handlers) {
+    Object stub =
+        Proxy.newProxyInstance(
+            type.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> {
+              Function<Object[], Object> handler = handlers.get(method.getName());
+              if (handler != null) {
+                return handler.apply(args);
+              }
+              switch (method.getName()) {
+                case "toString":
+                  return "Stub of " + type.getSimpleName();
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "equals":
+                  return proxy == args[0];
+                default:
+                  throw new UnsupportedOperationException(
+                      String.format(
+                          "%s.%s is not stubbed", type.getSimpleName(), method.getName()));
+              }
+            });
+    return type.cast(stub);
+  }
+}
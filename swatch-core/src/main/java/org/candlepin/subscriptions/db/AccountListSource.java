@@ -40,13 +40,4 @@ public interface AccountListSource {
    * @return true if the account is in the list, false otherwise.
    */
   boolean containsReportingAccount(String accountNumber) throws AccountListSourceException;
-
-  /**
-   * Get a stream of accounts that should have their data purged according to the retention policy.
-   * Any account not in this list will not have their data purged.
-   *
-   * @return a stream of accounts that should have its report data purged.
-   * @throws AccountListSourceException
-   */
-  Stream<String> purgeReportAccounts() throws AccountListSourceException;
 }
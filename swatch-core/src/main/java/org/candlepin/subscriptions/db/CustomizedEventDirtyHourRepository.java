@@ -0,0 +1,58 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.util.Collection;
+import org.candlepin.subscriptions.db.model.EventDirtyHour;
+import org.candlepin.subscriptions.db.model.EventDirtyHourId;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fragment interface defining bulk dirty hour operations that are not handled well by Spring JPA.
+ *
+ * <p>See
+ * https://docs.spring.io/spring-data/jpa/docs/2.3.0.RELEASE/reference/html/#repositories.custom-implementations
+ */
+public interface CustomizedEventDirtyHourRepository {
+
+  /**
+   * Mark the given hours as changed, incrementing the version of the hours already marked.
+   *
+   * <p>On PostgreSQL this is done with batched INSERT ... ON CONFLICT statements over JDBC, which
+   * skips the SELECT that JPA issues before persisting an entity with an assigned ID. Other
+   * databases fall back to loading and updating each hour.
+   *
+   * @param hours the hours to mark
+   * @param batchSize the number of hours sent to the database per batch
+   */
+  @Transactional
+  void markAll(Collection<EventDirtyHourId> hours, int batchSize);
+
+  /**
+   * Delete the given hours, unless they were marked again since they were read, i.e. their stored
+   * version no longer matches.
+   *
+   * @param hours the hours to delete, as read
+   * @param batchSize the number of hours sent to the database per batch
+   */
+  @Transactional
+  void deleteAllUnchanged(Collection<EventDirtyHour> hours, int batchSize);
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import javax.persistence.EntityManager;
+import org.candlepin.subscriptions.db.model.EventDirtyHour;
+import org.candlepin.subscriptions.db.model.EventDirtyHourId;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+/** Class implementing bulk dirty hour operations not handled well by Spring JPA. */
+@Repository
+public class CustomizedEventDirtyHourRepositoryImpl implements CustomizedEventDirtyHourRepository {
+
+  private static final String POSTGRESQL = "PostgreSQL";
+
+  private static final String MARK_SQL =
+      "insert into event_dirty_hours (account_number, service_type, hour, version) "
+          + "values (?, ?, ?, 0) "
+          + "on conflict (account_number, service_type, hour) "
+          + "do update set version = event_dirty_hours.version + 1";
+
+  private static final String DELETE_UNCHANGED_SQL =
+      "delete from event_dirty_hours "
+          + "where account_number = ? and service_type = ? and hour = ? and version = ?";
+
+  private final EntityManager em;
+
+  @Autowired
+  public CustomizedEventDirtyHourRepositoryImpl(
+      @Qualifier("rhsmSubscriptionsEntityManagerFactory") EntityManager em) {
+    this.em = em;
+  }
+
+  @Override
+  public void markAll(Collection<EventDirtyHourId> hours, int batchSize) {
+    if (hours.isEmpty()) {
+      return;
+    }
+    Session session = em.unwrap(Session.class);
+    if (!isPostgreSql(session)) {
+      hours.forEach(this::mark);
+      return;
+    }
+
+    session.doWork(
+        connection -> {
+          try (PreparedStatement statement = connection.prepareStatement(MARK_SQL)) {
+            int pending = 0;
+            for (EventDirtyHourId hour : hours) {
+              bind(statement, hour);
+              statement.addBatch();
+              if (++pending >= batchSize) {
+                statement.executeBatch();
+                pending = 0;
+              }
+            }
+            if (pending > 0) {
+              statement.executeBatch();
+            }
+          }
+        });
+  }
+
+  @Override
+  public void deleteAllUnchanged(Collection<EventDirtyHour> hours, int batchSize) {
+    if (hours.isEmpty()) {
+      return;
+    }
+    // Hours marked through JPA in this persistence context must be written before comparing.
+    em.flush();
+    em.unwrap(Session.class).doWork(connection -> deleteAllUnchanged(connection, hours, batchSize));
+  }
+
+  private void deleteAllUnchanged(
+      Connection connection, Collection<EventDirtyHour> hours, int batchSize) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(DELETE_UNCHANGED_SQL)) {
+      int pending = 0;
+      for (EventDirtyHour hour : hours) {
+        bind(statement, hour.getId());
+        statement.setLong(4, hour.getVersion());
+        statement.addBatch();
+        if (++pending >= batchSize) {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0) {
+        statement.executeBatch();
+      }
+    }
+  }
+
+  private void mark(EventDirtyHourId id) {
+    EventDirtyHour existing = em.find(EventDirtyHour.class, id);
+    if (existing == null) {
+      em.persist(new EventDirtyHour(id));
+    } else {
+      existing.setVersion(existing.getVersion() + 1);
+    }
+  }
+
+  private boolean isPostgreSql(Session session) {
+    String databaseName =
+        session.doReturningWork(connection -> connection.getMetaData().getDatabaseProductName());
+    return POSTGRESQL.equals(databaseName);
+  }
+
+  private void bind(PreparedStatement statement, EventDirtyHourId id) throws SQLException {
+    statement.setString(1, id.getAccountNumber());
+    statement.setString(2, id.getServiceType());
+    statement.setObject(3, id.getHour());
+  }
+}
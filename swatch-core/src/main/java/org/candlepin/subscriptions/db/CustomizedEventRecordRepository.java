@@ -0,0 +1,78 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.candlepin.subscriptions.db.model.EventRecord;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fragment interface defining bulk event operations that are not handled well by Spring JPA.
+ *
+ * <p>See
+ * https://docs.spring.io/spring-data/jpa/docs/2.3.0.RELEASE/reference/html/#repositories.custom-implementations
+ */
+public interface CustomizedEventRecordRepository {
+
+  /**
+   * Insert the given event records, or update the stored event with the same natural key (see
+   * {@link org.candlepin.subscriptions.db.model.EventKey}).
+   *
+   * <p>On PostgreSQL this is done with batched INSERT ... ON CONFLICT statements over JDBC, which
+   * skips the SELECT that JPA issues before persisting an entity with an assigned ID. Other
+   * databases fall back to merging each record.
+   *
+   * <p>An updated event keeps the ID it was first stored with, so the records returned carry the
+   * IDs of the stored events rather than the ones they were given.
+   *
+   * @param records the event records to write
+   * @param batchSize the number of records sent to the database per batch
+   * @return the records as stored, in the order given
+   */
+  @Transactional
+  List<EventRecord> upsertAll(Collection<EventRecord> records, int batchSize);
+
+  /**
+   * Delete the event records older than a cutoff date.
+   *
+   * <p>On PostgreSQL, the events table is partitioned by month, and the partitions holding only
+   * expired events are detached and dropped without touching their rows. The remaining expired
+   * events, in the partition holding the cutoff date, are deleted with a single statement.
+   *
+   * @param cutoffDate events with a timestamp before this are deleted
+   * @return the number of partitions dropped
+   */
+  @Transactional
+  int deleteEventRecordsBefore(OffsetDateTime cutoffDate);
+
+  /**
+   * Create the monthly partitions of the events table from the current month up to the given
+   * number of months ahead, if they do not exist yet. Does nothing on databases other than
+   * PostgreSQL, where the events table is not partitioned.
+   *
+   * @param monthsAhead the number of future monthly partitions to ensure exist
+   * @return the number of partitions created
+   */
+  @Transactional
+  int createEventPartitions(int monthsAhead);
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.candlepin.subscriptions.db.model.EventRecord;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+/** Class implementing bulk event operations not handled well by Spring JPA. */
+@Repository
+public class CustomizedEventRecordRepositoryImpl implements CustomizedEventRecordRepository {
+
+  private static final String POSTGRESQL = "PostgreSQL";
+
+  // The stored event keeps its ID when updated, so the ID embedded in the JSON is kept in sync, and
+  // the stored ID is returned as a generated key.
+  private static final String UPSERT_SQL =
+      "insert into events "
+          + "(id, account_number, event_type, event_source, instance_id, service_type, timestamp, "
+          + "data) values (?, ?, ?, ?, ?, ?, ?, cast(? as jsonb)) "
+          + "on conflict (event_type, event_source, instance_id, account_number, timestamp) "
+          + "do update set service_type = excluded.service_type, "
+          + "data = jsonb_set(excluded.data, '{event_id}', to_jsonb(cast(events.id as text)))";
+  private static final String[] UPSERT_RETURNED_COLUMNS = {"id"};
+
+  private static final String DROP_EXPIRED_PARTITIONS_SQL =
+      "select drop_events_partitions_before(:cutoffDate)";
+  private static final String DELETE_EXPIRED_EVENTS_SQL =
+      "delete from events where timestamp < :cutoffDate";
+  private static final String CREATE_PARTITIONS_SQL =
+      "select create_events_partitions(:monthsAhead)";
+
+  private final EntityManager em;
+  private final ObjectMapper objectMapper;
+
+  @Autowired
+  public CustomizedEventRecordRepositoryImpl(
+      @Qualifier("rhsmSubscriptionsEntityManagerFactory") EntityManager em,
+      ObjectMapper objectMapper) {
+    this.em = em;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public List<EventRecord> upsertAll(Collection<EventRecord> records, int batchSize) {
+    if (records.isEmpty()) {
+      return List.of();
+    }
+    Session session = em.unwrap(Session.class);
+    if (!isPostgreSql(session)) {
+      return records.stream().map(em::merge).collect(Collectors.toList());
+    }
+
+    session.doWork(
+        connection -> {
+          try (PreparedStatement statement =
+              connection.prepareStatement(UPSERT_SQL, UPSERT_RETURNED_COLUMNS)) {
+            List<EventRecord> batch = new ArrayList<>(batchSize);
+            for (EventRecord eventRecord : records) {
+              bind(statement, eventRecord);
+              statement.addBatch();
+              batch.add(eventRecord);
+              if (batch.size() >= batchSize) {
+                executeBatch(statement, batch);
+              }
+            }
+            if (!batch.isEmpty()) {
+              executeBatch(statement, batch);
+            }
+          }
+        });
+    return new ArrayList<>(records);
+  }
+
+  /** Execute the pending batch, and update its records with the IDs they are stored under. */
+  private static void executeBatch(PreparedStatement statement, List<EventRecord> batch)
+      throws SQLException {
+    statement.executeBatch();
+    try (ResultSet storedIds = statement.getGeneratedKeys()) {
+      for (EventRecord eventRecord : batch) {
+        if (!storedIds.next()) {
+          throw new IllegalStateException("No stored ID returned for event " + eventRecord.getId());
+        }
+        UUID storedId = storedIds.getObject(1, UUID.class);
+        eventRecord.setId(storedId);
+        eventRecord.getEvent().setEventId(storedId);
+      }
+    }
+    batch.clear();
+  }
+
+  @Override
+  public int deleteEventRecordsBefore(OffsetDateTime cutoffDate) {
+    // Expired records already loaded in this persistence context must not be flushed afterwards.
+    em.flush();
+    em.clear();
+    int droppedPartitions = 0;
+    if (isPostgreSql(em.unwrap(Session.class))) {
+      Number dropped =
+          (Number)
+              em.createNativeQuery(DROP_EXPIRED_PARTITIONS_SQL)
+                  .setParameter("cutoffDate", cutoffDate)
+                  .getSingleResult();
+      droppedPartitions = dropped.intValue();
+    }
+    em.createNativeQuery(DELETE_EXPIRED_EVENTS_SQL)
+        .setParameter("cutoffDate", cutoffDate)
+        .executeUpdate();
+    return droppedPartitions;
+  }
+
+  @Override
+  public int createEventPartitions(int monthsAhead) {
+    if (!isPostgreSql(em.unwrap(Session.class))) {
+      return 0;
+    }
+    Number created =
+        (Number)
+            em.createNativeQuery(CREATE_PARTITIONS_SQL)
+                .setParameter("monthsAhead", monthsAhead)
+                .getSingleResult();
+    return created.intValue();
+  }
+
+  private boolean isPostgreSql(Session session) {
+    String databaseName =
+        session.doReturningWork(connection -> connection.getMetaData().getDatabaseProductName());
+    return POSTGRESQL.equals(databaseName);
+  }
+
+  private void bind(PreparedStatement statement, EventRecord eventRecord) throws SQLException {
+    statement.setObject(1, eventRecord.getId());
+    statement.setString(2, eventRecord.getAccountNumber());
+    statement.setString(3, eventRecord.getEventType());
+    statement.setString(4, eventRecord.getEventSource());
+    statement.setString(5, eventRecord.getInstanceId());
+    statement.setString(6, eventRecord.getServiceType());
+    statement.setObject(7, eventRecord.getTimestamp());
+    try {
+      statement.setString(8, objectMapper.writeValueAsString(eventRecord.getEvent()));
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Error serializing event", e);
+    }
+  }
+}
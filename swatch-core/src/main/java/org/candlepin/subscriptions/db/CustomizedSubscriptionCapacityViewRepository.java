@@ -0,0 +1,59 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import org.candlepin.subscriptions.db.model.SkuCapacitySummary;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
+import org.candlepin.subscriptions.utilization.api.model.Uom;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Fragment interface defining methods for queries not handled well by Spring JPA's query methods
+ * DSL.
+ *
+ * <p>See
+ * https://docs.spring.io/spring-data/jpa/docs/2.3.0.RELEASE/reference/html/#repositories.custom-implementations
+ */
+public interface CustomizedSubscriptionCapacityViewRepository {
+
+  /**
+   * Sum up the capacities of the subscription capacities matching the given specification, per
+   * SKU.
+   *
+   * @param specification the subscription capacities to sum up
+   * @param uom the unit of measure capacities are reported in, or null to report each SKU in the
+   *     unit of measure it has capacity for
+   * @param sort the field to sort SKUs by, or null to sort by SKU
+   * @param direction the sort direction
+   * @param pageable the page of SKUs to return, or null for all of them
+   * @return a page of SKU capacity summaries
+   */
+  Page<SkuCapacitySummary> findSkuCapacitySummaries(
+      Specification<SubscriptionCapacityView> specification,
+      Uom uom,
+      SkuCapacityReportSort sort,
+      Sort.Direction direction,
+      Pageable pageable);
+}
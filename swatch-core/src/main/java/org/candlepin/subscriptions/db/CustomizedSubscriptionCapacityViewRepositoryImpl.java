@@ -0,0 +1,246 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import org.candlepin.subscriptions.db.model.ServiceLevel;
+import org.candlepin.subscriptions.db.model.SkuCapacitySummary;
+import org.candlepin.subscriptions.db.model.StringValueEnum;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacityView;
+import org.candlepin.subscriptions.db.model.SubscriptionCapacityView_;
+import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
+import org.candlepin.subscriptions.utilization.api.model.Uom;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+/** Class implementing custom queries not handled well by Spring JPA's query methods DSL. */
+@Repository
+public class CustomizedSubscriptionCapacityViewRepositoryImpl
+    implements CustomizedSubscriptionCapacityViewRepository {
+
+  private static final String SKU = "sku";
+  private static final String QUANTITY = "quantity";
+  private static final String PHYSICAL_SOCKETS = "physicalSockets";
+  private static final String VIRTUAL_SOCKETS = "virtualSockets";
+  private static final String PHYSICAL_CORES = "physicalCores";
+  private static final String VIRTUAL_CORES = "virtualCores";
+  private static final String NEXT_EVENT_DATE = "nextEventDate";
+  private static final String HAS_UNLIMITED_USAGE = "hasUnlimitedUsage";
+
+  private final EntityManager em;
+
+  @Autowired
+  public CustomizedSubscriptionCapacityViewRepositoryImpl(
+      @Qualifier("rhsmSubscriptionsEntityManagerFactory") EntityManager em) {
+    this.em = em;
+  }
+
+  @Override
+  public Page<SkuCapacitySummary> findSkuCapacitySummaries(
+      Specification<SubscriptionCapacityView> specification,
+      Uom uom,
+      SkuCapacityReportSort sort,
+      Sort.Direction direction,
+      Pageable pageable) {
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<Tuple> query = cb.createTupleQuery();
+    Root<SubscriptionCapacityView> capacity = query.from(SubscriptionCapacityView.class);
+
+    Path<String> sku = capacity.get(SubscriptionCapacityView_.sku);
+    Expression<Long> quantity = cb.sum(capacity.get(SubscriptionCapacityView_.quantity));
+    Expression<Integer> physicalSockets =
+        sumOf(cb, capacity.get(SubscriptionCapacityView_.physicalSockets));
+    Expression<Integer> virtualSockets =
+        sumOf(cb, capacity.get(SubscriptionCapacityView_.virtualSockets));
+    Expression<Integer> physicalCores =
+        sumOf(cb, capacity.get(SubscriptionCapacityView_.physicalCores));
+    Expression<Integer> virtualCores =
+        sumOf(cb, capacity.get(SubscriptionCapacityView_.virtualCores));
+    Expression<OffsetDateTime> nextEventDate =
+        cb.least(capacity.get(SubscriptionCapacityView_.endDate));
+    Expression<Integer> hasUnlimitedUsage =
+        cb.max(
+            cb.<Integer>selectCase()
+                .when(cb.isTrue(capacity.get(SubscriptionCapacityView_.hasUnlimitedUsage)), 1)
+                .otherwise(0));
+
+    List<Expression<?>> sortKeys = new ArrayList<>();
+    switch (sort == null ? SkuCapacityReportSort.SKU : sort) {
+      case SERVICE_LEVEL:
+        sortKeys.add(
+            openApiOrdinal(
+                cb,
+                capacity.get(SubscriptionCapacityView_.serviceLevel),
+                ServiceLevel.values(),
+                ServiceLevel.EMPTY));
+        break;
+      case USAGE:
+        sortKeys.add(
+            openApiOrdinal(
+                cb, capacity.get(SubscriptionCapacityView_.usage), Usage.values(), Usage.EMPTY));
+        break;
+      case QUANTITY:
+        sortKeys.add(quantity);
+        break;
+      case NEXT_EVENT_DATE:
+        sortKeys.add(nextEventDate);
+        break;
+      case TOTAL_CAPACITY:
+        // unlimited capacity SKUs are greater than any limited capacity
+        sortKeys.add(hasUnlimitedUsage);
+        sortKeys.add(
+            totalCapacity(cb, uom, physicalSockets, virtualSockets, physicalCores, virtualCores));
+        break;
+      case PRODUCT_NAME:
+        sortKeys.add(cb.least(capacity.get(SubscriptionCapacityView_.productName)));
+        break;
+      case NEXT_EVENT_TYPE:
+        // every SKU's next event is the end of a subscription, so SKUs only differ by SKU
+      case SKU:
+      default:
+        break;
+    }
+    // SKUs are unique in the report, so they break any ties
+    sortKeys.add(sku);
+
+    List<Order> orders =
+        sortKeys.stream()
+            .map(key -> direction == Sort.Direction.DESC ? cb.desc(key) : cb.asc(key))
+            .collect(Collectors.toList());
+
+    query
+        .multiselect(
+            sku.alias(SKU),
+            quantity.alias(QUANTITY),
+            physicalSockets.alias(PHYSICAL_SOCKETS),
+            virtualSockets.alias(VIRTUAL_SOCKETS),
+            physicalCores.alias(PHYSICAL_CORES),
+            virtualCores.alias(VIRTUAL_CORES),
+            nextEventDate.alias(NEXT_EVENT_DATE),
+            hasUnlimitedUsage.alias(HAS_UNLIMITED_USAGE))
+        .where(specification.toPredicate(capacity, query, cb))
+        .groupBy(sku)
+        .orderBy(orders);
+
+    TypedQuery<Tuple> typedQuery = em.createQuery(query);
+    if (pageable == null) {
+      return new PageImpl<>(toSummaries(typedQuery.getResultList()));
+    }
+    typedQuery.setFirstResult((int) pageable.getOffset());
+    typedQuery.setMaxResults(pageable.getPageSize());
+    return PageableExecutionUtils.getPage(
+        toSummaries(typedQuery.getResultList()), pageable, () -> countSkus(specification));
+  }
+
+  private long countSkus(Specification<SubscriptionCapacityView> specification) {
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<Long> query = cb.createQuery(Long.class);
+    Root<SubscriptionCapacityView> capacity = query.from(SubscriptionCapacityView.class);
+    query
+        .select(cb.countDistinct(capacity.get(SubscriptionCapacityView_.sku)))
+        .where(specification.toPredicate(capacity, query, cb));
+    return em.createQuery(query).getSingleResult();
+  }
+
+  private static Expression<Integer> sumOf(CriteriaBuilder cb, Expression<Integer> capacity) {
+    return cb.sum(cb.coalesce(capacity, 0));
+  }
+
+  /**
+   * Total capacity of a SKU in the unit of measure it is reported in. Without a requested unit of
+   * measure, SKUs with physical socket capacity are reported in sockets, and others in cores.
+   */
+  private static Expression<Integer> totalCapacity(
+      CriteriaBuilder cb,
+      Uom uom,
+      Expression<Integer> physicalSockets,
+      Expression<Integer> virtualSockets,
+      Expression<Integer> physicalCores,
+      Expression<Integer> virtualCores) {
+    Expression<Integer> sockets = cb.sum(physicalSockets, virtualSockets);
+    Expression<Integer> cores = cb.sum(physicalCores, virtualCores);
+    if (uom == Uom.SOCKETS) {
+      return sockets;
+    }
+    if (uom == Uom.CORES) {
+      return cores;
+    }
+    return cb.<Integer>selectCase()
+        .when(cb.notEqual(physicalSockets, 0), sockets)
+        .otherwise(cores);
+  }
+
+  /**
+   * Sort key ordering an enum column the same way the API enum it is reported as would be, with
+   * missing values ordered as the given empty value.
+   */
+  private static <E extends Enum<E> & StringValueEnum<? extends Enum<?>>>
+      Expression<Integer> openApiOrdinal(
+          CriteriaBuilder cb, Expression<E> column, E[] values, E empty) {
+    CriteriaBuilder.Case<Integer> ordinal = cb.selectCase();
+    for (E value : values) {
+      ordinal = ordinal.when(cb.equal(column, value), value.asOpenApiEnum().ordinal());
+    }
+    return cb.min(ordinal.otherwise(empty.asOpenApiEnum().ordinal()));
+  }
+
+  private static List<SkuCapacitySummary> toSummaries(List<Tuple> rows) {
+    return rows.stream()
+        .map(
+            row ->
+                SkuCapacitySummary.builder()
+                    .sku(row.get(SKU, String.class))
+                    .quantity(longValue(row, QUANTITY))
+                    .physicalSockets(longValue(row, PHYSICAL_SOCKETS))
+                    .virtualSockets(longValue(row, VIRTUAL_SOCKETS))
+                    .physicalCores(longValue(row, PHYSICAL_CORES))
+                    .virtualCores(longValue(row, VIRTUAL_CORES))
+                    .nextEventDate(row.get(NEXT_EVENT_DATE, OffsetDateTime.class))
+                    .hasUnlimitedUsage(longValue(row, HAS_UNLIMITED_USAGE) > 0)
+                    .build())
+        .collect(Collectors.toList());
+  }
+
+  private static long longValue(Tuple row, String alias) {
+    Number value = row.get(alias, Number.class);
+    return value == null ? 0 : value.longValue();
+  }
+}
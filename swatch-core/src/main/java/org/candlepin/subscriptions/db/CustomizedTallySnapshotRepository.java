@@ -0,0 +1,68 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.util.DateRange;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fragment interface defining bulk snapshot operations that are not handled well by Spring JPA.
+ *
+ * <p>See
+ * https://docs.spring.io/spring-data/jpa/docs/2.3.0.RELEASE/reference/html/#repositories.custom-implementations
+ */
+public interface CustomizedTallySnapshotRepository {
+
+  /**
+   * Delete a batch of the snapshots of a granularity dated before a cutoff date, across all
+   * accounts.
+   *
+   * <p>The oldest snapshots are deleted first, along with their measurements, using set-based
+   * statements rather than loading each snapshot as an entity. Callers delete all expired snapshots
+   * by calling this until it deletes fewer than a full batch; when called outside a transaction,
+   * each batch is committed separately so that locks are only held briefly.
+   *
+   * @param granularity the granularity of the snapshots to delete
+   * @param cutoffDate snapshots dated before this are deleted
+   * @param batchSize the maximum number of snapshots to delete
+   * @return the number of snapshots deleted
+   */
+  @Transactional
+  int deleteSnapshotBatchBefore(Granularity granularity, OffsetDateTime cutoffDate, int batchSize);
+
+  /**
+   * Find an account's snapshots for the given products across several granularities in a single
+   * query, each granularity limited to its own date range (both ends inclusive).
+   *
+   * @param accountNumber the account of the snapshots
+   * @param productIds the products of the snapshots
+   * @param periods the date range to search for each granularity
+   * @return the matching snapshots, of all the requested granularities
+   */
+  List<TallySnapshot> findByAccountNumberAndProductIdInAndPeriods(
+      String accountNumber, Collection<String> productIds, Map<Granularity, DateRange> periods);
+}
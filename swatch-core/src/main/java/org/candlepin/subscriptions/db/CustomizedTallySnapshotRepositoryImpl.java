@@ -0,0 +1,116 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.TallySnapshot;
+import org.candlepin.subscriptions.db.model.TallySnapshot_;
+import org.candlepin.subscriptions.util.DateRange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+/** Class implementing bulk snapshot operations not handled well by Spring JPA. */
+@Repository
+public class CustomizedTallySnapshotRepositoryImpl implements CustomizedTallySnapshotRepository {
+
+  // Uses the (granularity, snapshot_date) index, so each batch starts at the oldest snapshots left.
+  private static final String EXPIRED_SNAPSHOT_IDS_SQL =
+      "select id from tally_snapshots "
+          + "where granularity = :granularity and snapshot_date < :cutoffDate "
+          + "order by snapshot_date";
+
+  // Measurements are deleted first, so that the snapshot deletes do not rely on cascades.
+  private static final List<String> DELETE_BY_SNAPSHOT_IDS_SQL =
+      List.of(
+          "delete from hardware_measurements where snapshot_id in (:ids)",
+          "delete from tally_measurements where snapshot_id in (:ids)",
+          "delete from tally_snapshots where id in (:ids)");
+
+  private final EntityManager em;
+
+  @Autowired
+  public CustomizedTallySnapshotRepositoryImpl(
+      @Qualifier("rhsmSubscriptionsEntityManagerFactory") EntityManager em) {
+    this.em = em;
+  }
+
+  @Override
+  public int deleteSnapshotBatchBefore(
+      Granularity granularity, OffsetDateTime cutoffDate, int batchSize) {
+    List<?> ids =
+        em.createNativeQuery(EXPIRED_SNAPSHOT_IDS_SQL)
+            .setParameter("granularity", granularity.name())
+            .setParameter("cutoffDate", cutoffDate)
+            .setMaxResults(batchSize)
+            .getResultList();
+    if (ids.isEmpty()) {
+      return 0;
+    }
+
+    // Snapshots already loaded in this persistence context must not be flushed after the delete.
+    em.flush();
+    em.clear();
+    for (String sql : DELETE_BY_SNAPSHOT_IDS_SQL) {
+      em.createNativeQuery(sql).setParameter("ids", ids).executeUpdate();
+    }
+    return ids.size();
+  }
+
+  @Override
+  public List<TallySnapshot> findByAccountNumberAndProductIdInAndPeriods(
+      String accountNumber, Collection<String> productIds, Map<Granularity, DateRange> periods) {
+    if (productIds.isEmpty() || periods.isEmpty()) {
+      return List.of();
+    }
+
+    CriteriaBuilder builder = em.getCriteriaBuilder();
+    CriteriaQuery<TallySnapshot> query = builder.createQuery(TallySnapshot.class);
+    Root<TallySnapshot> snapshot = query.from(TallySnapshot.class);
+
+    List<Predicate> periodPredicates = new ArrayList<>();
+    periods.forEach(
+        (granularity, period) ->
+            periodPredicates.add(
+                builder.and(
+                    builder.equal(snapshot.get(TallySnapshot_.granularity), granularity),
+                    builder.between(
+                        snapshot.get(TallySnapshot_.snapshotDate),
+                        period.getStartDate(),
+                        period.getEndDate()))));
+
+    query.where(
+        builder.equal(snapshot.get(TallySnapshot_.accountNumber), accountNumber),
+        snapshot.get(TallySnapshot_.productId).in(productIds),
+        builder.or(periodPredicates.toArray(new Predicate[0])));
+    return em.createQuery(query).getResultList();
+  }
+}
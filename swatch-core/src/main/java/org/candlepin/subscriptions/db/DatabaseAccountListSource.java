@@ -49,13 +49,4 @@ public class DatabaseAccountListSource implements AccountListSource {
       throw new AccountListSourceException("Unable to determine if account was in whitelist.", e);
     }
   }
-
-  @Override
-  public Stream<String> purgeReportAccounts() throws AccountListSourceException {
-    try {
-      return repository.findSyncEnabledAccounts();
-    } catch (Exception e) {
-      throw new AccountListSourceException("Unable to get account purge list!", e);
-    }
-  }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.candlepin.subscriptions.db.model.EventDirtyHour;
+import org.candlepin.subscriptions.db.model.EventDirtyHourId;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * DB repository for the hours of events that have changed since they were last tallied.
+ *
+ * @see EventDirtyHour
+ */
+public interface EventDirtyHourRepository
+    extends JpaRepository<EventDirtyHour, EventDirtyHourId>, CustomizedEventDirtyHourRepository {
+
+  /**
+   * Find the changed hours for an account and service type that start before the given time.
+   *
+   * @param accountNumber account number
+   * @param serviceType service type
+   * @param end hours starting at or after this time are excluded
+   * @return the dirty hours, ordered by hour
+   */
+  List<EventDirtyHour> findByIdAccountNumberAndIdServiceTypeAndIdHourBeforeOrderByIdHour(
+      String accountNumber, String serviceType, OffsetDateTime end);
+
+  void deleteByIdAccountNumber(String accountNumber);
+}
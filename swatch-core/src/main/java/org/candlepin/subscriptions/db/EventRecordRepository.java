@@ -20,12 +20,16 @@
  */
 package org.candlepin.subscriptions.db;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.time.OffsetDateTime;
 import java.util.UUID;
 import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.candlepin.subscriptions.db.model.EventRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 /**
@@ -35,7 +39,8 @@ import org.springframework.data.repository.query.Param;
  * @see org.candlepin.subscriptions.json.Event
  */
 @SuppressWarnings({"linelength", "indentation"})
-public interface EventRecordRepository extends JpaRepository<EventRecord, UUID> {
+public interface EventRecordRepository
+    extends JpaRepository<EventRecord, UUID>, CustomizedEventRecordRepository {
 
   /**
    * Fetch a stream of events for a given account for a given time range.
@@ -81,11 +86,28 @@ public interface EventRecordRepository extends JpaRepository<EventRecord, UUID>
           OffsetDateTime end);
 
   /**
-   * Delete old event records given a cutoff date
+   * Find the JSON data of the events matching the given source and type during the specified
+   * range. The events are not loaded as entities, so changes to them are never flushed back.
    *
-   * @param cutoffDate Dates BEFORE this timestamp get deleted
+   * @param accountNumber account number
+   * @param eventSource event source
+   * @param eventType event type
+   * @param begin start of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @return a stream of event JSON documents, ordered by timestamp
    */
-  void deleteEventRecordsByTimestampBefore(OffsetDateTime cutoffDate);
+  @Query(
+      nativeQuery = true,
+      value =
+          "select cast(data as text) from events where account_number=:accountNumber "
+              + "and event_source=:eventSource and event_type=:eventType "
+              + "and timestamp >= :begin and timestamp < :end order by timestamp")
+  Stream<String> findDataInTimeRange(
+      @Param("accountNumber") String accountNumber,
+      @Param("eventSource") String eventSource,
+      @Param("eventType") String eventType,
+      @Param("begin") OffsetDateTime begin,
+      @Param("end") OffsetDateTime end);
 
   /**
    * Check if any Events exist for the specified account and service type during the specified
@@ -97,10 +119,6 @@ public interface EventRecordRepository extends JpaRepository<EventRecord, UUID>
    * @param end
    * @return true if at least 1 event exists, false otherwise.
    */
-  @Query(
-      nativeQuery = true,
-      value =
-          "select exists(select 1 from events where account_number=:accountNumber and data->>'service_type'=:serviceType and timestamp >= :begin and timestamp < :end order by timestamp)")
   boolean existsByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThan(
       @Param("accountNumber") String accountNumber,
       @Param("serviceType") String serviceType,
@@ -117,10 +135,7 @@ public interface EventRecordRepository extends JpaRepository<EventRecord, UUID>
    * @param end
    * @return a stream of Event objects matching the specified criteria.
    */
-  @Query(
-      nativeQuery = true,
-      value =
-          "select * from events where account_number=:accountNumber and data->>'service_type'=:serviceType and timestamp >= :begin and timestamp < :end order by timestamp")
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
   Stream<EventRecord>
       findByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp(
           @Param("accountNumber") String accountNumber,
@@ -128,5 +143,63 @@ public interface EventRecordRepository extends JpaRepository<EventRecord, UUID>
           @Param("begin") OffsetDateTime begin,
           @Param("end") OffsetDateTime end);
 
+  /**
+   * Find the JSON data of the events for an account and service type during the specified range,
+   * without the fields that are not needed to tally usage.
+   *
+   * <p>Unlike {@link
+   * #findByAccountNumberAndServiceTypeAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestamp},
+   * no entities are materialized, so the results are not tracked by the persistence context and
+   * the unused fields are never parsed.
+   *
+   * @param accountNumber account number
+   * @param serviceType service type
+   * @param begin start of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @return a stream of event JSON documents, ordered by timestamp
+   */
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query(
+      nativeQuery = true,
+      value =
+          "select cast(data - cast('{event_id,event_source,event_type,expiration,insights_id,"
+              + "correlation_ids,uom}' as text[]) as text) from events "
+              + "where account_number=:accountNumber and service_type=:serviceType "
+              + "and timestamp >= :begin and timestamp < :end order by timestamp")
+  Stream<String> findTallyDataInTimeRange(
+      @Param("accountNumber") String accountNumber,
+      @Param("serviceType") String serviceType,
+      @Param("begin") OffsetDateTime begin,
+      @Param("end") OffsetDateTime end);
+
+  /**
+   * Sum the measurements of all events for an account and service type in a time range, grouped by
+   * instance, unit of measure and month (formatted as yyyy-MM in UTC).
+   *
+   * <p>The aggregation is done by the database, so that monthly totals can be recalculated without
+   * loading and deserializing every event in the month.
+   *
+   * @param accountNumber account number
+   * @param serviceType service type
+   * @param begin start of the time range (inclusive)
+   * @param end end of the time range (exclusive)
+   * @return a stream of Object[] with entries of instance ID, uom, month ID and summed value
+   */
+  @Query(
+      nativeQuery = true,
+      value =
+          "select e.instance_id, m->>'uom' as uom, "
+              + "to_char(e.timestamp at time zone 'UTC', 'YYYY-MM') as month_id, "
+              + "sum(cast(m->>'value' as double precision)) as total "
+              + "from events e cross join lateral jsonb_array_elements(e.data->'measurements') m "
+              + "where e.account_number=:accountNumber and e.service_type=:serviceType "
+              + "and e.timestamp >= :begin and e.timestamp < :end "
+              + "group by e.instance_id, uom, month_id")
+  Stream<Object[]> sumMeasurementsByInstanceAndMonth(
+      @Param("accountNumber") String accountNumber,
+      @Param("serviceType") String serviceType,
+      @Param("begin") OffsetDateTime begin,
+      @Param("end") OffsetDateTime end);
+
   void deleteByAccountNumber(String accountNumber);
 }
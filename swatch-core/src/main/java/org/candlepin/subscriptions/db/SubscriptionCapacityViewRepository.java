@@ -22,16 +22,22 @@ package org.candlepin.subscriptions.db;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import org.candlepin.subscriptions.db.model.*;
+import org.candlepin.subscriptions.utilization.api.model.SkuCapacityReportSort;
 import org.candlepin.subscriptions.utilization.api.model.Uom;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
 public interface SubscriptionCapacityViewRepository
     extends JpaRepository<SubscriptionCapacityView, SubscriptionCapacityKey>,
-        JpaSpecificationExecutor<SubscriptionCapacityView> {
+        JpaSpecificationExecutor<SubscriptionCapacityView>,
+        CustomizedSubscriptionCapacityViewRepository {
 
   default List<SubscriptionCapacityView> findAllBy(
       String ownerId,
@@ -50,6 +56,58 @@ public interface SubscriptionCapacityViewRepository
             .build());
   }
 
+  /** Find the subscription capacities matching the given criteria, for the given SKUs only. */
+  @SuppressWarnings("java:S107")
+  default List<SubscriptionCapacityView> findAllBy(
+      String ownerId,
+      String productId,
+      ServiceLevel serviceLevel,
+      Usage usage,
+      OffsetDateTime reportStart,
+      OffsetDateTime reportEnd,
+      Uom uom,
+      Collection<String> skus) {
+    List<SearchCriteria> searchCriteria =
+        buildSearchCriteria(ownerId, productId, serviceLevel, usage, reportStart, reportEnd, uom);
+    searchCriteria.add(
+        SearchCriteria.builder()
+            .key(SubscriptionCapacityView_.sku.getName())
+            .operation(SearchOperation.IN)
+            .value(skus)
+            .build());
+    return findAll(
+        SubscriptionCapacityViewSpecification.builder().criteria(searchCriteria).build());
+  }
+
+  /**
+   * Sum up the capacities of the subscription capacities matching the given criteria, per SKU.
+   *
+   * @see CustomizedSubscriptionCapacityViewRepository#findSkuCapacitySummaries
+   */
+  @SuppressWarnings("java:S107")
+  default Page<SkuCapacitySummary> findSkuCapacitySummaries(
+      String ownerId,
+      String productId,
+      ServiceLevel serviceLevel,
+      Usage usage,
+      OffsetDateTime reportStart,
+      OffsetDateTime reportEnd,
+      Uom uom,
+      SkuCapacityReportSort sort,
+      Sort.Direction direction,
+      Pageable pageable) {
+    return findSkuCapacitySummaries(
+        SubscriptionCapacityViewSpecification.builder()
+            .criteria(
+                buildSearchCriteria(
+                    ownerId, productId, serviceLevel, usage, reportStart, reportEnd, uom))
+            .build(),
+        uom,
+        sort,
+        direction,
+        pageable);
+  }
+
   private List<SearchCriteria> defaultSearchCriteria(String ownerId, String productId) {
     return new ArrayList<>(
         List.of(
@@ -26,20 +26,32 @@ import java.util.UUID;
 import java.util.stream.Stream;
 import org.candlepin.subscriptions.db.model.BillingProvider;
 import org.candlepin.subscriptions.db.model.Granularity;
+import org.candlepin.subscriptions.db.model.HardwareMeasurementType;
 import org.candlepin.subscriptions.db.model.ServiceLevel;
 import org.candlepin.subscriptions.db.model.TallyMeasurementKey;
+import org.candlepin.subscriptions.db.model.TallyReportDataPointView;
 import org.candlepin.subscriptions.db.model.TallySnapshot;
 import org.candlepin.subscriptions.db.model.Usage;
+import org.candlepin.subscriptions.json.Measurement;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
 /** Interface that Spring Data will turn into a DAO for us. */
-public interface TallySnapshotRepository extends JpaRepository<TallySnapshot, UUID> {
+public interface TallySnapshotRepository
+    extends JpaRepository<TallySnapshot, UUID>, CustomizedTallySnapshotRepository {
+
+  String REPORT_CRITERIA =
+      "s.accountNumber = :accountNumber and "
+          + "s.productId = :productId and "
+          + "s.granularity = :granularity and "
+          + "s.serviceLevel = :serviceLevel and "
+          + "s.usage = :usage and "
+          + "s.billingProvider = :billingProvider and "
+          + "s.billingAccountId = :billingAcctId and "
+          + "s.snapshotDate between :beginning and :ending ";
 
   // suppress line length and params arguments, can't help either easily b/c this is a spring data
   // method
@@ -67,9 +79,47 @@ public interface TallySnapshotRepository extends JpaRepository<TallySnapshot, UU
       @Param("ending") OffsetDateTime ending,
       @Param("pageable") Pageable pageable);
 
-  @Transactional(propagation = Propagation.REQUIRES_NEW)
-  void deleteAllByAccountNumberAndGranularityAndSnapshotDateBefore(
-      String accountNumber, Granularity granularity, OffsetDateTime cutoffDate);
+  /**
+   * Find the report data points of the snapshots matching the given criteria.
+   *
+   * <p>Measurements are summed up by the database, so that snapshots and their measurement
+   * collections do not need to be loaded.
+   *
+   * @param uom the unit of measure of the measurements to report
+   * @param measurementTypes the measurement types summed up for each data point
+   * @return a page of data points, ordered by snapshot date
+   */
+  @SuppressWarnings("java:S107")
+  @Query(
+      value =
+          "select s.id as id, s.snapshotDate as snapshotDate, "
+              + "coalesce(sum(case when key(m).uom = :uom "
+              + "and key(m).measurementType in (:measurementTypes) "
+              + "then value(m) else 0.0 end), 0.0) as value, "
+              + "max(case when key(m).uom = :uom and key(m).measurementType = "
+              + "org.candlepin.subscriptions.db.model.HardwareMeasurementType.AWS_CLOUDIGRADE "
+              + "then value(m) end) as cloudigradeValue, "
+              + "max(case when key(m).uom = :uom and key(m).measurementType = "
+              + "org.candlepin.subscriptions.db.model.HardwareMeasurementType.AWS "
+              + "then value(m) end) as awsValue, "
+              + "count(m) as measurementCount "
+              + "from TallySnapshot s left join s.tallyMeasurements m where "
+              + REPORT_CRITERIA
+              + "group by s.id, s.snapshotDate order by s.snapshotDate",
+      countQuery = "select count(s) from TallySnapshot s where " + REPORT_CRITERIA)
+  Page<TallyReportDataPointView> findReportDataPoints( // NOSONAR
+      @Param("accountNumber") String accountNumber,
+      @Param("productId") String productId,
+      @Param("granularity") Granularity granularity,
+      @Param("serviceLevel") ServiceLevel serviceLevel,
+      @Param("usage") Usage usage,
+      @Param("billingProvider") BillingProvider billingProvider,
+      @Param("billingAcctId") String billingAccountId,
+      @Param("beginning") OffsetDateTime beginning,
+      @Param("ending") OffsetDateTime ending,
+      @Param("uom") Measurement.Uom uom,
+      @Param("measurementTypes") Collection<HardwareMeasurementType> measurementTypes,
+      @Param("pageable") Pageable pageable);
 
   Stream<TallySnapshot> findByAccountNumberAndProductIdInAndGranularityAndSnapshotDateBetween(
       String accountNumber,
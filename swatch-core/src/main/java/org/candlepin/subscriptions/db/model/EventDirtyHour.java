@@ -0,0 +1,64 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db.model;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Marks an hour of events for an account and service type as changed since it was last tallied.
+ *
+ * <p>Rows are written whenever events are saved or deleted, and removed once the hourly tally has
+ * replayed the hour. The version is incremented each time the hour is marked again, so that an hour
+ * marked while it is being tallied is only removed by the next tally.
+ */
+@Entity
+@Table(name = "event_dirty_hours")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventDirtyHour implements Serializable {
+  @EmbeddedId private EventDirtyHourId id;
+
+  @Column(name = "version")
+  private long version;
+
+  public EventDirtyHour(EventDirtyHourId id) {
+    this.id = id;
+  }
+
+  public EventDirtyHour(String accountNumber, String serviceType, OffsetDateTime hour) {
+    this(new EventDirtyHourId(accountNumber, serviceType, hour));
+  }
+
+  public OffsetDateTime getHour() {
+    return id.getHour();
+  }
+}
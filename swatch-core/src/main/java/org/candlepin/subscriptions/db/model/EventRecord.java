@@ -69,10 +69,13 @@ public class EventRecord {
     this.accountNumber = event.getAccountNumber();
     this.eventType = event.getEventType();
     this.eventSource = event.getEventSource();
+    this.serviceType = event.getServiceType();
     this.instanceId = event.getInstanceId();
     this.timestamp = event.getTimestamp();
   }
 
+  // The events table is partitioned by timestamp, so its primary key is (id, timestamp). Event IDs
+  // are random UUIDs that are kept when an event is stored again, so they are still unique.
   @Id private UUID id;
 
   @Column(name = "account_number")
@@ -84,6 +87,9 @@ public class EventRecord {
   @Column(name = "event_source")
   private String eventSource;
 
+  @Column(name = "service_type")
+  private String serviceType;
+
   @Column(name = "instance_id")
   private String instanceId;
 
@@ -0,0 +1,47 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db.model;
+
+import java.time.OffsetDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/** Capacities of the subscriptions for one SKU, summed up by the database. */
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class SkuCapacitySummary {
+  private final String sku;
+  private final long quantity;
+  private final long physicalSockets;
+  private final long virtualSockets;
+  private final long physicalCores;
+  private final long virtualCores;
+
+  /** The earliest end date of the SKU's subscriptions. */
+  private final OffsetDateTime nextEventDate;
+
+  /** Whether any of the SKU's subscriptions has unlimited usage. */
+  private final boolean hasUnlimitedUsage;
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.db.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A data projection of a TallySnapshot, with its tally measurements of one unit of measure summed
+ * up in the database, giving a view of the data needed by the tally report data API.
+ */
+public interface TallyReportDataPointView {
+
+  UUID getId();
+
+  OffsetDateTime getSnapshotDate();
+
+  /** Sum of the snapshot's measurements of the requested types and unit of measure. */
+  Double getValue();
+
+  /** The snapshot's AWS_CLOUDIGRADE measurement of the requested unit of measure, if any. */
+  Double getCloudigradeValue();
+
+  /** The snapshot's AWS measurement of the requested unit of measure, if any. */
+  Double getAwsValue();
+
+  /**
+   * Number of tally measurements of the snapshot, of any type and unit of measure. Snapshots
+   * without any predate tally measurements, and only have hardware measurements.
+   */
+  long getMeasurementCount();
+}
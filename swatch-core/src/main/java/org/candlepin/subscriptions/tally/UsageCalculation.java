@@ -45,6 +45,8 @@ import org.slf4j.LoggerFactory;
 public class UsageCalculation {
   private static final Logger log = LoggerFactory.getLogger(UsageCalculation.class);
 
+  private static final Measurement.Uom[] UOMS = Measurement.Uom.values();
+
   private final Key key;
 
   /**
@@ -93,7 +95,9 @@ public class UsageCalculation {
     @Deprecated(forRemoval = true)
     private int instances;
 
-    private final Map<Measurement.Uom, Double> measurements = new EnumMap<>(Measurement.Uom.class);
+    // Indexed by Uom ordinal, so that incrementing a measurement does not box the running total.
+    private final double[] measurementValues = new double[UOMS.length];
+    private final boolean[] hasMeasurement = new boolean[UOMS.length];
 
     public Totals() {
       cores = 0;
@@ -103,7 +107,7 @@ public class UsageCalculation {
 
     public String toString() {
       String entries =
-          measurements.entrySet().stream()
+          getMeasurements().entrySet().stream()
               .map(e -> String.format("%s: %s", e.getKey(), e.getValue()))
               .collect(Collectors.joining(", "));
       String uomMeasurements = String.format("[%s]", entries);
@@ -139,19 +143,37 @@ public class UsageCalculation {
       return instances;
     }
 
+    /**
+     * @return a copy of the measurements that have been incremented, by unit of measure
+     */
     public Map<Measurement.Uom, Double> getMeasurements() {
+      Map<Measurement.Uom, Double> measurements = new EnumMap<>(Measurement.Uom.class);
+      for (Measurement.Uom uom : UOMS) {
+        if (hasMeasurement[uom.ordinal()]) {
+          measurements.put(uom, measurementValues[uom.ordinal()]);
+        }
+      }
       return measurements;
     }
 
     public Double getMeasurement(Measurement.Uom uom) {
-      return measurements.get(uom);
+      return hasMeasurement[uom.ordinal()] ? measurementValues[uom.ordinal()] : null;
     }
 
-    public void increment(Measurement.Uom uom, Double amount) {
-      Double existingValue = getMeasurement(uom);
-      double value = existingValue == null ? 0.0 : existingValue;
-      double newValue = value + amount;
-      measurements.put(uom, newValue);
+    public void increment(Measurement.Uom uom, double amount) {
+      measurementValues[uom.ordinal()] += amount;
+      hasMeasurement[uom.ordinal()] = true;
+    }
+
+    private void add(Totals other) {
+      cores += other.cores;
+      sockets += other.sockets;
+      instances += other.instances;
+      for (Measurement.Uom uom : UOMS) {
+        if (other.hasMeasurement[uom.ordinal()]) {
+          increment(uom, other.measurementValues[uom.ordinal()]);
+        }
+      }
     }
   }
 
@@ -162,6 +184,10 @@ public class UsageCalculation {
     this.mappedTotals = new EnumMap<>(HardwareMeasurementType.class);
   }
 
+  public Key getKey() {
+    return key;
+  }
+
   public String getProductId() {
     return key.productId;
   }
@@ -267,7 +293,7 @@ public class UsageCalculation {
     total.instances += instances;
   }
 
-  private void increment(HardwareMeasurementType type, Measurement.Uom uom, Double value) {
+  private void increment(HardwareMeasurementType type, Measurement.Uom uom, double value) {
     Totals total = getOrDefault(type);
     total.increment(uom, value);
   }
@@ -277,6 +303,19 @@ public class UsageCalculation {
     return this.mappedTotals.get(type);
   }
 
+  /**
+   * Add the totals of another calculation for the same key to this one.
+   *
+   * @param other the calculation to add
+   */
+  public void merge(UsageCalculation other) {
+    if (!key.equals(other.key)) {
+      throw new IllegalArgumentException(
+          String.format("Cannot merge calculation %s into %s", other.key, key));
+    }
+    other.mappedTotals.forEach((type, totals) -> getOrDefault(type).add(totals));
+  }
+
   public boolean hasMeasurements() {
     return !this.mappedTotals.isEmpty();
   }
@@ -0,0 +1,41 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task;
+
+import java.util.List;
+
+/**
+ * Thrown by a task that works through several accounts once all of them have been attempted, when
+ * the work failed for some of them. The remaining accounts completed successfully.
+ */
+public class AccountsFailedException extends RuntimeException {
+
+  private final transient List<String> failedAccounts;
+
+  public AccountsFailedException(List<String> failedAccounts, Throwable cause) {
+    super(String.format("Task failed for accounts: %s", failedAccounts), cause);
+    this.failedAccounts = List.copyOf(failedAccounts);
+  }
+
+  public List<String> getFailedAccounts() {
+    return failedAccounts;
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.Value;
+import org.candlepin.subscriptions.util.ApplicationClock;
+import org.candlepin.subscriptions.util.DateRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A TaskFactory that skips tally work made redundant by a task that started after it was queued,
+ * before handing the remaining work to the wrapped factory.
+ *
+ * <p>Producers stamp tasks with the time they were queued, in the {@link #QUEUED_AT_ARG} argument.
+ * Once a task built by this factory completes, the time it started is recorded for its accounts
+ * (and, for UPDATE_HOURLY_SNAPSHOTS tasks, for its range). A later task is only coalesced against
+ * runs that started after it was queued, so the data it was queued for has already been tallied:
+ *
+ * <ul>
+ *   <li>an UPDATE_SNAPSHOTS task only keeps the accounts that have not been tallied since, and is
+ *       skipped when none remain;
+ *   <li>an UPDATE_HOURLY_SNAPSHOTS task only replays the parts of its range that have not been
+ *       tallied since, and is skipped when its whole range has been.
+ * </ul>
+ *
+ * <p>All other task types, tasks without a queued time, and tasks queued longer ago than the
+ * configured window are passed through. Completed runs are tracked in memory, so only runs made by
+ * the same consumer instance are taken into account. Only the accounts (reported through {@link
+ * AccountsFailedException}) and ranges that were tallied successfully are recorded, so a retry of
+ * failed work is never skipped.
+ */
+public class CoalescingTaskFactory implements TaskFactory {
+  private static final Logger log = LoggerFactory.getLogger(CoalescingTaskFactory.class);
+
+  public static final String QUEUED_AT_ARG = "queuedAt";
+  static final String ACCOUNTS_ARG = "accounts";
+  static final String ACCOUNT_NUMBER_ARG = "accountNumber";
+  static final String START_ARG = "startDateTime";
+  static final String END_ARG = "endDateTime";
+
+  private final TaskFactory delegate;
+  private final Duration window;
+  private final ApplicationClock clock;
+  private final Counter coalescedUpdates;
+  private final Counter coalescedHourlyTasks;
+  private final Counter trimmedHourlyTasks;
+
+  private final Map<String, OffsetDateTime> updateStarts = new HashMap<>();
+  private final Map<String, List<StartedRange>> hourlyStarts = new HashMap<>();
+  private OffsetDateTime nextSweep;
+
+  public CoalescingTaskFactory(
+      TaskFactory delegate, Duration window, ApplicationClock clock, MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.window = window;
+    this.clock = clock;
+    this.coalescedUpdates =
+        meterRegistry.counter(
+            "rhsm-subscriptions.tasks.coalesced", "type", TaskType.UPDATE_SNAPSHOTS.name());
+    this.coalescedHourlyTasks =
+        meterRegistry.counter(
+            "rhsm-subscriptions.tasks.coalesced", "type", TaskType.UPDATE_HOURLY_SNAPSHOTS.name());
+    this.trimmedHourlyTasks =
+        meterRegistry.counter(
+            "rhsm-subscriptions.tasks.trimmed", "type", TaskType.UPDATE_HOURLY_SNAPSHOTS.name());
+    this.nextSweep = clock.now().plus(window);
+  }
+
+  @Override
+  public Task build(TaskDescriptor taskDescriptor) {
+    OffsetDateTime now = clock.now();
+    OffsetDateTime queuedAt = null;
+    synchronized (this) {
+      sweepExpired(now);
+    }
+    if (taskDescriptor.hasArg(QUEUED_AT_ARG)) {
+      queuedAt = OffsetDateTime.parse(taskDescriptor.getArg(QUEUED_AT_ARG).get(0));
+      if (!queuedAt.plus(window).isAfter(now)) {
+        // Runs that started since may have been forgotten already.
+        queuedAt = null;
+      }
+    }
+
+    if (taskDescriptor.getTaskType() == TaskType.UPDATE_SNAPSHOTS
+        && taskDescriptor.hasArg(ACCOUNTS_ARG)) {
+      return buildUpdate(taskDescriptor, queuedAt);
+    } else if (taskDescriptor.getTaskType() == TaskType.UPDATE_HOURLY_SNAPSHOTS
+        && taskDescriptor.hasArg(ACCOUNT_NUMBER_ARG)
+        && taskDescriptor.hasArg(START_ARG)
+        && taskDescriptor.hasArg(END_ARG)) {
+      return buildHourly(taskDescriptor, queuedAt);
+    }
+    return delegate.build(taskDescriptor);
+  }
+
+  private Task buildUpdate(TaskDescriptor taskDescriptor, OffsetDateTime queuedAt) {
+    List<String> accounts = taskDescriptor.getArg(ACCOUNTS_ARG);
+    List<String> remaining;
+    synchronized (this) {
+      remaining =
+          accounts.stream()
+              .distinct()
+              .filter(account -> !startedAfter(updateStarts.get(account), queuedAt))
+              .collect(Collectors.toList());
+    }
+
+    int coalesced = accounts.size() - remaining.size();
+    if (coalesced > 0) {
+      coalescedUpdates.increment(coalesced);
+      log.debug("Skipping snapshot updates already run for {} accounts", coalesced);
+    }
+    if (remaining.isEmpty()) {
+      return () -> {};
+    }
+
+    Task task =
+        delegate.build(
+            coalesced == 0
+                ? taskDescriptor
+                : TaskDescriptor.builder(taskDescriptor.getTaskType(), taskDescriptor.getGroupId())
+                    .setArgs(taskDescriptor.getTaskArgs())
+                    .setArg(ACCOUNTS_ARG, remaining)
+                    .build());
+    return () -> {
+      OffsetDateTime started = clock.now();
+      try {
+        task.execute();
+      } catch (AccountsFailedException e) {
+        recordUpdates(
+            remaining.stream()
+                .filter(account -> !e.getFailedAccounts().contains(account))
+                .collect(Collectors.toList()),
+            started);
+        throw e;
+      }
+      recordUpdates(remaining, started);
+    };
+  }
+
+  private Task buildHourly(TaskDescriptor taskDescriptor, OffsetDateTime queuedAt) {
+    String accountNumber = taskDescriptor.getArg(ACCOUNT_NUMBER_ARG).get(0);
+    DateRange requested =
+        DateRange.fromStrings(
+            taskDescriptor.getArg(START_ARG).get(0), taskDescriptor.getArg(END_ARG).get(0));
+
+    if (!requested.getStartDate().isBefore(requested.getEndDate())) {
+      return delegate.build(taskDescriptor);
+    }
+
+    List<DateRange> uncovered;
+    synchronized (this) {
+      List<StartedRange> started =
+          hourlyStarts.getOrDefault(accountNumber, List.of()).stream()
+              .filter(range -> startedAfter(range.getStartedAt(), queuedAt))
+              .collect(Collectors.toList());
+      uncovered = subtract(requested, merge(started));
+    }
+
+    if (uncovered.isEmpty()) {
+      coalescedHourlyTasks.increment();
+      log.debug(
+          "Skipping hourly snapshot production for account {} already run between {} and {}",
+          accountNumber,
+          requested.getStartString(),
+          requested.getEndString());
+      return () -> {};
+    }
+
+    List<Task> tasks = new ArrayList<>();
+    if (uncovered.size() == 1 && sameRange(uncovered.get(0), requested)) {
+      tasks.add(delegate.build(taskDescriptor));
+    } else {
+      trimmedHourlyTasks.increment();
+      for (DateRange range : uncovered) {
+        tasks.add(
+            delegate.build(
+                TaskDescriptor.builder(taskDescriptor.getTaskType(), taskDescriptor.getGroupId())
+                    .setArgs(taskDescriptor.getTaskArgs())
+                    .setSingleValuedArg(START_ARG, range.getStartString())
+                    .setSingleValuedArg(END_ARG, range.getEndString())
+                    .build()));
+      }
+    }
+    return () -> {
+      OffsetDateTime started = clock.now();
+      List<DateRange> tallied = new ArrayList<>();
+      RuntimeException failure = null;
+      for (int i = 0; i < tasks.size(); i++) {
+        try {
+          tasks.get(i).execute();
+          tallied.add(uncovered.get(i));
+        } catch (RuntimeException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+      recordHourly(accountNumber, tallied, started);
+      if (failure != null) {
+        throw failure;
+      }
+    };
+  }
+
+  private synchronized void recordUpdates(List<String> accounts, OffsetDateTime started) {
+    accounts.forEach(
+        account ->
+            updateStarts.merge(
+                account, started, (previous, next) -> next.isAfter(previous) ? next : previous));
+  }
+
+  private synchronized void recordHourly(
+      String accountNumber, List<DateRange> ranges, OffsetDateTime started) {
+    List<StartedRange> startedRanges =
+        hourlyStarts.computeIfAbsent(accountNumber, key -> new ArrayList<>());
+    ranges.forEach(range -> startedRanges.add(new StartedRange(range, started)));
+  }
+
+  private static boolean startedAfter(OffsetDateTime startedAt, OffsetDateTime queuedAt) {
+    return startedAt != null && queuedAt != null && startedAt.isAfter(queuedAt);
+  }
+
+  /** Periodically drop runs that started before any task still worth coalescing was queued. */
+  private void sweepExpired(OffsetDateTime now) {
+    if (now.isBefore(nextSweep)) {
+      return;
+    }
+    OffsetDateTime cutoff = now.minus(window);
+    updateStarts.values().removeIf(startedAt -> !startedAt.isAfter(cutoff));
+    hourlyStarts
+        .values()
+        .forEach(ranges -> ranges.removeIf(range -> !range.getStartedAt().isAfter(cutoff)));
+    hourlyStarts.values().removeIf(List::isEmpty);
+    nextSweep = now.plus(window);
+  }
+
+  /** Merge overlapping or adjacent ranges, returning them ordered by start date. */
+  static List<DateRange> merge(List<StartedRange> started) {
+    List<DateRange> sorted =
+        started.stream()
+            .map(StartedRange::getRange)
+            .sorted(Comparator.comparing(DateRange::getStartDate))
+            .collect(Collectors.toList());
+
+    List<DateRange> merged = new ArrayList<>();
+    for (DateRange range : sorted) {
+      int last = merged.size() - 1;
+      if (last >= 0 && !range.getStartDate().isAfter(merged.get(last).getEndDate())) {
+        DateRange previous = merged.get(last);
+        if (range.getEndDate().isAfter(previous.getEndDate())) {
+          merged.set(last, new DateRange(previous.getStartDate(), range.getEndDate()));
+        }
+      } else {
+        merged.add(range);
+      }
+    }
+    return merged;
+  }
+
+  /** The parts of the requested range not covered by the given merged, ordered ranges. */
+  static List<DateRange> subtract(DateRange requested, List<DateRange> covered) {
+    List<DateRange> uncovered = new ArrayList<>();
+    OffsetDateTime start = requested.getStartDate();
+    for (DateRange range : covered) {
+      if (!range.getEndDate().isAfter(start)) {
+        continue;
+      }
+      if (!range.getStartDate().isBefore(requested.getEndDate())) {
+        break;
+      }
+      if (range.getStartDate().isAfter(start)) {
+        uncovered.add(new DateRange(start, range.getStartDate()));
+      }
+      start = range.getEndDate();
+    }
+    if (start.isBefore(requested.getEndDate())) {
+      uncovered.add(new DateRange(start, requested.getEndDate()));
+    }
+    return uncovered;
+  }
+
+  private static boolean sameRange(DateRange a, DateRange b) {
+    return a.getStartDate().isEqual(b.getStartDate()) && a.getEndDate().isEqual(b.getEndDate());
+  }
+
+  @Value
+  static class StartedRange {
+    DateRange range;
+    OffsetDateTime startedAt;
+  }
+}
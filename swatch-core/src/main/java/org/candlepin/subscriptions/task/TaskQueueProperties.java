@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.task;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import lombok.Data;
 
@@ -38,4 +39,26 @@ public class TaskQueueProperties {
   private boolean seekOverrideEnd = false;
 
   private boolean enabled = true;
+
+  /**
+   * Number of worker lanes used to process records from a kafka task topic in parallel. Records are
+   * assigned to a lane by key, so tasks sharing a key still run one at a time and in order. When 0,
+   * tasks are processed one at a time per partition on the consumer thread.
+   */
+  private int keyOrderedWorkers = 0;
+
+  /** Maximum number of records handed to the key-ordered workers that have not yet completed. */
+  private int keyOrderedMaxInFlight = 100;
+
+  /**
+   * How long the consumer waits for the tasks of a revoked partition to complete, before leaving
+   * the remaining tasks to the partition's new owner.
+   */
+  private Duration keyOrderedRevocationTimeout = Duration.ofSeconds(30);
+
+  /**
+   * How long a completed tally run is remembered, so that equivalent tasks for the same account
+   * queued before it started are skipped. When zero, every task is run.
+   */
+  private Duration coalesceWindow = Duration.ZERO;
 }
@@ -21,8 +21,9 @@
 package org.candlepin.subscriptions.task.queue;
 
 /**
- * Base type for both {@link org.candlepin.subscriptions.task.queue.inmemory.ExecutorTaskProcessor}
- * and {@link org.candlepin.subscriptions.task.queue.kafka.KafkaTaskProcessor}
+ * Base type for {@link org.candlepin.subscriptions.task.queue.inmemory.ExecutorTaskProcessor},
+ * {@link org.candlepin.subscriptions.task.queue.kafka.KafkaTaskProcessor} and {@link
+ * org.candlepin.subscriptions.task.queue.kafka.KeyOrderedKafkaTaskProcessor}
  */
 public interface TaskConsumer {
   /* Intentionally empty */
@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.task.queue;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.candlepin.subscriptions.task.queue.inmemory.ExecutorTaskQueue;
 import org.candlepin.subscriptions.task.queue.inmemory.ExecutorTaskQueueConfiguration;
 import org.candlepin.subscriptions.task.queue.inmemory.ExecutorTaskQueueConsumerFactory;
@@ -46,8 +47,9 @@ public class TaskConsumerConfiguration {
   @Bean
   @Primary
   @Profile("kafka-queue")
-  KafkaTaskConsumerFactory kakfaTaskConsumerFactory(KafkaConsumerRegistry kafkaConsumerRegistry) {
-    return new KafkaTaskConsumerFactory(kafkaConsumerRegistry);
+  KafkaTaskConsumerFactory kakfaTaskConsumerFactory(
+      KafkaConsumerRegistry kafkaConsumerRegistry, MeterRegistry meterRegistry) {
+    return new KafkaTaskConsumerFactory(kafkaConsumerRegistry, meterRegistry);
   }
 
   @Bean
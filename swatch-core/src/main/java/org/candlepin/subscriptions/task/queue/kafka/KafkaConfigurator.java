@@ -104,14 +104,36 @@ public class KafkaConfigurator {
   public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, TaskMessage>>
       defaultListenerContainerFactory(
           ConsumerFactory<String, TaskMessage> consumerFactory, KafkaProperties kafkaProperties) {
+    ConcurrentKafkaListenerContainerFactory<String, TaskMessage> factory =
+        createListenerContainerFactory(consumerFactory, kafkaProperties);
+    // commit the offset automatically after the listener method finishes
+    factory.getContainerProperties().setAckMode(AckMode.RECORD);
+    return factory;
+  }
+
+  /**
+   * Listener container factory for {@link KeyOrderedKafkaTaskProcessor}. The container never
+   * commits offsets itself; the processor commits them once the tasks have completed.
+   */
+  public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, TaskMessage>>
+      keyOrderedListenerContainerFactory(
+          ConsumerFactory<String, TaskMessage> consumerFactory, KafkaProperties kafkaProperties) {
+    ConcurrentKafkaListenerContainerFactory<String, TaskMessage> factory =
+        createListenerContainerFactory(consumerFactory, kafkaProperties);
+    // the listener never acknowledges, so the container does not commit on its behalf
+    factory.getContainerProperties().setAckMode(AckMode.MANUAL);
+    return factory;
+  }
+
+  private ConcurrentKafkaListenerContainerFactory<String, TaskMessage>
+      createListenerContainerFactory(
+          ConsumerFactory<String, TaskMessage> consumerFactory, KafkaProperties kafkaProperties) {
     ConcurrentKafkaListenerContainerFactory<String, TaskMessage> factory =
         new ConcurrentKafkaListenerContainerFactory<>();
     factory.setConsumerFactory(consumerFactory);
     // Concurrency should be set to the number of partitions for the target topic.
     factory.setConcurrency(kafkaProperties.getListener().getConcurrency());
 
-    // commit the offset automatically after the listener method finishes
-    factory.getContainerProperties().setAckMode(AckMode.RECORD);
     if (kafkaProperties.getListener().getIdleEventInterval() != null) {
       factory
           .getContainerProperties()
@@ -41,6 +41,9 @@ import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 @Profile("kafka-queue")
 @Import(KafkaConfiguration.class)
 public class KafkaTaskConsumerConfiguration {
+  public static final String KEY_ORDERED_CONTAINER_FACTORY =
+      "keyOrderedKafkaListenerContainerFactory";
+
   KafkaConfigurator kafkaConfigurator;
 
   @Autowired
@@ -65,4 +68,12 @@ public class KafkaTaskConsumerConfiguration {
 
     return kafkaConfigurator.defaultListenerContainerFactory(consumerFactory, kafkaProperties);
   }
+
+  @Bean(name = KEY_ORDERED_CONTAINER_FACTORY)
+  KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, TaskMessage>>
+      keyOrderedKafkaListenerContainerFactory(
+          ConsumerFactory<String, TaskMessage> consumerFactory, KafkaProperties kafkaProperties) {
+
+    return kafkaConfigurator.keyOrderedListenerContainerFactory(consumerFactory, kafkaProperties);
+  }
 }
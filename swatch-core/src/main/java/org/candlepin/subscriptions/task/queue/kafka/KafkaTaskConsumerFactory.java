@@ -20,24 +20,39 @@
  */
 package org.candlepin.subscriptions.task.queue.kafka;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.candlepin.subscriptions.task.TaskFactory;
 import org.candlepin.subscriptions.task.TaskQueueProperties;
+import org.candlepin.subscriptions.task.queue.TaskConsumer;
 import org.candlepin.subscriptions.task.queue.TaskConsumerFactory;
 import org.candlepin.subscriptions.util.KafkaConsumerRegistry;
 
-/** Task consumer factory that creates consumers that read tasks from a kafka topic. */
-public class KafkaTaskConsumerFactory implements TaskConsumerFactory<KafkaTaskProcessor> {
+/**
+ * Task consumer factory that creates consumers that read tasks from a kafka topic.
+ *
+ * <p>When {@link TaskQueueProperties#getKeyOrderedWorkers()} is positive, tasks are run in parallel
+ * by a {@link KeyOrderedKafkaTaskProcessor}; otherwise a {@link KafkaTaskProcessor} runs them one
+ * at a time.
+ */
+public class KafkaTaskConsumerFactory implements TaskConsumerFactory<TaskConsumer> {
 
   private final KafkaConsumerRegistry kafkaConsumerRegistry;
+  private final MeterRegistry meterRegistry;
 
-  public KafkaTaskConsumerFactory(KafkaConsumerRegistry kafkaConsumerRegistry) {
+  public KafkaTaskConsumerFactory(
+      KafkaConsumerRegistry kafkaConsumerRegistry, MeterRegistry meterRegistry) {
     this.kafkaConsumerRegistry = kafkaConsumerRegistry;
+    this.meterRegistry = meterRegistry;
   }
 
   @Override
-  public KafkaTaskProcessor createTaskConsumer(
+  public TaskConsumer createTaskConsumer(
       TaskFactory taskFactory, TaskQueueProperties taskQueueProperties) {
 
+    if (taskQueueProperties.getKeyOrderedWorkers() > 0) {
+      return new KeyOrderedKafkaTaskProcessor(
+          taskFactory, taskQueueProperties, kafkaConsumerRegistry, meterRegistry);
+    }
     return new KafkaTaskProcessor(taskFactory, taskQueueProperties, kafkaConsumerRegistry);
   }
 }
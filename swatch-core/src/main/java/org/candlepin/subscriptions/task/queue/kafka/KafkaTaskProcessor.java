@@ -62,7 +62,7 @@ public class KafkaTaskProcessor extends SeekableKafkaConsumer implements TaskCon
     }
   }
 
-  private TaskDescriptor describe(TaskMessage message) throws TaskExecutionException {
+  static TaskDescriptor describe(TaskMessage message) throws TaskExecutionException {
     try {
       return TaskDescriptor.builder(TaskType.valueOf(message.getType()), message.getGroupId())
           .setArgs(message.getArgs())
@@ -0,0 +1,216 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task.queue.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.candlepin.subscriptions.task.TaskExecutionException;
+import org.candlepin.subscriptions.task.TaskFactory;
+import org.candlepin.subscriptions.task.TaskQueueProperties;
+import org.candlepin.subscriptions.task.TaskWorker;
+import org.candlepin.subscriptions.task.queue.TaskConsumer;
+import org.candlepin.subscriptions.task.queue.kafka.message.TaskMessage;
+import org.candlepin.subscriptions.util.KafkaConsumerRegistry;
+import org.candlepin.subscriptions.util.SeekableKafkaConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+
+/**
+ * Receives task messages from Kafka and executes them on a pool of key-ordered workers, so that a
+ * single partition can run tasks for different accounts in parallel.
+ *
+ * <p>Tasks that share an ordering key still run one at a time, in offset order. The ordering key is
+ * the record key when present, otherwise the account or org argument of the task.
+ *
+ * <p>The listener returns as soon as a task is handed to the workers, so the consumer keeps
+ * polling while tasks run. Offsets are committed by this class rather than by the container: for
+ * each partition, the committed offset is the lowest offset whose task has not completed yet, so a
+ * restart replays every unfinished task. Commits happen on the consumer thread, whenever a record
+ * is received and whenever the container is idle.
+ *
+ * <p>When a partition is revoked, the consumer waits up to {@link
+ * TaskQueueProperties#getKeyOrderedRevocationTimeout()} for the partition's tasks to complete and
+ * commits them. Tasks of the partition that have not started by then are skipped, and are run by
+ * the partition's new owner instead.
+ */
+public class KeyOrderedKafkaTaskProcessor extends SeekableKafkaConsumer implements TaskConsumer {
+  private static final Logger log = LoggerFactory.getLogger(KeyOrderedKafkaTaskProcessor.class);
+
+  /** Task arguments used as the ordering key, in order of preference. */
+  static final List<String> ORDERING_KEY_ARGS =
+      List.of("accountNumber", "account", "accounts", "org_id");
+
+  private final TaskWorker worker;
+  private final KeyOrderedTaskDispatcher dispatcher;
+  private final Duration revocationTimeout;
+  private final Map<TopicPartition, PartitionOffsets> partitionOffsets = new ConcurrentHashMap<>();
+
+  public KeyOrderedKafkaTaskProcessor(
+      TaskFactory taskFactory,
+      TaskQueueProperties taskQueueProperties,
+      KafkaConsumerRegistry kafkaConsumerRegistry,
+      MeterRegistry meterRegistry) {
+    super(taskQueueProperties, kafkaConsumerRegistry);
+    worker = new TaskWorker(taskFactory);
+    dispatcher =
+        new KeyOrderedTaskDispatcher(
+            taskQueueProperties.getTopic(),
+            taskQueueProperties.getKeyOrderedWorkers(),
+            taskQueueProperties.getKeyOrderedMaxInFlight(),
+            meterRegistry);
+    revocationTimeout = taskQueueProperties.getKeyOrderedRevocationTimeout();
+  }
+
+  @KafkaListener(
+      id = "#{__listener.groupId}",
+      topics = "#{__listener.topic}",
+      containerFactory = KafkaTaskConsumerConfiguration.KEY_ORDERED_CONTAINER_FACTORY)
+  public void receive(ConsumerRecord<String, TaskMessage> taskRecord, Consumer<?, ?> consumer)
+      throws InterruptedException {
+    commitCompleted(consumer);
+
+    TopicPartition partition = new TopicPartition(taskRecord.topic(), taskRecord.partition());
+    PartitionOffsets offsets =
+        partitionOffsets.computeIfAbsent(partition, tp -> new PartitionOffsets(consumer));
+    TaskMessage taskMessage = taskRecord.value();
+    long offset = taskRecord.offset();
+    log.info("Message received from kafka: {}", taskMessage);
+
+    offsets.dispatched(offset);
+    dispatcher.dispatch(
+        orderingKey(taskRecord),
+        () -> {
+          try {
+            if (offsets.isRevoked()) {
+              log.info("Skipping task from revoked partition {}: {}", partition, taskMessage);
+              return;
+            }
+            worker.executeTask(KafkaTaskProcessor.describe(taskMessage));
+          } catch (TaskExecutionException e) {
+            // Same as KafkaTaskProcessor, a failed task is logged and will not get retried.
+            log.error("Failed to execute task: {}", taskMessage, e);
+          } finally {
+            offsets.completed(offset);
+          }
+        });
+  }
+
+  @Override
+  public void onIdleContainer(
+      Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+    super.onIdleContainer(assignments, callback);
+    assignments.keySet().stream()
+        .map(partitionOffsets::get)
+        .filter(Objects::nonNull)
+        .map(PartitionOffsets::getConsumer)
+        .distinct()
+        .forEach(this::commitCompleted);
+  }
+
+  @Override
+  public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+    super.onPartitionsRevoked(partitions);
+    for (TopicPartition partition : partitions) {
+      PartitionOffsets offsets = partitionOffsets.remove(partition);
+      if (offsets == null) {
+        continue;
+      }
+      try {
+        if (!offsets.awaitCompletion(revocationTimeout)) {
+          log.warn(
+              "Tasks from revoked partition {} did not complete within {}; "
+                  + "tasks not yet started will be run by the new owner",
+              partition,
+              revocationTimeout);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      offsets.revoke();
+      commit(offsets.getConsumer(), Map.of(partition, offsets));
+    }
+  }
+
+  /** Stops the workers once the tasks already dispatched have finished. */
+  public void shutdown() {
+    dispatcher.shutdown();
+  }
+
+  private void commitCompleted(Consumer<?, ?> consumer) {
+    Map<TopicPartition, PartitionOffsets> owned = new HashMap<>();
+    partitionOffsets.forEach(
+        (partition, offsets) -> {
+          if (offsets.getConsumer() == consumer) {
+            owned.put(partition, offsets);
+          }
+        });
+    commit(consumer, owned);
+  }
+
+  private void commit(Consumer<?, ?> consumer, Map<TopicPartition, PartitionOffsets> offsets) {
+    Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>();
+    Map<TopicPartition, Long> committed = new HashMap<>();
+    offsets.forEach(
+        (partition, partitionOffset) -> {
+          long offset = partitionOffset.commitOffset();
+          if (offset > partitionOffset.getCommittedOffset()) {
+            commits.put(partition, new OffsetAndMetadata(offset));
+            committed.put(partition, offset);
+          }
+        });
+    if (commits.isEmpty()) {
+      return;
+    }
+    try {
+      consumer.commitSync(commits);
+      committed.forEach((partition, offset) -> offsets.get(partition).setCommittedOffset(offset));
+    } catch (KafkaException e) {
+      log.warn("Unable to commit offsets {}; they will be retried", commits, e);
+    }
+  }
+
+  static String orderingKey(ConsumerRecord<String, TaskMessage> taskRecord) {
+    if (taskRecord.key() != null) {
+      return taskRecord.key();
+    }
+    var args = taskRecord.value().getArgs();
+    for (String arg : ORDERING_KEY_ARGS) {
+      List<String> values = args.get(arg);
+      if (values != null && !values.isEmpty()) {
+        return String.join(",", values);
+      }
+    }
+    // Nothing to order by, so spread the tasks across the lanes.
+    return String.valueOf(taskRecord.offset());
+  }
+}
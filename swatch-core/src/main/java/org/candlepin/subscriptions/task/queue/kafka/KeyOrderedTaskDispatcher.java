@@ -0,0 +1,132 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task.queue.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs tasks on a fixed set of single-threaded lanes, choosing the lane from a key so that tasks
+ * sharing a key run one at a time and in the order they were dispatched.
+ *
+ * <p>The number of dispatched but incomplete tasks is bounded; {@link #dispatch(String, Runnable)}
+ * blocks the caller until a slot frees up.
+ */
+class KeyOrderedTaskDispatcher {
+
+  private final List<ExecutorService> lanes;
+  private final List<Timer> waitTimers;
+  private final List<Timer> latencyTimers;
+  private final Semaphore inFlightPermits;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  KeyOrderedTaskDispatcher(
+      String topic, int laneCount, int maxInFlight, MeterRegistry meterRegistry) {
+    if (laneCount < 1) {
+      throw new IllegalArgumentException("At least one lane is required");
+    }
+    this.inFlightPermits = new Semaphore(Math.max(1, maxInFlight));
+    this.lanes = new ArrayList<>(laneCount);
+    this.waitTimers = new ArrayList<>(laneCount);
+    this.latencyTimers = new ArrayList<>(laneCount);
+    for (int i = 0; i < laneCount; i++) {
+      String lane = String.valueOf(i);
+      lanes.add(
+          Executors.newSingleThreadExecutor(
+              new CustomizableThreadFactory(String.format("%s-lane-%s-", topic, lane))));
+      waitTimers.add(
+          Timer.builder("rhsm-subscriptions.task.key-ordered.wait")
+              .description("Time a task waited behind earlier tasks in its lane")
+              .tags("topic", topic, "lane", lane)
+              .register(meterRegistry));
+      latencyTimers.add(
+          Timer.builder("rhsm-subscriptions.task.key-ordered.latency")
+              .description("Time from receiving a task until it completed")
+              .tags("topic", topic, "lane", lane)
+              .register(meterRegistry));
+    }
+    Gauge.builder("rhsm-subscriptions.task.key-ordered.in-flight", inFlight, AtomicInteger::get)
+        .tags("topic", topic)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Queue a task on the lane for the given key.
+   *
+   * @param key the ordering key; tasks with equal keys run in dispatch order.
+   * @param task the work to run.
+   * @throws InterruptedException when interrupted waiting for an in-flight slot.
+   */
+  void dispatch(String key, Runnable task) throws InterruptedException {
+    inFlightPermits.acquire();
+    int lane = laneFor(key);
+    long received = System.nanoTime();
+    inFlight.incrementAndGet();
+    try {
+      lanes
+          .get(lane)
+          .execute(
+              () -> {
+                waitTimers.get(lane).record(System.nanoTime() - received, TimeUnit.NANOSECONDS);
+                try {
+                  task.run();
+                } finally {
+                  latencyTimers
+                      .get(lane)
+                      .record(System.nanoTime() - received, TimeUnit.NANOSECONDS);
+                  release();
+                }
+              });
+    } catch (RejectedExecutionException e) {
+      release();
+      throw e;
+    }
+  }
+
+  int laneFor(String key) {
+    return Math.floorMod(Objects.hashCode(key), lanes.size());
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  /** Stop accepting tasks; tasks already dispatched are allowed to finish. */
+  void shutdown() {
+    lanes.forEach(ExecutorService::shutdown);
+  }
+
+  private void release() {
+    inFlight.decrementAndGet();
+    inFlightPermits.release();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.task.queue.kafka;
+
+import java.time.Duration;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.kafka.clients.consumer.Consumer;
+
+/**
+ * Tracks the offsets of a partition's tasks that have been dispatched but not completed.
+ *
+ * <p>Dispatching and committing happen on the consumer thread; tasks complete on the worker
+ * threads.
+ */
+class PartitionOffsets {
+
+  @Getter private final Consumer<?, ?> consumer;
+  private final NavigableSet<Long> pending = new ConcurrentSkipListSet<>();
+  private volatile long nextOffset = -1;
+  private volatile boolean revoked;
+  @Getter @Setter private long committedOffset = -1;
+
+  PartitionOffsets(Consumer<?, ?> consumer) {
+    this.consumer = consumer;
+  }
+
+  void dispatched(long offset) {
+    pending.add(offset);
+    nextOffset = Math.max(nextOffset, offset + 1);
+  }
+
+  synchronized void completed(long offset) {
+    pending.remove(offset);
+    notifyAll();
+  }
+
+  /**
+   * The offset to commit: the lowest offset that has not completed yet, or the offset after the
+   * last dispatched one when every task has completed. -1 when nothing has been dispatched.
+   */
+  long commitOffset() {
+    Long lowestPending = pending.ceiling(Long.MIN_VALUE);
+    return lowestPending != null ? lowestPending : nextOffset;
+  }
+
+  /**
+   * Wait for every dispatched task to complete.
+   *
+   * @return false if tasks were still pending when the timeout elapsed.
+   */
+  synchronized boolean awaitCompletion(Duration timeout) throws InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (!pending.isEmpty()) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    return true;
+  }
+
+  boolean isRevoked() {
+    return revoked;
+  }
+
+  void revoke() {
+    revoked = true;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.swatch.processors;
+
+import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
+import com.redhat.swatch.exception.AwsUsageContextLookupException;
+import com.redhat.swatch.openapi.model.BillableUsage;
+import com.redhat.swatch.openapi.model.BillableUsage.SlaEnum;
+import com.redhat.swatch.openapi.model.BillableUsage.UsageEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import lombok.Value;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Bounded cache of AWS usage contexts, so that bursts of billable usage don't each require a call
+ * to the swatch internal subscription API.
+ *
+ * <p>A context is reused for usage of the same account, product, SLA, usage and billing account
+ * until it expires, provided the usage isn't dated before the subscription start. Failed lookups
+ * are cached for a shorter time, so that a missing subscription doesn't trigger a lookup (with
+ * retries) for every message.
+ */
+@ApplicationScoped
+public class AwsUsageContextCache {
+
+  /** Looks up an AWS usage context when it isn't cached. */
+  @FunctionalInterface
+  public interface Loader {
+    AwsUsageContext load(BillableUsage billableUsage) throws AwsUsageContextLookupException;
+  }
+
+  private final int maxSize;
+  private final Duration ttl;
+  private final Duration failureTtl;
+  private final Clock clock;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Map<Key, Entry> entries;
+
+  @Inject
+  public AwsUsageContextCache(
+      MeterRegistry meterRegistry,
+      @ConfigProperty(name = "AWS_USAGE_CONTEXT_CACHE_MAX_SIZE") int maxSize,
+      @ConfigProperty(name = "AWS_USAGE_CONTEXT_CACHE_TTL") Duration ttl,
+      @ConfigProperty(name = "AWS_USAGE_CONTEXT_CACHE_FAILURE_TTL") Duration failureTtl) {
+    this(meterRegistry, maxSize, ttl, failureTtl, Clock.systemUTC());
+  }
+
+  AwsUsageContextCache(
+      MeterRegistry meterRegistry, int maxSize, Duration ttl, Duration failureTtl, Clock clock) {
+    this.maxSize = maxSize;
+    this.ttl = ttl;
+    this.failureTtl = failureTtl;
+    this.clock = clock;
+    this.hitCounter = meterRegistry.counter("swatch_aws_usage_context_cache_hit_total");
+    this.missCounter = meterRegistry.counter("swatch_aws_usage_context_cache_miss_total");
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > AwsUsageContextCache.this.maxSize;
+          }
+        };
+    meterRegistry.gauge("swatch_aws_usage_context_cache_size", this, AwsUsageContextCache::size);
+  }
+
+  /**
+   * Get the AWS usage context for billable usage, loading it when not cached.
+   *
+   * @param billableUsage usage to find the context for
+   * @param loader performs the lookup on a cache miss
+   * @return the AWS usage context
+   * @throws AwsUsageContextLookupException if the lookup failed, now or recently
+   */
+  public AwsUsageContext get(BillableUsage billableUsage, Loader loader)
+      throws AwsUsageContextLookupException {
+    Key key = Key.of(billableUsage);
+    Instant now = clock.instant();
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+    if (entry != null && entry.isUsableFor(billableUsage, now)) {
+      hitCounter.increment();
+      if (entry.getFailure() != null) {
+        throw new AwsUsageContextLookupException(entry.getFailure());
+      }
+      return entry.getContext();
+    }
+
+    missCounter.increment();
+    try {
+      AwsUsageContext context = loader.load(billableUsage);
+      put(key, new Entry(context, null, now.plus(ttl)));
+      return context;
+    } catch (AwsUsageContextLookupException e) {
+      put(key, new Entry(null, e, now.plus(failureTtl)));
+      throw e;
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private void put(Key key, Entry entry) {
+    if (maxSize <= 0) {
+      return;
+    }
+    synchronized (entries) {
+      entries.put(key, entry);
+    }
+  }
+
+  @Value
+  static class Key {
+    String accountNumber;
+    String productId;
+    SlaEnum sla;
+    UsageEnum usage;
+    String billingAccountId;
+
+    static Key of(BillableUsage billableUsage) {
+      return new Key(
+          billableUsage.getAccountNumber(),
+          billableUsage.getProductId(),
+          billableUsage.getSla(),
+          billableUsage.getUsage(),
+          billableUsage.getBillingAccountId());
+    }
+  }
+
+  @Value
+  static class Entry {
+    AwsUsageContext context;
+    AwsUsageContextLookupException failure;
+    Instant expiration;
+
+    boolean isUsableFor(BillableUsage billableUsage, Instant now) {
+      if (!now.isBefore(expiration)) {
+        return false;
+      }
+      // usage dated before the cached subscription started may belong to another subscription
+      return context == null
+          || context.getSubscriptionStartDate() == null
+          || billableUsage.getSnapshotDate() == null
+          || !billableUsage.getSnapshotDate().isBefore(context.getSubscriptionStartDate());
+    }
+  }
+}
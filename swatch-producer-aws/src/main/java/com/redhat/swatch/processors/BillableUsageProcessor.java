@@ -35,8 +35,15 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.smallrye.reactive.messaging.annotations.Blocking;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import javax.enterprise.context.ApplicationScoped;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.faulttolerance.Retry;
@@ -52,11 +59,15 @@ import software.amazon.awssdk.services.marketplacemetering.model.UsageRecordResu
 @Slf4j
 @ApplicationScoped
 public class BillableUsageProcessor {
+  /** AWS accepts at most this many usage records in a single BatchMeterUsage request. */
+  public static final int MAX_USAGE_RECORDS_PER_REQUEST = 25;
+
   private final Counter acceptedCounter;
   private final Counter rejectedCounter;
   private final TagProfile tagProfile;
   private final InternalSubscriptionsApi internalSubscriptionsApi;
   private final AwsMarketplaceMeteringClientFactory awsMarketplaceMeteringClientFactory;
+  private final AwsUsageContextCache awsUsageContextCache;
   private final Optional<Boolean> isDryRun;
 
   public BillableUsageProcessor(
@@ -64,52 +75,82 @@ public class BillableUsageProcessor {
       TagProfile tagProfile,
       @RestClient InternalSubscriptionsApi internalSubscriptionsApi,
       AwsMarketplaceMeteringClientFactory awsMarketplaceMeteringClientFactory,
+      AwsUsageContextCache awsUsageContextCache,
       @ConfigProperty(name = "ENABLE_AWS_DRY_RUN") Optional<Boolean> isDryRun) {
     acceptedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_accepted_total");
     rejectedCounter = meterRegistry.counter("swatch_aws_marketplace_batch_rejected_total");
     this.tagProfile = tagProfile;
     this.internalSubscriptionsApi = internalSubscriptionsApi;
     this.awsMarketplaceMeteringClientFactory = awsMarketplaceMeteringClientFactory;
+    this.awsUsageContextCache = awsUsageContextCache;
     this.isDryRun = isDryRun;
   }
 
+  /**
+   * Send a batch of billable usage messages to AWS.
+   *
+   * <p>Usage sharing an AWS product code and seller account is sent together, in requests of up to
+   * {@value #MAX_USAGE_RECORDS_PER_REQUEST} usage records.
+   *
+   * @param billableUsages the billable usage messages polled from Kafka
+   */
   @Incoming("tally-in")
   @Blocking
+  public void process(List<BillableUsage> billableUsages) {
+    log.debug("Picked up {} billable usage messages to process", billableUsages.size());
+    Map<MeteringGroup, List<MeteredUsage>> groups = new LinkedHashMap<>();
+    for (BillableUsage billableUsage : billableUsages) {
+      prepare(billableUsage)
+          .ifPresent(
+              meteredUsage ->
+                  groups
+                      .computeIfAbsent(
+                          MeteringGroup.of(meteredUsage.getContext()), k -> new ArrayList<>())
+                      .add(meteredUsage));
+    }
+    groups.forEach(this::sendGroup);
+  }
+
   public void process(BillableUsage billableUsage) {
+    process(Collections.singletonList(billableUsage));
+  }
+
+  private Optional<MeteredUsage> prepare(BillableUsage billableUsage) {
     if (log.isDebugEnabled()) {
       log.debug("Picked up billable usage message {} to process", billableUsage);
     }
     if (billableUsage == null) {
       log.warn("Skipping null billable usage: deserialization failure?");
-      return;
+      return Optional.empty();
     }
     if (!isApplicable(billableUsage)) {
       log.debug("Skipping billable usage because it is not applicable: {}", billableUsage);
-      return;
+      return Optional.empty();
     }
 
     AwsUsageContext context;
     try {
-      context = lookupAwsUsageContext(billableUsage);
+      context = awsUsageContextCache.get(billableUsage, this::lookupAwsUsageContext);
     } catch (AwsUsageContextLookupException e) {
       log.error(
           "Error looking up usage context for account={} tallySnapshotId={}",
           billableUsage.getAccountNumber(),
           billableUsage.getId(),
           e);
-      return;
+      return Optional.empty();
     }
+
     try {
-      transformAndSend(context, billableUsage);
+      return Optional.of(
+          new MeteredUsage(billableUsage, context, transformToAwsUsage(context, billableUsage)));
     } catch (Exception e) {
       log.error(
-          "Error sending usage for account={} rhSubscriptionId={} tallySnapshotId={} awsCustomerId={} awsProductCode={}",
+          "Error transforming usage for account={} rhSubscriptionId={} tallySnapshotId={}",
           billableUsage.getAccountNumber(),
           context.getRhSubscriptionId(),
           billableUsage.getId(),
-          context.getCustomerId(),
-          context.getProductCode(),
           e);
+      return Optional.empty();
     }
   }
 
@@ -144,12 +185,33 @@ public class BillableUsageProcessor {
     }
   }
 
-  private void transformAndSend(AwsUsageContext context, BillableUsage billableUsage)
-      throws AwsUnprocessedRecordsException, AwsDimensionNotConfiguredException {
+  private void sendGroup(MeteringGroup group, List<MeteredUsage> meteredUsages) {
+    for (int i = 0; i < meteredUsages.size(); i += MAX_USAGE_RECORDS_PER_REQUEST) {
+      List<MeteredUsage> chunk =
+          meteredUsages.subList(
+              i, Math.min(meteredUsages.size(), i + MAX_USAGE_RECORDS_PER_REQUEST));
+      try {
+        sendBatch(group, chunk);
+      } catch (Exception e) {
+        log.error(
+            "Error sending usage for awsProductCode={} awsSellerAccountId={} tallySnapshotIds={}",
+            group.getProductCode(),
+            group.getAwsSellerAccountId(),
+            getSnapshotIds(chunk),
+            e);
+      }
+    }
+  }
+
+  private void sendBatch(MeteringGroup group, List<MeteredUsage> meteredUsages)
+      throws AwsUnprocessedRecordsException {
     BatchMeterUsageRequest request =
         BatchMeterUsageRequest.builder()
-            .productCode(context.getProductCode())
-            .usageRecords(transformToAwsUsage(context, billableUsage))
+            .productCode(group.getProductCode())
+            .usageRecords(
+                meteredUsages.stream()
+                    .map(MeteredUsage::getUsageRecord)
+                    .collect(Collectors.toList()))
             .build();
 
     if (isDryRun.isPresent() && Boolean.TRUE.equals(isDryRun.get())) {
@@ -159,7 +221,8 @@ public class BillableUsageProcessor {
 
     try {
       MarketplaceMeteringClient marketplaceMeteringClient =
-          awsMarketplaceMeteringClientFactory.buildMarketplaceMeteringClient(context);
+          awsMarketplaceMeteringClientFactory.buildMarketplaceMeteringClient(
+              meteredUsages.get(0).getContext());
       BatchMeterUsageResponse response = send(marketplaceMeteringClient, request);
       log.debug("{}", response);
       response
@@ -173,12 +236,19 @@ public class BillableUsageProcessor {
                     result.usageRecord().customerIdentifier());
                 if (result.status() != UsageRecordResultStatus.SUCCESS) {
                   log.error("{}", result);
+                  rejectedCounter.increment();
                 } else {
-                  acceptedCounter.increment(response.results().size());
+                  acceptedCounter.increment();
                 }
               });
       if (!response.unprocessedRecords().isEmpty()) {
         rejectedCounter.increment(response.unprocessedRecords().size());
+        log.error(
+            "AWS did not process usage for tallySnapshotIds={}",
+            getSnapshotIds(
+                meteredUsages.stream()
+                    .filter(u -> response.unprocessedRecords().contains(u.getUsageRecord()))
+                    .collect(Collectors.toList())));
         throw new AwsUnprocessedRecordsException(response.unprocessedRecords().size());
       }
     } catch (MarketplaceMeteringException e) {
@@ -211,4 +281,28 @@ public class BillableUsageProcessor {
         .timestamp(effectiveTimestamp.toInstant())
         .build();
   }
+
+  private static String getSnapshotIds(List<MeteredUsage> meteredUsages) {
+    return meteredUsages.stream()
+        .map(u -> String.valueOf(u.getBillableUsage().getId()))
+        .collect(Collectors.joining(","));
+  }
+
+  /** Usage that can be sent in the same BatchMeterUsage request. */
+  @Value
+  static class MeteringGroup {
+    String productCode;
+    String awsSellerAccountId;
+
+    static MeteringGroup of(AwsUsageContext context) {
+      return new MeteringGroup(context.getProductCode(), context.getAwsSellerAccountId());
+    }
+  }
+
+  @Value
+  static class MeteredUsage {
+    BillableUsage billableUsage;
+    AwsUsageContext context;
+    UsageRecord usageRecord;
+  }
 }
@@ -22,6 +22,7 @@ package com.redhat.swatch.com.redhat.swatch.processors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -35,16 +36,21 @@ import com.redhat.swatch.openapi.model.BillableUsage;
 import com.redhat.swatch.openapi.model.BillableUsage.BillingProviderEnum;
 import com.redhat.swatch.openapi.model.BillableUsage.UomEnum;
 import com.redhat.swatch.processors.AwsMarketplaceMeteringClientFactory;
+import com.redhat.swatch.processors.AwsUsageContextCache;
 import com.redhat.swatch.processors.BillableUsageProcessor;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.services.marketplacemetering.MarketplaceMeteringClient;
@@ -113,6 +119,8 @@ class BillableUsageProcessorTest {
             new TagProfile(),
             internalSubscriptionsApi,
             clientFactory,
+            new AwsUsageContextCache(
+                meterRegistry, 100, Duration.ofHours(1), Duration.ofMinutes(1)),
             Optional.of(false));
   }
 
@@ -218,10 +226,106 @@ class BillableUsageProcessorTest {
             new TagProfile(),
             internalSubscriptionsApi,
             clientFactory,
+            new AwsUsageContextCache(
+                meterRegistry, 100, Duration.ofHours(1), Duration.ofMinutes(1)),
             Optional.of(true));
     when(internalSubscriptionsApi.getAwsUsageContext(any(), any(), any(), any(), any(), any()))
         .thenReturn(MOCK_AWS_USAGE_CONTEXT);
     processor.process(RHOSAK_INSTANCE_HOURS_RECORD);
     verifyNoInteractions(clientFactory, meteringClient);
   }
+
+  @Test
+  void shouldSendUsagesSharingProductCodeInOneRequest() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(List.of(RHOSAK_INSTANCE_HOURS_RECORD, RHOSAK_STORAGE_GIB_MONTHS_RECORD));
+
+    ArgumentCaptor<BatchMeterUsageRequest> captor =
+        ArgumentCaptor.forClass(BatchMeterUsageRequest.class);
+    verify(meteringClient).batchMeterUsage(captor.capture());
+    assertEquals("product", captor.getValue().productCode());
+    assertEquals(2, captor.getValue().usageRecords().size());
+    // both usages share the same lookup arguments
+    verify(internalSubscriptionsApi).getAwsUsageContext(any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldSplitUsagesIntoRequestsOfAtMostTwentyFiveRecords() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(Collections.nCopies(30, RHOSAK_INSTANCE_HOURS_RECORD));
+
+    ArgumentCaptor<BatchMeterUsageRequest> captor =
+        ArgumentCaptor.forClass(BatchMeterUsageRequest.class);
+    verify(meteringClient, times(2)).batchMeterUsage(captor.capture());
+    assertEquals(25, captor.getAllValues().get(0).usageRecords().size());
+    assertEquals(5, captor.getAllValues().get(1).usageRecords().size());
+  }
+
+  @Test
+  void shouldSendSeparateRequestsPerProductCode() throws ApiException {
+    BillableUsage otherUsage =
+        new BillableUsage()
+            .accountNumber("other")
+            .productId("rhosak")
+            .snapshotDate(OffsetDateTime.MAX)
+            .billingProvider(BillingProviderEnum.AWS)
+            .uom(UomEnum.INSTANCE_HOURS)
+            .value(new BigDecimal("42.0"));
+    when(internalSubscriptionsApi.getAwsUsageContext(any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT)
+        .thenReturn(
+            new AwsUsageContext()
+                .rhSubscriptionId("id2")
+                .customerId("customer2")
+                .productCode("product2")
+                .subscriptionStartDate(OffsetDateTime.MIN));
+    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(BATCH_METER_USAGE_SUCCESS_RESPONSE);
+
+    processor.process(List.of(RHOSAK_INSTANCE_HOURS_RECORD, otherUsage));
+
+    verify(meteringClient, times(2)).batchMeterUsage(any(BatchMeterUsageRequest.class));
+  }
+
+  @Test
+  void shouldCountEachUsageRecordResult() throws ApiException {
+    when(internalSubscriptionsApi.getAwsUsageContext(any(), any(), any(), any(), any(), any()))
+        .thenReturn(MOCK_AWS_USAGE_CONTEXT);
+    when(clientFactory.buildMarketplaceMeteringClient(any())).thenReturn(meteringClient);
+    UsageRecord usageRecord =
+        UsageRecord.builder().customerIdentifier("customer").dimension("dimension").build();
+    when(meteringClient.batchMeterUsage(any(BatchMeterUsageRequest.class)))
+        .thenReturn(
+            BatchMeterUsageResponse.builder()
+                .results(
+                    UsageRecordResult.builder()
+                        .usageRecord(usageRecord)
+                        .status(UsageRecordResultStatus.SUCCESS)
+                        .build(),
+                    UsageRecordResult.builder()
+                        .usageRecord(usageRecord)
+                        .status(UsageRecordResultStatus.SUCCESS)
+                        .build(),
+                    UsageRecordResult.builder()
+                        .usageRecord(usageRecord)
+                        .status(UsageRecordResultStatus.CUSTOMER_NOT_SUBSCRIBED)
+                        .build())
+                .build());
+
+    processor.process(Collections.nCopies(3, RHOSAK_INSTANCE_HOURS_RECORD));
+
+    assertEquals(2.0, acceptedCounter.count());
+    assertEquals(1.0, rejectedCounter.count());
+  }
 }
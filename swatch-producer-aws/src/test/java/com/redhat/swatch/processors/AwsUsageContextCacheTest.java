@@ -0,0 +1,136 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.swatch.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.redhat.swatch.clients.swatch.internal.subscription.api.model.AwsUsageContext;
+import com.redhat.swatch.exception.AwsUsageContextLookupException;
+import com.redhat.swatch.openapi.model.BillableUsage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AwsUsageContextCacheTest {
+
+  private static final Instant NOW = Instant.parse("2022-06-01T12:00:00Z");
+  private static final OffsetDateTime SUBSCRIPTION_START =
+      OffsetDateTime.parse("2022-05-01T00:00:00Z");
+  private static final AwsUsageContext CONTEXT =
+      new AwsUsageContext().productCode("product").subscriptionStartDate(SUBSCRIPTION_START);
+
+  private MeterRegistry meterRegistry;
+  private Clock clock;
+  private AwsUsageContextCache.Loader loader;
+  private AwsUsageContextCache cache;
+
+  @BeforeEach
+  void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(NOW);
+    loader = mock(AwsUsageContextCache.Loader.class);
+    cache =
+        new AwsUsageContextCache(
+            meterRegistry, 2, Duration.ofHours(1), Duration.ofMinutes(5), clock);
+  }
+
+  @Test
+  void shouldReuseContextForSameAccountAndProduct() throws Exception {
+    when(loader.load(any())).thenReturn(CONTEXT);
+
+    assertSame(CONTEXT, cache.get(usage("account", "2022-06-01T10:00:00Z"), loader));
+    assertSame(CONTEXT, cache.get(usage("account", "2022-06-01T11:00:00Z"), loader));
+
+    verify(loader, times(1)).load(any());
+    assertEquals(1.0, meterRegistry.counter("swatch_aws_usage_context_cache_hit_total").count());
+    assertEquals(1.0, meterRegistry.counter("swatch_aws_usage_context_cache_miss_total").count());
+  }
+
+  @Test
+  void shouldReloadContextAfterTtl() throws Exception {
+    when(loader.load(any())).thenReturn(CONTEXT);
+
+    cache.get(usage("account", "2022-06-01T10:00:00Z"), loader);
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofHours(1)));
+    cache.get(usage("account", "2022-06-01T11:00:00Z"), loader);
+
+    verify(loader, times(2)).load(any());
+  }
+
+  @Test
+  void shouldReloadContextForUsageBeforeSubscriptionStart() throws Exception {
+    when(loader.load(any())).thenReturn(CONTEXT);
+
+    cache.get(usage("account", "2022-06-01T10:00:00Z"), loader);
+    cache.get(usage("account", "2022-04-01T10:00:00Z"), loader);
+
+    verify(loader, times(2)).load(any());
+  }
+
+  @Test
+  void shouldCacheLookupFailuresForFailureTtl() throws Exception {
+    when(loader.load(any())).thenThrow(new AwsUsageContextLookupException(new Exception()));
+    BillableUsage usage = usage("account", "2022-06-01T10:00:00Z");
+
+    assertThrows(AwsUsageContextLookupException.class, () -> cache.get(usage, loader));
+    assertThrows(AwsUsageContextLookupException.class, () -> cache.get(usage, loader));
+    verify(loader, times(1)).load(any());
+
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(5)));
+    assertThrows(AwsUsageContextLookupException.class, () -> cache.get(usage, loader));
+    verify(loader, times(2)).load(any());
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedContexts() throws Exception {
+    when(loader.load(any())).thenReturn(CONTEXT);
+
+    cache.get(usage("account1", "2022-06-01T10:00:00Z"), loader);
+    cache.get(usage("account2", "2022-06-01T10:00:00Z"), loader);
+    cache.get(usage("account1", "2022-06-01T10:00:00Z"), loader);
+    cache.get(usage("account3", "2022-06-01T10:00:00Z"), loader);
+
+    assertEquals(2, cache.size());
+    cache.get(usage("account1", "2022-06-01T10:00:00Z"), loader);
+    cache.get(usage("account2", "2022-06-01T10:00:00Z"), loader);
+    verify(loader, times(4)).load(any());
+  }
+
+  private static BillableUsage usage(String accountNumber, String snapshotDate) {
+    return new BillableUsage()
+        .accountNumber(accountNumber)
+        .productId("rhosak")
+        .snapshotDate(OffsetDateTime.parse(snapshotDate));
+  }
+}
@@ -26,14 +26,19 @@ import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -41,8 +46,10 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import lombok.Value;
 import org.candlepin.subscriptions.conduit.inventory.ConduitFacts;
 import org.candlepin.subscriptions.conduit.inventory.InventoryService;
+import org.candlepin.subscriptions.conduit.job.OrgSyncProperties;
 import org.candlepin.subscriptions.conduit.job.OrgSyncTaskManager;
 import org.candlepin.subscriptions.conduit.rhsm.RhsmService;
 import org.candlepin.subscriptions.conduit.rhsm.client.ApiException;
@@ -56,6 +63,7 @@ import org.candlepin.subscriptions.utilization.api.model.OrgInventory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
@@ -109,6 +117,8 @@ public class InventoryController {
   private RhsmService rhsmService;
   private Validator validator;
   private OrgSyncTaskManager taskManager;
+  private OrgSyncProperties orgSyncProperties;
+  private ExecutorService prefetchExecutor;
   private Counter queueNextPageCounter;
   private Counter finalizeOrgCounter;
   private Timer transformHostTimer;
@@ -121,12 +131,16 @@ public class InventoryController {
       Validator validator,
       InventoryServiceProperties inventoryServiceProperties,
       OrgSyncTaskManager taskManager,
+      OrgSyncProperties orgSyncProperties,
+      @Qualifier("rhsmPrefetchExecutor") ExecutorService prefetchExecutor,
       MeterRegistry meterRegistry) {
 
     this.inventoryService = inventoryService;
     this.rhsmService = rhsmService;
     this.validator = validator;
     this.taskManager = taskManager;
+    this.orgSyncProperties = orgSyncProperties;
+    this.prefetchExecutor = prefetchExecutor;
     this.queueNextPageCounter = meterRegistry.counter("rhsm-conduit.queue.next-page");
     this.finalizeOrgCounter = meterRegistry.counter("rhsm-conduit.finalize.org");
     this.transformHostTimer = meterRegistry.timer("rhsm-conduit.transform.host");
@@ -456,8 +470,102 @@ public class InventoryController {
   public void updateInventoryForOrg(String orgId, String offset)
       throws ApiException, MissingAccountNumberException {
 
+    if (orgSyncProperties.isPipelined()) {
+      updateInventoryForOrgPipelined(orgId, offset);
+      return;
+    }
+
     org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage =
         rhsmService.getPageOfConsumers(orgId, offset, rhsmService.formattedTime());
+    sendPage(orgId, offset, feedPage);
+    queueNextPageOrFinalize(orgId, getNextOffset(feedPage));
+  }
+
+  /**
+   * Sync an org's consumers, fetching up to {@link OrgSyncProperties#getPipelineLookahead()} pages
+   * ahead of the page currently being sent.
+   *
+   * <p>Each page is fetched using the offset from the previous one, so fetches stay sequential;
+   * they just overlap with validating and sending the pages before them. Because sending a page
+   * blocks until its updates are flushed, fetching never gets more than the lookahead ahead of
+   * inventory. After {@link OrgSyncProperties#getPipelineMaxPagesPerTask()} pages, or once {@link
+   * OrgSyncProperties#getPipelineMaxTaskDuration()} has passed, no new pages are fetched. The pages
+   * already fetched are sent and the next offset is queued as a new task, so an interrupted sync
+   * resumes from the last queued offset.
+   */
+  private void updateInventoryForOrgPipelined(String orgId, String offset)
+      throws ApiException, MissingAccountNumberException {
+    String syncTime = rhsmService.formattedTime();
+    int lookahead = Math.max(1, orgSyncProperties.getPipelineLookahead());
+    int maxPages = Math.max(1, orgSyncProperties.getPipelineMaxPagesPerTask());
+    long deadline = System.nanoTime() + orgSyncProperties.getPipelineMaxTaskDuration().toNanos();
+
+    Deque<CompletableFuture<FetchedPage>> pages = new ArrayDeque<>();
+    pages.add(
+        CompletableFuture.supplyAsync(() -> fetchPage(orgId, offset, syncTime), prefetchExecutor));
+    int requestedPages = 1;
+    FetchedPage lastPage = null;
+    try {
+      while (!pages.isEmpty()) {
+        // keep the current page plus the lookahead pages in flight
+        while (pages.size() <= lookahead
+            && requestedPages < maxPages
+            && System.nanoTime() - deadline < 0) {
+          pages.add(
+              pages
+                  .getLast()
+                  .thenApplyAsync(
+                      previous -> fetchNextPage(orgId, previous, syncTime), prefetchExecutor));
+          requestedPages++;
+        }
+        FetchedPage page = awaitPage(pages.poll());
+        if (page == null) {
+          // the previous page was the last one
+          break;
+        }
+        sendPage(orgId, page.getOffset(), page.getInventory());
+        lastPage = page;
+      }
+    } finally {
+      pages.forEach(pending -> pending.cancel(true));
+    }
+    queueNextPageOrFinalize(orgId, getNextOffset(lastPage.getInventory()));
+  }
+
+  private FetchedPage fetchNextPage(String orgId, FetchedPage previous, String syncTime) {
+    if (previous == null) {
+      return null;
+    }
+    return getNextOffset(previous.getInventory())
+        .map(nextOffset -> fetchPage(orgId, nextOffset, syncTime))
+        .orElse(null);
+  }
+
+  private FetchedPage fetchPage(String orgId, String offset, String syncTime) {
+    try {
+      log.debug("Fetching page w/ offset {} of consumers for org {}", offset, orgId);
+      return new FetchedPage(offset, rhsmService.getPageOfConsumers(orgId, offset, syncTime));
+    } catch (ApiException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  private FetchedPage awaitPage(CompletableFuture<FetchedPage> page) throws ApiException {
+    try {
+      return page.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void sendPage(
+      String orgId,
+      String offset,
+      org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory feedPage)
+      throws MissingAccountNumberException {
     Stream<ConduitFacts> facts = validateConduitFactsForOrg(feedPage);
 
     long updateSize =
@@ -476,7 +584,9 @@ public class InventoryController {
         offset,
         orgId,
         updateSize);
-    Optional<String> nextOffset = getNextOffset(feedPage);
+  }
+
+  private void queueNextPageOrFinalize(String orgId, Optional<String> nextOffset) {
     if (nextOffset.isPresent()) {
       log.debug("Queueing up task for next page of org {}", orgId);
       taskManager.updateOrgInventory(orgId, nextOffset.get());
@@ -570,4 +680,11 @@ public class InventoryController {
     }
     return false;
   }
+
+  /** A page of consumers, along with the offset used to fetch it. */
+  @Value
+  private static class FetchedPage {
+    String offset;
+    org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory inventory;
+  }
 }
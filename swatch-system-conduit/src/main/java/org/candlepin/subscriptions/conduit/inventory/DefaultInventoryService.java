@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.conduit.inventory;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -37,8 +38,10 @@ public class DefaultInventoryService extends InventoryService {
   private final HostsApi hostsInventoryApi;
 
   public DefaultInventoryService(
-      HostsApi hostsInventoryApi, InventoryServiceProperties serviceProperties) {
-    super(serviceProperties, serviceProperties.getApiHostUpdateBatchSize());
+      HostsApi hostsInventoryApi,
+      InventoryServiceProperties serviceProperties,
+      MeterRegistry meterRegistry) {
+    super(serviceProperties, serviceProperties.getApiHostUpdateBatchSize(), meterRegistry);
     this.hostsInventoryApi = hostsInventoryApi;
   }
 
@@ -20,8 +20,21 @@
  */
 package org.candlepin.subscriptions.conduit.inventory;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import org.candlepin.subscriptions.inventory.client.InventoryServiceProperties;
 import org.candlepin.subscriptions.inventory.client.model.CreateHostIn;
 import org.candlepin.subscriptions.inventory.client.model.FactSet;
@@ -31,24 +44,65 @@ import org.candlepin.subscriptions.utilization.api.model.ConsumerInventory;
 import org.candlepin.subscriptions.utilization.api.model.OrgInventory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
  * Defines operations against the inventory service. This service allows batching host fact updates.
- * Once the maximum fact queue depth is reached, the service will auto flush the updates so that we
- * don't keep too many facts in memory before they are pushed to inventory.
+ *
+ * <p>Scheduled facts are put on a concurrent queue that is drained by a dedicated sender thread.
+ * The sender sends a batch once the max fact queue depth or the batch byte budget is reached, or
+ * once the oldest queued fact has waited for the linger time, so that we don't keep too many facts
+ * in memory before they are pushed to inventory. Batches are sent asynchronously, with a bounded
+ * number of batches in flight at once. Callers never block on each other while scheduling, only
+ * when they ask for their updates to be flushed.
+ *
+ * <p>A batch may hold the facts of several callers. Each queued fact remembers the updates pending
+ * for the thread that scheduled it, so that a flush only waits for, and only reports the failures
+ * of, the batches holding the facts that its own thread scheduled.
  */
 public abstract class InventoryService {
 
   private static final Logger log = LoggerFactory.getLogger(InventoryService.class);
 
-  private int maxQueueDepth;
-  private int staleHostOffset;
-  private List<ConduitFacts> factQueue;
+  private static final long NOTHING_QUEUED = Long.MIN_VALUE;
+
+  // Rough serialized sizes used to bound batches without serializing the facts.
+  private static final long HOST_BASE_BYTES = 1024;
+  private static final long LIST_ENTRY_BYTES = 48;
+  private static final long NETWORK_INTERFACE_BYTES = 256;
 
-  protected InventoryService(InventoryServiceProperties serviceProperties, int maxQueueDepth) {
+  private final int maxQueueDepth;
+  private final long maxBatchBytes;
+  private final long lingerNanos;
+  private final int maxInFlightBatches;
+  private final int staleHostOffset;
+  private final Queue<QueuedFacts> factQueue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicLong queuedBytes = new AtomicLong();
+  private final AtomicLong oldestQueuedNanos = new AtomicLong(NOTHING_QUEUED);
+  private final Queue<FlushRequest> flushRequests = new ConcurrentLinkedQueue<>();
+  private final Set<CompletableFuture<Void>> inFlightBatches = ConcurrentHashMap.newKeySet();
+  private final ThreadLocal<PendingUpdates> pendingUpdates =
+      ThreadLocal.withInitial(PendingUpdates::new);
+  private final Semaphore inFlightPermits;
+  private final Timer flushTimer;
+  private volatile boolean running = true;
+  private volatile Thread sender;
+  private volatile ExecutorService sendExecutor;
+
+  protected InventoryService(
+      InventoryServiceProperties serviceProperties,
+      int maxQueueDepth,
+      MeterRegistry meterRegistry) {
     this.maxQueueDepth = maxQueueDepth;
+    this.maxBatchBytes = serviceProperties.getApiHostUpdateMaxBatchBytes();
+    this.lingerNanos = serviceProperties.getApiHostUpdateLinger().toNanos();
+    this.maxInFlightBatches = Math.max(1, serviceProperties.getApiHostUpdateMaxInFlightBatches());
     this.staleHostOffset = serviceProperties.getStaleHostOffsetInDays();
-    this.factQueue = new LinkedList<>();
+    this.inFlightPermits = new Semaphore(maxInFlightBatches);
+    this.flushTimer = meterRegistry.timer("rhsm-conduit.inventory.flush");
+    meterRegistry.gauge("rhsm-conduit.inventory.queue.depth", queueDepth);
+    meterRegistry.gauge("rhsm-conduit.inventory.in-flight-batches", inFlightBatches, Set::size);
   }
 
   /**
@@ -59,30 +113,223 @@ public abstract class InventoryService {
   protected abstract void sendHostUpdate(List<ConduitFacts> conduitFactsForOrg);
 
   /**
-   * Schedules the given host facts for update. When the max queue depth is reached, fact updates
-   * are automatically flushed.
+   * Schedules the given host facts for update. When the max queue depth or the batch byte budget is
+   * reached, the sender thread is woken up to send the batch right away.
    *
    * @param facts the host facts to schedule for update.
    */
   public void scheduleHostUpdate(ConduitFacts facts) {
-    synchronized (factQueue) {
-      factQueue.add(facts);
+    if (!running) {
+      throw new IllegalStateException("Inventory service has been shut down.");
+    }
+    startSender();
+    long size = estimateSizeBytes(facts);
+    factQueue.add(new QueuedFacts(facts, size, pendingUpdates.get()));
+    int depth = queueDepth.incrementAndGet();
+    long bytes = queuedBytes.addAndGet(size);
+    oldestQueuedNanos.compareAndSet(NOTHING_QUEUED, System.nanoTime());
 
-      // Auto flush updates when max queue depth is reached.
-      if (factQueue.size() == maxQueueDepth) {
-        log.debug("Max queue depth reached. Auto flushing updates.");
-        flushHostUpdates();
-      }
+    // Wake up the sender when a full batch is ready.
+    if (depth >= maxQueueDepth || bytes >= maxBatchBytes) {
+      log.debug("Max queue depth reached. Waking up the sender.");
+      LockSupport.unpark(sender);
     }
   }
 
-  /** Force the currently scheduled updates to be sent to inventory. */
+  /**
+   * Force the currently scheduled updates to be sent to inventory, and wait until the updates
+   * scheduled by the calling thread are. If any batch holding those updates failed to send since
+   * the thread's last flush, its failure is rethrown here.
+   */
   public void flushHostUpdates() {
-    synchronized (factQueue) {
-      if (!factQueue.isEmpty()) {
-        sendHostUpdate(factQueue);
-        factQueue.clear();
+    Thread currentSender = sender;
+    if (currentSender == null) {
+      // Nothing was ever scheduled.
+      return;
+    }
+    FlushRequest request = new FlushRequest(pendingUpdates.get());
+    flushRequests.add(request);
+    LockSupport.unpark(currentSender);
+    try {
+      request.flushed.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw e;
+    }
+  }
+
+  /**
+   * Send any updates that are still queued, and stop the sender thread. Called by Spring when the
+   * bean is destroyed.
+   */
+  public void shutdown() {
+    running = false;
+    Thread currentSender = sender;
+    if (currentSender == null) {
+      return;
+    }
+    LockSupport.unpark(currentSender);
+    try {
+      currentSender.join(TimeUnit.SECONDS.toMillis(30));
+      sendExecutor.shutdown();
+      if (!sendExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+        log.warn("Timed out waiting for host updates to be sent to inventory.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Approximate how many bytes the given facts add to a batch. Only used to bound batch size, so it
+   * does not need to match the serialized size exactly.
+   */
+  protected long estimateSizeBytes(ConduitFacts facts) {
+    long listEntries =
+        (long) size(facts.getIpAddresses())
+            + size(facts.getMacAddresses())
+            + size(facts.getRhProd())
+            + size(facts.getSysPurposeAddons());
+    return HOST_BASE_BYTES
+        + listEntries * LIST_ENTRY_BYTES
+        + size(facts.getNetworkInterfaces()) * NETWORK_INTERFACE_BYTES;
+  }
+
+  private static int size(Collection<?> values) {
+    return values == null ? 0 : values.size();
+  }
+
+  private void startSender() {
+    if (sender != null) {
+      return;
+    }
+    synchronized (this) {
+      if (sender == null) {
+        CustomizableThreadFactory sendThreadFactory =
+            new CustomizableThreadFactory("inventory-send-");
+        sendThreadFactory.setDaemon(true);
+        sendExecutor = Executors.newFixedThreadPool(maxInFlightBatches, sendThreadFactory);
+        Thread thread = new Thread(this::runSender, "inventory-batcher");
+        thread.setDaemon(true);
+        thread.start();
+        sender = thread;
+      }
+    }
+  }
+
+  private void runSender() {
+    while (running || queueDepth.get() > 0 || !flushRequests.isEmpty()) {
+      // Take the flush requests before draining, so that everything scheduled before a flush was
+      // requested is part of that flush.
+      List<FlushRequest> requests = new ArrayList<>();
+      FlushRequest request;
+      while ((request = flushRequests.poll()) != null) {
+        requests.add(request);
+      }
+
+      if (!requests.isEmpty() || !running) {
+        while (queueDepth.get() > 0) {
+          dispatch(nextBatch());
+        }
+        completeWhenSent(requests);
+      } else if (isBatchReady()) {
+        dispatch(nextBatch());
+      } else {
+        LockSupport.parkNanos(this, nanosUntilLingerExpires());
+      }
+    }
+  }
+
+  private boolean isBatchReady() {
+    int depth = queueDepth.get();
+    if (depth == 0) {
+      return false;
+    }
+    if (depth >= maxQueueDepth || queuedBytes.get() >= maxBatchBytes) {
+      return true;
+    }
+    return nanosUntilLingerExpires() <= 0;
+  }
+
+  private long nanosUntilLingerExpires() {
+    if (queueDepth.get() == 0) {
+      return lingerNanos;
+    }
+    // Facts left behind by the previous batch start lingering from now.
+    oldestQueuedNanos.compareAndSet(NOTHING_QUEUED, System.nanoTime());
+    return oldestQueuedNanos.get() + lingerNanos - System.nanoTime();
+  }
+
+  private List<QueuedFacts> nextBatch() {
+    List<QueuedFacts> batch = new ArrayList<>();
+    long batchBytes = 0;
+    QueuedFacts queued;
+    while (batch.size() < maxQueueDepth
+        && (batch.isEmpty() || batchBytes < maxBatchBytes)
+        && (queued = factQueue.poll()) != null) {
+      queueDepth.decrementAndGet();
+      queuedBytes.addAndGet(-queued.sizeBytes);
+      batchBytes += queued.sizeBytes;
+      batch.add(queued);
+    }
+    oldestQueuedNanos.set(NOTHING_QUEUED);
+    return batch;
+  }
+
+  private void dispatch(List<QueuedFacts> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    inFlightPermits.acquireUninterruptibly();
+    CompletableFuture<Void> sent = new CompletableFuture<>();
+    inFlightBatches.add(sent);
+    // Registered on the sender thread, before any flush request that needs to wait for the batch
+    // is completed.
+    Set<PendingUpdates> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<ConduitFacts> facts = new ArrayList<>(batch.size());
+    for (QueuedFacts queued : batch) {
+      owners.add(queued.owner);
+      facts.add(queued.facts);
+    }
+    owners.forEach(owner -> owner.batches.add(sent));
+    sendExecutor.execute(() -> sendBatch(facts, owners, sent));
+  }
+
+  private void sendBatch(
+      List<ConduitFacts> batch, Set<PendingUpdates> owners, CompletableFuture<Void> sent) {
+    Timer.Sample sample = Timer.start();
+    try {
+      sendHostUpdate(batch);
+      // Nobody needs to hear about a batch that was sent, so don't hold on to it until a flush.
+      owners.forEach(owner -> owner.batches.remove(sent));
+      sent.complete(null);
+    } catch (RuntimeException e) {
+      log.error("Unable to send a batch of {} host updates to inventory.", batch.size(), e);
+      sent.completeExceptionally(e);
+    } finally {
+      sample.stop(flushTimer);
+      inFlightBatches.remove(sent);
+      inFlightPermits.release();
+    }
+  }
+
+  private void completeWhenSent(List<FlushRequest> requests) {
+    for (FlushRequest request : requests) {
+      List<CompletableFuture<Void>> batches = new ArrayList<>(request.owner.batches);
+      CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+          .whenComplete(
+              (result, e) -> {
+                // Each failure is only reported to one flush of the thread.
+                batches.forEach(request.owner.batches::remove);
+                if (e == null) {
+                  request.flushed.complete(null);
+                } else {
+                  request.flushed.completeExceptionally(
+                      e instanceof CompletionException ? e.getCause() : e);
+                }
+              });
     }
   }
 
@@ -208,4 +455,33 @@ public abstract class InventoryService {
       factMap.put(key, value);
     }
   }
+
+  private static class QueuedFacts {
+    private final ConduitFacts facts;
+    private final long sizeBytes;
+    private final PendingUpdates owner;
+
+    private QueuedFacts(ConduitFacts facts, long sizeBytes, PendingUpdates owner) {
+      this.facts = facts;
+      this.sizeBytes = sizeBytes;
+      this.owner = owner;
+    }
+  }
+
+  /**
+   * The batches holding the facts scheduled by one thread that are still in flight, or that failed
+   * and have not been reported to a flush yet.
+   */
+  private static class PendingUpdates {
+    private final Set<CompletableFuture<Void>> batches = ConcurrentHashMap.newKeySet();
+  }
+
+  private static class FlushRequest {
+    private final PendingUpdates owner;
+    private final CompletableFuture<Void> flushed = new CompletableFuture<>();
+
+    private FlushRequest(PendingUpdates owner) {
+      this.owner = owner;
+    }
+  }
 }
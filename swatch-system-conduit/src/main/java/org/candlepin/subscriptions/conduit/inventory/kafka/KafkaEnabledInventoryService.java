@@ -59,7 +59,7 @@ public class KafkaEnabledInventoryService extends InventoryService {
       MeterRegistry meterRegistry,
       RetryTemplate retryTemplate) {
     // Flush updates as soon as they get scheduled.
-    super(serviceProperties, 1);
+    super(serviceProperties, 1, meterRegistry);
     this.producer = producer;
     this.hostIngressTopic = serviceProperties.getKafkaHostIngressTopic();
     this.sentMessageCounter = meterRegistry.counter("rhsm-conduit.send.inventory-message");
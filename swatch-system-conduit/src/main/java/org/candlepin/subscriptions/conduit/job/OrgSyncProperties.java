@@ -20,6 +20,7 @@
  */
 package org.candlepin.subscriptions.conduit.job;
 
+import java.time.Duration;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -35,4 +36,26 @@ public class OrgSyncProperties {
   private String schedule = "0 5 * * * ?";
   /** Artificial limit to number of orgs */
   private Integer limit = null;
+
+  /**
+   * Sync orgs by fetching the next pages of consumers from RHSM while the current page is sent to
+   * inventory, rather than queueing a separate task for every page.
+   */
+  private boolean pipelined = false;
+
+  /** Number of pages fetched ahead of the page being sent when syncing in pipelined mode. */
+  private int pipelineLookahead = 2;
+
+  /**
+   * Maximum number of pages synced by a single task in pipelined mode, after which the remaining
+   * pages are queued as a new task starting at the next offset.
+   */
+  private int pipelineMaxPagesPerTask = 20;
+
+  /**
+   * Time after which a task in pipelined mode stops fetching new pages. The pages already fetched
+   * are sent, and the remaining pages are queued as a new task. Keeps a task well within the Kafka
+   * consumer's max.poll.interval.ms when RHSM or inventory are slow.
+   */
+  private Duration pipelineMaxTaskDuration = Duration.ofMinutes(5);
 }
@@ -20,6 +20,8 @@
  */
 package org.candlepin.subscriptions.conduit.rhsm;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.candlepin.subscriptions.conduit.rhsm.client.RhsmApiFactory;
 import org.candlepin.subscriptions.conduit.rhsm.client.RhsmApiProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -28,6 +30,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.retry.backoff.ExponentialRandomBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /** Configures the RHSM client. */
 @Configuration
@@ -63,6 +66,12 @@ public class RhsmClientConfiguration {
     return new RhsmApiFactory(properties);
   }
 
+  @Bean(name = "rhsmPrefetchExecutor", destroyMethod = "shutdown")
+  public ExecutorService rhsmPrefetchExecutor() {
+    // each pipelined org sync only has one page fetch running at a time
+    return Executors.newCachedThreadPool(new CustomizableThreadFactory("rhsm-prefetch-"));
+  }
+
   @Bean(name = "rhsmRetryTemplate")
   public RetryTemplate rhsmRetryTemplate() {
     SimpleRetryPolicy retryPolicy = new SimpleRetryPolicy();
@@ -0,0 +1,181 @@
+/*
+ * Copyright Red Hat, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Red Hat trademarks are not licensed under GPLv3. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.subscriptions.conduit;
+
+import static org.mockito.BDDMockito.anyString;
+import static org.mockito.BDDMockito.eq;
+import static org.mockito.BDDMockito.never;
+import static org.mockito.BDDMockito.nullable;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+import static org.mockito.BDDMockito.when;
+import static org.mockito.Mockito.any;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.candlepin.subscriptions.conduit.inventory.ConduitFacts;
+import org.candlepin.subscriptions.conduit.inventory.InventoryService;
+import org.candlepin.subscriptions.conduit.job.DatabaseOrgList;
+import org.candlepin.subscriptions.conduit.job.OrgSyncProperties;
+import org.candlepin.subscriptions.conduit.job.OrgSyncTaskManager;
+import org.candlepin.subscriptions.conduit.rhsm.RhsmService;
+import org.candlepin.subscriptions.conduit.rhsm.client.ApiException;
+import org.candlepin.subscriptions.conduit.rhsm.client.RhsmApiProperties;
+import org.candlepin.subscriptions.conduit.rhsm.client.model.Consumer;
+import org.candlepin.subscriptions.conduit.rhsm.client.model.OrgInventory;
+import org.candlepin.subscriptions.conduit.rhsm.client.model.Pagination;
+import org.candlepin.subscriptions.exception.MissingAccountNumberException;
+import org.candlepin.subscriptions.inventory.client.InventoryServiceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(
+    properties = {
+      "rhsm-conduit.org-sync.pipelined=true",
+      "rhsm-conduit.org-sync.pipeline-lookahead=2",
+      "rhsm-conduit.org-sync.pipeline-max-pages-per-task=3"
+    })
+@ActiveProfiles({"rhsm-conduit", "test", "kafka-queue"})
+class InventoryControllerPipelinedSyncTest {
+  @MockBean InventoryService inventoryService;
+
+  @MockBean RhsmService rhsmService;
+
+  @MockBean DatabaseOrgList orgList;
+
+  @MockBean OrgSyncTaskManager taskManager;
+
+  @MockBean InventoryServiceProperties inventoryServiceProperties;
+
+  @Autowired InventoryController controller;
+
+  @Autowired RhsmApiProperties rhsmApiProperties;
+
+  @Autowired OrgSyncProperties orgSyncProperties;
+
+  private Duration defaultMaxTaskDuration;
+
+  @BeforeEach
+  void setup() {
+    defaultMaxTaskDuration = orgSyncProperties.getPipelineMaxTaskDuration();
+    when(inventoryServiceProperties.getHostLastSyncThreshold()).thenReturn(Duration.ofHours(24));
+    when(rhsmService.formattedTime()).thenReturn("");
+  }
+
+  @AfterEach
+  void restore() {
+    orgSyncProperties.setPipelineMaxTaskDuration(defaultMaxTaskDuration);
+  }
+
+  @Test
+  void fetchesPagesAheadUntilMaxPagesThenQueuesNextOffset()
+      throws ApiException, MissingAccountNumberException {
+    int batchSize = rhsmApiProperties.getRequestBatchSize();
+    when(rhsmService.getPageOfConsumers(eq("123"), nullable(String.class), anyString()))
+        .thenReturn(fullPage("page-1"));
+    when(rhsmService.getPageOfConsumers("123", "page-1", "")).thenReturn(fullPage("page-2"));
+    when(rhsmService.getPageOfConsumers("123", "page-2", "")).thenReturn(fullPage("page-3"));
+
+    controller.updateInventoryForOrg("123", null);
+
+    verify(rhsmService, times(3))
+        .getPageOfConsumers(eq("123"), nullable(String.class), anyString());
+    verify(rhsmService, never()).getPageOfConsumers("123", "page-3", "");
+    verify(inventoryService, times(3 * batchSize)).scheduleHostUpdate(any(ConduitFacts.class));
+    verify(inventoryService, times(3)).flushHostUpdates();
+    verify(taskManager).updateOrgInventory("123", "page-3");
+  }
+
+  @Test
+  void stopsFetchingPagesOnceMaxTaskDurationHasPassed()
+      throws ApiException, MissingAccountNumberException {
+    orgSyncProperties.setPipelineMaxTaskDuration(Duration.ZERO);
+    when(rhsmService.getPageOfConsumers(eq("123"), nullable(String.class), anyString()))
+        .thenReturn(fullPage("page-1"));
+
+    controller.updateInventoryForOrg("123", null);
+
+    verify(rhsmService, times(1))
+        .getPageOfConsumers(eq("123"), nullable(String.class), anyString());
+    verify(inventoryService, times(1)).flushHostUpdates();
+    verify(taskManager).updateOrgInventory("123", "page-1");
+  }
+
+  @Test
+  void finalizesWithoutQueueingWhenLastPageIsPartial()
+      throws ApiException, MissingAccountNumberException {
+    when(rhsmService.getPageOfConsumers(eq("123"), nullable(String.class), anyString()))
+        .thenReturn(fullPage("page-1"));
+    when(rhsmService.getPageOfConsumers("123", "page-1", "")).thenReturn(partialPage());
+
+    controller.updateInventoryForOrg("123", null);
+
+    verify(rhsmService, times(2))
+        .getPageOfConsumers(eq("123"), nullable(String.class), anyString());
+    verify(inventoryService, times(2)).flushHostUpdates();
+    verify(taskManager, never()).updateOrgInventory(anyString(), anyString());
+  }
+
+  @Test
+  void usesSingleSyncTimestampForAllPagesInTask()
+      throws ApiException, MissingAccountNumberException {
+    when(rhsmService.getPageOfConsumers(eq("123"), nullable(String.class), anyString()))
+        .thenReturn(partialPage());
+
+    controller.updateInventoryForOrg("123", null);
+
+    verify(rhsmService, times(1)).formattedTime();
+  }
+
+  private OrgInventory fullPage(String lastId) {
+    int limit = rhsmApiProperties.getRequestBatchSize();
+    List<Consumer> consumers = new ArrayList<>(limit);
+    for (int i = 0; i < limit; i++) {
+      consumers.add(consumer(i == limit - 1 ? lastId : UUID.randomUUID().toString()));
+    }
+    return new OrgInventory()
+        .body(consumers)
+        .pagination(new Pagination().count((long) limit).limit((long) limit));
+  }
+
+  private OrgInventory partialPage() {
+    int limit = rhsmApiProperties.getRequestBatchSize();
+    return new OrgInventory()
+        .body(List.of(consumer(UUID.randomUUID().toString())))
+        .pagination(new Pagination().count(1L).limit((long) limit));
+  }
+
+  private Consumer consumer(String id) {
+    Consumer consumer = new Consumer();
+    consumer.setId(id);
+    consumer.setUuid(UUID.randomUUID().toString());
+    consumer.setAccountNumber("account");
+    consumer.setOrgId("123");
+    return consumer;
+  }
+}
@@ -22,12 +22,18 @@ package org.candlepin.subscriptions.conduit.inventory;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.candlepin.subscriptions.exception.inventory.InventoryServiceException;
 import org.candlepin.subscriptions.inventory.client.ApiException;
 import org.candlepin.subscriptions.inventory.client.InventoryServiceProperties;
 import org.candlepin.subscriptions.inventory.client.model.CreateHostIn;
@@ -46,6 +52,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 class DefaultInventoryServiceTest {
   @Mock HostsApi api;
 
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   private ConduitFacts createFullyPopulatedConduitFacts() {
     ConduitFacts conduitFacts = new ConduitFacts();
     conduitFacts.setAccountNumber("1234-account");
@@ -84,7 +92,8 @@ class DefaultInventoryServiceTest {
     InventoryServiceProperties props = new InventoryServiceProperties();
     props.setApiHostUpdateBatchSize(1);
 
-    DefaultInventoryService inventoryService = new DefaultInventoryService(api, props);
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
     inventoryService.sendHostUpdate(Collections.singletonList(createFullyPopulatedConduitFacts()));
     Map<String, Object> expectedFactMap = new HashMap<>();
     expectedFactMap.put("MEMORY", 32757752L);
@@ -141,7 +150,8 @@ class DefaultInventoryServiceTest {
     InventoryServiceProperties props = new InventoryServiceProperties();
     props.setApiHostUpdateBatchSize(1);
 
-    DefaultInventoryService inventoryService = new DefaultInventoryService(null, props);
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(null, props, meterRegistry);
     ConduitFacts conduitFacts = createFullyPopulatedConduitFacts();
     OrgInventory orgInventory =
         inventoryService.getInventoryForOrgConsumers(Collections.singletonList(conduitFacts));
@@ -155,7 +165,8 @@ class DefaultInventoryServiceTest {
     props.setApiHostUpdateBatchSize(1);
     props.setStaleHostOffsetInDays(24);
 
-    DefaultInventoryService inventoryService = new DefaultInventoryService(api, props);
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
     inventoryService.sendHostUpdate(Collections.singletonList(createFullyPopulatedConduitFacts()));
 
     ArgumentCaptor<List<CreateHostIn>> argument = ArgumentCaptor.forClass(List.class);
@@ -177,24 +188,147 @@ class DefaultInventoryServiceTest {
     InventoryServiceProperties props = new InventoryServiceProperties();
     props.setApiHostUpdateBatchSize(2);
 
-    DefaultInventoryService inventoryService = new DefaultInventoryService(api, props);
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
 
     inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
     inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
 
     ArgumentCaptor<List<CreateHostIn>> argument = ArgumentCaptor.forClass(List.class);
-    Mockito.verify(api, Mockito.times(1)).apiHostAddHostList(argument.capture());
+    Mockito.verify(api, Mockito.timeout(5000).times(1)).apiHostAddHostList(argument.capture());
 
     List<CreateHostIn> resultList = argument.getValue();
     assertEquals(2, resultList.size());
   }
 
+  @Test
+  void scheduleHostUpdateSendsPartialBatchAfterLinger() throws Exception {
+    InventoryServiceProperties props = new InventoryServiceProperties();
+    props.setApiHostUpdateBatchSize(10);
+    props.setApiHostUpdateLinger(Duration.ofMillis(50));
+
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
+
+    inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
+
+    ArgumentCaptor<List<CreateHostIn>> argument = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(api, Mockito.timeout(5000).times(1)).apiHostAddHostList(argument.capture());
+    assertEquals(1, argument.getValue().size());
+  }
+
+  @Test
+  void scheduleHostUpdateSplitsBatchesByByteBudget() throws Exception {
+    InventoryServiceProperties props = new InventoryServiceProperties();
+    props.setApiHostUpdateBatchSize(10);
+    props.setApiHostUpdateLinger(Duration.ofHours(1));
+    // every fact is bigger than the budget, so each batch holds a single fact
+    props.setApiHostUpdateMaxBatchBytes(1);
+
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
+
+    inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
+    inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
+    inventoryService.flushHostUpdates();
+
+    ArgumentCaptor<List<CreateHostIn>> argument = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(api, Mockito.times(2)).apiHostAddHostList(argument.capture());
+    argument.getAllValues().forEach(batch -> assertEquals(1, batch.size()));
+  }
+
+  @Test
+  void flushHostUpdatesWaitsForEveryScheduledUpdate() throws Exception {
+    InventoryServiceProperties props = new InventoryServiceProperties();
+    props.setApiHostUpdateBatchSize(3);
+    props.setApiHostUpdateLinger(Duration.ofHours(1));
+    props.setApiHostUpdateMaxInFlightBatches(2);
+
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
+
+    List<Thread> schedulers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread scheduler =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 5; j++) {
+                  inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
+                }
+              });
+      scheduler.start();
+      schedulers.add(scheduler);
+    }
+    for (Thread scheduler : schedulers) {
+      scheduler.join();
+    }
+    inventoryService.flushHostUpdates();
+
+    ArgumentCaptor<List<CreateHostIn>> argument = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(api, Mockito.atLeastOnce()).apiHostAddHostList(argument.capture());
+    assertEquals(20, argument.getAllValues().stream().mapToInt(List::size).sum());
+    argument.getAllValues().forEach(batch -> assertTrue(batch.size() <= 3));
+    assertEquals(0.0, meterRegistry.get("rhsm-conduit.inventory.queue.depth").gauge().value());
+  }
+
+  @Test
+  void flushHostUpdatesRethrowsFailedBatch() throws Exception {
+    InventoryServiceProperties props = new InventoryServiceProperties();
+    props.setApiHostUpdateBatchSize(10);
+    props.setApiHostUpdateLinger(Duration.ofHours(1));
+    Mockito.when(api.apiHostAddHostList(Mockito.anyList())).thenThrow(new ApiException("boom"));
+
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
+    inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
+
+    assertThrows(InventoryServiceException.class, inventoryService::flushHostUpdates);
+    // the failure is only reported once
+    assertDoesNotThrow(inventoryService::flushHostUpdates);
+  }
+
+  @Test
+  void flushHostUpdatesOnlyRethrowsFailuresOfItsOwnUpdates() throws Exception {
+    InventoryServiceProperties props = new InventoryServiceProperties();
+    props.setApiHostUpdateBatchSize(1);
+    props.setApiHostUpdateLinger(Duration.ofHours(1));
+    Mockito.lenient()
+        .when(
+            api.apiHostAddHostList(
+                Mockito.argThat(hosts -> "failing-account".equals(hosts.get(0).getAccount()))))
+        .thenThrow(new ApiException("boom"));
+
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
+    ConduitFacts failing = createFullyPopulatedConduitFacts();
+    failing.setAccountNumber("failing-account");
+    inventoryService.scheduleHostUpdate(failing);
+
+    AtomicReference<Throwable> otherFlushFailure = new AtomicReference<>();
+    Thread other =
+        new Thread(
+            () -> {
+              try {
+                inventoryService.scheduleHostUpdate(createFullyPopulatedConduitFacts());
+                inventoryService.flushHostUpdates();
+              } catch (RuntimeException e) {
+                otherFlushFailure.set(e);
+              }
+            });
+    other.start();
+    other.join();
+
+    assertNull(otherFlushFailure.get());
+    assertThrows(InventoryServiceException.class, inventoryService::flushHostUpdates);
+  }
+
   @Test
   void noExceptionsWhenOperatingSystemIsNonRhel() throws ApiException {
     InventoryServiceProperties props = new InventoryServiceProperties();
     props.setApiHostUpdateBatchSize(1);
 
-    DefaultInventoryService inventoryService = new DefaultInventoryService(api, props);
+    DefaultInventoryService inventoryService =
+        new DefaultInventoryService(api, props, meterRegistry);
     ConduitFacts facts = createFullyPopulatedConduitFacts();
     facts.setOsName("That other OS");
     facts.setOsVersion("42.42");